@@ -0,0 +1,544 @@
+package xyz.acygn.millr.generation;
+
+import java.io.DataOutput;
+import java.lang.reflect.Field;
+import static java.lang.reflect.Modifier.isFinal;
+import static java.lang.reflect.Modifier.isPrivate;
+import static java.lang.reflect.Modifier.isPublic;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import org.objectweb.asm.MethodVisitor;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V1_8;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.util.CheckClassAdapter;
+import xyz.acygn.mokapot.skeletons.Authorisation;
+import xyz.acygn.mokapot.skeletons.FieldSerializer;
+import xyz.acygn.mokapot.util.Pair;
+import xyz.acygn.mokapot.wireformat.ObjectWireFormat;
+import xyz.acygn.mokapot.wireformat.ReadableDescription;
+
+/**
+ * An object that generates a field serialiser for a particular class. The
+ * generated class extends <code>FieldSerializer</code>, and describes and
+ * reproduces the fields of the class in the same format as the reflective
+ * implementation in the runtime, but via straight-line code that reads and
+ * writes each field individually with its own type.
+ * <p>
+ * The generated class is intended to be loaded into the same runtime package
+ * as the class it's about, so that it can access that class's non-private
+ * fields directly. Fields that it can't access directly (because they're
+ * <code>private</code>, or <code>final</code> and being written, or belong to
+ * a superclass in another package) are accessed via the method handles in
+ * <code>FieldSerializer#accessors</code>, using exact invocations so that
+ * primitives don't need to be boxed either way.
+ *
+ * @param <T> The class for which the field serialiser is being generated.
+ * @see FieldSerializer
+ */
+public class FieldSerializerGenerator<T> {
+
+    /**
+     * The internal name of <code>FieldSerializer</code>.
+     */
+    private static final String FIELD_SERIALIZER
+            = Type.getInternalName(FieldSerializer.class);
+
+    /**
+     * The internal name of <code>FieldSerializer.ReferenceFields</code>.
+     */
+    private static final String REFERENCE_FIELDS
+            = Type.getInternalName(FieldSerializer.ReferenceFields.class);
+
+    /**
+     * The internal name of <code>MethodHandle</code>.
+     */
+    private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+
+    /**
+     * The descriptor of <code>Object</code>.
+     */
+    private static final String OBJECT_DESC = "Ljava/lang/Object;";
+
+    /**
+     * The class for which the field serialiser is being generated.
+     */
+    private final Class<T> about;
+
+    /**
+     * The fields of <code>about</code>, in wire format order.
+     */
+    private final List<Field> fields = new ArrayList<>();
+
+    /**
+     * Creates a field serialiser generator for the given class.
+     *
+     * @param db An object wire format for the class for which the field
+     * serialiser will be generated.
+     */
+    public FieldSerializerGenerator(ObjectWireFormat<T> db) {
+        this.about = db.getAbout();
+        db.getInstanceFieldList().forEach(fields::add);
+    }
+
+    /**
+     * Returns the name of the field serialiser class generated for a given
+     * class.
+     *
+     * @param className The name of the class whose fields are serialised, in
+     * either Java format (with dots) or internal format (with slashes).
+     * @return The name of the field serialiser class, in the same format.
+     */
+    public static String mangleClassName(String className) {
+        return className + "$mokapot_fieldserializer";
+    }
+
+    /**
+     * Generates a field serialiser class, returning its bytecode.
+     *
+     * @return A pair of the bytecode of the generated class, and its name (in
+     * Java format with dots, not internal format with slashes).
+     */
+    public Pair<byte[], String> generateAsBytecode() {
+        ClassWriter cw = new ClassWriter(COMPUTE_MAXS);
+        String name = generate(new CheckClassAdapter(cw, false));
+        byte[] bytecode = cw.toByteArray();
+        StandinGenerator.DebugListener listener = StandinGenerator.getListener();
+        if (listener != null) {
+            listener.classGenerated(bytecode, name.replace('/', '.'));
+        }
+        return new Pair<>(bytecode, name.replace('/', '.'));
+    }
+
+    /**
+     * Generates a field serialiser class.
+     *
+     * @param cv The class visitor to which to write the generated class. No
+     * stack frames are generated, but none are needed, as the generated code
+     * contains no branches.
+     * @return The internal name of the generated class.
+     */
+    private String generate(ClassVisitor cv) {
+        String aboutName = Type.getInternalName(about);
+        String name = mangleClassName(aboutName);
+
+        cv.visit(V1_8, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name,
+                null, FIELD_SERIALIZER, null);
+
+        MethodVisitor mv = cv.visitMethod(ACC_PUBLIC, "writeFields",
+                Type.getMethodDescriptor(Type.VOID_TYPE,
+                        Type.getType(Object.class),
+                        Type.getType(DataOutput.class),
+                        Type.getObjectType(REFERENCE_FIELDS),
+                        Type.getType(Authorisation.class)),
+                null, new String[]{"java/io/IOException"});
+        mv.visitCode();
+        verifyAuthorisation(mv);
+        for (int i = 0; i < fields.size(); i++) {
+            writeField(mv, i, fields.get(i));
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cv.visitMethod(ACC_PUBLIC, "readFields",
+                Type.getMethodDescriptor(Type.VOID_TYPE,
+                        Type.getType(Object.class),
+                        Type.getType(ReadableDescription.class),
+                        Type.getObjectType(REFERENCE_FIELDS),
+                        Type.getType(Authorisation.class)),
+                null, new String[]{"java/io/IOException"});
+        mv.visitCode();
+        verifyAuthorisation(mv);
+        for (int i = 0; i < fields.size(); i++) {
+            readField(mv, i, fields.get(i));
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cv.visitEnd();
+        return name;
+    }
+
+    /**
+     * Writes code that verifies the authorisation passed as the fourth
+     * argument of the method.
+     *
+     * @param mv The method being generated.
+     */
+    private static void verifyAuthorisation(MethodVisitor mv) {
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitMethodInsn(INVOKEVIRTUAL,
+                Type.getInternalName(Authorisation.class),
+                "verify", "()V", false);
+    }
+
+    /**
+     * Writes code that describes one field of the object in local variable 1
+     * into the output in local variable 2.
+     *
+     * @param mv The method being generated.
+     * @param index The index of the field.
+     * @param f The field.
+     */
+    private void writeField(MethodVisitor mv, int index, Field f) {
+        Type wireType = wireType(f);
+        if (wireType.getSort() != Type.OBJECT) {
+            mv.visitVarInsn(ALOAD, 2);
+            loadField(mv, index, f, wireType);
+            mv.visitMethodInsn(INVOKEINTERFACE, "java/io/DataOutput",
+                    "write" + dataMethodSuffix(wireType),
+                    "(" + widen(wireType) + ")V", true);
+        } else {
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ALOAD, 1);
+            pushInt(mv, index);
+            loadField(mv, index, f, wireType);
+            mv.visitMethodInsn(INVOKEINTERFACE, REFERENCE_FIELDS, "writeField",
+                    "(Ljava/io/DataOutput;Ljava/lang/Object;ILjava/lang/Object;)V",
+                    true);
+        }
+    }
+
+    /**
+     * Writes code that sets one field of the object in local variable 1 to a
+     * value read from the description in local variable 2.
+     *
+     * @param mv The method being generated.
+     * @param index The index of the field.
+     * @param f The field.
+     */
+    private void readField(MethodVisitor mv, int index, Field f) {
+        Type wireType = wireType(f);
+        Type fieldType = Type.getType(f.getType());
+        boolean direct = canWriteDirectly(f);
+
+        if (direct) {
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(about));
+        } else {
+            loadAccessor(mv, index * 2 + 1);
+            mv.visitVarInsn(ALOAD, 1);
+        }
+
+        if (wireType.getSort() != Type.OBJECT) {
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitMethodInsn(INVOKEINTERFACE, "java/io/DataInput",
+                    "read" + dataMethodSuffix(wireType),
+                    "()" + wireType.getDescriptor(), true);
+        } else {
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ALOAD, 1);
+            pushInt(mv, index);
+            mv.visitMethodInsn(INVOKEINTERFACE, REFERENCE_FIELDS, "readField",
+                    "(" + Type.getDescriptor(ReadableDescription.class)
+                    + "Ljava/lang/Object;I)Ljava/lang/Object;", true);
+        }
+
+        if (direct) {
+            if (wireType.getSort() == Type.OBJECT) {
+                unboxOrCast(mv, fieldType);
+            }
+            mv.visitFieldInsn(PUTFIELD,
+                    Type.getInternalName(f.getDeclaringClass()),
+                    f.getName(), fieldType.getDescriptor());
+        } else {
+            mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+                    "(" + OBJECT_DESC + wireType.getDescriptor() + ")V", false);
+        }
+    }
+
+    /**
+     * Writes code that pushes the value of a field of the object in local
+     * variable 1, converted to its wire type, onto the stack.
+     *
+     * @param mv The method being generated.
+     * @param index The index of the field.
+     * @param f The field.
+     * @param wireType The wire type of the field.
+     */
+    private void loadField(MethodVisitor mv, int index, Field f,
+            Type wireType) {
+        if (canReadDirectly(f)) {
+            Type fieldType = Type.getType(f.getType());
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(about));
+            mv.visitFieldInsn(GETFIELD,
+                    Type.getInternalName(f.getDeclaringClass()),
+                    f.getName(), fieldType.getDescriptor());
+            if (wireType.getSort() == Type.OBJECT
+                    && fieldType.getSort() != Type.OBJECT
+                    && fieldType.getSort() != Type.ARRAY) {
+                box(mv, fieldType);
+            }
+        } else {
+            loadAccessor(mv, index * 2);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+                    "(" + OBJECT_DESC + ")" + wireType.getDescriptor(), false);
+        }
+    }
+
+    /**
+     * Writes code that pushes one of the accessor method handles onto the
+     * stack.
+     *
+     * @param mv The method being generated.
+     * @param accessorIndex The index of the accessor within
+     * <code>FieldSerializer#accessors</code>.
+     */
+    private static void loadAccessor(MethodVisitor mv, int accessorIndex) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, FIELD_SERIALIZER, "accessors",
+                "[L" + METHOD_HANDLE + ";");
+        pushInt(mv, accessorIndex);
+        mv.visitInsn(AALOAD);
+    }
+
+    /**
+     * Returns the class as which a field's value is passed around by the
+     * generated code. For the primitive types that are described directly via
+     * <code>DataOutput</code>, this is the field's own type; for all other
+     * fields, it's <code>Object</code>, as the value is handed to the
+     * marshalling code in the runtime.
+     * <p>
+     * The accessors given to the generated code must use this class for the
+     * field's value.
+     *
+     * @param f The field.
+     * @return The wire class of <code>f</code>.
+     */
+    public static Class<?> wireClass(Field f) {
+        Class<?> c = f.getType();
+        if (c == boolean.class || c == byte.class || c == char.class
+                || c == double.class || c == float.class || c == int.class
+                || c == long.class || c == short.class) {
+            return c;
+        }
+        return Object.class;
+    }
+
+    /**
+     * Returns the type in which a field's value is passed around by the
+     * generated code.
+     *
+     * @param f The field.
+     * @return The type of <code>wireClass(f)</code>.
+     */
+    private static Type wireType(Field f) {
+        return Type.getType(wireClass(f));
+    }
+
+    /**
+     * Returns the suffix of the <code>DataOutput</code> and
+     * <code>DataInput</code> methods that handle a given primitive type.
+     *
+     * @param t The primitive type.
+     * @return The method name suffix, e.g. <code>"Int"</code>.
+     */
+    private static String dataMethodSuffix(Type t) {
+        String className = t.getClassName();
+        return Character.toUpperCase(className.charAt(0))
+                + className.substring(1);
+    }
+
+    /**
+     * Returns the descriptor of the argument type that
+     * <code>DataOutput</code> uses to write a given primitive. The methods
+     * for <code>byte</code>, <code>char</code> and <code>short</code> take an
+     * <code>int</code>; the others take the primitive itself.
+     *
+     * @param t The primitive type.
+     * @return The descriptor of the argument type.
+     */
+    private static String widen(Type t) {
+        switch (t.getSort()) {
+            case Type.BYTE:
+            case Type.CHAR:
+            case Type.SHORT:
+                return "I";
+            default:
+                return t.getDescriptor();
+        }
+    }
+
+    /**
+     * Writes code that boxes the primitive on top of the stack.
+     *
+     * @param mv The method being generated.
+     * @param t The type of the primitive.
+     */
+    private static void box(MethodVisitor mv, Type t) {
+        String boxed = boxedName(t);
+        mv.visitMethodInsn(INVOKESTATIC, boxed, "valueOf",
+                "(" + t.getDescriptor() + ")L" + boxed + ";", false);
+    }
+
+    /**
+     * Writes code that converts the <code>Object</code> on top of the stack
+     * to a given type, unboxing it if the type is primitive.
+     *
+     * @param mv The method being generated.
+     * @param t The type to convert to.
+     */
+    private static void unboxOrCast(MethodVisitor mv, Type t) {
+        if (t.getSort() == Type.OBJECT || t.getSort() == Type.ARRAY) {
+            if (!t.getDescriptor().equals(OBJECT_DESC)) {
+                mv.visitTypeInsn(CHECKCAST, t.getInternalName());
+            }
+        } else {
+            String boxed = boxedName(t);
+            mv.visitTypeInsn(CHECKCAST, boxed);
+            mv.visitMethodInsn(INVOKEVIRTUAL, boxed, t.getClassName() + "Value",
+                    "()" + t.getDescriptor(), false);
+        }
+    }
+
+    /**
+     * Returns the internal name of the class used to box a given primitive
+     * type.
+     *
+     * @param t The primitive type.
+     * @return The internal name of the boxed type.
+     */
+    private static String boxedName(Type t) {
+        switch (t.getSort()) {
+            case Type.BOOLEAN:
+                return "java/lang/Boolean";
+            case Type.BYTE:
+                return "java/lang/Byte";
+            case Type.CHAR:
+                return "java/lang/Character";
+            case Type.SHORT:
+                return "java/lang/Short";
+            case Type.INT:
+                return "java/lang/Integer";
+            case Type.LONG:
+                return "java/lang/Long";
+            case Type.FLOAT:
+                return "java/lang/Float";
+            case Type.DOUBLE:
+                return "java/lang/Double";
+            default:
+                throw new IllegalArgumentException("not a primitive: " + t);
+        }
+    }
+
+    /**
+     * Writes code that pushes an integer constant onto the stack.
+     *
+     * @param mv The method being generated.
+     * @param value The constant to push.
+     */
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * Determines whether the generated code can read a field directly (rather
+     * than via a method handle).
+     *
+     * @param f The field.
+     * @return <code>true</code> if a <code>GETFIELD</code> instruction in the
+     * generated class would be allowed to read <code>f</code>.
+     */
+    private boolean canReadDirectly(Field f) {
+        if (isPrivate(f.getModifiers())) {
+            return false;
+        }
+        return isPublic(f.getModifiers())
+                && isPublic(f.getDeclaringClass().getModifiers())
+                || inSamePackage(f.getDeclaringClass());
+    }
+
+    /**
+     * Determines whether the generated code can write a field directly
+     * (rather than via a method handle).
+     *
+     * @param f The field.
+     * @return <code>true</code> if a <code>PUTFIELD</code> instruction in the
+     * generated class would be allowed to write <code>f</code>.
+     */
+    private boolean canWriteDirectly(Field f) {
+        return !isFinal(f.getModifiers()) && canReadDirectly(f)
+                && isAccessible(f.getType());
+    }
+
+    /**
+     * Determines whether the generated class can refer to a given class (e.g.
+     * in a <code>CHECKCAST</code> instruction).
+     *
+     * @param c The class.
+     * @return <code>true</code> if <code>c</code> is accessible to the
+     * generated class.
+     */
+    private boolean isAccessible(Class<?> c) {
+        while (c.isArray()) {
+            c = c.getComponentType();
+        }
+        if (c.isPrimitive() || inSamePackage(c)) {
+            return true;
+        }
+        for (Class<?> o = c; o != null; o = o.getEnclosingClass()) {
+            if (!isPublic(o.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a class is in the same runtime package as the
+     * generated class (i.e. that of <code>about</code>).
+     *
+     * @param c The class.
+     * @return <code>true</code> if <code>c</code> has the same package and
+     * class loader as <code>about</code>.
+     */
+    private boolean inSamePackage(Class<?> c) {
+        return c.getClassLoader() == about.getClassLoader()
+                && Objects.equals(packageName(c), packageName(about));
+    }
+
+    /**
+     * Returns the name of the package that a class belongs to.
+     *
+     * @param c The class.
+     * @return The package name, or the empty string for the default package.
+     */
+    private static String packageName(Class<?> c) {
+        String name = c.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot == -1 ? "" : name.substring(0, lastDot);
+    }
+}
@@ -44,11 +44,15 @@ import static org.objectweb.asm.Opcodes.ACONST_NULL;
 import static org.objectweb.asm.Opcodes.ALOAD;
 import static org.objectweb.asm.Opcodes.ANEWARRAY;
 import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
 import static org.objectweb.asm.Opcodes.ASM5;
 import static org.objectweb.asm.Opcodes.CHECKCAST;
 import static org.objectweb.asm.Opcodes.DUP;
 import static org.objectweb.asm.Opcodes.GETFIELD;
 import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IF_ACMPNE;
+import static org.objectweb.asm.Opcodes.IFNULL;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.INSTANCEOF;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
@@ -940,6 +944,21 @@ public class StandinGenerator<T> {
                 writeNewMethodTo.visitTypeInsn(CHECKCAST,
                         Type.getInternalName(ForwardingStandinStorage.class));
 
+                /* If the object we're forwarding to is local, we can call the
+                   method on it directly, without packing the arguments into
+                   an array (which would mean boxing any primitives). For a
+                   composition-based standin, this calls the method via
+                   INVOKEVIRTUAL on another object, so is only done for public
+                   methods. finalize() is never forwarded
+                   (see LocationManager#invoke), so it doesn't get this
+                   treatment either. */
+                if (m != null && Modifier.isPublic(m.getModifiers())
+                        && !(m.getName().equals("finalize")
+                        && m.getParameterCount() == 0)) {
+                    generateDirectCall(writeNewMethodTo, delegateTo,
+                            methodType);
+                }
+
                 /* Calculate the method code. */
                 int salt = db.getMethodCodeSalt();
                 long methodCode = defaultMethodCode(m, salt);
@@ -1096,6 +1115,111 @@ public class StandinGenerator<T> {
             writeNewMethodTo.visitEnd();
         }
 
+        /**
+         * Generates code that calls a method directly on the local object
+         * that a forwarding standin storage forwards to, if there is one. On
+         * entry, the stack must hold the forwarding standin storage (and
+         * nothing else). If the object isn't local, the generated code leaves
+         * the stack as it was, and falls through; otherwise, it calls the
+         * method with the arguments of the method being generated, and returns
+         * its return value.
+         *
+         * @param writeNewMethodTo The method visitor for the method being
+         * generated.
+         * @param delegateTo The method to call.
+         * @param methodType The type of the method being generated (which is
+         * also the type of the method to call).
+         */
+        private void generateDirectCall(MethodVisitor writeNewMethodTo,
+                MethodReference delegateTo, Type methodType) {
+            MethodReference begin, end;
+            try {
+                begin = new MethodReference(ForwardingStandinStorage.class
+                        .getMethod("beginDirectCall"));
+                end = new MethodReference(ForwardingStandinStorage.class
+                        .getMethod("endDirectCall"));
+            } catch (NoSuchMethodException | SecurityException ex) {
+                /* Should never happen; ForwardingStandinStorage is our own
+                   class and we can determine what methods it has. */
+                throw new RuntimeException(ex);
+            }
+
+            /* The storage goes in the first local variable after the
+               arguments, as we need it again to end the call. */
+            int storageLocal = 1;
+            for (Type argument : methodType.getArgumentTypes()) {
+                storageLocal += argument.getSize();
+            }
+            writeNewMethodTo.visitVarInsn(ASTORE, storageLocal);
+
+            Label tryStart = new Label();
+            Label tryEnd = new Label();
+            Label handler = new Label();
+            Label indirect = new Label();
+            writeNewMethodTo.visitTryCatchBlock(
+                    tryStart, tryEnd, handler, null);
+
+            /* Ask for the local object; if there isn't one, we'll need to
+               forward the call after all. */
+            writeNewMethodTo.visitVarInsn(ALOAD, storageLocal);
+            begin.generateCallInsn(INVOKEVIRTUAL, writeNewMethodTo);
+            writeNewMethodTo.visitInsn(DUP);
+            writeNewMethodTo.visitJumpInsn(IFNULL, indirect);
+
+            /* An inheritance-based standin is its own referent. If the local
+               object is this standin, the method it overrides has to be
+               called, as invoke() does (its storage is forwarding, so calling
+               the method virtually would forward the call back to us). If the
+               local object is some other standin, we don't know how to
+               bypass its storage, so forward the call after all. */
+            Label notSelf = new Label();
+            if (inheritanceBased) {
+                writeNewMethodTo.visitInsn(DUP);
+                writeNewMethodTo.visitVarInsn(ALOAD, 0);
+                writeNewMethodTo.visitJumpInsn(IF_ACMPNE, notSelf);
+            }
+
+            /* Call the method on the local object; whatever happens, we have
+               to end the call afterwards. */
+            writeNewMethodTo.visitLabel(tryStart);
+            if (inheritanceBased) {
+                writeNewMethodTo.visitInsn(POP);
+                writeNewMethodTo.visitVarInsn(ALOAD, 0);
+            } else {
+                writeNewMethodTo.visitTypeInsn(CHECKCAST, oldClassName);
+            }
+            int i = 1;
+            for (Type argument : methodType.getArgumentTypes()) {
+                writeNewMethodTo.visitVarInsn(argument.getOpcode(ILOAD), i);
+                i += argument.getSize();
+            }
+            delegateTo.generateCallInsn(inheritanceBased
+                    ? INVOKESPECIAL : INVOKEVIRTUAL, writeNewMethodTo);
+            writeNewMethodTo.visitLabel(tryEnd);
+            writeNewMethodTo.visitVarInsn(ALOAD, storageLocal);
+            end.generateCallInsn(INVOKEVIRTUAL, writeNewMethodTo);
+            writeNewMethodTo.visitInsn(
+                    methodType.getReturnType().getOpcode(IRETURN));
+
+            writeNewMethodTo.visitLabel(handler);
+            writeNewMethodTo.visitVarInsn(ALOAD, storageLocal);
+            end.generateCallInsn(INVOKEVIRTUAL, writeNewMethodTo);
+            writeNewMethodTo.visitInsn(ATHROW);
+
+            if (inheritanceBased) {
+                writeNewMethodTo.visitLabel(notSelf);
+                writeNewMethodTo.visitVarInsn(ALOAD, storageLocal);
+                end.generateCallInsn(INVOKEVIRTUAL, writeNewMethodTo);
+            }
+
+            /* Not local (or not callable directly): discard the null or the
+               object, and put the storage back on the stack for the
+               forwarding code that follows. */
+            writeNewMethodTo.visitLabel(indirect);
+            writeNewMethodTo.visitInsn(POP);
+            writeNewMethodTo.visitVarInsn(ALOAD, storageLocal);
+        }
+
         /**
          * Writes one or more Java bytecode instructions that boxes the given
          * sort of value into an Object. The value will be assumed to be at the
@@ -1280,6 +1404,17 @@ public class StandinGenerator<T> {
         listener = newListener;
     }
 
+    /**
+     * Returns the debug listener in use. Other generators in this package use
+     * this to report the classes that they generate to the same listener.
+     *
+     * @return The current debug listener, or <code>null</code> if there is
+     * none.
+     */
+    static DebugListener getListener() {
+        return listener;
+    }
+
     /**
      * A listener that's informed whenever a new standin is generated. This can
      * be used to debug runtime-generated standins.
@@ -35,4 +35,47 @@ public interface ArrayWrapper extends java.lang.Cloneable, java.io.Serializable,
     
     public void update(Object o);
 
+    /**
+     * Returns a copy of a range of the wrapped array, as a plain array of the
+     * same type. Reading many elements via one call to this method is much
+     * cheaper than reading them individually when the wrapper is not stored
+     * locally.
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy.
+     * @return A new array holding the elements in the given range.
+     * @throws ArrayIndexOutOfBoundsException If the range doesn't lie within
+     * the array
+     */
+    public Object getRange(int from, int to);
+
+    /**
+     * Copies elements from an array into the wrapped array, as with
+     * <code>System#arraycopy</code>.
+     *
+     * @param destPos The index in the wrapped array of the first element to
+     * overwrite.
+     * @param values The array to copy from (which may also be an array
+     * wrapper).
+     * @param srcPos The index in <code>values</code> of the first element to
+     * copy.
+     * @param count The number of elements to copy.
+     */
+    public void setRange(int destPos, Object values, int srcPos, int count);
+
+    /**
+     * Copies elements from the wrapped array into another array, as with
+     * <code>System#arraycopy</code>. The destination can be either an array
+     * wrapper, or a plain array. Overlapping copies within the same array
+     * behave as with <code>System#arraycopy</code>.
+     *
+     * @param srcPos The index in the wrapped array of the first element to
+     * copy.
+     * @param dest The array or array wrapper to copy into.
+     * @param destPos The index in <code>dest</code> of the first element to
+     * overwrite.
+     * @param count The number of elements to copy.
+     */
+    public void copyTo(int srcPos, Object dest, int destPos, int count);
+
 }
@@ -0,0 +1,244 @@
+package xyz.acygn.millr.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The emulation of a Java monitor used by milled objects. Milled code doesn't
+ * lock the JVM's own monitor on a milled object (as the object might not be
+ * local, and the JVM's monitor can't be accessed remotely); instead,
+ * <code>synchronized</code> blocks and methods call
+ * <code>hasSyncMethods.startLock()</code> and
+ * <code>hasSyncMethods.releaseLock()</code>, and uses of
+ * <code>wait</code>, <code>notify</code> and <code>notifyAll</code> are
+ * redirected to the static methods of this class. A milled object allocates a
+ * monitor the first time it's locked.
+ * <p>
+ * <code>synchronized</code> blocks still execute the JVM's monitor
+ * instructions, as the JIT compiler won't compile a method whose monitor
+ * instructions don't balance. When the emulated monitor is used, they operate
+ * on a freshly allocated token, which is never contended (and so is cheap to
+ * lock, or can be elided entirely by the JIT).
+ * <p>
+ * The monitor has the same semantics as a JVM monitor: it's reentrant, and
+ * waiting on it fully releases it (no matter how many times it's been
+ * entered) until the waiting thread is notified, at which point it reacquires
+ * all its holds. An uncontended lock or unlock costs a single atomic
+ * operation, as with any <code>ReentrantLock</code>.
+ * <p>
+ * When a milled object is accessed through a mokapot standin, the lock
+ * operations are forwarded to the system that holds the object, and run on the
+ * projection of the calling thread onto that system. That projection persists
+ * for as long as the thread is running on the calling system, so ownership of
+ * the monitor is tracked correctly across multiple remote calls.
+ */
+public final class MilledMonitor extends ReentrantLock {
+
+    /**
+     * Explicit serialisation version, as is required for a serialisable class
+     * to be compatible between machines. The number was originally generated
+     * randomly, and should be changed whenever the class's fields are changed
+     * in an incompatible way.
+     *
+     * @see java.io.Serializable
+     */
+    private static final long serialVersionUID = 0x3b51e7c2a90d6f14L;
+
+    /**
+     * The wait set of the monitor. Threads that wait on the monitor wait on
+     * this condition.
+     */
+    private final Condition waitSet = newCondition();
+
+    /**
+     * Waits on this monitor, following the semantics of
+     * <code>Object#wait(long, int)</code>. The monitor must be held by the
+     * current thread.
+     *
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @param nanos Additional time to wait, in nanoseconds (0-999999).
+     * @throws InterruptedException If the thread is interrupted while waiting
+     * @throws IllegalArgumentException If the timeout is out of range
+     * @throws IllegalMonitorStateException If the current thread doesn't hold
+     * the monitor
+     * @see Object#wait(long, int)
+     */
+    public void await(long timeout, int nanos) throws InterruptedException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        if (nanos < 0 || nanos > 999999) {
+            throw new IllegalArgumentException(
+                    "nanosecond timeout value out of range");
+        }
+        if (!isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException(
+                    "waiting on a monitor that isn't held");
+        }
+
+        if (timeout == 0 && nanos == 0) {
+            waitSet.await();
+        } else {
+            long total = TimeUnit.MILLISECONDS.toNanos(timeout) + nanos;
+            /* Guard against overflow for extremely long timeouts. */
+            waitSet.awaitNanos(total < 0 ? Long.MAX_VALUE : total);
+        }
+    }
+
+    /**
+     * Wakes up one thread waiting on this monitor, following the semantics of
+     * <code>Object#notify()</code>. The monitor must be held by the current
+     * thread.
+     *
+     * @throws IllegalMonitorStateException If the current thread doesn't hold
+     * the monitor
+     */
+    public void signal() {
+        waitSet.signal();
+    }
+
+    /**
+     * Wakes up all threads waiting on this monitor, following the semantics of
+     * <code>Object#notifyAll()</code>. The monitor must be held by the current
+     * thread.
+     *
+     * @throws IllegalMonitorStateException If the current thread doesn't hold
+     * the monitor
+     */
+    public void signalAll() {
+        waitSet.signalAll();
+    }
+
+    /**
+     * Implementation of the start of a <code>synchronized</code> block in
+     * milled code. If <code>o</code> is a milled object, this locks its
+     * emulated monitor, and returns a token recording that fact; otherwise it
+     * returns <code>o</code>. Either way, the caller locks the JVM monitor of
+     * the returned object, and later passes it to <code>exit</code>.
+     *
+     * @param o The object being synchronized on.
+     * @return The object whose JVM monitor should be locked.
+     */
+    public static Object enter(Object o) {
+        if (o instanceof hasSyncMethods) {
+            ((hasSyncMethods) o).startLock();
+            return new Held((hasSyncMethods) o);
+        }
+        return o;
+    }
+
+    /**
+     * Implementation of the end of a <code>synchronized</code> block in
+     * milled code. If <code>lock</code> is a token returned by
+     * <code>enter</code>, this unlocks the emulated monitor it was created
+     * for. The caller is responsible for unlocking the JVM monitor of
+     * <code>lock</code>.
+     *
+     * @param lock The object returned by <code>enter</code>.
+     * @throws IllegalMonitorStateException If the current thread doesn't hold
+     * the emulated monitor
+     */
+    public static void exit(Object lock) {
+        if (lock instanceof Held) {
+            ((Held) lock).target.releaseLock();
+        }
+    }
+
+    /**
+     * Implementation of <code>o.wait()</code> in milled code. If
+     * <code>o</code> is a milled object, this waits on its emulated monitor;
+     * otherwise, it waits on the JVM's monitor.
+     *
+     * @param o The object to wait on.
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public static void waitOn(Object o) throws InterruptedException {
+        waitOn(o, 0L, 0);
+    }
+
+    /**
+     * Implementation of <code>o.wait(timeout)</code> in milled code. If
+     * <code>o</code> is a milled object, this waits on its emulated monitor;
+     * otherwise, it waits on the JVM's monitor.
+     *
+     * @param o The object to wait on.
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public static void waitOn(Object o, long timeout)
+            throws InterruptedException {
+        waitOn(o, timeout, 0);
+    }
+
+    /**
+     * Implementation of <code>o.wait(timeout, nanos)</code> in milled code.
+     * If <code>o</code> is a milled object, this waits on its emulated monitor;
+     * otherwise, it waits on the JVM's monitor.
+     *
+     * @param o The object to wait on.
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @param nanos Additional time to wait, in nanoseconds.
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public static void waitOn(Object o, long timeout, int nanos)
+            throws InterruptedException {
+        if (o instanceof hasSyncMethods) {
+            ((hasSyncMethods) o).waitLock(timeout, nanos);
+        } else {
+            o.wait(timeout, nanos);
+        }
+    }
+
+    /**
+     * Implementation of <code>o.notify()</code> in milled code. If
+     * <code>o</code> is a milled object, this notifies its emulated monitor;
+     * otherwise, it notifies the JVM's monitor.
+     *
+     * @param o The object to notify.
+     */
+    public static void notifyOn(Object o) {
+        if (o instanceof hasSyncMethods) {
+            ((hasSyncMethods) o).notifyLock();
+        } else {
+            o.notify();
+        }
+    }
+
+    /**
+     * Implementation of <code>o.notifyAll()</code> in milled code. If
+     * <code>o</code> is a milled object, this notifies its emulated monitor;
+     * otherwise, it notifies the JVM's monitor.
+     *
+     * @param o The object to notify.
+     */
+    public static void notifyAllOn(Object o) {
+        if (o instanceof hasSyncMethods) {
+            ((hasSyncMethods) o).notifyAllLock();
+        } else {
+            o.notifyAll();
+        }
+    }
+
+    /**
+     * A token standing in for a milled object in a <code>synchronized</code>
+     * block, while its emulated monitor is held.
+     */
+    private static final class Held {
+
+        /**
+         * The milled object whose emulated monitor is held.
+         */
+        private final hasSyncMethods target;
+
+        /**
+         * Creates a token for a milled object whose monitor has just been
+         * locked.
+         *
+         * @param target The milled object.
+         */
+        Held(hasSyncMethods target) {
+            this.target = target;
+        }
+    }
+}
@@ -4,9 +4,8 @@ import xyz.acygn.mokapot.skeletons.ProxyOrWrapper;
 
 import java.lang.reflect.Array;
 import java.lang.ClassCastException;
-import java.lang.ref.WeakReference;
 import java.util.Arrays;
-import java.util.WeakHashMap;
+import java.util.Comparator;
 
 
 /**
@@ -27,7 +26,21 @@ public final class ObjectArrayWrapper<T> implements ArrayWrapper {
 
     private final int length;
 
-    private final static WeakHashMap<Object[], WeakReference<ObjectArrayWrapper>> MAP = new WeakHashMap<>();
+    /**
+     * The wrappers that currently exist, indexed by the array they wrap.
+     */
+    private final static WeakIdentityRegistry<Object[], ObjectArrayWrapper> REGISTRY
+            = new WeakIdentityRegistry<>((wrapper) -> wrapper.storage);
+
+    /**
+     * Whether this wrapper has been added to <code>REGISTRY</code>. A wrapper
+     * that allocated its own array is only registered once the array is
+     * exposed via <code>asArray()</code>; until then, nothing else can hold
+     * the array, so nothing could need to look the wrapper up. (This is
+     * transient because a copy of the wrapper on another JVM is not
+     * registered there.)
+     */
+    private transient boolean registered;
 
     /**
      * Creates a new array wrapper, with the given length and type.
@@ -44,9 +57,8 @@ public final class ObjectArrayWrapper<T> implements ArrayWrapper {
         //    this.componentType = componentType;
     }
 
-    public final static synchronized <T> ObjectArrayWrapper<T> getObjectArrayWrapper(final int length, final Class<T> componentType) {
+    public final static <T> ObjectArrayWrapper<T> getObjectArrayWrapper(final int length, final Class<T> componentType) {
         final ObjectArrayWrapper newArrayWrapper = new ObjectArrayWrapper(length, componentType);
-        MAP.put(newArrayWrapper.asArray(), new WeakReference<>(newArrayWrapper));
         return newArrayWrapper;
     }
 
@@ -61,9 +73,8 @@ public final class ObjectArrayWrapper<T> implements ArrayWrapper {
         }
     }
 
-    public final static synchronized <T> ObjectArrayWrapper<T> getObjectArrayWrapper(final Class<T> componentType, final int[] dims) {
+    public final static <T> ObjectArrayWrapper<T> getObjectArrayWrapper(final Class<T> componentType, final int[] dims) {
         final ObjectArrayWrapper newArrayWrapper = new ObjectArrayWrapper(componentType, dims);
-        MAP.put(newArrayWrapper.asArray(), new WeakReference<>(newArrayWrapper));
         return newArrayWrapper;
     }
 
@@ -75,28 +86,16 @@ public final class ObjectArrayWrapper<T> implements ArrayWrapper {
      * @param storage The storage array.
      */
     private ObjectArrayWrapper(final Object[] storage) {
-        if (MAP.containsKey(storage) && MAP.get(storage).get() != null) {
-            throw new RuntimeException("Trying to create an ArrayWrapper for an array whose wrapper is already present");
-        } else {
-            this.storage = storage;
-            this.length = storage.length;
-        }
+        this.storage = storage;
+        this.length = storage.length;
+        this.registered = true;
     }
 
-    public static synchronized ObjectArrayWrapper getObjectArrayWrapper(final Object[] storage) {
+    public static ObjectArrayWrapper getObjectArrayWrapper(final Object[] storage) {
         if (storage == null) {
             return null;
         }
-        if (MAP.containsKey(storage)) {
-            // We store the value to make sure it won't get garbage collected.
-            ObjectArrayWrapper value = MAP.get(storage).get();
-            if (value != null) {
-                return value;
-            }
-        }
-        final ObjectArrayWrapper newArrayWrapper = new ObjectArrayWrapper(storage);
-        MAP.put(storage, new WeakReference<>(newArrayWrapper));
-        return newArrayWrapper;
+        return REGISTRY.computeIfAbsent(storage, ObjectArrayWrapper::new);
     }
 
     /**
@@ -131,6 +130,11 @@ public final class ObjectArrayWrapper<T> implements ArrayWrapper {
      */
     @Override
     public final Object[] asArray() {
+        if (!registered) {
+            /* Races here are harmless: registration is idempotent. */
+            REGISTRY.computeIfAbsent(storage, (array) -> this);
+            registered = true;
+        }
         return storage;
     }
 
@@ -146,7 +150,17 @@ public final class ObjectArrayWrapper<T> implements ArrayWrapper {
     //   @Override
     @SuppressWarnings("unchecked")
     public final Object get(final int i) {
-        final Object object = storage[i];
+        return wrapElement(storage[i]);
+    }
+
+    /**
+     * Converts an element of the wrapped array into the form in which milled
+     * code sees it: arrays are replaced with their wrappers.
+     *
+     * @param object The element of the wrapped array.
+     * @return The element, wrapped if it's an array.
+     */
+    private static Object wrapElement(final Object object) {
         if (object != null) {
             final Class c = object.getClass();
             if (c.isArray()) {
@@ -208,6 +222,174 @@ public final class ObjectArrayWrapper<T> implements ArrayWrapper {
         }
     }
 
+    /**
+     * Returns a copy of a range of this array's elements, as a plain array.
+     * This reads the whole range in a single call, rather than one call to
+     * <code>get</code> per element (which matters if the wrapper is held on
+     * another system). Elements which are themselves arrays are returned
+     * unwrapped.
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy.
+     * @return A new array, of the same type as the wrapped array, holding the
+     * elements in the given range.
+     * @throws ArrayIndexOutOfBoundsException If the range doesn't lie within
+     * the array
+     */
+    @Override
+    public final Object[] getRange(final int from, final int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new ArrayIndexOutOfBoundsException("range " + from + " to "
+                    + to + " out of bounds for length " + length);
+        }
+        return Arrays.copyOfRange(storage, from, to);
+    }
+
+    @Override
+    public final void setRange(final int destPos, final Object values,
+            final int srcPos, final int count) {
+        System.arraycopy(RuntimeUnwrapper.unwrap(values), srcPos,
+                storage, destPos, count);
+    }
+
+    @Override
+    public final void copyTo(final int srcPos, final Object dest,
+            final int destPos, final int count) {
+        if (dest instanceof ObjectArrayWrapper) {
+            System.arraycopy(storage, srcPos,
+                    ((ObjectArrayWrapper) dest).storage, destPos, count);
+        } else if (dest instanceof ArrayWrapper) {
+            /* The destination may be a standin for a wrapper on another
+               system; send it only the elements it needs. */
+            ((ArrayWrapper) dest).setRange(destPos,
+                    getRange(srcPos, srcPos + count), 0, count);
+        } else {
+            System.arraycopy(storage, srcPos, dest, destPos, count);
+        }
+    }
+
+    /**
+     * Sets every element of this array to the given value, as with
+     * <code>Arrays#fill(Object[], Object)</code>.
+     *
+     * @param value The value to store.
+     * @throws ArrayStoreException If the value is not of the array's
+     * component type
+     */
+    public final void fill(final Object value) {
+        fill(0, length, value);
+    }
+
+    /**
+     * Sets every element in a range of this array to the given value, as
+     * with <code>Arrays#fill(Object[], int, int, Object)</code>.
+     *
+     * @param from The index of the first element to set.
+     * @param to The index after the last element to set.
+     * @param value The value to store.
+     * @throws ArrayStoreException If the value is not of the array's
+     * component type
+     */
+    public final void fill(final int from, final int to, final Object value) {
+        if (value instanceof ArrayWrapper) {
+            Arrays.fill(storage, from, to, ((ArrayWrapper) value).asArray());
+        } else {
+            Arrays.fill(storage, from, to, value);
+        }
+    }
+
+    /**
+     * Sorts this array according to the natural ordering of its elements, as
+     * with <code>Arrays#sort(Object[])</code>.
+     */
+    public final void sort() {
+        Arrays.sort(storage);
+    }
+
+    /**
+     * Sorts a range of this array according to the natural ordering of its
+     * elements, as with <code>Arrays#sort(Object[], int, int)</code>.
+     *
+     * @param from The index of the first element to sort.
+     * @param to The index after the last element to sort.
+     */
+    public final void sort(final int from, final int to) {
+        Arrays.sort(storage, from, to);
+    }
+
+    /**
+     * Sorts this array using the given comparator, as with
+     * <code>Arrays#sort(Object[], Comparator)</code>.
+     *
+     * @param c The comparator to use, or <code>null</code> to use the natural
+     * ordering of the elements.
+     */
+    public final void sort(final Comparator c) {
+        sort(0, length, c);
+    }
+
+    /**
+     * Sorts a range of this array using the given comparator, as with
+     * <code>Arrays#sort(Object[], int, int, Comparator)</code>. The comparator
+     * comes from milled code, so it's given elements in the form that milled
+     * code expects (i.e. with arrays wrapped).
+     *
+     * @param from The index of the first element to sort.
+     * @param to The index after the last element to sort.
+     * @param c The comparator to use, or <code>null</code> to use the natural
+     * ordering of the elements.
+     */
+    @SuppressWarnings("unchecked")
+    public final void sort(final int from, final int to, final Comparator c) {
+        if (c == null) {
+            Arrays.sort(storage, from, to);
+        } else {
+            Arrays.sort(storage, from, to,
+                    (a, b) -> c.compare(wrapElement(a), wrapElement(b)));
+        }
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of this array, truncated or
+     * padded to the given length, as with
+     * <code>Arrays#copyOf(Object[], int)</code>. The new array has the same
+     * component type as this one.
+     *
+     * @param newLength The length of the new array.
+     * @return A wrapper for the new array.
+     */
+    public final ObjectArrayWrapper copyOf(final int newLength) {
+        final ObjectArrayWrapper copy = new ObjectArrayWrapper(newLength,
+                storage.getClass().getComponentType());
+        System.arraycopy(storage, 0, copy.storage, 0,
+                Math.min(length, newLength));
+        return copy;
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of a range of this array, as
+     * with <code>Arrays#copyOfRange(Object[], int, int)</code>. The new array
+     * has the same component type as this one.
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy; may lie beyond the
+     * end of the array, in which case the copy is padded.
+     * @return A wrapper for the new array.
+     */
+    public final ObjectArrayWrapper copyOfRange(final int from, final int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (from < 0 || from > length) {
+            throw new ArrayIndexOutOfBoundsException(from);
+        }
+        final ObjectArrayWrapper copy = new ObjectArrayWrapper(to - from,
+                storage.getClass().getComponentType());
+        System.arraycopy(storage, from, copy.storage, 0,
+                Math.min(length - from, to - from));
+        return copy;
+    }
+
     /**
      * Hash code consistent with reference equality of the wrapped array.
      *
@@ -51,6 +51,30 @@ public final class RuntimeUnwrapper {
         return arg;
     }
 
+    /**
+     * Implementation of <code>System.arraycopy</code> in milled code. If
+     * either array is wrapped, the copy is done via the bulk operations of the
+     * array wrappers, so that it's done as a single operation even if a
+     * wrapper is stored on a different system.
+     *
+     * @param src The array or array wrapper to copy from.
+     * @param srcPos The index of the first element to copy.
+     * @param dest The array or array wrapper to copy to.
+     * @param destPos The index of the first element to overwrite.
+     * @param length The number of elements to copy.
+     * @see System#arraycopy(java.lang.Object, int, java.lang.Object, int, int)
+     */
+    public static void arraycopy(Object src, int srcPos, Object dest,
+            int destPos, int length) {
+        if (src instanceof ArrayWrapper) {
+            ((ArrayWrapper) src).copyTo(srcPos, dest, destPos, length);
+        } else if (dest instanceof ArrayWrapper) {
+            ((ArrayWrapper) dest).setRange(destPos, src, srcPos, length);
+        } else {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+        }
+    }
+
     static public final Class unwrapClass(Class c) {
         if (c==null) return null;
         if (c.equals(ObjectArrayWrapper.class)) return Object[].class;
@@ -0,0 +1,361 @@
+package xyz.acygn.millr.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.function.Function;
+
+/**
+ * A concurrent map from keys (compared by reference identity) to values which
+ * themselves know their key, holding the values weakly. This is used by the
+ * array wrappers to find the unique wrapper belonging to a given array: the
+ * wrapper holds its array alive (but not vice versa), so the map only needs to
+ * reference the wrapper, and can find the key (the array) from that. An entry
+ * thus disappears as soon as its wrapper is deallocated; if the array is still
+ * in use at that point, a new wrapper will be created for it on demand.
+ * <p>
+ * Milled code consults these maps on every array allocation and every wrap of
+ * an array crossing the milled boundary, so they need to scale with the number
+ * of threads. The map is therefore split into a number of independently locked
+ * stripes (selected via the key's identity hash code), rather than being
+ * guarded by a single lock. Entries whose values have been deallocated are
+ * removed via a reference queue.
+ * <p>
+ * <code>null</code> keys and values are not supported.
+ *
+ * @param <K> The type of the map keys.
+ * @param <V> The type of the map values.
+ */
+public final class WeakIdentityRegistry<K, V> {
+
+    /**
+     * The number of stripes in each map. This is always a power of two, and
+     * is chosen to be comfortably larger than the number of threads that could
+     * be running simultaneously.
+     */
+    private static final int STRIPE_COUNT;
+
+    static {
+        int wanted = Runtime.getRuntime().availableProcessors() * 4;
+        int count = 2;
+        while (count < wanted && count < (1 << 12)) {
+            count <<= 1;
+        }
+        STRIPE_COUNT = count;
+    }
+
+    /**
+     * The number of bits to shift a hash code right by in order to find its
+     * stripe index.
+     */
+    private static final int STRIPE_SHIFT
+            = 32 - Integer.numberOfTrailingZeros(STRIPE_COUNT);
+
+    /**
+     * The stripes making up this map. Each stripe is a separate hash table,
+     * and all access to a stripe's contents must be synchronised on the
+     * stripe.
+     */
+    private final Stripe<K, V>[] stripes;
+
+    /**
+     * The queue on which entries are placed when their values are
+     * deallocated.
+     */
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+    /**
+     * The function used to find a value's key.
+     */
+    private final Function<? super V, ? extends K> keyOf;
+
+    /**
+     * Creates a new, empty registry.
+     *
+     * @param keyOf A function that, given a value stored in the registry,
+     * returns the key that it's stored under. This must always return the same
+     * key for the same value, and must not access the registry.
+     */
+    @SuppressWarnings("unchecked")
+    public WeakIdentityRegistry(Function<? super V, ? extends K> keyOf) {
+        this.keyOf = keyOf;
+        stripes = (Stripe<K, V>[]) new Stripe<?, ?>[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    /**
+     * Calculates the hash code used to place a key within the map. The high
+     * bits select the stripe, and the low bits the bucket within the stripe;
+     * both are taken from the identity hash code, mixed so that each depends on
+     * all its bits.
+     *
+     * @param key The key whose hash code should be calculated.
+     * @return The hash code to use for the key.
+     */
+    private static int hash(Object key) {
+        int h = System.identityHashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the stripe that holds entries with the given hash code.
+     *
+     * @param hash A hash code, as returned by <code>hash()</code>.
+     * @return The stripe responsible for that hash code.
+     */
+    private Stripe<K, V> stripeFor(int hash) {
+        return stripes[hash >>> STRIPE_SHIFT];
+    }
+
+    /**
+     * Removes all entries whose values have been deallocated since the last
+     * time this method was called. This must not be called while holding the
+     * lock on any stripe.
+     */
+    @SuppressWarnings({"NestedAssignment", "unchecked"})
+    private void expungeStaleEntries() {
+        Reference<? extends V> ref;
+        while ((ref = queue.poll()) != null) {
+            Entry<V> e = (Entry<V>) ref;
+            Stripe<K, V> stripe = stripeFor(e.hash);
+            synchronized (stripe) {
+                stripe.remove(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     *
+     * @param key The key to look for.
+     * @return The value associated with that key, or <code>null</code> if
+     * there is no such value (possibly because the value has been
+     * deallocated).
+     */
+    public V get(K key) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            return stripe.find(key, h, keyOf);
+        }
+    }
+
+    /**
+     * Returns the value associated with the given key, creating and adding a
+     * new value if there currently isn't one. This is atomic: two threads that
+     * concurrently call this method with the same key will both see the same
+     * value, and <code>factory</code> will only be called once.
+     * <p>
+     * <code>factory</code> runs while a lock is held, so it should be quick,
+     * and must not access this registry.
+     *
+     * @param key The key to look up.
+     * @param factory A function that creates the value to associate with
+     * <code>key</code>, if there isn't one already. The value it returns must
+     * have <code>key</code> as its key.
+     * @return The existing or newly created value.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> factory) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V value = stripe.find(key, h, keyOf);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        /* The slow path: we need to create a new value. Take the opportunity
+           to clear out dead entries first, so that the table doesn't fill up
+           with them. */
+        expungeStaleEntries();
+        synchronized (stripe) {
+            V value = stripe.find(key, h, keyOf);
+            if (value != null) {
+                return value;
+            }
+            value = factory.apply(key);
+            stripe.add(new Entry<>(value, h, queue));
+            return value;
+        }
+    }
+
+    /**
+     * Returns the number of entries in this map. This is only approximate: it
+     * may count entries whose value has been deallocated but not yet removed,
+     * and is not atomic with respect to concurrent modifications.
+     *
+     * @return The approximate number of entries in the map.
+     */
+    public int size() {
+        expungeStaleEntries();
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.count;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A single entry of the map. The entry itself is a weak reference to the
+     * value, which is enqueued when the value is deallocated.
+     *
+     * @param <V> The type of the value.
+     */
+    private static final class Entry<V> extends WeakReference<V> {
+
+        /**
+         * The hash code of the value's key, as calculated by
+         * <code>hash()</code>.
+         */
+        private final int hash;
+
+        /**
+         * The next entry in the same bucket. Access to this field must be
+         * synchronised on the stripe holding the entry.
+         */
+        private Entry<V> next;
+
+        /**
+         * Creates a new map entry.
+         *
+         * @param value The entry's value.
+         * @param hash The hash code of the value's key.
+         * @param queue The queue to place the entry on when its value is
+         * deallocated.
+         */
+        Entry(V value, int hash, ReferenceQueue<V> queue) {
+            super(value, queue);
+            if (value == null) {
+                throw new NullPointerException(
+                        "null value in WeakIdentityRegistry");
+            }
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * One stripe of the map; a separate chained hash table. All methods must
+     * be called while synchronised on the stripe.
+     *
+     * @param <K> The type of the map keys.
+     * @param <V> The type of the map values.
+     */
+    private static final class Stripe<K, V> {
+
+        /**
+         * The buckets of the hash table. The length is always a power of two.
+         */
+        private Entry<V>[] table = newTable(8);
+
+        /**
+         * The number of entries stored in this stripe.
+         */
+        private int count = 0;
+
+        /**
+         * Allocates a bucket array.
+         *
+         * @param size The number of buckets.
+         * @return A new array of empty buckets.
+         */
+        @SuppressWarnings("unchecked")
+        private Entry<V>[] newTable(int size) {
+            return (Entry<V>[]) new Entry<?>[size];
+        }
+
+        /**
+         * Finds the value with the given key.
+         *
+         * @param key The key to look for.
+         * @param hash The hash code of the key.
+         * @param keyOf The function used to find the key of a value.
+         * @return The value with that key, or <code>null</code> if there is no
+         * such value.
+         */
+        V find(Object key, int hash,
+                Function<? super V, ? extends K> keyOf) {
+            for (Entry<V> e = table[hash & (table.length - 1)]; e != null;
+                    e = e.next) {
+                if (e.hash == hash) {
+                    V value = e.get();
+                    if (value != null && keyOf.apply(value) == key) {
+                        return value;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds a new entry to the table, growing the table if necessary.
+         *
+         * @param entry The entry to add. Its key must not already be present
+         * (other than in entries whose values have been deallocated).
+         */
+        void add(Entry<V> entry) {
+            if (count >= table.length - (table.length >>> 2)) {
+                resize();
+            }
+            int index = entry.hash & (table.length - 1);
+            entry.next = table[index];
+            table[index] = entry;
+            count++;
+        }
+
+        /**
+         * Removes the given entry from the table, if it's present.
+         *
+         * @param entry The entry to remove.
+         */
+        void remove(Entry<V> entry) {
+            int index = entry.hash & (table.length - 1);
+            Entry<V> prev = null;
+            for (Entry<V> e = table[index]; e != null; prev = e, e = e.next) {
+                if (e == entry) {
+                    if (prev == null) {
+                        table[index] = e.next;
+                    } else {
+                        prev.next = e.next;
+                    }
+                    e.next = null;
+                    count--;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Doubles the number of buckets in the table, discarding any entries
+         * whose values have been deallocated along the way. (Such entries are
+         * still on the reference queue; trying to remove them again later is
+         * harmless.)
+         */
+        private void resize() {
+            Entry<V>[] oldTable = table;
+            Entry<V>[] newTable = newTable(oldTable.length * 2);
+            int newCount = 0;
+            for (Entry<V> head : oldTable) {
+                Entry<V> e = head;
+                while (e != null) {
+                    Entry<V> next = e.next;
+                    if (e.get() == null) {
+                        e.next = null;
+                    } else {
+                        int index = e.hash & (newTable.length - 1);
+                        e.next = newTable[index];
+                        newTable[index] = e;
+                        newCount++;
+                    }
+                    e = next;
+                }
+            }
+            table = newTable;
+            count = newCount;
+        }
+    }
+}
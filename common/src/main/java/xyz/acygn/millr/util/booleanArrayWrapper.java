@@ -1,10 +1,10 @@
 
 package xyz.acygn.millr.util;
 
+import java.util.Arrays;
+
 import xyz.acygn.mokapot.skeletons.ProxyOrWrapper;
 
-import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
 
 /**
  * A class that acts, in most respects, identically to a Java array. However,
@@ -23,7 +23,21 @@ public class booleanArrayWrapper  implements  ArrayWrapper {
     
     private final int length;
     
-    private final static WeakHashMap<boolean[], WeakReference<booleanArrayWrapper>> MAP = new WeakHashMap<>();
+    /**
+     * The wrappers that currently exist, indexed by the array they wrap.
+     */
+    private final static WeakIdentityRegistry<boolean[], booleanArrayWrapper> REGISTRY
+            = new WeakIdentityRegistry<>((wrapper) -> wrapper.storage);
+
+    /**
+     * Whether this wrapper has been added to <code>REGISTRY</code>. A wrapper
+     * that allocated its own array is only registered once the array is
+     * exposed via <code>asArray()</code>; until then, nothing else can hold
+     * the array, so nothing could need to look the wrapper up. (This is
+     * transient because a copy of the wrapper on another JVM is not
+     * registered there.)
+     */
+    private transient boolean registered;
 
     /**
      * Creates a new array wrapper, with the given length and type.
@@ -36,9 +50,8 @@ public class booleanArrayWrapper  implements  ArrayWrapper {
         this.length = length;
     }
     
-    public final static synchronized booleanArrayWrapper getbooleanArrayWrapper(final int length){
+    public final static booleanArrayWrapper getbooleanArrayWrapper(final int length){
         final booleanArrayWrapper newArrayWrapper = new booleanArrayWrapper(length);
-        MAP.put(newArrayWrapper.asArray(), new WeakReference<>(newArrayWrapper));
         return newArrayWrapper;
     }
 
@@ -50,25 +63,16 @@ public class booleanArrayWrapper  implements  ArrayWrapper {
      * @param storage The storage array.
      */
     private booleanArrayWrapper(final boolean[] storage) {
-        if (MAP.containsKey(storage)&& MAP.get(storage).get()!=null){
-            throw new RuntimeException("Attemp to create a booleanArrayWrapper with a boolean array with a already corresponding BooleanArrayWrapper");
-        }
         this.storage = storage;
         this.length = storage.length;
+        this.registered = true;
     }
     
-    public static final synchronized booleanArrayWrapper getbooleanArrayWrapper(final boolean[] storage){
-        if(storage==null){
+    public static final booleanArrayWrapper getbooleanArrayWrapper(final boolean[] storage) {
+        if (storage == null) {
             return null;
         }
-       if (MAP.containsKey(storage) && MAP.get(storage).get() != null){
-           return MAP.get(storage).get();
-       }
-       else{
-            final booleanArrayWrapper newArrayWrapper = new booleanArrayWrapper(storage);
-            MAP.put(storage,  new WeakReference<>(newArrayWrapper));
-            return newArrayWrapper;
-        }
+        return REGISTRY.computeIfAbsent(storage, booleanArrayWrapper::new);
     }
 
     /**
@@ -96,6 +100,11 @@ public class booleanArrayWrapper  implements  ArrayWrapper {
      * @return The array wrapped by this array wrapper.
      */
     public final boolean[] asArray() {
+        if (!registered) {
+            /* Races here are harmless: registration is idempotent. */
+            REGISTRY.computeIfAbsent(storage, (array) -> this);
+            registered = true;
+        }
         return storage;
     }
 
@@ -139,6 +148,109 @@ public class booleanArrayWrapper  implements  ArrayWrapper {
         storage[i] = e;
     }
 
+    /**
+     * Returns a copy of a range of this array's elements, as a plain array.
+     * This reads the whole range in a single call, rather than one call to
+     * <code>get</code> per element (which matters if the wrapper is held on
+     * another system).
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy.
+     * @return A new array holding the elements in the given range.
+     * @throws ArrayIndexOutOfBoundsException If the range doesn't lie within
+     * the array
+     */
+    @Override
+    public final boolean[] getRange(final int from, final int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new ArrayIndexOutOfBoundsException("range " + from + " to "
+                    + to + " out of bounds for length " + length);
+        }
+        return Arrays.copyOfRange(storage, from, to);
+    }
+
+    @Override
+    public final void setRange(final int destPos, final Object values,
+            final int srcPos, final int count) {
+        System.arraycopy(RuntimeUnwrapper.unwrap(values), srcPos,
+                storage, destPos, count);
+    }
+
+    @Override
+    public final void copyTo(final int srcPos, final Object dest,
+            final int destPos, final int count) {
+        if (dest instanceof booleanArrayWrapper) {
+            System.arraycopy(storage, srcPos,
+                    ((booleanArrayWrapper) dest).storage, destPos, count);
+        } else if (dest instanceof ArrayWrapper) {
+            /* The destination may be a standin for a wrapper on another
+               system; send it only the elements it needs. */
+            ((ArrayWrapper) dest).setRange(destPos,
+                    getRange(srcPos, srcPos + count), 0, count);
+        } else {
+            System.arraycopy(storage, srcPos, dest, destPos, count);
+        }
+    }
+
+    /**
+     * Sets every element of this array to the given value, as with
+     * <code>Arrays#fill(boolean[], boolean)</code>.
+     *
+     * @param value The value to store.
+     */
+    public final void fill(final boolean value) {
+        Arrays.fill(storage, value);
+    }
+
+    /**
+     * Sets every element in a range of this array to the given value, as
+     * with <code>Arrays#fill(boolean[], int, int, boolean)</code>.
+     *
+     * @param from The index of the first element to set.
+     * @param to The index after the last element to set.
+     * @param value The value to store.
+     */
+    public final void fill(final int from, final int to, final boolean value) {
+        Arrays.fill(storage, from, to, value);
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of this array, truncated or
+     * padded to the given length, as with
+     * <code>Arrays#copyOf(boolean[], int)</code>.
+     *
+     * @param newLength The length of the new array.
+     * @return A wrapper for the new array.
+     */
+    public final booleanArrayWrapper copyOf(final int newLength) {
+        final booleanArrayWrapper copy = new booleanArrayWrapper(newLength);
+        System.arraycopy(storage, 0, copy.storage, 0,
+                Math.min(length, newLength));
+        return copy;
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of a range of this array,
+     * as with <code>Arrays#copyOfRange(boolean[], int, int)</code>.
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy; may lie beyond the
+     * end of the array, in which case the copy is padded.
+     * @return A wrapper for the new array.
+     */
+    public final booleanArrayWrapper copyOfRange(final int from, final int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (from < 0 || from > length) {
+            throw new ArrayIndexOutOfBoundsException(from);
+        }
+        final booleanArrayWrapper copy = new booleanArrayWrapper(to - from);
+        System.arraycopy(storage, from, copy.storage, 0,
+                Math.min(length - from, to - from));
+        return copy;
+    }
+
     /**
      * Hash code consistent with reference equality of the wrapped array.
      *
@@ -1,7 +1,6 @@
 package xyz.acygn.millr.util;
 
-import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.Arrays;
 
 import xyz.acygn.mokapot.skeletons.ProxyOrWrapper;
 
@@ -19,7 +18,21 @@ public final class byteArrayWrapper implements ArrayWrapper {
      */
     private final byte[] storage;
     private final int length;
-    private final static WeakHashMap<byte[], WeakReference<byteArrayWrapper>> MAP = new WeakHashMap<>();
+    /**
+     * The wrappers that currently exist, indexed by the array they wrap.
+     */
+    private final static WeakIdentityRegistry<byte[], byteArrayWrapper> REGISTRY
+            = new WeakIdentityRegistry<>((wrapper) -> wrapper.storage);
+
+    /**
+     * Whether this wrapper has been added to <code>REGISTRY</code>. A wrapper
+     * that allocated its own array is only registered once the array is
+     * exposed via <code>asArray()</code>; until then, nothing else can hold
+     * the array, so nothing could need to look the wrapper up. (This is
+     * transient because a copy of the wrapper on another JVM is not
+     * registered there.)
+     */
+    private transient boolean registered;
 
     /**
      * Creates a new array wrapper, with the given length and type.
@@ -34,7 +47,6 @@ public final class byteArrayWrapper implements ArrayWrapper {
 
     public final static byteArrayWrapper getbyteArrayWrapper(final int length) {
         final byteArrayWrapper newArrayWrapper = new byteArrayWrapper(length);
-        MAP.put(newArrayWrapper.asArray(), new WeakReference<>(newArrayWrapper));
         return newArrayWrapper;
     }
 
@@ -46,25 +58,16 @@ public final class byteArrayWrapper implements ArrayWrapper {
      * @param storage The storage array.
      */
     private byteArrayWrapper(final byte[] storage) {
-        if (MAP.containsKey(storage) && MAP.get(storage).get() != null) {
-            throw new RuntimeException("Attemp to create a booleanArrayWrapper with a boolean array with a already corresponding BooleanArrayWrapper");
-        }
         this.storage = storage;
         this.length = storage.length;
+        this.registered = true;
     }
 
-    public final static synchronized byteArrayWrapper getbyteArrayWrapper(final byte[] storage) {
+    public final static byteArrayWrapper getbyteArrayWrapper(final byte[] storage) {
         if (storage == null) {
             return null;
         }
-            if (MAP.containsKey(storage) && MAP.get(storage).get() != null) {
-                return MAP.get(storage).get();
-            } else {
-                byteArrayWrapper newArrayWrapper = new byteArrayWrapper(storage);
-                MAP.put(storage, new WeakReference<>(newArrayWrapper));
-                return newArrayWrapper;
-            }
-        
+        return REGISTRY.computeIfAbsent(storage, byteArrayWrapper::new);
     }
 
     /**
@@ -91,6 +94,11 @@ public final class byteArrayWrapper implements ArrayWrapper {
      * @return The array wrapped by this array wrapper.
      */
     public final byte[] asArray() {
+        if (!registered) {
+            /* Races here are harmless: registration is idempotent. */
+            REGISTRY.computeIfAbsent(storage, (array) -> this);
+            registered = true;
+        }
         return storage;
     }
 
@@ -132,6 +140,128 @@ public final class byteArrayWrapper implements ArrayWrapper {
         storage[i] = e;
     }
 
+    /**
+     * Returns a copy of a range of this array's elements, as a plain array.
+     * This reads the whole range in a single call, rather than one call to
+     * <code>get</code> per element (which matters if the wrapper is held on
+     * another system).
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy.
+     * @return A new array holding the elements in the given range.
+     * @throws ArrayIndexOutOfBoundsException If the range doesn't lie within
+     * the array
+     */
+    @Override
+    public final byte[] getRange(final int from, final int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new ArrayIndexOutOfBoundsException("range " + from + " to "
+                    + to + " out of bounds for length " + length);
+        }
+        return Arrays.copyOfRange(storage, from, to);
+    }
+
+    @Override
+    public final void setRange(final int destPos, final Object values,
+            final int srcPos, final int count) {
+        System.arraycopy(RuntimeUnwrapper.unwrap(values), srcPos,
+                storage, destPos, count);
+    }
+
+    @Override
+    public final void copyTo(final int srcPos, final Object dest,
+            final int destPos, final int count) {
+        if (dest instanceof byteArrayWrapper) {
+            System.arraycopy(storage, srcPos,
+                    ((byteArrayWrapper) dest).storage, destPos, count);
+        } else if (dest instanceof ArrayWrapper) {
+            /* The destination may be a standin for a wrapper on another
+               system; send it only the elements it needs. */
+            ((ArrayWrapper) dest).setRange(destPos,
+                    getRange(srcPos, srcPos + count), 0, count);
+        } else {
+            System.arraycopy(storage, srcPos, dest, destPos, count);
+        }
+    }
+
+    /**
+     * Sets every element of this array to the given value, as with
+     * <code>Arrays#fill(byte[], byte)</code>.
+     *
+     * @param value The value to store.
+     */
+    public final void fill(final byte value) {
+        Arrays.fill(storage, value);
+    }
+
+    /**
+     * Sets every element in a range of this array to the given value, as
+     * with <code>Arrays#fill(byte[], int, int, byte)</code>.
+     *
+     * @param from The index of the first element to set.
+     * @param to The index after the last element to set.
+     * @param value The value to store.
+     */
+    public final void fill(final int from, final int to, final byte value) {
+        Arrays.fill(storage, from, to, value);
+    }
+
+    /**
+     * Sorts this array into ascending order, as with
+     * <code>Arrays#sort(byte[])</code>.
+     */
+    public final void sort() {
+        Arrays.sort(storage);
+    }
+
+    /**
+     * Sorts a range of this array into ascending order, as with
+     * <code>Arrays#sort(byte[], int, int)</code>.
+     *
+     * @param from The index of the first element to sort.
+     * @param to The index after the last element to sort.
+     */
+    public final void sort(final int from, final int to) {
+        Arrays.sort(storage, from, to);
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of this array, truncated or
+     * padded to the given length, as with
+     * <code>Arrays#copyOf(byte[], int)</code>.
+     *
+     * @param newLength The length of the new array.
+     * @return A wrapper for the new array.
+     */
+    public final byteArrayWrapper copyOf(final int newLength) {
+        final byteArrayWrapper copy = new byteArrayWrapper(newLength);
+        System.arraycopy(storage, 0, copy.storage, 0,
+                Math.min(length, newLength));
+        return copy;
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of a range of this array,
+     * as with <code>Arrays#copyOfRange(byte[], int, int)</code>.
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy; may lie beyond the
+     * end of the array, in which case the copy is padded.
+     * @return A wrapper for the new array.
+     */
+    public final byteArrayWrapper copyOfRange(final int from, final int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (from < 0 || from > length) {
+            throw new ArrayIndexOutOfBoundsException(from);
+        }
+        final byteArrayWrapper copy = new byteArrayWrapper(to - from);
+        System.arraycopy(storage, from, copy.storage, 0,
+                Math.min(length - from, to - from));
+        return copy;
+    }
+
     /**
      * Hash code consistent with reference equality of the wrapped array.
      *
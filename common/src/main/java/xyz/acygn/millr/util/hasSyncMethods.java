@@ -5,18 +5,51 @@
  */
 package xyz.acygn.millr.util;
 
-import java.util.concurrent.CountDownLatch;
-
 /**
+ * Interface implemented by all milled classes, giving access to the emulated
+ * monitor of the object. Milled code calls these methods in place of the
+ * <code>MONITORENTER</code> and <code>MONITOREXIT</code> instructions, and
+ * of <code>Object#wait</code> and <code>Object#notify</code>; because they
+ * are ordinary methods, they can be forwarded by a standin.
  *
  * @author thomasc
+ * @see MilledMonitor
  */
 public interface hasSyncMethods {
-    
+
+    /**
+     * Acquires the monitor of this object, blocking until it's available. The
+     * monitor is reentrant.
+     */
     public void startLock();
-    
-    public void getLock(CountDownLatch signal);
-    
+
+    /**
+     * Releases one hold on the monitor of this object.
+     *
+     * @throws IllegalMonitorStateException If the current thread doesn't hold
+     * the monitor
+     */
     public void releaseLock();
-    
+
+    /**
+     * Waits on the monitor of this object, as with
+     * <code>Object#wait(long, int)</code>.
+     *
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @param nanos Additional time to wait, in nanoseconds.
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void waitLock(long timeout, int nanos) throws InterruptedException;
+
+    /**
+     * Wakes up one thread waiting on the monitor of this object, as with
+     * <code>Object#notify()</code>.
+     */
+    public void notifyLock();
+
+    /**
+     * Wakes up all threads waiting on the monitor of this object, as with
+     * <code>Object#notifyAll()</code>.
+     */
+    public void notifyAllLock();
 }
@@ -1,7 +1,6 @@
 package xyz.acygn.millr.util;
 
-import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.Arrays;
 
 import xyz.acygn.mokapot.markers.Copiable;
 import xyz.acygn.mokapot.skeletons.ProxyOrWrapper;
@@ -20,7 +19,21 @@ public final class intArrayWrapper implements ArrayWrapper, Copiable {
      */
     final private int[] storage;
     final private int length;
-    private final static WeakHashMap<int[], WeakReference<intArrayWrapper>> MAP = new WeakHashMap<>();
+    /**
+     * The wrappers that currently exist, indexed by the array they wrap.
+     */
+    private final static WeakIdentityRegistry<int[], intArrayWrapper> REGISTRY
+            = new WeakIdentityRegistry<>((wrapper) -> wrapper.storage);
+
+    /**
+     * Whether this wrapper has been added to <code>REGISTRY</code>. A wrapper
+     * that allocated its own array is only registered once the array is
+     * exposed via <code>asArray()</code>; until then, nothing else can hold
+     * the array, so nothing could need to look the wrapper up. (This is
+     * transient because a copy of the wrapper on another JVM is not
+     * registered there.)
+     */
+    private transient boolean registered;
 
     /**
      * Creates a new array wrapper, with the given length and type.
@@ -36,7 +49,6 @@ public final class intArrayWrapper implements ArrayWrapper, Copiable {
 
     public static final intArrayWrapper getintArrayWrapper(final int length) {
         final intArrayWrapper newWrapper = new intArrayWrapper(length);
-        MAP.put(newWrapper.asArray(), new WeakReference<>(newWrapper));
         return newWrapper;
     }
 
@@ -48,26 +60,16 @@ public final class intArrayWrapper implements ArrayWrapper, Copiable {
      * @param storage The storage array.
      */
     private intArrayWrapper(final int[] storage) {
-        if (MAP.containsKey(storage) && MAP.get(storage).get() != null) {
-            throw new RuntimeException("Attempt to create a intArrayWrapper for a int-array with an already exiting intArrayWrappper");
-        } else {
-            this.storage = storage;
-            this.length = storage.length;
-        }
+        this.storage = storage;
+        this.length = storage.length;
+        this.registered = true;
     }
 
-    public final static synchronized intArrayWrapper getintArrayWrapper(final int[] storage) {
+    public final static intArrayWrapper getintArrayWrapper(final int[] storage) {
         if (storage == null) {
             return null;
         }
-            if (MAP.containsKey(storage) && MAP.get(storage).get() != null) {
-                return MAP.get(storage).get();
-            } else {
-                final intArrayWrapper newWrapper = new intArrayWrapper(storage);
-                MAP.put(storage, new WeakReference<>(newWrapper));
-                return newWrapper;
-            }
-        
+        return REGISTRY.computeIfAbsent(storage, intArrayWrapper::new);
     }
 
     /**
@@ -94,6 +96,11 @@ public final class intArrayWrapper implements ArrayWrapper, Copiable {
      * @return The array wrapped by this array wrapper.
      */
     public final int[] asArray() {
+        if (!registered) {
+            /* Races here are harmless: registration is idempotent. */
+            REGISTRY.computeIfAbsent(storage, (array) -> this);
+            registered = true;
+        }
         return storage;
     }
 
@@ -135,6 +142,128 @@ public final class intArrayWrapper implements ArrayWrapper, Copiable {
         storage[i] = e;
     }
 
+    /**
+     * Returns a copy of a range of this array's elements, as a plain array.
+     * This reads the whole range in a single call, rather than one call to
+     * <code>get</code> per element (which matters if the wrapper is held on
+     * another system).
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy.
+     * @return A new array holding the elements in the given range.
+     * @throws ArrayIndexOutOfBoundsException If the range doesn't lie within
+     * the array
+     */
+    @Override
+    public final int[] getRange(final int from, final int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new ArrayIndexOutOfBoundsException("range " + from + " to "
+                    + to + " out of bounds for length " + length);
+        }
+        return Arrays.copyOfRange(storage, from, to);
+    }
+
+    @Override
+    public final void setRange(final int destPos, final Object values,
+            final int srcPos, final int count) {
+        System.arraycopy(RuntimeUnwrapper.unwrap(values), srcPos,
+                storage, destPos, count);
+    }
+
+    @Override
+    public final void copyTo(final int srcPos, final Object dest,
+            final int destPos, final int count) {
+        if (dest instanceof intArrayWrapper) {
+            System.arraycopy(storage, srcPos,
+                    ((intArrayWrapper) dest).storage, destPos, count);
+        } else if (dest instanceof ArrayWrapper) {
+            /* The destination may be a standin for a wrapper on another
+               system; send it only the elements it needs. */
+            ((ArrayWrapper) dest).setRange(destPos,
+                    getRange(srcPos, srcPos + count), 0, count);
+        } else {
+            System.arraycopy(storage, srcPos, dest, destPos, count);
+        }
+    }
+
+    /**
+     * Sets every element of this array to the given value, as with
+     * <code>Arrays#fill(int[], int)</code>.
+     *
+     * @param value The value to store.
+     */
+    public final void fill(final int value) {
+        Arrays.fill(storage, value);
+    }
+
+    /**
+     * Sets every element in a range of this array to the given value, as
+     * with <code>Arrays#fill(int[], int, int, int)</code>.
+     *
+     * @param from The index of the first element to set.
+     * @param to The index after the last element to set.
+     * @param value The value to store.
+     */
+    public final void fill(final int from, final int to, final int value) {
+        Arrays.fill(storage, from, to, value);
+    }
+
+    /**
+     * Sorts this array into ascending order, as with
+     * <code>Arrays#sort(int[])</code>.
+     */
+    public final void sort() {
+        Arrays.sort(storage);
+    }
+
+    /**
+     * Sorts a range of this array into ascending order, as with
+     * <code>Arrays#sort(int[], int, int)</code>.
+     *
+     * @param from The index of the first element to sort.
+     * @param to The index after the last element to sort.
+     */
+    public final void sort(final int from, final int to) {
+        Arrays.sort(storage, from, to);
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of this array, truncated or
+     * padded to the given length, as with
+     * <code>Arrays#copyOf(int[], int)</code>.
+     *
+     * @param newLength The length of the new array.
+     * @return A wrapper for the new array.
+     */
+    public final intArrayWrapper copyOf(final int newLength) {
+        final intArrayWrapper copy = new intArrayWrapper(newLength);
+        System.arraycopy(storage, 0, copy.storage, 0,
+                Math.min(length, newLength));
+        return copy;
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of a range of this array,
+     * as with <code>Arrays#copyOfRange(int[], int, int)</code>.
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy; may lie beyond the
+     * end of the array, in which case the copy is padded.
+     * @return A wrapper for the new array.
+     */
+    public final intArrayWrapper copyOfRange(final int from, final int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (from < 0 || from > length) {
+            throw new ArrayIndexOutOfBoundsException(from);
+        }
+        final intArrayWrapper copy = new intArrayWrapper(to - from);
+        System.arraycopy(storage, from, copy.storage, 0,
+                Math.min(length - from, to - from));
+        return copy;
+    }
+
     /**
      * Hash code consistent with reference equality of the wrapped array.
      *
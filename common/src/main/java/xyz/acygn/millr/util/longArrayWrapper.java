@@ -1,8 +1,7 @@
 
 package xyz.acygn.millr.util;
 
-import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.Arrays;
 
 import xyz.acygn.mokapot.skeletons.ProxyOrWrapper;
 
@@ -22,7 +21,21 @@ public final class longArrayWrapper  implements  ArrayWrapper  {
     
     final private int length; 
     
-    private final static WeakHashMap<long[],  WeakReference<longArrayWrapper>> MAP = new WeakHashMap<>();
+    /**
+     * The wrappers that currently exist, indexed by the array they wrap.
+     */
+    private final static WeakIdentityRegistry<long[], longArrayWrapper> REGISTRY
+            = new WeakIdentityRegistry<>((wrapper) -> wrapper.storage);
+
+    /**
+     * Whether this wrapper has been added to <code>REGISTRY</code>. A wrapper
+     * that allocated its own array is only registered once the array is
+     * exposed via <code>asArray()</code>; until then, nothing else can hold
+     * the array, so nothing could need to look the wrapper up. (This is
+     * transient because a copy of the wrapper on another JVM is not
+     * registered there.)
+     */
+    private transient boolean registered;
     /**
      * Creates a new array wrapper, with the given length and type.
      *
@@ -34,9 +47,8 @@ public final class longArrayWrapper  implements  ArrayWrapper  {
         this.length= length;
     }
     
-    public static final synchronized longArrayWrapper getlongArrayWrapper(final int length){
+    public static final longArrayWrapper getlongArrayWrapper(final int length){
         final longArrayWrapper newWrapper = new longArrayWrapper(length);
-        MAP.put(newWrapper.asArray(),  new WeakReference<>(newWrapper));
         return newWrapper;
     }
     /**
@@ -47,27 +59,16 @@ public final class longArrayWrapper  implements  ArrayWrapper  {
      * @param storage The storage array.
      */
     private longArrayWrapper(final long[] storage) {
-        if (MAP.containsKey(storage) && MAP.get(storage).get()!=null){
-            throw new RuntimeException("Attempt to create a longArrayWrapper for a long-array with an already exiting longArrayWrappper");
-        }
-        else{
-            this.storage = storage;
-            this.length = storage.length;
-        }
+        this.storage = storage;
+        this.length = storage.length;
+        this.registered = true;
     }
     
-    public static final synchronized longArrayWrapper getlongArrayWrapper(final long[] storage){
-        if (storage==null){
+    public static final longArrayWrapper getlongArrayWrapper(final long[] storage) {
+        if (storage == null) {
             return null;
         }
-        if (MAP.containsKey(storage) && MAP.get(storage).get()!=null){
-            return MAP.get(storage).get();
-        }
-        else{
-            longArrayWrapper newWrapper = new longArrayWrapper(storage);
-            MAP.put(storage,  new WeakReference<>(newWrapper));
-            return newWrapper;
-        }
+        return REGISTRY.computeIfAbsent(storage, longArrayWrapper::new);
     }
 
     /**
@@ -95,6 +96,11 @@ public final class longArrayWrapper  implements  ArrayWrapper  {
      * @return The array wrapped by this array wrapper.
      */
     public final long[] asArray() {
+        if (!registered) {
+            /* Races here are harmless: registration is idempotent. */
+            REGISTRY.computeIfAbsent(storage, (array) -> this);
+            registered = true;
+        }
         return storage;
     }
 
@@ -138,6 +144,128 @@ public final class longArrayWrapper  implements  ArrayWrapper  {
         storage[i] = e;
     }
 
+    /**
+     * Returns a copy of a range of this array's elements, as a plain array.
+     * This reads the whole range in a single call, rather than one call to
+     * <code>get</code> per element (which matters if the wrapper is held on
+     * another system).
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy.
+     * @return A new array holding the elements in the given range.
+     * @throws ArrayIndexOutOfBoundsException If the range doesn't lie within
+     * the array
+     */
+    @Override
+    public final long[] getRange(final int from, final int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new ArrayIndexOutOfBoundsException("range " + from + " to "
+                    + to + " out of bounds for length " + length);
+        }
+        return Arrays.copyOfRange(storage, from, to);
+    }
+
+    @Override
+    public final void setRange(final int destPos, final Object values,
+            final int srcPos, final int count) {
+        System.arraycopy(RuntimeUnwrapper.unwrap(values), srcPos,
+                storage, destPos, count);
+    }
+
+    @Override
+    public final void copyTo(final int srcPos, final Object dest,
+            final int destPos, final int count) {
+        if (dest instanceof longArrayWrapper) {
+            System.arraycopy(storage, srcPos,
+                    ((longArrayWrapper) dest).storage, destPos, count);
+        } else if (dest instanceof ArrayWrapper) {
+            /* The destination may be a standin for a wrapper on another
+               system; send it only the elements it needs. */
+            ((ArrayWrapper) dest).setRange(destPos,
+                    getRange(srcPos, srcPos + count), 0, count);
+        } else {
+            System.arraycopy(storage, srcPos, dest, destPos, count);
+        }
+    }
+
+    /**
+     * Sets every element of this array to the given value, as with
+     * <code>Arrays#fill(long[], long)</code>.
+     *
+     * @param value The value to store.
+     */
+    public final void fill(final long value) {
+        Arrays.fill(storage, value);
+    }
+
+    /**
+     * Sets every element in a range of this array to the given value, as
+     * with <code>Arrays#fill(long[], int, int, long)</code>.
+     *
+     * @param from The index of the first element to set.
+     * @param to The index after the last element to set.
+     * @param value The value to store.
+     */
+    public final void fill(final int from, final int to, final long value) {
+        Arrays.fill(storage, from, to, value);
+    }
+
+    /**
+     * Sorts this array into ascending order, as with
+     * <code>Arrays#sort(long[])</code>.
+     */
+    public final void sort() {
+        Arrays.sort(storage);
+    }
+
+    /**
+     * Sorts a range of this array into ascending order, as with
+     * <code>Arrays#sort(long[], int, int)</code>.
+     *
+     * @param from The index of the first element to sort.
+     * @param to The index after the last element to sort.
+     */
+    public final void sort(final int from, final int to) {
+        Arrays.sort(storage, from, to);
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of this array, truncated or
+     * padded to the given length, as with
+     * <code>Arrays#copyOf(long[], int)</code>.
+     *
+     * @param newLength The length of the new array.
+     * @return A wrapper for the new array.
+     */
+    public final longArrayWrapper copyOf(final int newLength) {
+        final longArrayWrapper copy = new longArrayWrapper(newLength);
+        System.arraycopy(storage, 0, copy.storage, 0,
+                Math.min(length, newLength));
+        return copy;
+    }
+
+    /**
+     * Creates a new array wrapper holding a copy of a range of this array,
+     * as with <code>Arrays#copyOfRange(long[], int, int)</code>.
+     *
+     * @param from The index of the first element to copy.
+     * @param to The index after the last element to copy; may lie beyond the
+     * end of the array, in which case the copy is padded.
+     * @return A wrapper for the new array.
+     */
+    public final longArrayWrapper copyOfRange(final int from, final int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (from < 0 || from > length) {
+            throw new ArrayIndexOutOfBoundsException(from);
+        }
+        final longArrayWrapper copy = new longArrayWrapper(to - from);
+        System.arraycopy(storage, from, copy.storage, 0,
+                Math.min(length - from, to - from));
+        return copy;
+    }
+
     /**
      * Hash code consistent with reference equality of the wrapped array.
      *
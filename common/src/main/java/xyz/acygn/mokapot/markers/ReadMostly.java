@@ -0,0 +1,28 @@
+package xyz.acygn.mokapot.markers;
+
+/**
+ * A marker interface indicating that objects of the given class are read far
+ * more often than they're changed (e.g. routing tables or configuration
+ * registries), and that other systems may thus keep read replicas of them.
+ * <p>
+ * When a method marked as <code>ReadOnly</code> is called on a long reference
+ * to a read-mostly object, the system making the call fetches a copy of the
+ * object from the system that stores it (once), and from then on runs
+ * read-only methods on that copy locally. Any other method is forwarded to
+ * the object itself as usual; before it returns, every replica of the object
+ * is discarded (and will be fetched again when next needed). The replicas are
+ * also discarded when the object migrates. A call that starts after a change
+ * has returned will therefore always see the change.
+ * <p>
+ * As with <code>ReadOnly</code>, changes made to the object by code on the
+ * system that stores it, calling its methods directly rather than via the
+ * distributed communication system, can't be seen, and won't cause replicas to
+ * be discarded. (Methods called via a long reference to a local object are
+ * seen.) Read-only methods run on the replica, not the object itself, so they
+ * must not return or store <code>this</code>, or anything else whose identity
+ * matters.
+ *
+ * @see ReadOnly
+ */
+public interface ReadMostly extends NonCopiable {
+}
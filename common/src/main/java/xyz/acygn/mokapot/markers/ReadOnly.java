@@ -0,0 +1,43 @@
+package xyz.acygn.mokapot.markers;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A marker annotation specifying that a method has no side effects, and that
+ * its return value depends only on its arguments and on the state of the
+ * object it's called on. Typical examples are getters and query methods such
+ * as <code>size()</code>, <code>get(key)</code> and <code>contains</code>.
+ * <p>
+ * When a read-only method is called on an object stored on another system,
+ * the distributed communication system may cache the result on the calling
+ * system, and answer repeated calls with the same arguments from the cache
+ * rather than over the network. The cached results are discarded whenever a
+ * method that isn't read-only is called on the object via the distributed
+ * communication system (from any system), and whenever the object migrates;
+ * such a method doesn't return until every system has discarded its cached
+ * results, so no system sees the old results once it has returned.
+ * Results are only cached when all the arguments and the return value are
+ * immutable values (<code>null</code>, strings, boxed primitives, or enum
+ * constants).
+ * <p>
+ * Note that changes made to the object by code on the system that stores it,
+ * calling its methods directly rather than via a long reference, can't be
+ * seen by the distributed communication system. Methods of objects that are
+ * changed in that way should not be marked as <code>ReadOnly</code>, as
+ * other systems would continue to see the old results.
+ * <p>
+ * The annotation must be present on the implementation of the method in the
+ * object's actual class (i.e. it isn't inherited from overridden methods).
+ *
+ * @see Copiable
+ * @see ReadMostly
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnly {
+}
@@ -25,6 +25,13 @@
  * cases where the static methods would act differently on different systems
  * (e.g. <code>System.out</code> would print to a different system's standard
  * output stream).</dd>
+ * <dt>ReadOnly</dt>
+ * <dd>An annotation specifying that a method has no side effects, so that
+ * the results of calling it on a remote object can be cached. (Unlike the
+ * others, this applies to methods, not classes.)</dd>
+ * <dt>ReadMostly</dt>
+ * <dd>Specifies that objects of a class are rarely changed, so that other
+ * systems can run their read-only methods on local replicas of them.</dd>
  * </dl>
  * <p>
  * This class also contains error/exception classes used by the distributed
@@ -33,5 +40,7 @@
  * @see xyz.acygn.mokapot.markers.Copiable
  * @see xyz.acygn.mokapot.markers.NonCopiable
  * @see xyz.acygn.mokapot.markers.NonMigratable
+ * @see xyz.acygn.mokapot.markers.ReadOnly
+ * @see xyz.acygn.mokapot.markers.ReadMostly
  */
 package xyz.acygn.mokapot.markers;
@@ -0,0 +1,116 @@
+package xyz.acygn.mokapot.skeletons;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import xyz.acygn.mokapot.wireformat.ReadableDescription;
+
+/**
+ * An object that writes the fields of objects of a particular class into a
+ * description, or reads them back out again. This is the superclass of the
+ * field serialisers generated at runtime by
+ * <code>FieldSerializerGenerator</code>; it produces the same format as the
+ * reflective default implementations of <code>Standin#describeInto</code> and
+ * <code>Standin#replaceWithReproduction</code>, but accesses the fields via
+ * straight-line code rather than via reflection, and thus doesn't need to box
+ * the values of primitive fields.
+ * <p>
+ * Fields of primitive type are written directly to the description. Fields of
+ * other types need the full generality of the marshalling code, so they're
+ * handed to a <code>ReferenceFields</code> object instead.
+ * <p>
+ * A generated field serialiser is created without running its constructor;
+ * its accessors must then be set via <code>setAccessors</code> before it can
+ * be used.
+ *
+ * @param <T> The class whose objects' fields this serialiser can access.
+ * @see xyz.acygn.millr.generation.FieldSerializerGenerator
+ */
+public abstract class FieldSerializer<T> {
+
+    /**
+     * Method handles used to access fields which the generated code can't
+     * access directly (e.g. because they're <code>private</code> or
+     * <code>final</code>). The getter for field <i>n</i> (numbered in the
+     * order of <code>ObjectWireFormat#getInstanceFieldList</code>) is at
+     * index 2<i>n</i>, and the setter at index 2<i>n</i>+1. Getters have a
+     * type of <code>(Object)</code><i>F</i>, and setters
+     * <code>(Object, </code><i>F</i><code>)void</code>, where <i>F</i> is the
+     * field's type if it's primitive, or <code>Object</code> otherwise.
+     */
+    protected MethodHandle[] accessors;
+
+    /**
+     * Sets the method handles used to access fields that can't be accessed
+     * directly. This must be called before the serialiser is used.
+     *
+     * @param accessors The method handles, in the format described at
+     * <code>#accessors</code>.
+     * @param auth An authorisation, which will be verified.
+     */
+    public final void setAccessors(MethodHandle[] accessors,
+            Authorisation auth) {
+        auth.verify();
+        this.accessors = accessors;
+    }
+
+    /**
+     * Writes the values of the fields of an object into a description.
+     *
+     * @param object The object whose fields should be written.
+     * @param into The description or data output sink to write to.
+     * @param references The object used to write fields of non-primitive
+     * type.
+     * @param auth An authorisation, which will be verified.
+     * @throws IOException If something goes wrong writing the description
+     */
+    public abstract void writeFields(T object, DataOutput into,
+            ReferenceFields references, Authorisation auth)
+            throws IOException;
+
+    /**
+     * Sets the fields of an object to values read from a description.
+     *
+     * @param object The object whose fields should be set.
+     * @param from The description to read from.
+     * @param references The object used to read fields of non-primitive type.
+     * @param auth An authorisation, which will be verified.
+     * @throws IOException If the description appears to be corrupted
+     */
+    public abstract void readFields(T object, ReadableDescription from,
+            ReferenceFields references, Authorisation auth)
+            throws IOException;
+
+    /**
+     * The code used by a field serialiser to describe and reproduce the
+     * values of fields that don't have primitive types.
+     */
+    public static interface ReferenceFields {
+
+        /**
+         * Writes the value of a field into a description.
+         *
+         * @param into The description or data output sink to write to.
+         * @param object The object that contains the field.
+         * @param index The index of the field within
+         * <code>ObjectWireFormat#getInstanceFieldList</code>.
+         * @param value The value of the field.
+         * @throws IOException If something goes wrong writing the description
+         */
+        void writeField(DataOutput into, Object object, int index,
+                Object value) throws IOException;
+
+        /**
+         * Reads the value of a field from a description.
+         *
+         * @param from The description to read from.
+         * @param object The object that contains the field.
+         * @param index The index of the field within
+         * <code>ObjectWireFormat#getInstanceFieldList</code>.
+         * @return The value that the field should be set to.
+         * @throws IOException If the description appears to be corrupted
+         */
+        Object readField(ReadableDescription from, Object object, int index)
+                throws IOException;
+    }
+}
@@ -79,6 +79,33 @@ public class ForwardingStandinStorage<T> implements StandinStorage<T> {
         return forwardingObject.invoke(methodCode, methodArguments);
     }
 
+    /**
+     * Prepares to call a method on the forwarding object's target directly,
+     * if it's local. Standins use this to avoid packing the arguments of
+     * forwarded calls into an array, when that isn't needed. If this method
+     * returns a non-<code>null</code> value, <code>endDirectCall</code> must
+     * be called once the method call is over. Note that this method must be
+     * <code>public</code> for technical reasons.
+     *
+     * @return The object on which to call the method, or <code>null</code>
+     * if the method must be called via <code>forwardMethodCall</code>.
+     * @see InvokeByCode#beginDirectCall()
+     */
+    public Object beginDirectCall() {
+        return forwardingObject.beginDirectCall();
+    }
+
+    /**
+     * Indicates that a method call prepared for with
+     * <code>beginDirectCall</code> is over. Note that this method must be
+     * <code>public</code> for technical reasons.
+     *
+     * @see InvokeByCode#endDirectCall()
+     */
+    public void endDirectCall() {
+        forwardingObject.endDirectCall();
+    }
+
     /**
      * Produces a string representation of this standin storage. This will be
      * based on that of the forwarding object.
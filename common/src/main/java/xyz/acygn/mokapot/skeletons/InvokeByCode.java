@@ -46,6 +46,41 @@ public interface InvokeByCode<T> {
      */
     Object invoke(long methodCode, Object[] methodParams) throws Throwable;
 
+    /**
+     * Prepares for a method to be called on the appropriate object directly,
+     * rather than via <code>invoke</code>. This is an optimisation that's
+     * possible when the object is available on the local virtual machine: the
+     * caller can call the method with its arguments as they are, rather than
+     * packing them into an array (and boxing any primitives). Whenever this
+     * method returns a non-<code>null</code> value, the caller must call
+     * <code>endDirectCall</code> (on the same thread) once the method call is
+     * over, whether or not it completed normally; until then, the object will
+     * remain local.
+     * <p>
+     * The default implementation returns <code>null</code>, i.e. methods must
+     * always be called via <code>invoke</code>.
+     * <p>
+     * This method has the same security considerations as
+     * <code>invoke</code> (and gives no more access than it does, as the
+     * returned object is one on which <code>invoke</code> could have called
+     * any method).
+     *
+     * @return An object of class <code>T</code> on which to call the method,
+     * or <code>null</code> if the method must be called via
+     * <code>invoke</code>.
+     */
+    default Object beginDirectCall() {
+        return null;
+    }
+
+    /**
+     * Indicates that a method call that was prepared for using
+     * <code>beginDirectCall</code> is over. The default implementation does
+     * nothing.
+     */
+    default void endDirectCall() {
+    }
+
     /**
      * Returns the actual class of the object on which <code>invoke</code> will
      * invoke methods. This must be constant and known in advance, even if the
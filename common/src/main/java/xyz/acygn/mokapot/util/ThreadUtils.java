@@ -1,7 +1,13 @@
 package xyz.acygn.mokapot.util;
 
 import static java.lang.Thread.currentThread;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Utility class for threading-related static methods.
@@ -112,6 +118,45 @@ public class ThreadUtils {
         }
     }
 
+    /**
+     * Creates an executor that runs each task on a new virtual thread. Virtual
+     * threads are much cheaper than platform threads while blocked, so this is
+     * suitable for running large numbers of tasks that spend most of their
+     * time waiting. They are only available on newer JDKs (and are looked up
+     * reflectively, so that this class can still be loaded by older ones).
+     * <p>
+     * When a security manager is installed, virtual threads don't inherit the
+     * access control context of the thread that created them (unlike platform
+     * threads, which do). So that tasks don't lose all their permissions, each
+     * task is run with the access control context of the thread that
+     * submitted it.
+     *
+     * @return The new executor.
+     * @throws UnsupportedOperationException If the JDK in use does not support
+     * virtual threads (or supports them only as a disabled preview feature)
+     */
+    public static Executor newVirtualThreadExecutor()
+            throws UnsupportedOperationException {
+        ThreadFactory factory;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException
+                | IllegalAccessException | InvocationTargetException ex) {
+            throw new UnsupportedOperationException(
+                    "This JDK does not support virtual threads", ex);
+        }
+        return (task) -> {
+            AccessControlContext context = AccessController.getContext();
+            factory.newThread(() -> AccessController.doPrivileged(
+                    (PrivilegedAction<Void>) () -> {
+                        task.run();
+                        return null;
+                    }, context)).start();
+        };
+    }
+
     /**
      * Inaccessible constructor. This is a utility class and not meant to be
      * instantiated.
@@ -156,6 +156,7 @@ public class ClassNameDescriptions {
         r.accept(-0x0B000005, Float.class);
         r.accept(-0x0B000006, Integer.class);
         r.accept(-0x0B000007, Long.class);
+        r.accept(-0x0B000008, Short.class);
 
         r.accept(-0x0B000001, boolean.class);
         r.accept(-0x0B000002, byte.class);
@@ -164,6 +165,7 @@ public class ClassNameDescriptions {
         r.accept(-0x0B000005, float.class);
         r.accept(-0x0B000006, int.class);
         r.accept(-0x0B000007, long.class);
+        r.accept(-0x0B000008, short.class);
 
         /* Some very commonly used classes also benefit from descriptions.
            Here are some standard API classes which are widely used either in
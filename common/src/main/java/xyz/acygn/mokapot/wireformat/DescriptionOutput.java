@@ -65,6 +65,8 @@ public interface DescriptionOutput extends DataOutput {
                 PRIMITIVE_SIZES.put(Integer.class, 4);
                 PRIMITIVE_SIZES.put(long.class, 8);
                 PRIMITIVE_SIZES.put(Long.class, 8);
+                PRIMITIVE_SIZES.put(short.class, 2);
+                PRIMITIVE_SIZES.put(Short.class, 2);
             }
         }
     }
@@ -16,11 +16,20 @@ import static java.lang.reflect.Modifier.isPublic;
 import java.math.BigInteger;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import xyz.acygn.mokapot.markers.Copiable;
 import xyz.acygn.mokapot.markers.NonCopiable;
@@ -157,6 +166,21 @@ public class ObjectWireFormat<T> extends ObjectMethodDatabase<T> {
      */
     private final int salt;
 
+    /**
+     * The <code>java.util</code> collection classes that have a compact
+     * description format of their own, listing only their elements. These
+     * classes hold their elements in <code>transient</code> fields, which a
+     * field-by-field copy skips (producing an empty or corrupt collection),
+     * so they're never copied field-by-field: they're always marshalled via
+     * long references, and when an object of one of these classes itself has
+     * to be described (e.g. to migrate it), the compact format is used.
+     */
+    public static final Set<Class<?>> COMPACT_COLLECTION_CLASSES
+            = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                    ArrayList.class, LinkedList.class, ArrayDeque.class,
+                    HashSet.class, LinkedHashSet.class, TreeSet.class,
+                    HashMap.class, LinkedHashMap.class, TreeMap.class)));
+
     /**
      * The set of classes already considered when checking whether this class
      * can indirectly contain an instance of itself.
@@ -274,10 +298,10 @@ public class ObjectWireFormat<T> extends ObjectMethodDatabase<T> {
             this.technique = FIELD_BY_FIELD;
             this.serialisedSize = null;
             return;
-        } else if (newAbout.equals(HashSet.class)) {
-            /* TODO: This is a hack needed to get Mokapot working in the short
-               term. In the long term, we need to figure out what's causing this
-               and fix it. */
+        } else if (COMPACT_COLLECTION_CLASSES.contains(newAbout)) {
+            /* Some of these (e.g. LinkedList) have no non-transient fields
+               that could stop them being treated as immutable, so they need
+               to be checked before the field-by-field scan. */
             this.serialisesReliably = true;
             this.technique = LONG_REFERENCE;
             this.serialisedSize = new ObjectDescription.Size(0, 1);
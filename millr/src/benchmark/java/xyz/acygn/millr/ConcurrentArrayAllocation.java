@@ -0,0 +1,175 @@
+package xyz.acygn.millr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A class useful for profiling the performance of array allocation in milled
+ * applications when many threads allocate arrays at once. In a milled program,
+ * every array allocation and every wrap of an array that crosses the milled
+ * boundary goes through the array wrapper registry, so this is a measure of how
+ * well that registry scales with the number of threads.
+ * <p>
+ * Unlike the other profilable classes, this one also reports the time taken,
+ * as the interesting figure is how the time per allocation changes as the
+ * number of threads is increased.
+ */
+@SuppressWarnings("Duplicates")
+public class ConcurrentArrayAllocation implements Profilable {
+    // the thread counts to compare
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+    // the number of allocations each thread performs per iteration
+    private static final int ALLOCATIONS_PER_ITERATION = 1000;
+
+    @Override
+    public void run(int iterations) {
+        main(new String[] {String.valueOf(iterations)});
+    }
+
+
+    public static void main(String[] args) {
+        // process profiling parameters
+        int iterations = (args != null && args.length != 0) ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+
+        // allocation mechanisms to compare
+        Allocation small = new SmallArrayAllocation();
+        Allocation multi = new MultiDimensionalArrayAllocation();
+        Allocation boundary = new BoundaryCrossingAllocation();
+
+        for (int threads : THREAD_COUNTS) {
+            report("small arrays", threads, iterations, time(small, threads, iterations));
+            report("2D arrays", threads, iterations, time(multi, threads, iterations));
+            report("boundary crossing", threads, iterations, time(boundary, threads, iterations));
+        }
+    }
+
+
+    /**
+     * Runs the given allocation mechanism from the given number of threads at
+     * once, and measures how long it takes for all of them to finish.
+     *
+     * @param allocation the allocation mechanism to run
+     * @param threads number of threads to run it from
+     * @param iterations number of iterations each thread performs
+     * @return elapsed wall-clock time, in nanoseconds
+     */
+    private static long time(Allocation allocation, int threads, int iterations) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        long[] checksums = new long[threads];
+
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                long checksum = 0;
+                for (int i = 0; i < iterations; i++) {
+                    checksum += allocation.allocate(ALLOCATIONS_PER_ITERATION);
+                }
+                checksums[index] = checksum;
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            }
+            catch (InterruptedException e) {
+                System.err.println("Interrupted while waiting for benchmark threads");
+                System.exit(1);
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        // use the checksums, so that the allocations cannot be optimised away
+        long total = 0;
+        for (long checksum : checksums) total += checksum;
+        if (total == Long.MIN_VALUE) System.out.println(total);
+
+        return elapsed;
+    }
+
+    /**
+     * Prints the results of a single measurement.
+     */
+    private static void report(String name, int threads, int iterations, long elapsed) {
+        long allocations = (long) threads * iterations * ALLOCATIONS_PER_ITERATION;
+        System.out.printf("%-20s %3d threads: %8.1f ns/allocation%n",
+                name, threads, (double) elapsed / allocations);
+    }
+
+
+    /**
+     * Represents some pattern of array allocation.
+     */
+    private interface Allocation {
+        /**
+         * Allocates the given number of arrays.
+         *
+         * @param count number of arrays to allocate
+         * @return a value computed from the arrays, to keep them relevant
+         */
+        long allocate(int count);
+    }
+
+    /**
+     * Allocation of short-lived small int arrays, as produced by scratch buffers.
+     */
+    private static class SmallArrayAllocation implements Allocation {
+        @Override
+        public long allocate(int count) {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                int[] array = new int[8];
+                array[i & 7] = i;
+                sum += array[i & 7];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Allocation of two-dimensional arrays, which in milled code creates a
+     * wrapper for the outer array and for every inner array that is accessed.
+     */
+    private static class MultiDimensionalArrayAllocation implements Allocation {
+        @Override
+        public long allocate(int count) {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                double[][] array = new double[2][4];
+                array[i & 1][i & 3] = i;
+                sum += (long) array[i & 1][i & 3];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Passing arrays to and from the (unmilled) Java API, which in milled code
+     * requires unwrapping the array, and then looking up its wrapper again
+     * afterwards.
+     */
+    private static class BoundaryCrossingAllocation implements Allocation {
+        @Override
+        public long allocate(int count) {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                char[] array = String.valueOf(i).toCharArray();
+                sum += array.length + array[0];
+            }
+            return sum;
+        }
+    }
+}
@@ -24,6 +24,10 @@ package xyz.acygn.millr;
  * in case millr for some reason breaks while milling any particular operation. Thus
  * this helps pinpoint any bugs in millr.
  *
+ * These classes are intended for use with an external profiler. For
+ * repeatable measurements of milled against unmilled code, use the JMH
+ * benchmarks in millr/src/jmh instead (<code>ant benchmark-millr</code>).
+ *
  * @author Marcello De Bernardi
  */
 class MillrProfiler {
@@ -43,11 +47,13 @@ class MillrProfiler {
         Profilable arraySorting = new ArraySorting();
         Profilable wrapperInitializations = new WrapperInitializations();
         Profilable customWrapperInitializations = new CustomWrapperInitializations();
+        Profilable concurrentArrayAllocation = new ConcurrentArrayAllocation();
 
         arrayInitializations.run(OPERATION_ITERATIONS);
         arraySorting.run(OPERATION_ITERATIONS);
         wrapperInitializations.run(OPERATION_ITERATIONS);
         customWrapperInitializations.run(OPERATION_ITERATIONS);
+        concurrentArrayAllocation.run(OPERATION_ITERATIONS);
     }
 
 
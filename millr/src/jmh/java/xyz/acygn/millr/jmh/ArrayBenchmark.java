@@ -0,0 +1,45 @@
+package xyz.acygn.millr.jmh;
+
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the cost of millr's array transformation, which replaces arrays
+ * with array wrappers.
+ */
+public class ArrayBenchmark extends MilledComparison {
+
+    private LongSupplier iteration;
+    private LongSupplier update;
+    private LongSupplier allocation;
+    private LongSupplier copy;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        iteration = workload("ArrayIteration");
+        update = workload("ArrayUpdate");
+        allocation = workload("ArrayAllocation");
+        copy = workload("ArrayCopy");
+    }
+
+    @Benchmark
+    public long iterate() {
+        return iteration.getAsLong();
+    }
+
+    @Benchmark
+    public long update() {
+        return update.getAsLong();
+    }
+
+    @Benchmark
+    public long allocate() {
+        return allocation.getAsLong();
+    }
+
+    @Benchmark
+    public long copy() {
+        return copy.getAsLong();
+    }
+}
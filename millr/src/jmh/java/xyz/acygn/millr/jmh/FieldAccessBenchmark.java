@@ -0,0 +1,24 @@
+package xyz.acygn.millr.jmh;
+
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the cost of millr's get/set transformation, which replaces direct
+ * accesses to other classes' fields with getter and setter calls.
+ */
+public class FieldAccessBenchmark extends MilledComparison {
+
+    private LongSupplier fieldAccess;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        fieldAccess = workload("FieldAccess");
+    }
+
+    @Benchmark
+    public long fieldAccess() {
+        return fieldAccess.getAsLong();
+    }
+}
@@ -0,0 +1,24 @@
+package xyz.acygn.millr.jmh;
+
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the cost of millr's introspection transformation, which makes type
+ * tests and reference comparisons see through standins.
+ */
+public class IntrospectionBenchmark extends MilledComparison {
+
+    private LongSupplier typeIntrospection;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        typeIntrospection = workload("TypeIntrospection");
+    }
+
+    @Benchmark
+    public long typeIntrospection() {
+        return typeIntrospection.getAsLong();
+    }
+}
@@ -0,0 +1,62 @@
+package xyz.acygn.millr.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The common settings for benchmarks that compare a workload's original code
+ * with its milled versions. Each benchmark runs once for each variant, so that
+ * the results for the variants can be compared directly.
+ * <p>
+ * The variants are:
+ * <dl>
+ * <dt><code>original</code></dt><dd>the workload as compiled by javac;</dd>
+ * <dt><code>milled</code></dt><dd>the workload as milled with the default
+ * options;</dd>
+ * <dt><code>escape</code></dt><dd>the workload as milled with
+ * <code>-escapeAnalysis</code>, which leaves arrays that don't escape their
+ * method unwrapped.</dd>
+ * </dl>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public abstract class MilledComparison {
+
+    /**
+     * The variant of the workloads to measure.
+     */
+    @Param({"original", "milled", "escape"})
+    public String variant;
+
+    /**
+     * The problem size passed to each workload.
+     */
+    @Param({"1024"})
+    public int size;
+
+    /**
+     * Creates one of the workloads of the variant being measured.
+     *
+     * @param name The simple name of the workload class.
+     * @return The workload.
+     * @throws ReflectiveOperationException If the workload could not be
+     * created
+     */
+    protected LongSupplier workload(String name)
+            throws ReflectiveOperationException {
+        return Workloads.load(variant, name, size);
+    }
+}
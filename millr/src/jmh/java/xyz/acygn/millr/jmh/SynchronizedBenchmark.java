@@ -0,0 +1,31 @@
+package xyz.acygn.millr.jmh;
+
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the cost of millr's synchronized transformation, which replaces the
+ * JVM's monitors with emulated monitors that can be locked remotely.
+ */
+public class SynchronizedBenchmark extends MilledComparison {
+
+    private LongSupplier synchronizedMethod;
+    private LongSupplier synchronizedBlock;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        synchronizedMethod = workload("SynchronizedMethod");
+        synchronizedBlock = workload("SynchronizedBlock");
+    }
+
+    @Benchmark
+    public long synchronizedMethod() {
+        return synchronizedMethod.getAsLong();
+    }
+
+    @Benchmark
+    public long synchronizedBlock() {
+        return synchronizedBlock.getAsLong();
+    }
+}
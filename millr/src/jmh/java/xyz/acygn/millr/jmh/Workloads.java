@@ -0,0 +1,102 @@
+package xyz.acygn.millr.jmh;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Loads the workloads that the benchmarks measure. Each workload exists in
+ * several variants: the original class files, and the output of millr with
+ * various options. These all have the same class names, so each variant is
+ * loaded via its own class loader, from a directory given by the system
+ * property <code>millr.jmh.<i>variant</i></code>.
+ * <p>
+ * The workload classes must not be on the benchmarks' own classpath (or the
+ * parent class loader would find the original versions first); millr's
+ * runtime support classes (<code>xyz.acygn.millr.util</code> and
+ * <code>xyz.acygn.mokapot.LengthIndependent</code>) must be.
+ */
+final class Workloads {
+
+    /**
+     * The package containing the workloads.
+     */
+    private static final String WORKLOAD_PACKAGE
+            = "xyz.acygn.millr.jmh.workload.";
+
+    /**
+     * The prefix of the system properties that give the location of each
+     * variant.
+     */
+    private static final String VARIANT_PROPERTY_PREFIX = "millr.jmh.";
+
+    /**
+     * The class loader used for each variant, loaded on first use.
+     */
+    private static final Map<String, ClassLoader> LOADERS
+            = new ConcurrentHashMap<>();
+
+    /**
+     * Inaccessible constructor. This is a utility class that should not be
+     * instantiated.
+     */
+    private Workloads() {
+    }
+
+    /**
+     * Creates a workload.
+     *
+     * @param variant The variant to use (e.g. <code>original</code> or
+     * <code>milled</code>).
+     * @param name The simple name of the workload class.
+     * @param size The problem size to pass to the workload's constructor.
+     * @return The workload.
+     * @throws ReflectiveOperationException If the workload could not be
+     * loaded or constructed
+     * @throws IllegalStateException If the location of the variant has not
+     * been specified, or the workload was found on the benchmark's own
+     * classpath
+     */
+    static LongSupplier load(String variant, String name, int size)
+            throws ReflectiveOperationException {
+        ClassLoader loader = LOADERS.computeIfAbsent(variant,
+                Workloads::createLoader);
+        Class<?> workload = Class.forName(WORKLOAD_PACKAGE + name, true,
+                loader);
+        if (workload.getClassLoader() != loader) {
+            throw new IllegalStateException("workload " + name
+                    + " was loaded from the benchmark classpath, rather than"
+                    + " from variant " + variant);
+        }
+        return (LongSupplier) workload.getConstructor(int.class)
+                .newInstance(size);
+    }
+
+    /**
+     * Creates a class loader for the given variant.
+     *
+     * @param variant The variant.
+     * @return A class loader which loads classes from the variant's
+     * directory, delegating to the benchmark's class loader for everything
+     * else.
+     */
+    private static ClassLoader createLoader(String variant) {
+        String location = System.getProperty(VARIANT_PROPERTY_PREFIX + variant);
+        if (location == null) {
+            throw new IllegalStateException("no location given for variant "
+                    + variant + "; set the system property "
+                    + VARIANT_PROPERTY_PREFIX + variant);
+        }
+        try {
+            URL url = new File(location).toURI().toURL();
+            return new URLClassLoader(new URL[]{url},
+                    Workloads.class.getClassLoader());
+        } catch (MalformedURLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
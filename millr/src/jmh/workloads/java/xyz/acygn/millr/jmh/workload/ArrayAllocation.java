@@ -0,0 +1,28 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Allocates many small, short-lived arrays, as scratch buffers do. In milled
+ * code, each allocation also allocates and registers an array wrapper, unless
+ * millr's escape analysis determines that the arrays never leave the method.
+ */
+public class ArrayAllocation implements LongSupplier {
+
+    private final int size;
+
+    public ArrayAllocation(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public long getAsLong() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            int[] scratch = new int[8];
+            scratch[i & 7] = i;
+            sum += scratch[i & 7] + scratch.length;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,30 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Copies and fills whole arrays with the Java API. In milled code, these calls
+ * go through the array wrappers' bulk operations rather than through the
+ * element accessors.
+ */
+public class ArrayCopy implements LongSupplier {
+
+    private final int[] source;
+    private final int[] destination;
+
+    public ArrayCopy(int size) {
+        source = new int[size];
+        destination = new int[size];
+        for (int i = 0; i < size; i++) {
+            source[i] = size - i;
+        }
+    }
+
+    @Override
+    public long getAsLong() {
+        Arrays.fill(destination, 0);
+        System.arraycopy(source, 0, destination, 0, source.length);
+        return destination[destination.length - 1];
+    }
+}
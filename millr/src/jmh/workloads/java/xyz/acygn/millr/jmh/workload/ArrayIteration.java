@@ -0,0 +1,29 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reads every element of an array held in a field. In milled code, the array
+ * is replaced by an <code>intArrayWrapper</code>, and each element read by a
+ * call to its getter.
+ */
+public class ArrayIteration implements LongSupplier {
+
+    private final int[] data;
+
+    public ArrayIteration(int size) {
+        data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = i;
+        }
+    }
+
+    @Override
+    public long getAsLong() {
+        long sum = 0;
+        for (int i = 0; i < data.length; i++) {
+            sum += data[i];
+        }
+        return sum;
+    }
+}
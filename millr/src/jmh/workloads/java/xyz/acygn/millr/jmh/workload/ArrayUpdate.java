@@ -0,0 +1,24 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reads and writes every element of an array held in a field. In milled code,
+ * each element write becomes a call to the array wrapper's setter.
+ */
+public class ArrayUpdate implements LongSupplier {
+
+    private final long[] data;
+
+    public ArrayUpdate(int size) {
+        data = new long[size];
+    }
+
+    @Override
+    public long getAsLong() {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = data[i] * 31 + i;
+        }
+        return data[data.length - 1];
+    }
+}
@@ -0,0 +1,31 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reads and writes the fields of objects of another class, walking a linked
+ * list of them. This is the code that millr's get/set transformation rewrites.
+ */
+public class FieldAccess implements LongSupplier {
+
+    private final Particle head;
+
+    public FieldAccess(int size) {
+        Particle p = null;
+        for (int i = 0; i < size; i++) {
+            p = new Particle(i & 3, i & 5, p);
+        }
+        head = p;
+    }
+
+    @Override
+    public long getAsLong() {
+        double total = 0;
+        for (Particle p = head; p != null; p = p.next) {
+            p.x += p.vx;
+            p.y += p.vy;
+            total += p.x - p.y;
+        }
+        return (long) total;
+    }
+}
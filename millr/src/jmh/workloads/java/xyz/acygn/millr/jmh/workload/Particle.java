@@ -0,0 +1,21 @@
+package xyz.acygn.millr.jmh.workload;
+
+/**
+ * A simple mutable object with public fields, used by
+ * <code>FieldAccess</code>. Milling replaces accesses to these fields from
+ * other classes with calls to getters and setters.
+ */
+public class Particle {
+
+    public double x;
+    public double y;
+    public double vx;
+    public double vy;
+    public Particle next;
+
+    public Particle(double vx, double vy, Particle next) {
+        this.vx = vx;
+        this.vy = vy;
+        this.next = next;
+    }
+}
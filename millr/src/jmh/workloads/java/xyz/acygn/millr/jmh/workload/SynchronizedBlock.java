@@ -0,0 +1,33 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Repeatedly enters an uncontended <code>synchronized</code> block on another
+ * object. In milled code, the block's monitor instructions become calls to the
+ * lock object's emulated monitor.
+ */
+public class SynchronizedBlock implements LongSupplier {
+
+    private final int size;
+    private final Counter lock = new Counter();
+
+    public SynchronizedBlock(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public long getAsLong() {
+        for (int i = 0; i < size; i++) {
+            synchronized (lock) {
+                lock.value += i;
+            }
+        }
+        return lock.value;
+    }
+
+    static class Counter {
+
+        long value = 0;
+    }
+}
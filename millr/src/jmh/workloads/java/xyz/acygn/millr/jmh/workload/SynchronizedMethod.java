@@ -0,0 +1,29 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Repeatedly calls an uncontended <code>synchronized</code> method. In milled
+ * code, the method locks the object's emulated monitor rather than the JVM's.
+ */
+public class SynchronizedMethod implements LongSupplier {
+
+    private final int size;
+    private long counter = 0;
+
+    public SynchronizedMethod(int size) {
+        this.size = size;
+    }
+
+    private synchronized void increment(int amount) {
+        counter += amount;
+    }
+
+    @Override
+    public long getAsLong() {
+        for (int i = 0; i < size; i++) {
+            increment(i);
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,78 @@
+package xyz.acygn.millr.jmh.workload;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Dispatches on the types of a list of objects, using <code>instanceof</code>,
+ * <code>getClass()</code> and reference comparisons. Millr's introspection
+ * transformation replaces the latter two with calls into
+ * <code>LengthIndependent</code>, so that they see through standins.
+ */
+public class TypeIntrospection implements LongSupplier {
+
+    private final Shape head;
+
+    public TypeIntrospection(int size) {
+        Shape s = null;
+        for (int i = 0; i < size; i++) {
+            switch (i % 3) {
+                case 0:
+                    s = new Circle(s);
+                    break;
+                case 1:
+                    s = new Square(s);
+                    break;
+                default:
+                    s = new Triangle(s);
+                    break;
+            }
+        }
+        head = s;
+    }
+
+    @Override
+    public long getAsLong() {
+        long count = 0;
+        for (Shape s = head; s != null; s = s.next) {
+            if (s instanceof Circle) {
+                count += 1;
+            } else if (s.getClass() == Square.class) {
+                count += 2;
+            }
+            if (s.next != head) {
+                count += 4;
+            }
+        }
+        return count;
+    }
+
+    static class Shape {
+
+        final Shape next;
+
+        Shape(Shape next) {
+            this.next = next;
+        }
+    }
+
+    static class Circle extends Shape {
+
+        Circle(Shape next) {
+            super(next);
+        }
+    }
+
+    static class Square extends Shape {
+
+        Square(Shape next) {
+            super(next);
+        }
+    }
+
+    static class Triangle extends Shape {
+
+        Triangle(Shape next) {
+            super(next);
+        }
+    }
+}
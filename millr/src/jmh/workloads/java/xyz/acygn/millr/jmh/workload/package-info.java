@@ -0,0 +1,14 @@
+/**
+ * Workloads for the millr JMH benchmarks. The classes in this package are
+ * compiled separately from the benchmarks themselves, and then milled, so that
+ * the benchmarks can load and compare the original and the milled version of
+ * each one. Each workload implements <code>LongSupplier</code> (a JDK interface,
+ * so that it looks the same before and after milling), has a constructor
+ * taking a problem size, and returns a value computed from its work so that
+ * the work cannot be optimised away.
+ * <p>
+ * The classes here should only use the Java API, and must not be referenced
+ * directly by the benchmarks; otherwise the unmilled version would end up on
+ * the benchmarks' classpath.
+ */
+package xyz.acygn.millr.jmh.workload;
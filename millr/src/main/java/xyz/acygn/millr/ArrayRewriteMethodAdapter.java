@@ -8,8 +8,11 @@
  import java.lang.reflect.Field;
  import java.util.ArrayList;
  import java.util.Arrays;
+ import java.util.HashSet;
  import java.util.List;
+ import java.util.Map;
  import java.util.Set;
+ import java.util.concurrent.ConcurrentHashMap;
  import java.util.logging.Level;
  import java.util.logging.Logger;
  import java.util.stream.Collectors;
@@ -59,6 +62,23 @@
      private static final String OBJECTDESC = "Ljava/lang/Object;";
      private static final String getObjectArray = "getObjectArrayWrapper";
 
+     /**
+      * The description of <code>System.arraycopy</code>.
+      */
+     private static final String ARRAYCOPYDESC = "(Ljava/lang/Object;ILjava/lang/Object;II)V";
+
+     /**
+      * The methods of <code>java.util.Arrays</code> that have a counterpart,
+      * with the same name, among the bulk operations of the array wrappers.
+      */
+     private static final Set<String> BULK_ARRAY_METHODS = new HashSet<>(Arrays.asList("fill", "sort", "copyOf", "copyOfRange"));
+
+     /**
+      * Cache of whether a given array wrapper has a method with a given name
+      * and description, indexed by the concatenation of those three.
+      */
+     private static final Map<String, Boolean> WRAPPER_HAS_METHOD = new ConcurrentHashMap<>();
+
      /*
      This Class is simply extends Analyzer by adding two abilities. The one to
      add an object to the stack, and to remove one.
@@ -156,6 +176,9 @@
      //This field encode wether the method is static or not.
      private boolean isStatic;
 
+     //This field encodes whether the arrays of this method are left unwrapped, because none of them escape it.
+     private final boolean rawArrays;
+
 
      /**
       * Create the AnalyzerAdapter, extends the AnalyzerAdapter standard
@@ -174,7 +197,34 @@
       */
      public ArrayRewriteMethodAdapter(String owner, int access, String name, String desc, MethodVisitor mv,
                                       Set<MethodParameter> methodToBeCreated, Set<Integer> methodIntToArray) {
+         this(owner, access, name, desc, mv, methodToBeCreated, methodIntToArray, false);
+     }
+
+     /**
+      * Create the AnalyzerAdapter, optionally leaving the arrays of the method
+      * unwrapped. This is only safe if no array used by the method escapes it,
+      * as determined by <code>ArrayEscapeAnalysis</code>; in that case, the
+      * array creation, access and length instructions are kept as they are,
+      * and the remainder of the method is rewritten as usual.
+      *
+      * @param owner             The name of the class owning the method.
+      * @param access            The access.
+      * @param name              The name of the method.
+      * @param desc              The description of the method.
+      * @param mv                The MethodVisitor calls can be forwarded to.
+      * @param methodToBeCreated Set in which method to be created will be
+      *                          recorded. Needs to be non null.
+      * @param methodIntToArray  Set in which the dimensions of the
+      *                          multi-dimensional arrays created are recorded.
+      * @param rawArrays         Whether the arrays of this method should be
+      *                          left unwrapped.
+      * @see xyz.acygn.millr.CoreArrayAnalysis.ArrayEscapeAnalysis
+      */
+     public ArrayRewriteMethodAdapter(String owner, int access, String name, String desc, MethodVisitor mv,
+                                      Set<MethodParameter> methodToBeCreated, Set<Integer> methodIntToArray,
+                                      boolean rawArrays) {
          super(Opcodes.ASM6, owner, access, name, getNewDesc(desc), mv);
+         this.rawArrays = rawArrays;
          this.ownerMethod = owner;
          this.nameMethod = name;
          this.descMethod = desc;
@@ -448,9 +498,12 @@
              throw new RuntimeException("poae");
          }
          originalAnalyzer.visitFrame(type, nLocal, local, nStack, stackFrame);
-         modifyStackLocal(local);
-         Object[] newLocal = modifyStackLocal(local);
-         super.visitFrame(type, nLocal, newLocal, nStack, modifyStackLocal(stackFrame));
+         if (rawArrays) {
+             super.visitFrame(type, nLocal, local, nStack, stackFrame);
+         } else {
+             Object[] newLocal = modifyStackLocal(local);
+             super.visitFrame(type, nLocal, newLocal, nStack, modifyStackLocal(stackFrame));
+         }
          if (!isStackCompatible()) {
              throw new RuntimeException("poae");
          }
@@ -510,7 +563,10 @@
          if (!isStackCompatible()) {
              throw new RuntimeException("poae");
          }
-         if (opcode == Opcodes.IASTORE) {
+         if (rawArrays && isArrayInsn(opcode)) {
+             super.visitInsn(opcode);
+             originalAnalyzer.visitInsn(opcode);
+         } else if (opcode == Opcodes.IASTORE) {
              String className = getPrimClassName(Type.INT_TYPE);
              super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, className, "set", "(II)V", false);
              originalAnalyzer.visitInsn(opcode);
@@ -652,6 +708,19 @@
          // LCONST_0, LCONST_1, FCONST_0, FCONST_1, FCONST_2, DCONST_0, DCONST_1,
      }
 
+     /**
+      * Determines whether an instruction without operands accesses an array:
+      * that is, whether it is an element load or store, or ARRAYLENGTH.
+      *
+      * @param opcode The opcode.
+      * @return true if the instruction operates on an array.
+      */
+     private static boolean isArrayInsn(int opcode) {
+         return (opcode >= Opcodes.IALOAD && opcode <= Opcodes.SALOAD)
+                 || (opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE)
+                 || opcode == Opcodes.ARRAYLENGTH;
+     }
+
      /**
       * Overridden version of visitIntInsn where newArray is replaced with
       * arrayWrapper creation and BIPUSH push appropriate integer into the stack.
@@ -665,7 +734,7 @@
              throw new RuntimeException("poae");
          }
          Type T;
-         if (opcode == Opcodes.NEWARRAY) {
+         if (opcode == Opcodes.NEWARRAY && !rawArrays) {
              try {
                  T = TypeUtil.getPrimType(label);
              } catch (Exception ex) {
@@ -853,6 +922,10 @@
          if (!isStackCompatible()) {
             throw new RuntimeException("poae");
          }
+         if (rewriteBulkArrayOperation(opcode, owner, name, desc)) {
+             originalAnalyzer.visitMethodInsn(opcode, owner, name, desc, itf);
+             return;
+         }
          MethodParameter mp;
          try {
              mp = MethodParameter.getMethod(owner, name, desc);
@@ -1050,6 +1123,77 @@
      }
 
 
+     /**
+      * Replaces a call to <code>System.arraycopy</code>, or to one of the
+      * methods of <code>java.util.Arrays</code> that operates on an array in
+      * bulk, with the corresponding bulk operation of the array wrappers. The
+      * default treatment of calls into the API would unwrap the arrays, call
+      * the method, and then copy the whole of each array back into its
+      * wrapper; the bulk operations avoid that, and operate on a wrapper in a
+      * single call even when it's stored on another system.
+      * <p>
+      * Calls to <code>Arrays</code> are only replaced when the array is known
+      * to be wrapped with the wrapper that the method expects; other calls are
+      * left to the default treatment.
+      *
+      * @param opcode The opcode the method is called with
+      * @param owner  The owner of the method
+      * @param name   The name of the method
+      * @param desc   The description of the method
+      * @return <code>true</code> if the call was replaced, <code>false</code>
+      * if the caller still needs to handle it.
+      */
+     private boolean rewriteBulkArrayOperation(int opcode, String owner, String name, String desc) {
+         if (opcode != Opcodes.INVOKESTATIC) {
+             return false;
+         }
+         if (owner.equals("java/lang/System") && name.equals("arraycopy") && desc.equals(ARRAYCOPYDESC)) {
+             super.visitMethodInsn(Opcodes.INVOKESTATIC, PathConstants.RUNTIME_UNWRAPPER_CLASS, "arraycopy", ARRAYCOPYDESC, false);
+             return true;
+         }
+         if (!owner.equals("java/util/Arrays") || !BULK_ARRAY_METHODS.contains(name)) {
+             return false;
+         }
+         Type[] args = Type.getArgumentTypes(desc);
+         if (args.length == 0 || args[0].getSort() != Type.ARRAY || args[0].getDimensions() != 1) {
+             return false;
+         }
+         // The array is the first argument; check that it really is wrapped with the wrapper we expect.
+         String wrapper = getNewOwner(args[0].getInternalName());
+         int argsSize = Arrays.stream(args).mapToInt(Type::getSize).sum();
+         if (!wrapper.equals(stack.get(stack.size() - argsSize))) {
+             return false;
+         }
+         StringBuilder newDesc = new StringBuilder("(");
+         Arrays.stream(args).skip(1).forEach(e -> newDesc.append(e.getDescriptor()));
+         newDesc.append(")").append(getNewDesc(Type.getReturnType(desc).getDescriptor()));
+         if (!wrapperHasMethod(wrapper, name, newDesc.toString())) {
+             return false;
+         }
+         super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, name, newDesc.toString(), false);
+         return true;
+     }
+
+     /**
+      * Determines whether an array wrapper class has a public method with the
+      * given name and description.
+      *
+      * @param wrapper The internal name of the array wrapper class.
+      * @param name    The name of the method.
+      * @param desc    The description of the method.
+      * @return Whether the method exists.
+      */
+     private static boolean wrapperHasMethod(String wrapper, String name, String desc) {
+         return WRAPPER_HAS_METHOD.computeIfAbsent(wrapper + "." + name + desc, (key) -> {
+             try {
+                 return Arrays.stream(Class.forName(Type.getObjectType(wrapper).getClassName()).getMethods())
+                         .anyMatch(m -> m.getName().equals(name) && Type.getMethodDescriptor(m).equals(desc));
+             } catch (ClassNotFoundException ex) {
+                 return false;
+             }
+         });
+     }
+
      /**
       * Replace the visit for a creation of a multidimensional array, with the
       * creation of a multidimensional array-wrapper.
@@ -1063,6 +1207,10 @@
              throw new RuntimeException("poae");
          }
          originalAnalyzer.visitMultiANewArrayInsn(desc, dims);
+         if (rawArrays) {
+             super.visitMultiANewArrayInsn(desc, dims);
+             return;
+         }
          super.visitMethodInsn(Opcodes.INVOKESTATIC, ownerMethod, ArrayRewriteTransformation.getMethodNameArrayToInt(dims),
                  ArrayRewriteTransformation.getMethodDescArrayToInt(dims), false);
          for (int i = 0; i < dims; i++) {
@@ -1107,7 +1255,9 @@
          if (!isStackCompatible()) {
              throw new RuntimeException("poae");
          }
-         if (opcode == Opcodes.ANEWARRAY) {
+         if (opcode == Opcodes.ANEWARRAY && rawArrays) {
+             super.visitTypeInsn(opcode, type);
+         } else if (opcode == Opcodes.ANEWARRAY) {
              Type T = Type.getObjectType(type);
              super.visitLdcInsn(T);
              super.visitMethodInsn(Opcodes.INVOKESTATIC, ARRAYWRAPPERNAME, getObjectArray, "(ILjava/lang/Class;)" + ARRAYWRAPPERDESC, false);
@@ -1195,7 +1345,11 @@
              throw new RuntimeException("poae");
          }
          originalAnalyzer.visitLocalVariable(name, desc, signature, start, end, index);
-         super.visitLocalVariable(name, getNewSignatureField(desc), getNewSignatureField(signature), start, end, index);
+         if (rawArrays) {
+             super.visitLocalVariable(name, desc, signature, start, end, index);
+         } else {
+             super.visitLocalVariable(name, getNewSignatureField(desc), getNewSignatureField(signature), start, end, index);
+         }
          if (!isStackCompatible()) {
              throw new RuntimeException("poae");
          }
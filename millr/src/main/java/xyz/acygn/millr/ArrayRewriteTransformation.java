@@ -12,6 +12,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +27,7 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.TypePath;
+import xyz.acygn.millr.CoreArrayAnalysis.ArrayEscapeAnalysis;
 import xyz.acygn.millr.messages.*;
 
 /**
@@ -69,6 +71,8 @@ public class ArrayRewriteTransformation extends Transformation {
         final ClassWriter cw;
         final ClassVisitor cv;
         Set<MethodParameter> doNotWrapMethods = new HashSet<>();
+        //The methods (name and description) whose arrays do not escape them, and thus are left unwrapped.
+        Set<String> arrayLocalMethods = Collections.emptySet();
 
         ClassVisitor getClassTransformer() {
             return cv;
@@ -111,6 +115,9 @@ public class ArrayRewriteTransformation extends Transformation {
                         filter(e -> (e.methodAccess & Opcodes.ACC_SYNTHETIC) != 0).forEach(doNotWrapMethods::add);
             }
             //    }
+            if (InputOutput.getInstance().shouldPerformEscapeAnalysis()) {
+                arrayLocalMethods = ArrayEscapeAnalysis.findArrayLocalMethods(cr);
+            }
             cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
             cv = new ArrayRewriteVisitor(Opcodes.ASM6, cw, cr.getClassName());
         }
@@ -230,7 +237,8 @@ public class ArrayRewriteTransformation extends Transformation {
                         newSignature = signature != null ? SignatureArrayTypeModifier.getNewSignature(signature) : null;
                         newDesc = SignatureArrayTypeModifier.getNewSignature(desc);
                         access = access & ~Opcodes.ACC_VARARGS;
-                        return new ArrayRewriteMethodAdapter(nameClass, access, name, desc, super.visitMethod(access, getMethodName(mp), newDesc, newSignature, exceptions), wrappingMethodToBeCreated, intToArrayMethodToBeCreated);
+                        boolean rawArrays = arrayLocalMethods.contains(ArrayEscapeAnalysis.methodKey(name, desc));
+                        return new ArrayRewriteMethodAdapter(nameClass, access, name, desc, super.visitMethod(access, getMethodName(mp), newDesc, newSignature, exceptions), wrappingMethodToBeCreated, intToArrayMethodToBeCreated, rawArrays);
                     }
                 } catch (Throwable tr) {
                     throw new MethodTransformationFailedException(tr, nameClass, name, desc);
@@ -0,0 +1,468 @@
+package xyz.acygn.millr.CoreArrayAnalysis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.Value;
+import xyz.acygn.millr.messages.MessageUtil;
+
+/**
+ * An intraprocedural escape analysis for arrays. Milling normally replaces
+ * every array with an array wrapper, so that the array can be accessed
+ * remotely; but an array that is allocated by a method and never leaves that
+ * method can't be seen by any other system, so it can safely stay as a plain
+ * Java array, avoiding the cost of allocating and registering a wrapper and of
+ * calling the wrapper's accessors. Scratch buffers and small temporary arrays
+ * are typically of this form.
+ * <p>
+ * The analysis works at the granularity of methods: a method is "array-local"
+ * if it has no arrays in its descriptor, and every array it handles was
+ * allocated by the method itself and never escapes it. That is, no array value
+ * is passed to a method (including as a receiver), stored in a field or in an
+ * array that isn't itself local, returned, locked, cast or type-tested, and no
+ * array value is obtained from a field, a method call or a cast. Arrays of
+ * arrays are allowed so long as they only contain local arrays. All the array
+ * instructions of an array-local method can be left untouched by the array
+ * rewriting.
+ * <p>
+ * The analysis also counts the array allocation sites it has seen, so that
+ * millr can report how much wrapping it managed to avoid.
+ */
+public final class ArrayEscapeAnalysis {
+
+    /**
+     * The total number of array allocation sites seen by the analysis.
+     */
+    private static final AtomicInteger allocationSites = new AtomicInteger();
+
+    /**
+     * The number of array allocation sites that lie within array-local
+     * methods, and thus will be left unwrapped.
+     */
+    private static final AtomicInteger unwrappedSites = new AtomicInteger();
+
+    /**
+     * Inaccessible constructor. This is a utility class that should not be
+     * instantiated.
+     */
+    private ArrayEscapeAnalysis() {
+    }
+
+    /**
+     * Returns the key used to identify a method in the set returned by
+     * <code>findArrayLocalMethods</code>.
+     *
+     * @param name The name of the method.
+     * @param desc The descriptor of the method.
+     * @return A string identifying the method within its class.
+     */
+    public static String methodKey(String name, String desc) {
+        return name + desc;
+    }
+
+    /**
+     * Finds the methods of a class whose arrays never escape them, and which
+     * can therefore be milled without wrapping their arrays.
+     *
+     * @param cr A reader for the class to analyse.
+     * @return The keys (as given by <code>methodKey</code>) of the array-local
+     * methods of the class.
+     */
+    public static Set<String> findArrayLocalMethods(ClassReader cr) {
+        ClassNode cn = new ClassNode();
+        cr.accept(cn, ClassReader.SKIP_FRAMES);
+        Set<String> arrayLocal = new HashSet<>();
+        for (MethodNode mn : cn.methods) {
+            int sites = countAllocationSites(mn);
+            if (sites == 0) {
+                continue;
+            }
+            allocationSites.addAndGet(sites);
+            if (isArrayLocal(cn.name, mn)) {
+                unwrappedSites.addAndGet(sites);
+                arrayLocal.add(methodKey(mn.name, mn.desc));
+            }
+        }
+        return arrayLocal;
+    }
+
+    /**
+     * Emits a message reporting the fraction of array allocation sites that
+     * the analysis has left unwrapped, and resets the counts.
+     */
+    public static void report() {
+        int total = allocationSites.getAndSet(0);
+        int unwrapped = unwrappedSites.getAndSet(0);
+        double percentage = total == 0 ? 0.0 : 100.0 * unwrapped / total;
+        MessageUtil.message(String.format(
+                "[ESCAPE ANALYSIS] -> %d of %d array allocation sites left unwrapped (%.1f%%)",
+                unwrapped, total, percentage), true).emit();
+    }
+
+    /**
+     * Counts the number of instructions within a method that allocate arrays.
+     *
+     * @param mn The method to examine.
+     * @return The number of array allocation instructions in the method.
+     */
+    private static int countAllocationSites(MethodNode mn) {
+        int count = 0;
+        for (AbstractInsnNode insn : mn.instructions.toArray()) {
+            switch (insn.getOpcode()) {
+                case Opcodes.NEWARRAY:
+                case Opcodes.ANEWARRAY:
+                case Opcodes.MULTIANEWARRAY:
+                    count++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines whether none of the arrays handled by a method escape it.
+     *
+     * @param owner The internal name of the class that owns the method.
+     * @param mn The method to examine.
+     * @return <code>true</code> if every array the method handles is
+     * allocated within the method and never leaves it.
+     */
+    private static boolean isArrayLocal(String owner, MethodNode mn) {
+        if (mn.desc.contains("[") || mn.instructions.size() == 0
+                || (mn.signature != null && mn.signature.contains("["))) {
+            return false;
+        }
+        EscapeInterpreter interpreter = new EscapeInterpreter();
+        try {
+            new Analyzer<>(interpreter).analyze(owner, mn);
+        } catch (AnalyzerException ex) {
+            return false;
+        }
+        return !interpreter.escapes;
+    }
+
+    /**
+     * A value tracked by the analysis, distinguishing arrays allocated by the
+     * method being analysed from all other values.
+     */
+    private static final class EscapeValue implements Value {
+
+        /**
+         * The kind of a non-reference value (a primitive, or an unused slot).
+         */
+        static final int PRIMITIVE = 0;
+
+        /**
+         * The kind of the <code>null</code> reference.
+         */
+        static final int NULL = 1;
+
+        /**
+         * The kind of a reference to an array allocated by this method.
+         */
+        static final int LOCAL_ARRAY = 2;
+
+        /**
+         * The kind of any other reference.
+         */
+        static final int OTHER = 3;
+
+        static final EscapeValue SINGLE = new EscapeValue(PRIMITIVE, 1, null);
+        static final EscapeValue DOUBLE = new EscapeValue(PRIMITIVE, 2, null);
+        static final EscapeValue NULL_VALUE = new EscapeValue(NULL, 1, null);
+        static final EscapeValue OTHER_VALUE = new EscapeValue(OTHER, 1, null);
+
+        /**
+         * The kind of this value.
+         */
+        final int kind;
+
+        /**
+         * The number of stack or local slots this value takes up.
+         */
+        final int size;
+
+        /**
+         * For a local array, the array's descriptor, or <code>null</code> if
+         * it isn't known precisely. Otherwise <code>null</code>.
+         */
+        final String desc;
+
+        EscapeValue(int kind, int size, String desc) {
+            this.kind = kind;
+            this.size = size;
+            this.desc = desc;
+        }
+
+        static EscapeValue localArray(String desc) {
+            return new EscapeValue(LOCAL_ARRAY, 1, desc);
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EscapeValue)) {
+                return false;
+            }
+            EscapeValue other = (EscapeValue) o;
+            return kind == other.kind && size == other.size
+                    && Objects.equals(desc, other.desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return (kind * 31 + size) * 31 + Objects.hashCode(desc);
+        }
+    }
+
+    /**
+     * The interpreter used by the analysis. Non-reference values are handled
+     * by delegating to a <code>BasicInterpreter</code>; references are
+     * classified according to whether they're local arrays, and any operation
+     * that would let a local array escape (or bring a non-local array into
+     * the method) is recorded.
+     */
+    private static final class EscapeInterpreter
+            extends Interpreter<EscapeValue> {
+
+        /**
+         * The interpreter used to calculate the sizes of non-reference values.
+         */
+        private final BasicInterpreter basic = new BasicInterpreter();
+
+        /**
+         * Whether an escaping array has been found.
+         */
+        boolean escapes = false;
+
+        EscapeInterpreter() {
+            super(Opcodes.ASM6);
+        }
+
+        /**
+         * Converts a value calculated by the basic interpreter. Any reference
+         * is assumed not to be a local array; an array-typed reference means
+         * that an array of unknown origin has entered the method.
+         */
+        private EscapeValue fromBasic(BasicValue v) {
+            if (v == null) {
+                return null;
+            }
+            if (v.isReference()) {
+                if (v.getType() != null && v.getType().getSort() == Type.ARRAY) {
+                    escapes = true;
+                }
+                return EscapeValue.OTHER_VALUE;
+            }
+            return v.getSize() == 2 ? EscapeValue.DOUBLE : EscapeValue.SINGLE;
+        }
+
+        private static BasicValue toBasic(EscapeValue v) {
+            if (v.kind != EscapeValue.PRIMITIVE) {
+                return BasicValue.REFERENCE_VALUE;
+            }
+            return v.size == 2 ? BasicValue.LONG_VALUE : BasicValue.INT_VALUE;
+        }
+
+        /**
+         * Records an escape if the given value is a local array.
+         */
+        private void mustNotBeLocal(EscapeValue v) {
+            if (v.kind == EscapeValue.LOCAL_ARRAY) {
+                escapes = true;
+            }
+        }
+
+        @Override
+        public EscapeValue newValue(Type type) {
+            if (type == null) {
+                return EscapeValue.SINGLE;
+            }
+            if (type.getSort() == Type.VOID) {
+                return null;
+            }
+            return fromBasic(basic.newValue(type));
+        }
+
+        @Override
+        public EscapeValue newOperation(AbstractInsnNode insn)
+                throws AnalyzerException {
+            if (insn.getOpcode() == Opcodes.ACONST_NULL) {
+                return EscapeValue.NULL_VALUE;
+            }
+            return fromBasic(basic.newOperation(insn));
+        }
+
+        @Override
+        public EscapeValue copyOperation(AbstractInsnNode insn,
+                EscapeValue value) {
+            return value;
+        }
+
+        @Override
+        public EscapeValue unaryOperation(AbstractInsnNode insn,
+                EscapeValue value) throws AnalyzerException {
+            switch (insn.getOpcode()) {
+                case Opcodes.NEWARRAY:
+                    return EscapeValue.localArray("["
+                            + basicArrayElement(((IntInsnNode) insn).operand));
+                case Opcodes.ANEWARRAY:
+                    return EscapeValue.localArray("[" + Type.getObjectType(
+                            ((TypeInsnNode) insn).desc).getDescriptor());
+                case Opcodes.PUTSTATIC:
+                case Opcodes.ARETURN:
+                case Opcodes.MONITORENTER:
+                case Opcodes.MONITOREXIT:
+                case Opcodes.CHECKCAST:
+                case Opcodes.INSTANCEOF:
+                case Opcodes.GETFIELD:
+                    mustNotBeLocal(value);
+                    break;
+                default:
+                    break;
+            }
+            /* Note that a cast to an array type produces an array-typed
+               reference, and so is treated as an escape by fromBasic. */
+            return fromBasic(basic.unaryOperation(insn, toBasic(value)));
+        }
+
+        @Override
+        public EscapeValue binaryOperation(AbstractInsnNode insn,
+                EscapeValue value1, EscapeValue value2)
+                throws AnalyzerException {
+            if (insn.getOpcode() == Opcodes.AALOAD) {
+                if (value1.kind == EscapeValue.LOCAL_ARRAY
+                        && value1.desc != null
+                        && value1.desc.startsWith("[[")) {
+                    return EscapeValue.localArray(value1.desc.substring(1));
+                }
+                return EscapeValue.OTHER_VALUE;
+            } else if (insn.getOpcode() == Opcodes.PUTFIELD) {
+                mustNotBeLocal(value2);
+            }
+            return fromBasic(basic.binaryOperation(insn, toBasic(value1),
+                    toBasic(value2)));
+        }
+
+        @Override
+        public EscapeValue ternaryOperation(AbstractInsnNode insn,
+                EscapeValue value1, EscapeValue value2, EscapeValue value3) {
+            if (insn.getOpcode() == Opcodes.AASTORE
+                    && value3.kind == EscapeValue.LOCAL_ARRAY) {
+                /* A local array may only be stored into another local array,
+                   and only one whose elements are statically arrays; otherwise
+                   it could be read back out as a plain Object and escape. */
+                if (value1.kind != EscapeValue.LOCAL_ARRAY
+                        || value1.desc == null
+                        || !value1.desc.startsWith("[[")) {
+                    escapes = true;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public EscapeValue naryOperation(AbstractInsnNode insn,
+                List<? extends EscapeValue> values) throws AnalyzerException {
+            if (insn.getOpcode() == Opcodes.MULTIANEWARRAY) {
+                return EscapeValue.localArray(
+                        ((MultiANewArrayInsnNode) insn).desc);
+            }
+            for (EscapeValue value : values) {
+                mustNotBeLocal(value);
+            }
+            List<BasicValue> basicValues = new ArrayList<>();
+            for (EscapeValue value : values) {
+                basicValues.add(toBasic(value));
+            }
+            return fromBasic(basic.naryOperation(insn, basicValues));
+        }
+
+        @Override
+        public void returnOperation(AbstractInsnNode insn, EscapeValue value,
+                EscapeValue expected) {
+            mustNotBeLocal(value);
+        }
+
+        @Override
+        public EscapeValue merge(EscapeValue v, EscapeValue w) {
+            if (v.equals(w)) {
+                return v;
+            }
+            if (v.kind == EscapeValue.PRIMITIVE
+                    || w.kind == EscapeValue.PRIMITIVE) {
+                /* Not both references; the slot is unusable after the merge,
+                   so it can't carry an array anywhere. */
+                return EscapeValue.SINGLE;
+            }
+            if (v.kind == EscapeValue.NULL) {
+                return w;
+            }
+            if (w.kind == EscapeValue.NULL) {
+                return v;
+            }
+            if (v.kind == EscapeValue.LOCAL_ARRAY
+                    && w.kind == EscapeValue.LOCAL_ARRAY) {
+                return EscapeValue.localArray(null);
+            }
+            /* A local array and some other reference meet; we can no longer
+               tell which is which. */
+            escapes = true;
+            return EscapeValue.OTHER_VALUE;
+        }
+
+        /**
+         * Returns the descriptor of the element type of an array allocated
+         * by <code>NEWARRAY</code>.
+         *
+         * @param operand The operand of the <code>NEWARRAY</code> instruction.
+         * @return The element type's descriptor.
+         */
+        private static String basicArrayElement(int operand) {
+            switch (operand) {
+                case Opcodes.T_BOOLEAN:
+                    return "Z";
+                case Opcodes.T_CHAR:
+                    return "C";
+                case Opcodes.T_BYTE:
+                    return "B";
+                case Opcodes.T_SHORT:
+                    return "S";
+                case Opcodes.T_INT:
+                    return "I";
+                case Opcodes.T_FLOAT:
+                    return "F";
+                case Opcodes.T_DOUBLE:
+                    return "D";
+                case Opcodes.T_LONG:
+                    return "J";
+                default:
+                    throw new IllegalArgumentException(
+                            "invalid NEWARRAY operand " + operand);
+            }
+        }
+    }
+}
@@ -45,6 +45,7 @@ public class InputOutput {
     private static final String SUPPRESS_MESSAGES_FLAG = "-s_mess";
     private static final String SUPPRESS_ALL_FLAG = "-s_all";
     private static final String EXTENDED_ANALYSIS = "-extendedAnalyse";
+    private static final String ESCAPE_ANALYSIS = "-escapeAnalysis";
     private static final String JAVAC_FLAG = "-javac";
     private static final String JAVAC_END_FLAT = "-endjavac";
     private static final String HELP_STRING
@@ -65,8 +66,10 @@ public class InputOutput {
             + "-s_mess:    suppress messages (no messages printed)\n"
             + "-s_all:     suppress all (only errors printed)\n"
             + "-extendedAnalyse: Carry an analysis on the non-milled classes to detected potential problems\n"
+            + "-escapeAnalysis:  Leave arrays that never escape the method allocating them unwrapped, and report\n"
+            + "                  the fraction of array allocations left unwrapped\n"
             + "Millr's argument format is thus as follows:\n\n"
-            + "-i {path}+ {-o path}? {-f}? {-w}? {-h}? {-v}? ... {-extendedAnalyse}? \n\n"
+            + "-i {path}+ {-o path}? {-f}? {-w}? {-h}? {-v}? ... {-extendedAnalyse}? {-escapeAnalysis}? \n\n"
             + "The only compulsory argument is -i, followed by one or more input locations. The order of the blocks\n"
             + "is not important, with exception of the fact that the input and output locations must immediately\n"
             + "follow the respective flags -i and -o. An output location is optional, but at most one can be given.";
@@ -88,6 +91,7 @@ public class InputOutput {
     private boolean wipeOutput;
     private boolean overWrite;
     private boolean extendedAnalysis;
+    private boolean escapeAnalysis;
 
     /**
      * Private singleton constructor.
@@ -105,6 +109,7 @@ public class InputOutput {
         wipeOutput = false;
         overWrite = false;
         extendedAnalysis = false;
+        escapeAnalysis = false;
     }
 
     /**
@@ -392,6 +397,16 @@ public class InputOutput {
         return extendedAnalysis;
     }
 
+    /**
+     * Return true if the user indicated that arrays which never escape the
+     * method that allocates them should be left unwrapped.
+     *
+     * @return true if escape analysis should be performed, false otherwise
+     */
+    boolean shouldPerformEscapeAnalysis() {
+        return escapeAnalysis;
+    }
+
     /**
      * Randomly produce a 15 characters long string of character that is
      * compatible to be the name of a method. It is statically ensured that each
@@ -520,6 +535,8 @@ public class InputOutput {
                 overWrite = true;
             } else if (argument.equals(WIPE_OUTPUT_FLAG)) {
                 wipeOutput = true;
+            } else if (argument.equals(ESCAPE_ANALYSIS)) {
+                escapeAnalysis = true;
             } else if (argument.equals(INPUT_FLAG)) {
                 readingInputArgs = true;
                 readingOutputArgs = false;
@@ -11,6 +11,7 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 //import org.apache.tools.ant.AntClassLoader;
 
+import xyz.acygn.millr.CoreArrayAnalysis.ArrayEscapeAnalysis;
 import xyz.acygn.millr.CoreArrayAnalysis.CoreArrayAnalysis;
 import xyz.acygn.millr.messages.NoSuchClassException;
 import xyz.acygn.millr.Reason;
@@ -333,6 +334,9 @@ public class Mill {
             }
             updateGlobalCollection();
             MessageUtil.message("[3/7] -> Array transformation complete", true).emit();
+            if (inputOutput.shouldPerformEscapeAnalysis()) {
+                ArrayEscapeAnalysis.report();
+            }
 
             // [5/7] introspection transformation
             for (SubProject sp : subProjectsToMill) {
@@ -7,9 +7,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -24,11 +26,12 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.TypePath;
-import org.objectweb.asm.commons.AnalyzerAdapter;
 import xyz.acygn.millr.messages.TransformationFailedException;
 
 /**
- *
+ * Replaces the use of JVM monitors on milled objects with emulated monitors
+ * (<code>MilledMonitor</code>), which unlike JVM monitors can be accessed via
+ * a standin when the object is stored on a different system.
  *
  * @author thomasc
  */
@@ -43,11 +46,40 @@ public class SynchronizedTransformation extends Transformation implements Opcode
         return "synchronized Transformation ";
     }
 
-    static final String COUNTDOWNLATCHClASS = "java.util.concurrent.CountDownLatch";
-    static final String COUNTDOWNLATCHDesc = "Ljava/util/concurrent/CountDownLatch;";
-    static final String doneLatch = "_millr_doneLatch";
-    static final String startLatch = "_millr_startLatch";
- 
+    /**
+     * The internal name of the interface implemented by all milled classes to
+     * give access to their emulated monitors.
+     */
+    static final String HAS_SYNC_METHODS = "xyz/acygn/millr/util/hasSyncMethods";
+
+    /**
+     * The internal name of the class used to emulate monitors.
+     */
+    static final String MILLED_MONITOR = "xyz/acygn/millr/util/MilledMonitor";
+
+    /**
+     * The descriptor of the class used to emulate monitors.
+     */
+    static final String MILLED_MONITOR_DESC = "L" + MILLED_MONITOR + ";";
+
+    /**
+     * The name of the field, added to each milled class, that holds the
+     * object's emulated monitor. The monitor is created lazily, so the field
+     * is <code>null</code> until the object is first locked.
+     */
+    static final String monitorField = "_millr_monitor";
+
+    /**
+     * The name of the method, added to each milled class, that returns the
+     * object's emulated monitor (creating it if necessary).
+     */
+    static final String getMonitor = "_millr_getMonitor";
+
+    /**
+     * The name of the method, added to each milled class, that creates the
+     * object's emulated monitor.
+     */
+    static final String createMonitor = "_millr_createMonitor";
 
     @Override
     Instance getNewInstance(ClassReader cr) {
@@ -83,176 +115,423 @@ public class SynchronizedTransformation extends Transformation implements Opcode
         public TransformationInstance(ClassReader cr) {
             super(cr);
             cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
-            if ((cr.getAccess() & Opcodes.ACC_INTERFACE) != 0){
-                cv = cw;
-            }
-            else {
-                cv = new ClassVisitorRunnableTransformation(Opcodes.ASM6, cr.getClassName(), cw);
-            }
+            cv = new ClassVisitorRunnableTransformation(Opcodes.ASM6, cr.getClassName(), cw);
         }
 
     }
 
+    /**
+     * Adds an emulated monitor to a class (via implementing
+     * <code>hasSyncMethods</code>), and rewrites all the monitor operations in
+     * its methods to use emulated monitors where the object in question is
+     * milled.
+     */
     class ClassVisitorRunnableTransformation extends ClassVisitor {
 
         final String nameClass;
 
+        /**
+         * Whether the class being transformed is an interface. Interfaces
+         * can't hold monitors, but may still contain code that locks other
+         * objects.
+         */
+        boolean isInterface;
+
         public ClassVisitorRunnableTransformation(int api, String nameClass, ClassVisitor classVisitor) {
             super(api, classVisitor);
             this.nameClass = nameClass;
         }
 
-
-
         @Override
         public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-            interfaces = (interfaces == null) ? new String[0] : interfaces;
-            String[] newInterface = new String[interfaces.length + 1];
-            System.arraycopy(interfaces, 0, newInterface, 0, interfaces.length);
-            newInterface[newInterface.length  -1] = "xyz/acygn/millr/util/hasSyncMethods";
-            super.visit(version, access, name, signature, superName, newInterface);
+            isInterface = (access & ACC_INTERFACE) != 0;
+            if (!isInterface) {
+                interfaces = (interfaces == null) ? new String[0] : interfaces;
+                String[] newInterface = new String[interfaces.length + 1];
+                System.arraycopy(interfaces, 0, newInterface, 0, interfaces.length);
+                newInterface[newInterface.length - 1] = HAS_SYNC_METHODS;
+                interfaces = newInterface;
+            }
+            super.visit(version, access, name, signature, superName, interfaces);
         }
 
         @Override
         public void visitEnd() {
-            FieldVisitor fv = super.visitField(Opcodes.ACC_PRIVATE, doneLatch, "Ljava/util/concurrent/CountDownLatch;", null, null);
+            if (!isInterface) {
+                addMonitorMembers();
+            }
+            super.visitEnd();
+        }
+
+        /**
+         * Adds the field holding the emulated monitor, and the implementations
+         * of the methods of <code>hasSyncMethods</code>. The field is
+         * transient, as a monitor is specific to the system on which the
+         * object is stored; and volatile, because it's lazily initialised via
+         * double-checked locking (the only use of the object's JVM monitor).
+         * <p>
+         * The methods are written directly to the class writer, so that they
+         * aren't themselves transformed.
+         */
+        private void addMonitorMembers() {
+            FieldVisitor fv = cv.visitField(ACC_PRIVATE | ACC_VOLATILE | ACC_TRANSIENT,
+                    monitorField, MILLED_MONITOR_DESC, null, null);
             fv.visitEnd();
 
-            MethodVisitor mv = super.visitMethod(ACC_PUBLIC, "startLock", "()V", null, null);
+            /* private MilledMonitor _millr_getMonitor() {
+                   MilledMonitor m = _millr_monitor;
+                   return m != null ? m : _millr_createMonitor();
+               } */
+            MethodVisitor mv = cv.visitMethod(ACC_PRIVATE, getMonitor, "()" + MILLED_MONITOR_DESC, null, null);
             mv.visitCode();
-            Label l0 = new Label();
-            Label l1 = new Label();
-            Label l2 = new Label();
-            mv.visitTryCatchBlock(l0, l1, l2, "java/lang/InterruptedException");
-            mv.visitLabel(l0);
-            mv.visitTypeInsn(NEW, "java/util/concurrent/CountDownLatch");
-            mv.visitInsn(DUP);
-            mv.visitInsn(ICONST_0);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/util/concurrent/CountDownLatch", "<init>", "(I)V", false);
-            mv.visitVarInsn(ASTORE, 1);
-            mv.visitTypeInsn(NEW, "xyz/acygn/millr/util/LatchThread");
-            mv.visitInsn(DUP);
+            Label slowPath = new Label();
             mv.visitVarInsn(ALOAD, 0);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitMethodInsn(INVOKESPECIAL, "xyz/acygn/millr/util/LatchThread", "<init>", "(Lxyz/acygn/millr/util/hasSyncMethods;Ljava/util/concurrent/CountDownLatch;)V", false);
-            mv.visitVarInsn(ASTORE, 2);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Thread", "run", "()V", false);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/concurrent/CountDownLatch", "await", "()V", false);
-            mv.visitLabel(l1);
-            Label l3 = new Label();
-            mv.visitJumpInsn(GOTO, l3);
-            mv.visitLabel(l2);
-            mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{"java/lang/InterruptedException"});
-            mv.visitVarInsn(ASTORE, 1);
-            mv.visitTypeInsn(NEW, "java/lang/RuntimeException");
-            mv.visitInsn(DUP);
-            mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+            mv.visitFieldInsn(GETFIELD, nameClass, monitorField, MILLED_MONITOR_DESC);
             mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
-            mv.visitLdcInsn("Interupted Exception thrown by startLatch: this case should have never happened");
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/InterruptedException", "getMessage", "()Ljava/lang/String;", false);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/RuntimeException", "<init>", "(Ljava/lang/String;)V", false);
-            mv.visitInsn(ATHROW);
-            mv.visitLabel(l3);
-            mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
-            mv.visitInsn(RETURN);
-            mv.visitMaxs(4, 3);
+            mv.visitJumpInsn(IFNULL, slowPath);
+            mv.visitInsn(ARETURN);
+            mv.visitLabel(slowPath);
+            mv.visitInsn(POP);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, nameClass, createMonitor, "()" + MILLED_MONITOR_DESC, false);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(2, 1);
             mv.visitEnd();
 
-            mv = super.visitMethod(ACC_PUBLIC + ACC_SYNCHRONIZED, "getLock", "(Ljava/util/concurrent/CountDownLatch;)V", null, null);
+            /* private synchronized MilledMonitor _millr_createMonitor() {
+                   if (_millr_monitor == null) {
+                       _millr_monitor = new MilledMonitor();
+                   }
+                   return _millr_monitor;
+               } */
+            mv = cv.visitMethod(ACC_PRIVATE | ACC_SYNCHRONIZED, createMonitor, "()" + MILLED_MONITOR_DESC, null, null);
             mv.visitCode();
-            Label l10 = new Label();
-            Label l11 = new Label();
-            Label l12 = new Label();
-            mv.visitTryCatchBlock(l10, l11, l12, "java/lang/InterruptedException");
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/concurrent/CountDownLatch", "countDown", "()V", false);
+            Label done = new Label();
             mv.visitVarInsn(ALOAD, 0);
-            mv.visitTypeInsn(NEW, "java/util/concurrent/CountDownLatch");
+            mv.visitFieldInsn(GETFIELD, nameClass, monitorField, MILLED_MONITOR_DESC);
             mv.visitInsn(DUP);
-            mv.visitInsn(ICONST_0);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/util/concurrent/CountDownLatch", "<init>", "(I)V", false);
-            mv.visitFieldInsn(PUTFIELD, nameClass, doneLatch, "Ljava/util/concurrent/CountDownLatch;");
-            mv.visitLabel(l10);
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, nameClass, doneLatch, "Ljava/util/concurrent/CountDownLatch;");
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/concurrent/CountDownLatch", "await", "()V", false);
-            mv.visitLabel(l11);
-            Label l13 = new Label();
-            mv.visitJumpInsn(GOTO, l13);
-            mv.visitLabel(l12);
-            mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{"java/lang/InterruptedException"});
-            mv.visitVarInsn(ASTORE, 2);
-            mv.visitTypeInsn(NEW, "java/lang/RuntimeException");
+            mv.visitJumpInsn(IFNONNULL, done);
+            mv.visitInsn(POP);
+            mv.visitTypeInsn(NEW, MILLED_MONITOR);
             mv.visitInsn(DUP);
-            mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+            mv.visitMethodInsn(INVOKESPECIAL, MILLED_MONITOR, "<init>", "()V", false);
             mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
-            mv.visitLdcInsn("Interupted Exception thrown by doneLatch: this case should have never happened");
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/InterruptedException", "getMessage", "()Ljava/lang/String;", false);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/RuntimeException", "<init>", "(Ljava/lang/String;)V", false);
-            mv.visitInsn(ATHROW);
-            mv.visitLabel(l13);
-            mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
-            mv.visitInsn(RETURN);
-            mv.visitMaxs(4, 3);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitInsn(SWAP);
+            mv.visitFieldInsn(PUTFIELD, nameClass, monitorField, MILLED_MONITOR_DESC);
+            mv.visitLabel(done);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(3, 1);
             mv.visitEnd();
 
-            mv = super.visitMethod(ACC_PUBLIC, "releaseLock", "()V", null, null);
+            addMonitorDelegate("startLock", "()V", "lock", null);
+            addMonitorDelegate("releaseLock", "()V", "unlock", null);
+            addMonitorDelegate("waitLock", "(JI)V", "await",
+                    new String[]{"java/lang/InterruptedException"});
+            addMonitorDelegate("notifyLock", "()V", "signal", null);
+            addMonitorDelegate("notifyAllLock", "()V", "signalAll", null);
+        }
+
+        /**
+         * Adds a public method that forwards its arguments to a method of the
+         * object's emulated monitor.
+         *
+         * @param name The name of the method to add.
+         * @param desc The descriptor of the method to add, and of the method
+         * of <code>MilledMonitor</code> to forward to.
+         * @param monitorMethod The method of <code>MilledMonitor</code> to
+         * forward to.
+         * @param exceptions The internal names of the checked exceptions that
+         * the method can throw, or <code>null</code> if there are none.
+         */
+        private void addMonitorDelegate(String name, String desc, String monitorMethod, String[] exceptions) {
+            MethodVisitor mv = cv.visitMethod(ACC_PUBLIC, name, desc, null, exceptions);
             mv.visitCode();
             mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, nameClass, doneLatch, "Ljava/util/concurrent/CountDownLatch;");
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/concurrent/CountDownLatch", "countDown", "()V", false);
+            mv.visitMethodInsn(INVOKESPECIAL, nameClass, getMonitor, "()" + MILLED_MONITOR_DESC, false);
+            int local = 1;
+            for (Type arg : Type.getArgumentTypes(desc)) {
+                mv.visitVarInsn(arg.getOpcode(ILOAD), local);
+                local += arg.getSize();
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, MILLED_MONITOR, monitorMethod, desc, false);
             mv.visitInsn(RETURN);
-            mv.visitMaxs(1, 1);
+            mv.visitMaxs(local, local);
             mv.visitEnd();
         }
-        
+
         @Override
-        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions){
-            return new SynchronizedMethodVisitor(nameClass, access, name, desc, super.visitMethod(access, name, desc, signature, exceptions));
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            /* Synchronized instance methods lock the emulated monitor
+               explicitly, rather than the JVM's monitor. Static methods lock
+               the class object, which is never milled, and native methods
+               can't be changed. */
+            boolean emulateSynchronized = (access & ACC_SYNCHRONIZED) != 0
+                    && (access & (ACC_STATIC | ACC_NATIVE | ACC_ABSTRACT)) == 0;
+            if (emulateSynchronized) {
+                access &= ~ACC_SYNCHRONIZED;
+            }
+            return new SynchronizedMethodVisitor(nameClass, emulateSynchronized,
+                    super.visitMethod(access, name, desc, signature, exceptions));
         }
-
     }
 
-    class SynchronizedMethodVisitor extends AnalyzerAdapter {
+    /**
+     * Rewrites the monitor operations in a method. <code>MONITORENTER</code>
+     * and <code>MONITOREXIT</code> call <code>startLock</code> and
+     * <code>releaseLock</code> if the object in question is milled, and use
+     * the JVM's monitor otherwise (the object's class can't change, so the
+     * same choice is made on entry and exit). Calls to <code>wait</code>,
+     * <code>notify</code> and <code>notifyAll</code> are redirected to
+     * <code>MilledMonitor</code>, which makes the same choice. If the method
+     * was synchronized, it locks the emulated monitor of <code>this</code> on
+     * entry, and unlocks it on every exit (normal or exceptional).
+     */
+    class SynchronizedMethodVisitor extends MethodVisitor {
+
+        final String nameClass;
 
-        public SynchronizedMethodVisitor(String nameClass, int access, String name, String desc, MethodVisitor mv) {
-            super(Opcodes.ASM6, nameClass, access, name, desc, mv);
+        /**
+         * Whether the method was a synchronized instance method, and thus
+         * needs to lock <code>this</code> for its entire duration.
+         */
+        final boolean emulateSynchronized;
+
+        /**
+         * The start of the region of code during which a synchronized method
+         * holds the lock.
+         */
+        final Label lockedStart = new Label();
+
+        /**
+         * The local variables that hold the tokens returned by
+         * <code>MilledMonitor.enter</code>, for the
+         * <code>synchronized</code> blocks that have been rewritten to use
+         * them.
+         */
+        final Set<Integer> tokenLocals = new HashSet<>();
+
+        /**
+         * The opcodes of the last two instructions visited (the most recent
+         * first), or -1 if there was no such instruction or it was a jump
+         * target. Together with <code>previousVar</code>, this is used to
+         * recognise the instruction sequences javac generates around monitor
+         * instructions.
+         */
+        int previousOpcode = -1;
+        int previousOpcode2 = -1;
+
+        /**
+         * The local variable accessed by the last instruction, if it was a
+         * local variable instruction.
+         */
+        int previousVar = -1;
+
+        public SynchronizedMethodVisitor(String nameClass, boolean emulateSynchronized, MethodVisitor mv) {
+            super(Opcodes.ASM6, mv);
+            this.nameClass = nameClass;
+            this.emulateSynchronized = emulateSynchronized;
         }
 
         @Override
-        public void visitInsn(int opcode) {
+        public void visitCode() {
+            super.visitCode();
+            if (emulateSynchronized) {
+                super.visitVarInsn(ALOAD, 0);
+                super.visitMethodInsn(INVOKEVIRTUAL, nameClass, "startLock", "()V", false);
+                super.visitLabel(lockedStart);
+            }
+        }
+
+        /**
+         * Records an instruction for the purpose of recognising instruction
+         * sequences.
+         *
+         * @param opcode The instruction's opcode, or -1 for a label.
+         * @param var The local variable it accesses, or -1.
+         */
+        private void record(int opcode, int var) {
+            previousOpcode2 = opcode == -1 ? -1 : previousOpcode;
+            previousOpcode = opcode;
+            previousVar = var;
+        }
 
+        @Override
+        public void visitInsn(int opcode) {
             if (opcode == Opcodes.MONITORENTER) {
-                String desc = (String) stack.get(stack.size() - 1);
-                if (TypeUtil.isSystem(desc)) {
-                    super.visitInsn(opcode);
+                if (previousOpcode == ASTORE && previousOpcode2 == DUP) {
+                    /* javac's "dup; astore n; monitorenter": lock the token
+                       instead, and keep it in n for the MONITOREXITs. */
+                    super.visitMethodInsn(INVOKESTATIC, MILLED_MONITOR, "enter",
+                            "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+                    super.visitInsn(DUP);
+                    super.visitVarInsn(ASTORE, previousVar);
+                    super.visitInsn(MONITORENTER);
+                    tokenLocals.add(previousVar);
                 } else {
-                    super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, (String) stack.get(stack.size() - 1), "startLock", "()V", false);
+                    visitMonitorInsn(opcode, "startLock");
                 }
             } else if (opcode == Opcodes.MONITOREXIT) {
-                String desc = (String) stack.get(stack.size() - 1);
-                if (TypeUtil.isSystem(desc)) {
-                    super.visitInsn(opcode);
+                if (previousOpcode == ALOAD && tokenLocals.contains(previousVar)) {
+                    super.visitInsn(DUP);
+                    super.visitMethodInsn(INVOKESTATIC, MILLED_MONITOR, "exit",
+                            "(Ljava/lang/Object;)V", false);
+                    super.visitInsn(MONITOREXIT);
                 } else {
-                    super.visitMethodInsn(Opcodes.INVOKEVIRTUAL, (String) stack.get(stack.size() - 1), "releaseLock", "()V", false);
+                    visitMonitorInsn(opcode, "releaseLock");
                 }
             } else {
+                if (emulateSynchronized && opcode >= IRETURN && opcode <= RETURN) {
+                    super.visitVarInsn(ALOAD, 0);
+                    super.visitMethodInsn(INVOKEVIRTUAL, nameClass, "releaseLock", "()V", false);
+                }
                 super.visitInsn(opcode);
             }
+            record(opcode, -1);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            super.visitVarInsn(opcode, var);
+            record(opcode, var);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            super.visitLabel(label);
+            record(-1, -1);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            super.visitIntInsn(opcode, operand);
+            record(opcode, -1);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            super.visitTypeInsn(opcode, type);
+            record(opcode, -1);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+            super.visitFieldInsn(opcode, owner, name, desc);
+            record(opcode, -1);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+            super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+            record(INVOKEDYNAMIC, -1);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            super.visitJumpInsn(opcode, label);
+            record(opcode, -1);
+        }
+
+        @Override
+        public void visitLdcInsn(Object cst) {
+            super.visitLdcInsn(cst);
+            record(LDC, -1);
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            super.visitIincInsn(var, increment);
+            record(IINC, var);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+            record(TABLESWITCH, -1);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+            record(LOOKUPSWITCH, -1);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String desc, int dims) {
+            super.visitMultiANewArrayInsn(desc, dims);
+            record(MULTIANEWARRAY, -1);
+        }
+
+        /**
+         * Writes code that performs a monitor operation on the object on top
+         * of the stack, using its emulated monitor if it has one and the JVM's
+         * monitor otherwise.
+         * <p>
+         * This is only used for monitor instructions that don't follow
+         * javac's pattern. It leaves the method's monitor instructions
+         * unbalanced, so the JIT will refuse to compile the method; for the
+         * common case, the monitor instructions are instead kept and applied
+         * to a token from <code>MilledMonitor.enter</code>.
+         *
+         * @param opcode The original monitor instruction.
+         * @param emulation The method of <code>hasSyncMethods</code> that
+         * emulates the instruction.
+         */
+        private void visitMonitorInsn(int opcode, String emulation) {
+            Label unmilled = new Label();
+            Label done = new Label();
+            super.visitInsn(DUP);
+            super.visitTypeInsn(INSTANCEOF, HAS_SYNC_METHODS);
+            super.visitJumpInsn(IFEQ, unmilled);
+            super.visitTypeInsn(CHECKCAST, HAS_SYNC_METHODS);
+            super.visitMethodInsn(INVOKEINTERFACE, HAS_SYNC_METHODS, emulation, "()V", true);
+            super.visitJumpInsn(GOTO, done);
+            super.visitLabel(unmilled);
+            super.visitInsn(opcode);
+            super.visitLabel(done);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            if (opcode == INVOKEVIRTUAL || opcode == INVOKEINTERFACE) {
+                String replacement = null;
+                if (name.equals("wait") && (desc.equals("()V") || desc.equals("(J)V") || desc.equals("(JI)V"))) {
+                    replacement = "waitOn";
+                } else if (name.equals("notify") && desc.equals("()V")) {
+                    replacement = "notifyOn";
+                } else if (name.equals("notifyAll") && desc.equals("()V")) {
+                    replacement = "notifyAllOn";
+                }
+                if (replacement != null) {
+                    /* These are final methods of Object, so the call can't
+                       refer to anything else, whatever the owner. */
+                    super.visitMethodInsn(INVOKESTATIC, MILLED_MONITOR, replacement,
+                            "(Ljava/lang/Object;" + desc.substring(1), false);
+                    record(INVOKESTATIC, -1);
+                    return;
+                }
+            }
+            super.visitMethodInsn(opcode, owner, name, desc, itf);
+            record(opcode, -1);
         }
 
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            if (emulateSynchronized) {
+                /* Release the lock if the method throws an exception. This
+                   handler must come after any handlers within the method, so
+                   that they get a chance to catch the exception first. */
+                Label lockedEnd = new Label();
+                Label handler = new Label();
+                super.visitLabel(lockedEnd);
+                super.visitLabel(handler);
+                super.visitVarInsn(ALOAD, 0);
+                super.visitMethodInsn(INVOKEVIRTUAL, nameClass, "releaseLock", "()V", false);
+                super.visitInsn(ATHROW);
+                super.visitTryCatchBlock(lockedStart, lockedEnd, handler, null);
+            }
+            super.visitMaxs(maxStack, maxLocals);
+        }
     }
 
 }
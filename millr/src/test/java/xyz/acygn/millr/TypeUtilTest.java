@@ -195,7 +195,7 @@ class TypeUtilTest {
     @Test
     void isArrayWrapper_shouldReturnFalseForOtherClasses() {
         assertAll(
-                () -> assertFalse(TypeUtil.isArrayWrapper(Type.getType(LatchThread.class))),
+                () -> assertFalse(TypeUtil.isArrayWrapper(Type.getType(MilledMonitor.class))),
                 () -> assertFalse(TypeUtil.isArrayWrapper(Type.getType(MillrTestImplementation.class))),
 //                () -> assertFalse(TypeUtil.isArrayWrapper(Type.getType(ObjectWeakHashMap.class))),
                 () -> assertFalse(TypeUtil.isArrayWrapper(Type.getType(RuntimeUnwrapper.class))),
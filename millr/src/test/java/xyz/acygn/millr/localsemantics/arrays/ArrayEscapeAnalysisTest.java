@@ -0,0 +1,164 @@
+package xyz.acygn.millr.localsemantics.arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import xyz.acygn.millr.CoreArrayAnalysis.ArrayEscapeAnalysis;
+import xyz.acygn.millr.Mill;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests for the escape analysis that lets millr leave arrays unwrapped (the
+ * <code>-escapeAnalysis</code> flag). Every way in which an array can escape
+ * the method that allocates it must cause the array to be wrapped; an array
+ * that stays within its method must not be wrapped.
+ */
+class ArrayEscapeAnalysisTest {
+    private static final String SAMPLE = EscapeAnalysisSample.class.getName();
+
+    private static Set<String> arrayLocal;
+    private static ClassNode milled;
+
+
+    /**
+     * Runs the analysis on the sample class, and mills it with the escape
+     * analysis turned on.
+     */
+    @BeforeAll
+    static void init() throws Exception {
+        arrayLocal = ArrayEscapeAnalysis.findArrayLocalMethods(new ClassReader(SAMPLE));
+
+        String classFile = SAMPLE.replace('.', '/') + ".class";
+        File input = new File(EscapeAnalysisSample.class.getClassLoader().getResource(classFile).toURI());
+        Path output = Files.createTempDirectory("millr-escape");
+        Mill.main(new String[]{"-f", "-escapeAnalysis", "-i", input.getPath(), "-o", output.toString()});
+
+        milled = new ClassNode();
+        try (InputStream in = Files.newInputStream(output.resolve(classFile))) {
+            new ClassReader(in).accept(milled, ClassReader.SKIP_FRAMES);
+        }
+    }
+
+
+    /**
+     * Tests whether a method of the milled sample, or any method generated
+     * from it (e.g. a renamed copy, or the body of a lambda within it), still
+     * allocates a plain Java array.
+     *
+     * @param name the name of the method in the original sample
+     * @return true if a plain array is allocated
+     */
+    private static boolean allocatesRawArray(String name) throws IOException {
+        boolean found = false;
+        boolean raw = false;
+        for (MethodNode mn : milled.methods) {
+            if (!mn.name.equals(name) && !mn.name.startsWith("millr" + name)
+                    && !mn.name.contains("$" + name + "$")) {
+                continue;
+            }
+            found = true;
+            for (AbstractInsnNode insn : mn.instructions.toArray()) {
+                int opcode = insn.getOpcode();
+                if (opcode == Opcodes.NEWARRAY || opcode == Opcodes.ANEWARRAY
+                        || opcode == Opcodes.MULTIANEWARRAY) {
+                    raw = true;
+                }
+            }
+        }
+        if (!found) {
+            throw new IOException("no milled method is named after " + name);
+        }
+        return raw;
+    }
+
+
+    /**
+     * An array that never leaves its method should be left unwrapped.
+     */
+    @Test
+    void localArray_shouldNotBeWrapped() throws IOException {
+        assertTrue(arrayLocal.contains("local()I"));
+        assertTrue(allocatesRawArray("local"));
+    }
+
+    /**
+     * An array of arrays should be left unwrapped if it, and the arrays it
+     * contains, never leave the method.
+     */
+    @Test
+    void localArrayOfArrays_shouldNotBeWrapped() throws IOException {
+        assertTrue(arrayLocal.contains("localArrayOfArrays()I"));
+        assertTrue(allocatesRawArray("localArrayOfArrays"));
+    }
+
+    /**
+     * An array stored in a field escapes, and should be wrapped.
+     */
+    @Test
+    void storedInField_shouldBeWrapped() throws IOException {
+        assertFalse(arrayLocal.contains("storedInField()I"));
+        assertFalse(allocatesRawArray("storedInField"));
+    }
+
+    /**
+     * A returned array escapes, and should be wrapped.
+     */
+    @Test
+    void returned_shouldBeWrapped() throws IOException {
+        assertFalse(arrayLocal.contains("returned()Ljava/lang/Object;"));
+        assertFalse(allocatesRawArray("returned"));
+    }
+
+    /**
+     * An array passed to a method that isn't milled escapes, and should be
+     * wrapped (millr unwraps it again for the call).
+     */
+    @Test
+    void passedToUnmilledMethod_shouldBeWrapped() throws IOException {
+        assertFalse(arrayLocal.contains("passedToUnmilledMethod()I"));
+        assertFalse(allocatesRawArray("passedToUnmilledMethod"));
+    }
+
+    /**
+     * An array stored into an array of arrays that came from elsewhere
+     * escapes, and should be wrapped.
+     */
+    @Test
+    void storedInArrayOfArrays_shouldBeWrapped() throws IOException {
+        assertFalse(arrayLocal.contains("storedInArrayOfArrays()I"));
+        assertFalse(allocatesRawArray("storedInArrayOfArrays"));
+    }
+
+    /**
+     * An array stored into a local array of arrays escapes if the array of
+     * arrays does, and then both should be wrapped.
+     */
+    @Test
+    void storedInEscapingArrayOfArrays_shouldBeWrapped() throws IOException {
+        assertFalse(arrayLocal.contains("storedInEscapingArrayOfArrays()I"));
+        assertFalse(allocatesRawArray("storedInEscapingArrayOfArrays"));
+    }
+
+    /**
+     * An array captured by a lambda escapes (it is passed to the lambda's
+     * factory), and should be wrapped.
+     */
+    @Test
+    void capturedByLambda_shouldBeWrapped() throws IOException {
+        assertFalse(arrayLocal.contains("capturedByLambda()Ljava/lang/Runnable;"));
+        assertFalse(allocatesRawArray("capturedByLambda"));
+    }
+}
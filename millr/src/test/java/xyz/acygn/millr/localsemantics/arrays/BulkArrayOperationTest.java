@@ -0,0 +1,181 @@
+package xyz.acygn.millr.localsemantics.arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import xyz.acygn.millr.Mill;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests that calls to <code>System.arraycopy</code> and to the bulk methods
+ * of <code>java.util.Arrays</code> behave the same once milled. The sample
+ * class is milled and loaded in its milled form; each of its methods must
+ * then return the same as the unmilled version, and must operate on the
+ * array wrappers rather than on unwrapped copies of the arrays.
+ */
+class BulkArrayOperationTest {
+    private static final String SAMPLE = BulkArraySample.class.getName();
+
+    private static Class<?> milledClass;
+    private static ClassNode milled;
+
+
+    /**
+     * Mills the sample class, and loads the milled version.
+     */
+    @BeforeAll
+    static void init() throws Exception {
+        String classFile = SAMPLE.replace('.', '/') + ".class";
+        File input = new File(BulkArraySample.class.getClassLoader().getResource(classFile).toURI());
+        Path output = Files.createTempDirectory("millr-bulk");
+        Mill.main(new String[]{"-f", "-i", input.getPath(), "-o", output.toString()});
+
+        byte[] bytecode = Files.readAllBytes(output.resolve(classFile));
+        milledClass = new MilledClassLoader(SAMPLE, bytecode).loadClass(SAMPLE);
+        milled = new ClassNode();
+        new ClassReader(bytecode).accept(milled, ClassReader.SKIP_FRAMES);
+    }
+
+
+    /**
+     * Calls a method of the milled sample and of the unmilled sample, and
+     * checks that they return the same.
+     *
+     * @param name the name of the method (the sample has no overloads)
+     */
+    private static void assertSameResult(String name) throws Exception {
+        Object expected = BulkArraySample.class.getMethod(name)
+                .invoke(new BulkArraySample());
+        Object actual = milledClass.getMethod(name)
+                .invoke(milledClass.newInstance());
+        assertEquals(expected, actual, name);
+    }
+
+    /**
+     * Lists the bulk array operations that a method of the milled sample
+     * still calls on unwrapped arrays.
+     *
+     * @param name the name of the method in the original sample
+     * @return the calls, as <code>owner.name</code>
+     */
+    private static List<String> unwrappedBulkCalls(String name) {
+        List<String> calls = new ArrayList<>();
+        for (MethodNode mn : milled.methods) {
+            if (!mn.name.equals(name)) {
+                continue;
+            }
+            for (AbstractInsnNode insn : mn.instructions.toArray()) {
+                if (!(insn instanceof MethodInsnNode)) {
+                    continue;
+                }
+                MethodInsnNode call = (MethodInsnNode) insn;
+                if ((call.owner.equals("java/lang/System") && call.name.equals("arraycopy"))
+                        || (call.owner.equals("java/util/Arrays")
+                        && Arrays.asList("fill", "sort", "copyOf", "copyOfRange").contains(call.name))) {
+                    calls.add(call.owner + "." + call.name);
+                }
+            }
+        }
+        return calls;
+    }
+
+
+    /**
+     * Every method should return the same when milled.
+     */
+    @Test
+    void milledResults_shouldMatchUnmilled() throws Exception {
+        for (Method m : BulkArraySample.class.getDeclaredMethods()) {
+            if (!m.isSynthetic()) {
+                assertSameResult(m.getName());
+            }
+        }
+    }
+
+    /**
+     * Copies of arrays of primitives should be made by the wrappers,
+     * including for <code>long</code>s and <code>double</code>s, whose
+     * elements take two stack slots.
+     */
+    @Test
+    void primitiveBulkOperations_shouldUseWrappers() {
+        for (String name : new String[]{"arraycopyInt", "arraycopyOverlappingLong",
+                "fillInt", "fillLong", "fillDouble", "sortInt", "sortLong", "sortDouble",
+                "copyOfInt", "copyOfLong", "copyOfDouble"}) {
+            assertEquals(new ArrayList<>(), unwrappedBulkCalls(name), name);
+        }
+    }
+
+    /**
+     * Bulk operations on arrays of objects should be made by the wrappers,
+     * including the generic <code>copyOf</code>, whose result the compiler
+     * casts to the type of the array.
+     */
+    @Test
+    void objectBulkOperations_shouldUseWrappers() {
+        for (String name : new String[]{"arraycopyObject", "fillObject", "sortObject",
+                "copyOfGeneric"}) {
+            assertEquals(new ArrayList<>(), unwrappedBulkCalls(name), name);
+        }
+    }
+
+    /**
+     * The <code>copyOf</code> that takes the type of the copy has no
+     * corresponding bulk operation, so it should be left on the generic path
+     * (which unwraps the array for the call).
+     */
+    @Test
+    void copyOfWithType_shouldBeLeftAlone() {
+        assertEquals(Arrays.asList("java/util/Arrays.copyOf"),
+                unwrappedBulkCalls("copyOfWithType"));
+    }
+
+
+    /**
+     * A class loader that loads the milled version of one class in preference
+     * to the unmilled version on the class path, and delegates everything
+     * else to its parent.
+     */
+    private static class MilledClassLoader extends ClassLoader {
+        private final String name;
+        private final byte[] bytecode;
+
+        MilledClassLoader(String name, byte[] bytecode) {
+            super(BulkArrayOperationTest.class.getClassLoader());
+            this.name = name;
+            this.bytecode = bytecode;
+        }
+
+        @Override
+        protected Class<?> loadClass(String className, boolean resolve)
+                throws ClassNotFoundException {
+            if (!className.equals(name)) {
+                return super.loadClass(className, resolve);
+            }
+            synchronized (getClassLoadingLock(className)) {
+                Class<?> c = findLoadedClass(className);
+                if (c == null) {
+                    c = defineClass(className, bytecode, 0, bytecode.length);
+                }
+                if (resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+    }
+}
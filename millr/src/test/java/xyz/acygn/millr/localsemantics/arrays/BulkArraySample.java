@@ -0,0 +1,220 @@
+package xyz.acygn.millr.localsemantics.arrays;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * Sample code for the bulk array operations. Each method copies, fills or
+ * sorts arrays via <code>System.arraycopy</code> or
+ * <code>java.util.Arrays</code>, and describes the result as a string, so
+ * that the milled and unmilled versions can be compared. The arrays of
+ * <code>long</code>s and <code>double</code>s matter because their elements
+ * take two slots on the stack.
+ *
+ * @see xyz.acygn.millr.ArrayRewriteMethodAdapter
+ */
+public class BulkArraySample {
+
+    /**
+     * Copies part of an array of <code>int</code>s into another array.
+     *
+     * @return A description of the result.
+     */
+    public String arraycopyInt() {
+        int[] src = {1, 2, 3, 4, 5};
+        int[] dest = new int[7];
+        System.arraycopy(src, 1, dest, 2, 3);
+        return Arrays.toString(dest);
+    }
+
+    /**
+     * Copies part of an array of <code>long</code>s over an overlapping
+     * part of the same array.
+     *
+     * @return A description of the result.
+     */
+    public String arraycopyOverlappingLong() {
+        long[] array = {1, 2, 3, 4, 5, 6};
+        System.arraycopy(array, 0, array, 2, 3);
+        return Arrays.toString(array);
+    }
+
+    /**
+     * Copies an array of strings into an array of objects.
+     *
+     * @return A description of the result.
+     */
+    public String arraycopyObject() {
+        String[] src = {"a", "b", "c"};
+        Object[] dest = new Object[4];
+        System.arraycopy(src, 0, dest, 1, 3);
+        return Arrays.toString(dest);
+    }
+
+    /**
+     * Fills an array of <code>int</code>s, and then part of it.
+     *
+     * @return A description of the result.
+     */
+    public String fillInt() {
+        int[] array = new int[5];
+        Arrays.fill(array, 7);
+        Arrays.fill(array, 1, 3, 9);
+        return Arrays.toString(array);
+    }
+
+    /**
+     * Fills an array of <code>long</code>s, and then part of it.
+     *
+     * @return A description of the result.
+     */
+    public String fillLong() {
+        long[] array = new long[5];
+        Arrays.fill(array, Long.MAX_VALUE);
+        Arrays.fill(array, 2, 4, -1L);
+        return Arrays.toString(array);
+    }
+
+    /**
+     * Fills an array of <code>double</code>s, and then part of it.
+     *
+     * @return A description of the result.
+     */
+    public String fillDouble() {
+        double[] array = new double[5];
+        Arrays.fill(array, 0.5);
+        Arrays.fill(array, 0, 2, Double.NaN);
+        return Arrays.toString(array);
+    }
+
+    /**
+     * Fills an array of strings, and then part of it.
+     *
+     * @return A description of the result.
+     */
+    public String fillObject() {
+        String[] array = new String[4];
+        Arrays.fill(array, "x");
+        Arrays.fill(array, 3, 4, null);
+        return Arrays.toString(array);
+    }
+
+    /**
+     * Sorts an array of <code>int</code>s, and part of another.
+     *
+     * @return A description of the result.
+     */
+    public String sortInt() {
+        int[] array = {5, -3, 9, 0, 2, 2};
+        Arrays.sort(array);
+        int[] partial = {5, 4, 3, 2, 1};
+        Arrays.sort(partial, 1, 4);
+        return Arrays.toString(array) + Arrays.toString(partial);
+    }
+
+    /**
+     * Sorts an array of <code>long</code>s, and part of another.
+     *
+     * @return A description of the result.
+     */
+    public String sortLong() {
+        long[] array = {Long.MAX_VALUE, 3, Long.MIN_VALUE, -7};
+        Arrays.sort(array);
+        long[] partial = {4, 3, 2, 1};
+        Arrays.sort(partial, 0, 2);
+        return Arrays.toString(array) + Arrays.toString(partial);
+    }
+
+    /**
+     * Sorts an array of <code>double</code>s, and part of another.
+     *
+     * @return A description of the result.
+     */
+    public String sortDouble() {
+        double[] array = {2.5, Double.NaN, -0.0, 0.0, -1.5};
+        Arrays.sort(array);
+        double[] partial = {4, 3, 2, 1};
+        Arrays.sort(partial, 2, 4);
+        return Arrays.toString(array) + Arrays.toString(partial);
+    }
+
+    /**
+     * Sorts an array of strings, and another with a comparator.
+     *
+     * @return A description of the result.
+     */
+    public String sortObject() {
+        String[] array = {"pear", "apple", "fig"};
+        Arrays.sort(array);
+        String[] reversed = {"pear", "apple", "fig"};
+        Arrays.sort(reversed, Comparator.reverseOrder());
+        return Arrays.toString(array) + Arrays.toString(reversed);
+    }
+
+    /**
+     * Makes longer and shorter copies of an array of <code>int</code>s.
+     *
+     * @return A description of the result.
+     */
+    public String copyOfInt() {
+        int[] array = {1, 2, 3};
+        int[] longer = Arrays.copyOf(array, 5);
+        int[] shorter = Arrays.copyOf(array, 2);
+        longer[0] = 10;
+        return Arrays.toString(array) + Arrays.toString(longer) + Arrays.toString(shorter);
+    }
+
+    /**
+     * Copies an array of <code>long</code>s, and a range of it.
+     *
+     * @return A description of the result.
+     */
+    public String copyOfLong() {
+        long[] array = {1, Long.MIN_VALUE, 3};
+        long[] longer = Arrays.copyOf(array, 4);
+        long[] range = Arrays.copyOfRange(array, 1, 5);
+        return Arrays.toString(longer) + Arrays.toString(range);
+    }
+
+    /**
+     * Copies an array of <code>double</code>s, and a range of it.
+     *
+     * @return A description of the result.
+     */
+    public String copyOfDouble() {
+        double[] array = {0.25, -0.0, Double.POSITIVE_INFINITY};
+        double[] shorter = Arrays.copyOf(array, 1);
+        double[] range = Arrays.copyOfRange(array, 1, 3);
+        return Arrays.toString(shorter) + Arrays.toString(range);
+    }
+
+    /**
+     * Copies an array of a type other than <code>Object[]</code> via the
+     * generic <code>copyOf</code>, which the compiler follows with a cast.
+     *
+     * @return A description of the result.
+     */
+    public String copyOfGeneric() {
+        String[] array = {"b", "a"};
+        String[] longer = Arrays.copyOf(array, 3);
+        longer[2] = "c";
+        String[] range = Arrays.copyOfRange(longer, 1, 3);
+        Arrays.sort(range);
+        return Arrays.toString(array) + Arrays.toString(longer) + Arrays.toString(range)
+                + longer[2].length();
+    }
+
+    /**
+     * Copies an array via the <code>copyOf</code> that takes the type of the
+     * copy, which has no bulk operation and so is left alone by millr.
+     *
+     * @return A description of the result.
+     */
+    public String copyOfWithType() {
+        Object[] array = {"x", "y"};
+        String[] copy = Arrays.copyOf(array, 3, String[].class);
+        copy[2] = "z";
+        return Arrays.toString(copy) + copy[0].length();
+    }
+}
@@ -0,0 +1,117 @@
+package xyz.acygn.millr.localsemantics.arrays;
+
+import java.util.Arrays;
+
+
+/**
+ * Sample code for the array escape analysis. Each method allocates an array
+ * and uses it; in all but the "local" methods, the array then escapes the
+ * method in a different way, so it has to be wrapped when milled. No method
+ * has an array in its descriptor, as that alone would make the analysis
+ * treat the method as non-local.
+ *
+ * @see xyz.acygn.millr.CoreArrayAnalysis.ArrayEscapeAnalysis
+ */
+public class EscapeAnalysisSample {
+    private int[] field;
+    private int[][] grid = new int[2][];
+
+
+    /**
+     * Uses an array as a scratch buffer that never leaves the method.
+     *
+     * @return 0 + 1 + 4 + 9.
+     */
+    public int local() {
+        int[] squares = new int[4];
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = i * i;
+        }
+        int sum = 0;
+        for (int square : squares) {
+            sum += square;
+        }
+        return sum;
+    }
+
+    /**
+     * Uses an array of arrays that, together with the arrays it contains,
+     * never leaves the method.
+     *
+     * @return 5.
+     */
+    public int localArrayOfArrays() {
+        int[][] table = new int[2][];
+        table[1] = new int[3];
+        table[1][2] = 5;
+        return table[1][2];
+    }
+
+    /**
+     * Stores an array in a field.
+     *
+     * @return 1.
+     */
+    public int storedInField() {
+        int[] array = new int[4];
+        array[0] = 1;
+        field = array;
+        return field[0];
+    }
+
+    /**
+     * Returns an array (as an <code>Object</code>, so that the descriptor
+     * contains no array).
+     *
+     * @return An array containing 1.
+     */
+    public Object returned() {
+        int[] array = new int[1];
+        array[0] = 1;
+        return array;
+    }
+
+    /**
+     * Passes an array to a method that isn't milled.
+     *
+     * @return 3.
+     */
+    public int passedToUnmilledMethod() {
+        int[] array = new int[4];
+        Arrays.fill(array, 3);
+        return array[0];
+    }
+
+    /**
+     * Stores an array into an array of arrays that came from a field.
+     *
+     * @return 4.
+     */
+    public int storedInArrayOfArrays() {
+        int[] array = new int[4];
+        grid[0] = array;
+        return grid[0].length;
+    }
+
+    /**
+     * Stores an array into a local array of arrays, which then escapes.
+     *
+     * @return 4.
+     */
+    public int storedInEscapingArrayOfArrays() {
+        int[][] table = new int[1][];
+        table[0] = new int[4];
+        grid = table;
+        return grid[0].length;
+    }
+
+    /**
+     * Captures an array in a lambda.
+     *
+     * @return A counter that counts up from 1.
+     */
+    public Runnable capturedByLambda() {
+        int[] counter = new int[1];
+        return () -> counter[0]++;
+    }
+}
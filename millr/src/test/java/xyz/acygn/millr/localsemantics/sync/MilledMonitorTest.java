@@ -0,0 +1,251 @@
+package xyz.acygn.millr.localsemantics.sync;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.acygn.millr.Mill;
+import xyz.acygn.millr.util.MilledMonitor;
+import xyz.acygn.millr.util.hasSyncMethods;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.FutureTask;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Tests that the emulated monitors of milled objects behave like JVM
+ * monitors. The sample class is milled, loaded in its milled form, and its
+ * methods are called reflectively; the state of its monitor is inspected via
+ * the field that millr adds to hold it.
+ */
+class MilledMonitorTest {
+    private static final String SAMPLE = MonitorSample.class.getName();
+
+    private static Class<?> milledClass;
+
+    private Object sample;
+
+
+    /**
+     * Mills the sample class, and loads the milled version.
+     */
+    @BeforeAll
+    static void init() throws Exception {
+        String classFile = SAMPLE.replace('.', '/') + ".class";
+        File input = new File(MonitorSample.class.getClassLoader().getResource(classFile).toURI());
+        Path output = Files.createTempDirectory("millr-monitor");
+        Mill.main(new String[]{"-f", "-i", input.getPath(), "-o", output.toString()});
+
+        byte[] bytecode = Files.readAllBytes(output.resolve(classFile));
+        milledClass = new MilledClassLoader(SAMPLE, bytecode).loadClass(SAMPLE);
+    }
+
+    @BeforeEach
+    void createSample() throws Exception {
+        sample = milledClass.newInstance();
+    }
+
+
+    /**
+     * Calls a method of the sample object.
+     *
+     * @param name the name of the method (the sample has no overloads)
+     * @param args the arguments to the method
+     * @return the method's return value
+     * @throws Throwable whatever the method throws
+     */
+    private Object call(String name, Object... args) throws Throwable {
+        for (Method m : milledClass.getMethods()) {
+            if (m.getName().equals(name)) {
+                try {
+                    return m.invoke(sample, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    /**
+     * Returns the emulated monitor of the sample object.
+     *
+     * @return the monitor, or null if it hasn't been created yet
+     */
+    private MilledMonitor monitor() throws ReflectiveOperationException {
+        Field f = milledClass.getDeclaredField("_millr_monitor");
+        f.setAccessible(true);
+        return (MilledMonitor) f.get(sample);
+    }
+
+    /**
+     * Creates a task that calls a method of the sample object.
+     *
+     * @param name the name of the method
+     * @param args the arguments to the method
+     * @return a task that makes the call, which can be run on another thread
+     */
+    private FutureTask<Object> task(String name, Object... args) {
+        return new FutureTask<>(() -> {
+            try {
+                return call(name, args);
+            } catch (Exception | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new Exception(ex);
+            }
+        });
+    }
+
+    /**
+     * Runs a task on a new thread.
+     *
+     * @param task the task
+     * @return the thread
+     */
+    private static Thread start(FutureTask<?> task) {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Calls a method of the sample object on a new thread.
+     *
+     * @param name the name of the method
+     * @param args the arguments to the method
+     * @return the result of the call, which can be waited for
+     */
+    private FutureTask<Object> callInAnotherThread(String name, Object... args) {
+        FutureTask<Object> task = task(name, args);
+        start(task);
+        return task;
+    }
+
+
+    /**
+     * The sample should really have been milled, or the other tests would
+     * only be testing the JVM's own monitors.
+     */
+    @Test
+    void sample_isMilled() {
+        assertTrue(hasSyncMethods.class.isAssignableFrom(milledClass));
+    }
+
+    /**
+     * A thread that holds the monitor can lock it again, via both
+     * synchronized methods and synchronized blocks; and once it has left them
+     * all, it no longer holds the monitor.
+     */
+    @Test
+    void monitor_isReentrant() throws Throwable {
+        assertEquals(5, call("reenter", 5));
+        assertFalse(monitor().isLocked());
+        assertEquals(0, callInAnotherThread("reenter", 0).get(10, SECONDS));
+    }
+
+    /**
+     * A thread waiting in a synchronized block releases the monitor, so that
+     * another thread can lock it to notify the waiter; the waiter then gets
+     * the monitor back.
+     */
+    @Test
+    void wait_isWokenByNotify() throws Throwable {
+        FutureTask<Object> taker = task("take");
+        Thread thread = start(taker);
+        /* Nothing else locks the monitor, so the taker can only block by
+           waiting on it. */
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        assertFalse(monitor().isLocked());
+
+        call("put", "handed over");
+        assertEquals("handed over", taker.get(10, SECONDS));
+        assertFalse(monitor().isLocked());
+    }
+
+    /**
+     * A timed wait that isn't notified should return once the timeout has
+     * elapsed, with the monitor held again until the method returns.
+     */
+    @Test
+    void timedWait_returnsAfterTimeout() throws Throwable {
+        long elapsed = (Long) callInAnotherThread("timedWait", 50L).get(10, SECONDS);
+        assertTrue(elapsed >= MILLISECONDS.toNanos(50), "waited " + elapsed + "ns");
+        assertFalse(monitor().isLocked());
+    }
+
+    /**
+     * Waiting on or notifying a monitor that isn't held is an error.
+     */
+    @Test
+    void waitAndNotify_requireTheMonitor() {
+        assertThrows(IllegalMonitorStateException.class, () -> call("waitUnheld"));
+        assertThrows(IllegalMonitorStateException.class, () -> call("notifyUnheld"));
+    }
+
+    /**
+     * An exception thrown out of a synchronized method releases the monitor.
+     */
+    @Test
+    void exceptionFromMethod_releasesMonitor() throws Throwable {
+        assertThrows(IllegalStateException.class, () -> call("throwFromMethod"));
+        assertFalse(monitor().isLocked());
+        assertEquals(0, callInAnotherThread("reenter", 0).get(10, SECONDS));
+    }
+
+    /**
+     * An exception thrown out of a synchronized block releases the monitor.
+     */
+    @Test
+    void exceptionFromBlock_releasesMonitor() throws Throwable {
+        assertThrows(IllegalStateException.class, () -> call("throwFromBlock"));
+        assertFalse(monitor().isLocked());
+        assertEquals(0, callInAnotherThread("reenter", 0).get(10, SECONDS));
+    }
+
+
+    /**
+     * A class loader that loads the milled version of one class in preference
+     * to the unmilled version on the class path, and delegates everything
+     * else to its parent.
+     */
+    private static class MilledClassLoader extends ClassLoader {
+        private final String name;
+        private final byte[] bytecode;
+
+        MilledClassLoader(String name, byte[] bytecode) {
+            super(MilledMonitorTest.class.getClassLoader());
+            this.name = name;
+            this.bytecode = bytecode;
+        }
+
+        @Override
+        protected Class<?> loadClass(String className, boolean resolve)
+                throws ClassNotFoundException {
+            if (!className.equals(name)) {
+                return super.loadClass(className, resolve);
+            }
+            synchronized (getClassLoadingLock(className)) {
+                Class<?> c = findLoadedClass(className);
+                if (c == null) {
+                    c = defineClass(className, bytecode, 0, bytecode.length);
+                }
+                if (resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+    }
+}
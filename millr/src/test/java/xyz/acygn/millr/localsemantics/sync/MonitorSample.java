@@ -0,0 +1,104 @@
+package xyz.acygn.millr.localsemantics.sync;
+
+
+/**
+ * Sample code for the emulated monitors of milled objects. Each method uses
+ * the monitor of the sample object in a different way, via
+ * <code>synchronized</code> methods, <code>synchronized</code> blocks, or
+ * both.
+ *
+ * @see xyz.acygn.millr.util.MilledMonitor
+ */
+public class MonitorSample {
+    private Object value;
+
+
+    /**
+     * Locks the monitor recursively, alternating between a
+     * <code>synchronized</code> method and a <code>synchronized</code> block.
+     *
+     * @param depth the number of further times to lock the monitor
+     * @return <code>depth</code>
+     */
+    public synchronized int reenter(int depth) {
+        if (depth == 0) {
+            return 0;
+        }
+        synchronized (this) {
+            return 1 + reenter(depth - 1);
+        }
+    }
+
+    /**
+     * Hands a value to a thread waiting in <code>take</code>.
+     *
+     * @param v the value; must not be null
+     */
+    public synchronized void put(Object v) {
+        value = v;
+        notifyAll();
+    }
+
+    /**
+     * Waits, within a <code>synchronized</code> block, for a value to be
+     * handed over via <code>put</code>.
+     *
+     * @return the value
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Object take() throws InterruptedException {
+        synchronized (this) {
+            while (value == null) {
+                wait();
+            }
+            Object v = value;
+            value = null;
+            return v;
+        }
+    }
+
+    /**
+     * Waits with a timeout, without anything notifying the monitor.
+     *
+     * @param millis the timeout
+     * @return the time spent waiting, in nanoseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized long timedWait(long millis) throws InterruptedException {
+        long start = System.nanoTime();
+        wait(millis);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Waits without holding the monitor.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void waitUnheld() throws InterruptedException {
+        wait();
+    }
+
+    /**
+     * Notifies the monitor without holding it.
+     */
+    public void notifyUnheld() {
+        notify();
+    }
+
+    /**
+     * Throws an exception out of a <code>synchronized</code> method.
+     */
+    public synchronized void throwFromMethod() {
+        throw new IllegalStateException("thrown from a synchronized method");
+    }
+
+    /**
+     * Throws an exception out of a <code>synchronized</code> block.
+     */
+    public void throwFromBlock() {
+        synchronized (this) {
+            throw new IllegalStateException("thrown from a synchronized block");
+        }
+    }
+}
@@ -240,8 +240,8 @@ class FieldComponent<T> implements Comparable<FieldComponent> {
      */
     public boolean isComingFromMillr() {
         try {
-            return (getName().equals("_millr_doneLatch") || getName().equals("_millr_startLatch"))
-                    && getDeclaredWeakClassField().getInternalClass().equals(java.util.concurrent.CountDownLatch.class);
+            return getName().equals("_millr_monitor")
+                    && getDeclaredWeakClassField().getInternalClass().equals(xyz.acygn.millr.util.MilledMonitor.class);
         }
         catch( Throwable t){
             System.out.println("insn");
@@ -1,13 +1,18 @@
 package xyz.acygn.mokapot.benchmarksuite.benchmark;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.rmi.NotBoundException;
 import java.util.Arrays;
 import java.util.DoubleSummaryStatistics;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import xyz.acygn.mokapot.benchmarksuite.programs.Benchmarkable;
+import xyz.acygn.mokapot.util.LatencyHistogram;
 
 
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkPhase.POST_DISTRIBUTION;
@@ -21,10 +26,20 @@ import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.Benchma
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.AVG_EXEC;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MAX_DIST;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MAX_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MAX_LOAD;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MIN_DIST;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MIN_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P50_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P50_LOAD;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P90_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P90_LOAD;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P999_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P999_LOAD;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P99_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P99_LOAD;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.STDDEV_DIST;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.STDDEV_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.THROUGHPUT;
 
 /**
  * <p>
@@ -54,6 +69,8 @@ public class BenchmarkImp implements Benchmark {
     private List<RemoteProcess> peers;
     private int localPort;
     private final BenchmarkGroup benchmarkGroup;
+    private final int clientThreads;
+    private final double targetRate;
 
 
     /**
@@ -67,19 +84,27 @@ public class BenchmarkImp implements Benchmark {
      * @param executionIterations    how many times each section of the program is to be executed
      * @param peers         any remote hosts available for connecting
      * @param localPort     the tcp port on which the example program should communicate
+     * @param clientThreads the number of threads that call the program at once in the
+     *                      throughput mode, or 0 to skip the throughput mode
+     * @param targetRate    the total rate, in calls per second, at which the client threads
+     *                      of the throughput mode call the program
      */
     BenchmarkImp(Benchmarkable benchmarkable,
                  int distributionIterations,
                  int executionIterations,
                  List<RemoteProcess> peers,
                  int localPort,
-                 BenchmarkGroup benchmarkGroup) {
+                 BenchmarkGroup benchmarkGroup,
+                 int clientThreads,
+                 double targetRate) {
         this.benchmarkable = benchmarkable;
         this.distributionIterations = distributionIterations;
         this.executionIterations = executionIterations;
         this.peers = peers;
         this.localPort = localPort;
         this.benchmarkGroup = benchmarkGroup;
+        this.clientThreads = clientThreads;
+        this.targetRate = targetRate;
     }
 
 
@@ -92,7 +117,9 @@ public class BenchmarkImp implements Benchmark {
         double avgDist, avgExec, stdDist, stdExec;
         double[] distTimes = new double[distributionIterations];
         double[] execTimes = new double[executionIterations];
+        LatencyHistogram execHistogram = new LatencyHistogram();
         double start;
+        long elapsed;
         int consecutiveExceptions = 0;
         int distributionExceptions = 0, executionExceptions = 0;
 
@@ -167,7 +194,9 @@ public class BenchmarkImp implements Benchmark {
                 } else {
                     start = System.nanoTime();
                     benchmarkable.executeAlgorithm();
-                    execTimes[testIndex] = (System.nanoTime() - start) / 1000;
+                    elapsed = (long) (System.nanoTime() - start);
+                    execTimes[testIndex] = elapsed / 1000.0;
+                    execHistogram.record(elapsed);
                     consecutiveExceptions = 0;
                     LOGGER.log(Level.FINE, benchmarkable.getClass().getSimpleName() + " iteration complete.");
 
@@ -194,6 +223,13 @@ public class BenchmarkImp implements Benchmark {
                 benchmarkable.fix(WHILE_EXECUTION_BOTTOM);
         }
 
+        BenchmarkResult result = new BenchmarkResult(
+                getProgram().getSimpleName(), distributionIterations, executionIterations);
+
+        if (clientThreads > 0) {
+            measureUnderLoad(result);
+        }
+
         if (benchmarkable.requiresFix(POST_EXECUTION)) benchmarkable.fix(POST_EXECUTION);
 
         System.out.print(" (" + distributionExceptions + "," + executionExceptions
@@ -217,7 +253,9 @@ public class BenchmarkImp implements Benchmark {
         stdDist = Math.sqrt(Arrays.stream(distTimes).map((val) -> Math.pow((val - avgDist), 2)).sum() / distTimes.length);
         stdExec = Math.sqrt(Arrays.stream(execTimes).map((val) -> Math.pow((val - avgExec), 2)).sum() / execTimes.length);
 
-        return new BenchmarkResult(getProgram().getSimpleName(), distributionIterations, executionIterations)
+        LatencyHistogram.Snapshot execPercentiles = execHistogram.snapshot();
+
+        return result
                 .withMetric(AVG_DIST, avgDist)
                 .withMetric(AVG_EXEC, avgExec)
                 .withMetric(MIN_DIST, minDist)
@@ -225,7 +263,107 @@ public class BenchmarkImp implements Benchmark {
                 .withMetric(MAX_DIST, maxDist)
                 .withMetric(MAX_EXEC, maxExec)
                 .withMetric(STDDEV_DIST, stdDist)
-                .withMetric(STDDEV_EXEC, stdExec);
+                .withMetric(STDDEV_EXEC, stdExec)
+                .withMetric(P50_EXEC, execPercentiles.getP50Nanos() / 1000.0)
+                .withMetric(P90_EXEC, execPercentiles.getP90Nanos() / 1000.0)
+                .withMetric(P99_EXEC, execPercentiles.getP99Nanos() / 1000.0)
+                .withMetric(P999_EXEC, execPercentiles.getP999Nanos() / 1000.0);
+    }
+
+    /**
+     * HELPER: Runs the throughput mode of the benchmark, in which the program's
+     * executeAlgorithm() is called from several client threads at once, each making
+     * executionIterations calls on a fixed schedule so that the calls as a whole arrive at
+     * the target rate. The schedule doesn't wait for slow calls: a client that falls behind
+     * makes its next call straight away.
+     * <p>
+     * Each call's latency is measured from the time at which the schedule said it should
+     * start, rather than the time at which it actually started. Otherwise, a stall would
+     * delay the calls queued up behind it without any of that delay being recorded (the
+     * "coordinated omission" problem), and the high percentiles would look much better than
+     * what a caller issuing requests at this rate would see.
+     * </p><p>
+     * Programs that need fixing between executions can't be called concurrently, so they
+     * are skipped in this mode.
+     * </p>
+     *
+     * @param result the result to add the throughput and latency metrics to
+     * @throws IOException if a client thread failed 5 times in a row
+     */
+    private void measureUnderLoad(BenchmarkResult result) throws IOException {
+        if (benchmarkable.requiresFix(WHILE_EXECUTION_TOP)
+                || benchmarkable.requiresFix(WHILE_EXECUTION_BOTTOM)) {
+            System.out.print(" (no throughput mode, needs fixing between executions)");
+            return;
+        }
+
+        final long callInterval = (long) (1e9 * clientThreads / targetRate);
+        final LatencyHistogram loadHistogram = new LatencyHistogram();
+        final AtomicInteger loadExceptions = new AtomicInteger();
+        final AtomicReference<Exception> fatalException = new AtomicReference<>();
+        final Thread[] clients = new Thread[clientThreads];
+        final long origin = System.nanoTime();
+
+        for (int t = 0; t < clientThreads; t++) {
+            // stagger the clients so that their calls interleave evenly
+            final long firstCall = origin + t * callInterval / clientThreads;
+
+            clients[t] = new Thread(() -> {
+                int consecutiveExceptions = 0;
+
+                for (int i = 0; i < executionIterations && fatalException.get() == null; i++) {
+                    final long intendedStart = firstCall + i * callInterval;
+                    long now;
+                    while ((now = System.nanoTime()) - intendedStart < 0) {
+                        LockSupport.parkNanos(intendedStart - now);
+                    }
+
+                    try {
+                        benchmarkable.executeAlgorithm();
+                        loadHistogram.record(System.nanoTime() - intendedStart);
+                        consecutiveExceptions = 0;
+                    }
+                    catch (Exception e) {
+                        loadExceptions.incrementAndGet();
+                        LOGGER.log(Level.INFO, benchmarkable.getClass().getSimpleName() + " failed concurrent call:", e);
+
+                        if (++consecutiveExceptions >= 5) {
+                            fatalException.compareAndSet(null, e);
+                        }
+                    }
+                }
+            }, "benchmark-client-" + t);
+            clients[t].start();
+        }
+
+        try {
+            for (Thread client : clients) {
+                client.join();
+            }
+        }
+        catch (InterruptedException e) {
+            for (Thread client : clients) {
+                client.interrupt();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted during throughput mode");
+        }
+
+        final long loadDuration = System.nanoTime() - origin;
+        System.out.print(" (" + loadExceptions.get() + ") concurrent failures");
+
+        if (fatalException.get() != null) {
+            throw new IOException("repeated failures in throughput mode", fatalException.get());
+        }
+
+        LatencyHistogram.Snapshot loadPercentiles = loadHistogram.snapshot();
+
+        result.withMetric(THROUGHPUT, loadPercentiles.getCount() * 1e9 / loadDuration)
+                .withMetric(P50_LOAD, loadPercentiles.getP50Nanos() / 1000.0)
+                .withMetric(P90_LOAD, loadPercentiles.getP90Nanos() / 1000.0)
+                .withMetric(P99_LOAD, loadPercentiles.getP99Nanos() / 1000.0)
+                .withMetric(P999_LOAD, loadPercentiles.getP999Nanos() / 1000.0)
+                .withMetric(MAX_LOAD, loadPercentiles.getMaxNanos() / 1000.0);
     }
 
     @Override
@@ -1,6 +1,7 @@
 package xyz.acygn.mokapot.benchmarksuite.benchmark;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 import xyz.acygn.mokapot.benchmarksuite.programs.Benchmarkable;
 
@@ -39,7 +40,7 @@ class BenchmarkResult {
         this.programName = programName;
         this.distributionIteartions = distributionIteration;
         this.executionIterations = executionIterations;
-        resultMap = new HashMap<>();
+        resultMap = new EnumMap<>(BenchmarkMetric.class);
     }
 
 
@@ -95,13 +96,30 @@ class BenchmarkResult {
         else throw new NotCollectedException();
     }
 
+    /**
+     * Returns every metric that was collected, together with its value. The metrics are
+     * iterated in the order in which they're declared in {@link BenchmarkMetric}.
+     *
+     * @return unmodifiable map from metric to value
+     */
+    Map<BenchmarkMetric, Double> getMetrics() {
+        return Collections.unmodifiableMap(resultMap);
+    }
+
 
     /**
      * The possible metrics that can be stored into the BenchmarkResult. We use an enum rather
      * than simple String names to help prevent accidental typing errors from breaking code.
+     * <p>
+     * The <code>_LOAD</code> metrics are latencies measured in the concurrent throughput
+     * mode, and <code>THROUGHPUT</code> is the rate that mode actually achieved, in calls per
+     * second; all other metrics are in microseconds.
+     * </p>
      */
     enum BenchmarkMetric {
-        AVG_DIST, AVG_EXEC, MAX_DIST, MAX_EXEC, MIN_DIST, MIN_EXEC, STDDEV_DIST, STDDEV_EXEC
+        AVG_DIST, AVG_EXEC, MAX_DIST, MAX_EXEC, MIN_DIST, MIN_EXEC, STDDEV_DIST, STDDEV_EXEC,
+        P50_EXEC, P90_EXEC, P99_EXEC, P999_EXEC,
+        THROUGHPUT, P50_LOAD, P90_LOAD, P99_LOAD, P999_LOAD, MAX_LOAD
     }
 
     /**
@@ -95,11 +95,16 @@ public class Main {
     /**
      * Benchmarking entry point. Instantiates a Runner script.
      *
-     * @param args [0] can optionally be used to specify iterations
+     * @param args [0] and [1] can optionally be used to specify iterations;
+     * [2] and [3] can optionally specify the number of client threads and the
+     * total target rate (calls per second) for the concurrent throughput mode,
+     * which is skipped if they're not given
      */
     public static void main(String[] args) {
         final int distributionIterations;
         final int executionIterations;
+        final int clientThreads;
+        final double targetRate;
 
         if (args.length > 0) {
             distributionIterations = Integer.parseInt(args[0]);
@@ -109,8 +114,21 @@ public class Main {
             executionIterations = 200;
         }
 
+        if (args.length > 2) {
+            clientThreads = Integer.parseInt(args[2]);
+            targetRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+            if (clientThreads < 0 || (clientThreads > 0 && !(targetRate > 0))) {
+                throw new IllegalArgumentException(
+                        "the throughput mode needs a positive thread count and target rate");
+            }
+        } else {
+            clientThreads = 0;
+            targetRate = 0;
+        }
+
         try {
-            Runner.getInstance(distributionIterations, executionIterations).collect().finish();
+            Runner.getInstance(distributionIterations, executionIterations,
+                    clientThreads, targetRate).collect().finish();
             System.out.println("\n---- BENCHMARKING COMPLETE ----");
 
             // program does not always terminate without this
@@ -14,6 +14,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
@@ -26,6 +27,7 @@ import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.Benchma
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MAX_EXEC;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MIN_DIST;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.MIN_EXEC;
+import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.P99_EXEC;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.STDDEV_DIST;
 import static xyz.acygn.mokapot.benchmarksuite.benchmark.BenchmarkResult.BenchmarkMetric.STDDEV_EXEC;
 import xyz.acygn.mokapot.benchmarksuite.programs.Benchmarkable;
@@ -120,8 +122,11 @@ class Runner {
     private BufferedReader templateReader;
     private String htmlRowTemplate;
     private String htmlFileTemplate;
+    private BufferedWriter csvWriter;
+    private BufferedWriter jsonWriter;
     // core benchmarking data
     private List<Benchmark> benchmarks;
+    private final List<BenchmarkResult> results = new ArrayList<>();
 
     private static final DecimalFormat integerFormatter = new DecimalFormat("#");
     private static final DecimalFormat ratioFormatter = new DecimalFormat("#.00");
@@ -133,9 +138,13 @@ class Runner {
      * longer.
      *
      * @param executionIterations how many times each benchmark is executed
+     * @param clientThreads number of client threads in the throughput mode, 0
+     * to skip it
+     * @param targetRate total calls per second made in the throughput mode
      * @throws IOException if unable to access filesystem
      */
-    private Runner(int distributionIterations, int executionIterations)
+    private Runner(int distributionIterations, int executionIterations,
+            int clientThreads, double targetRate)
             throws IOException, InterruptedException, URISyntaxException {
         // file paths and IO objects
         String outPath = Main.BENCHMARK_OUTPUT_DIR + "benchmarks/";
@@ -145,6 +154,8 @@ class Runner {
                 .replace(":", "-");
 
         htmlWriter = new BufferedWriter(new FileWriter(outPath + "benchmark_" + genTime + ".html"));
+        csvWriter = new BufferedWriter(new FileWriter(outPath + "benchmark_" + genTime + ".csv"));
+        jsonWriter = new BufferedWriter(new FileWriter(outPath + "benchmark_" + genTime + ".json"));
         templateReader = new BufferedReader(
                 new InputStreamReader(this.getClass().getResourceAsStream("/template.html")));
         htmlFileTemplate = templateReader.lines().collect(Collectors.joining(""));
@@ -231,7 +242,8 @@ class Runner {
                 new TransformInTurnsRMIBenchmark(),
                 new TransformInTurnsMokapotBenchmark()));
 
-        benchmarks = createBenchmarks(programList, distributionIterations, executionIterations);
+        benchmarks = createBenchmarks(programList, distributionIterations, executionIterations,
+                clientThreads, targetRate);
     }
 
     /**
@@ -240,21 +252,28 @@ class Runner {
      * changes the singleton instance.
      *
      * @param executionIterations number of times each data point is collected
+     * @param clientThreads number of client threads in the throughput mode, 0
+     * to skip it
+     * @param targetRate total calls per second made in the throughput mode
      * @return Runner instance
      * @throws IOException if Runner can't be instantiated
      */
-    static Runner getInstance(int distributionIterations, int executionIterations)
+    static Runner getInstance(int distributionIterations, int executionIterations,
+            int clientThreads, double targetRate)
             throws IOException, InterruptedException, URISyntaxException {
         if (instance == null) {
-            instance = new Runner(distributionIterations, executionIterations);
+            instance = new Runner(distributionIterations, executionIterations,
+                    clientThreads, targetRate);
         }
         return instance;
     }
 
     /**
-     * Executes example programs, collects results in the indicated file, and
-     * logs activity. If writing to file fails, the resulting IOException is
-     * thrown as this is considered a fatal failure for the runner.
+     * Executes example programs, collects results in the indicated files, and
+     * logs activity. The HTML table summarises the results, while the CSV and
+     * JSON files contain every metric collected, for further processing. If
+     * writing to file fails, the resulting IOException is thrown as this is
+     * considered a fatal failure for the runner.
      *
      * @throws IOException if unable to write to file
      */
@@ -263,6 +282,8 @@ class Runner {
 
         try {
             htmlWriter.write(htmlFileTemplate.replace("$nextRow", ""));
+            writeCsv();
+            writeJson();
             LOGGER.log(Level.FINE, "Successfully written benchmarking results to file.");
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Unable to write to file, throwing error to Main");
@@ -285,6 +306,8 @@ class Runner {
         try {
             templateReader.close();
             htmlWriter.close();
+            csvWriter.close();
+            jsonWriter.close();
 
             LOGGER.log(Level.FINE, "Successfully closed filesystem resources.");
         } catch (IOException e) {
@@ -315,6 +338,7 @@ class Runner {
             System.out.print("Benchmarking " + progName + " ");
             BenchmarkResult result = benchmark.run();
             group.addBenchmarkResult(benchmark.getType(), result);
+            results.add(result);
 
             System.out.println(" -> success");
 
@@ -345,7 +369,8 @@ class Runner {
                     .replace("$_ratioexec", ratioCellFormatter.apply(r -> r.getMetric(AVG_EXEC)))
                     .replace("$_maxexec", integerFormatter.format(result.getMetric(MAX_EXEC)))
                     .replace("$_minexec", integerFormatter.format(result.getMetric(MIN_EXEC)))
-                    .replace("$_stdexec", integerFormatter.format(result.getMetric(STDDEV_EXEC)));
+                    .replace("$_stdexec", integerFormatter.format(result.getMetric(STDDEV_EXEC)))
+                    .replace("$_p99exec", integerFormatter.format(result.getMetric(P99_EXEC)));
 
             return htmlFileTemplate;
         } // if benchmarking fails, log error and return
@@ -358,17 +383,78 @@ class Runner {
         return htmlFileTemplate;
     }
 
+    /**
+     * HELPER: Writes every collected result to the CSV file, one row per
+     * program. There's a column for every {@link BenchmarkResult.BenchmarkMetric},
+     * which is left empty for programs that didn't collect that metric.
+     *
+     * @throws IOException if unable to write to file
+     */
+    private void writeCsv() throws IOException {
+        csvWriter.write("program,distribution_iterations,execution_iterations");
+        for (BenchmarkResult.BenchmarkMetric metric : BenchmarkResult.BenchmarkMetric.values()) {
+            csvWriter.write("," + metric.name().toLowerCase());
+        }
+        csvWriter.newLine();
+
+        for (BenchmarkResult result : results) {
+            csvWriter.write(result.getProgramName() + "," + result.getDistributionIterations()
+                    + "," + result.getExecutionIterations());
+            for (BenchmarkResult.BenchmarkMetric metric : BenchmarkResult.BenchmarkMetric.values()) {
+                Double value = result.getMetrics().get(metric);
+                csvWriter.write("," + (value == null ? "" : value.toString()));
+            }
+            csvWriter.newLine();
+        }
+    }
+
+    /**
+     * HELPER: Writes every collected result to the JSON file, as an array with
+     * one object per program. Metrics that a program didn't collect are
+     * omitted from its object.
+     *
+     * @throws IOException if unable to write to file
+     */
+    private void writeJson() throws IOException {
+        jsonWriter.write("[");
+        String separator = "";
+        for (BenchmarkResult result : results) {
+            jsonWriter.write(separator);
+            jsonWriter.newLine();
+            jsonWriter.write("  {\"program\": \"" + result.getProgramName()
+                    + "\", \"distribution_iterations\": " + result.getDistributionIterations()
+                    + ", \"execution_iterations\": " + result.getExecutionIterations());
+            for (Map.Entry<BenchmarkResult.BenchmarkMetric, Double> metric
+                    : result.getMetrics().entrySet()) {
+                /* JSON has no representation for NaN or the infinities. */
+                if (!metric.getValue().isNaN() && !metric.getValue().isInfinite()) {
+                    jsonWriter.write(", \"" + metric.getKey().name().toLowerCase() + "\": "
+                            + metric.getValue());
+                }
+            }
+            jsonWriter.write("}");
+            separator = ",";
+        }
+        jsonWriter.newLine();
+        jsonWriter.write("]");
+        jsonWriter.newLine();
+    }
+
     /**
      * HELPER: Creates a list of {@link Benchmark} objects to be eventually
      * executed by the runner script.
      *
      * @param programList benchmarkable programs to create benchmarks for
      * @param executionIterations benchmark iterations
+     * @param clientThreads number of client threads in the throughput mode
+     * @param targetRate total calls per second made in the throughput mode
      * @return list of benchmarks ready to be executed
      */
     private List<Benchmark> createBenchmarks(List<BenchmarkGroup> programList,
             int distributionIterations,
-            int executionIterations)
+            int executionIterations,
+            int clientThreads,
+            double targetRate)
             throws IOException, InterruptedException {
         int clientPort = 15300;
 
@@ -411,7 +497,9 @@ class Runner {
                         executionIterations,
                         peers,
                         clientPort,
-                        benchmarkGroup));
+                        benchmarkGroup,
+                        clientThreads,
+                        targetRate));
 
                 clientPort++;
 
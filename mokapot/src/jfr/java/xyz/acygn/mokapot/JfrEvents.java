@@ -0,0 +1,395 @@
+package xyz.acygn.mokapot;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The implementation of <code>FlightRecorderEvents</code> that emits JFR
+ * events. This class is compiled separately from the rest of Mokapot (and only
+ * if the build JDK has JFR), and is loaded reflectively; nothing else may
+ * refer to it or to its event classes directly.
+ * <p>
+ * Each kind of event has a probe instance that's used to check whether the
+ * event is enabled, so that nothing is allocated while it isn't.
+ */
+final class JfrEvents extends FlightRecorderEvents {
+
+    /**
+     * Used to check whether <code>MessageSent</code> events are enabled.
+     */
+    private static final MessageSent MESSAGE_SENT = new MessageSent();
+
+    /**
+     * Used to check whether <code>MessageReceived</code> events are enabled.
+     */
+    private static final MessageReceived MESSAGE_RECEIVED
+            = new MessageReceived();
+
+    /**
+     * Used to check whether <code>Marshal</code> events are enabled.
+     */
+    private static final Marshal MARSHAL = new Marshal();
+
+    /**
+     * Used to check whether <code>Invoke</code> events are enabled.
+     */
+    private static final Invoke INVOKE = new Invoke();
+
+    /**
+     * Used to check whether <code>Migration</code> events are enabled.
+     */
+    private static final Migration MIGRATION = new Migration();
+
+    /**
+     * Used to check whether <code>LifetimeManagerCreated</code> events are
+     * enabled.
+     */
+    private static final LifetimeManagerCreated LIFETIME_MANAGER_CREATED
+            = new LifetimeManagerCreated();
+
+    /**
+     * Used to check whether <code>LifetimeManagerExpired</code> events are
+     * enabled.
+     */
+    private static final LifetimeManagerExpired LIFETIME_MANAGER_EXPIRED
+            = new LifetimeManagerExpired();
+
+    /**
+     * Used to check whether <code>ConnectionOpened</code> events are enabled.
+     */
+    private static final ConnectionOpened CONNECTION_OPENED
+            = new ConnectionOpened();
+
+    /**
+     * Used to check whether <code>ConnectionClosed</code> events are enabled.
+     */
+    private static final ConnectionClosed CONNECTION_CLOSED
+            = new ConnectionClosed();
+
+    @Override
+    void messageSent(CommunicationAddress peer, Class<?> messageType,
+            int bytes) {
+        if (MESSAGE_SENT.isEnabled()) {
+            MessageSent event = new MessageSent();
+            event.peer = String.valueOf(peer);
+            event.messageType = messageType;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    void messageReceived(CommunicationAddress peer, Class<?> messageType,
+            int bytes) {
+        if (MESSAGE_RECEIVED.isEnabled()) {
+            MessageReceived event = new MessageReceived();
+            event.peer = String.valueOf(peer);
+            event.messageType = messageType;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginMarshal() {
+        if (!MARSHAL.isEnabled()) {
+            return null;
+        }
+        Marshal event = new Marshal();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endMarshal(Object token, Class<?> marshalledClass, int bytes,
+            int noncopiableObjects) {
+        if (token == null) {
+            return;
+        }
+        Marshal event = (Marshal) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.marshalledClass = marshalledClass;
+            event.bytes = bytes;
+            event.noncopiableObjects = noncopiableObjects;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginInvoke() {
+        if (!INVOKE.isEnabled()) {
+            return null;
+        }
+        Invoke event = new Invoke();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    boolean recordingInvoke() {
+        return INVOKE.isEnabled();
+    }
+
+    @Override
+    void endInvoke(Object token, Class<?> objectClass, long methodCode,
+            CommunicationAddress forwardedTo) {
+        if (token == null) {
+            return;
+        }
+        Invoke event = (Invoke) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.objectClass = objectClass;
+            event.methodCode = methodCode;
+            event.forwarded = forwardedTo != null;
+            event.forwardedTo = forwardedTo == null ? null
+                    : forwardedTo.toString();
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginMigration() {
+        if (!MIGRATION.isEnabled()) {
+            return null;
+        }
+        Migration event = new Migration();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endMigration(Object token, String phase, Class<?> objectClass,
+            CommunicationAddress destination) {
+        if (token == null) {
+            return;
+        }
+        Migration event = (Migration) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.objectClass = objectClass;
+            event.destination = destination == null ? null
+                    : destination.toString();
+            event.commit();
+        }
+    }
+
+    @Override
+    void lifetimeManagerCreated(Class<?> objectClass, long weight) {
+        if (LIFETIME_MANAGER_CREATED.isEnabled()) {
+            LifetimeManagerCreated event = new LifetimeManagerCreated();
+            event.objectClass = objectClass;
+            event.weight = weight;
+            event.commit();
+        }
+    }
+
+    @Override
+    void lifetimeManagerExpired(Class<?> objectClass, long weight) {
+        if (LIFETIME_MANAGER_EXPIRED.isEnabled()) {
+            LifetimeManagerExpired event = new LifetimeManagerExpired();
+            event.objectClass = objectClass;
+            event.weight = weight;
+            event.commit();
+        }
+    }
+
+    @Override
+    void connectionOpened(CommunicationAddress peer, GlobalID connectionID) {
+        if (CONNECTION_OPENED.isEnabled()) {
+            ConnectionOpened event = new ConnectionOpened();
+            event.peer = String.valueOf(peer);
+            event.connectionID = String.valueOf(connectionID);
+            event.commit();
+        }
+    }
+
+    @Override
+    void connectionClosed(CommunicationAddress peer, GlobalID connectionID) {
+        if (CONNECTION_CLOSED.isEnabled()) {
+            ConnectionClosed event = new ConnectionClosed();
+            event.peer = String.valueOf(peer);
+            event.connectionID = String.valueOf(connectionID);
+            event.commit();
+        }
+    }
+
+    /**
+     * A message was sent to another communicator.
+     */
+    @Name("xyz.acygn.mokapot.MessageSent")
+    @Label("Message Sent")
+    @Category({"Mokapot", "Messages"})
+    @StackTrace(false)
+    static final class MessageSent extends Event {
+
+        @Label("Peer")
+        @Description("The communicator the message was sent to")
+        String peer;
+
+        @Label("Message Type")
+        Class<?> messageType;
+
+        @Label("Size")
+        @Description("The size of the message's copiable data")
+        @DataAmount
+        int bytes;
+    }
+
+    /**
+     * A message was received from another communicator.
+     */
+    @Name("xyz.acygn.mokapot.MessageReceived")
+    @Label("Message Received")
+    @Category({"Mokapot", "Messages"})
+    @StackTrace(false)
+    static final class MessageReceived extends Event {
+
+        @Label("Peer")
+        @Description("The communicator that sent the message")
+        String peer;
+
+        @Label("Message Type")
+        Class<?> messageType;
+
+        @Label("Size")
+        @Description("The size of the message's copiable data")
+        @DataAmount
+        int bytes;
+    }
+
+    /**
+     * An object was described and marshalled for sending to another
+     * communicator.
+     */
+    @Name("xyz.acygn.mokapot.Marshal")
+    @Label("Marshal")
+    @Category({"Mokapot", "Messages"})
+    @StackTrace(false)
+    static final class Marshal extends Event {
+
+        @Label("Marshalled Class")
+        Class<?> marshalledClass;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+
+        @Label("Noncopiable Objects")
+        @Description("The number of objects that were marshalled by reference")
+        int noncopiableObjects;
+    }
+
+    /**
+     * A method was invoked via a location manager, either locally or by
+     * forwarding the call to another communicator.
+     */
+    @Name("xyz.acygn.mokapot.Invoke")
+    @Label("Invoke")
+    @Category({"Mokapot", "Objects"})
+    static final class Invoke extends Event {
+
+        @Label("Object Class")
+        Class<?> objectClass;
+
+        @Label("Method Code")
+        long methodCode;
+
+        @Label("Forwarded")
+        @Description("Whether the call ran on another communicator")
+        boolean forwarded;
+
+        @Label("Forwarded To")
+        String forwardedTo;
+    }
+
+    /**
+     * A step of a manual migration was performed.
+     */
+    @Name("xyz.acygn.mokapot.Migration")
+    @Label("Migration")
+    @Category({"Mokapot", "Objects"})
+    static final class Migration extends Event {
+
+        @Label("Phase")
+        @Description("prepare, commit or conclude")
+        String phase;
+
+        @Label("Object Class")
+        Class<?> objectClass;
+
+        @Label("Destination")
+        String destination;
+    }
+
+    /**
+     * An object became referenced from another communicator.
+     */
+    @Name("xyz.acygn.mokapot.LifetimeManagerCreated")
+    @Label("Lifetime Manager Created")
+    @Category({"Mokapot", "Objects"})
+    @StackTrace(false)
+    static final class LifetimeManagerCreated extends Event {
+
+        @Label("Object Class")
+        Class<?> objectClass;
+
+        @Label("GC Weight")
+        long weight;
+    }
+
+    /**
+     * A reference from another communicator timed out.
+     */
+    @Name("xyz.acygn.mokapot.LifetimeManagerExpired")
+    @Label("Lifetime Manager Expired")
+    @Category({"Mokapot", "Objects"})
+    @StackTrace(false)
+    static final class LifetimeManagerExpired extends Event {
+
+        @Label("Object Class")
+        Class<?> objectClass;
+
+        @Label("GC Weight Lost")
+        long weight;
+    }
+
+    /**
+     * A connection to another communicator was opened.
+     */
+    @Name("xyz.acygn.mokapot.ConnectionOpened")
+    @Label("Connection Opened")
+    @Category({"Mokapot", "Connections"})
+    @StackTrace(false)
+    static final class ConnectionOpened extends Event {
+
+        @Label("Peer")
+        String peer;
+
+        @Label("Connection ID")
+        String connectionID;
+    }
+
+    /**
+     * A connection to another communicator was closed.
+     */
+    @Name("xyz.acygn.mokapot.ConnectionClosed")
+    @Label("Connection Closed")
+    @Category({"Mokapot", "Connections"})
+    @StackTrace(false)
+    static final class ConnectionClosed extends Event {
+
+        @Label("Peer")
+        String peer;
+
+        @Label("Connection ID")
+        String connectionID;
+    }
+}
@@ -0,0 +1,99 @@
+package xyz.acygn.mokapot.jmh;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import xyz.acygn.mokapot.markers.Copiable;
+import xyz.acygn.mokapot.wireformat.ObjectDescription;
+
+/**
+ * Measures the description of objects of various shapes into the wire format,
+ * and their reproduction from it. This is the work done by each class's
+ * <code>ClassKnowledge</code> whenever an object is sent by copy.
+ */
+public class ClassKnowledgeBenchmark extends MokapotBenchmark {
+
+    @Param({"boxed", "string", "bigInteger", "primitiveArray", "stringArray",
+        "flat", "nested"})
+    public String shape;
+
+    private Object object;
+    private ObjectDescription description;
+
+    @Override
+    protected void connect() {
+        switch (shape) {
+            case "boxed":
+                object = 42;
+                break;
+            case "string":
+                object = "the quick brown fox jumps over the lazy dog";
+                break;
+            case "bigInteger":
+                object = new BigInteger("A1A2A3A4B1B2B3B4C1C2C3C4D1D2D3D4", 16);
+                break;
+            case "primitiveArray":
+                int[] ints = new int[256];
+                Arrays.setAll(ints, i -> i * 31);
+                object = ints;
+                break;
+            case "stringArray":
+                String[] strings = new String[16];
+                Arrays.setAll(strings, Integer::toString);
+                object = strings;
+                break;
+            case "flat":
+                object = new Flat(1, 2L, 3.0, "flat");
+                break;
+            case "nested":
+                Nested chain = null;
+                for (int i = 0; i < 8; i++) {
+                    chain = new Nested(i, chain);
+                }
+                object = chain;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown shape " + shape);
+        }
+        description = (ObjectDescription) hooks.describeField(object, null);
+    }
+
+    @Benchmark
+    public Object describe() {
+        return hooks.describeField(object, null);
+    }
+
+    @Benchmark
+    public Object reproduce() throws IOException {
+        description.resetForRead();
+        return hooks.readClassAndObject(description, null, null);
+    }
+
+    static final class Flat implements Copiable {
+
+        private final int i;
+        private final long l;
+        private final double d;
+        private final String s;
+
+        Flat(int i, long l, double d, String s) {
+            this.i = i;
+            this.l = l;
+            this.d = d;
+            this.s = s;
+        }
+    }
+
+    static final class Nested implements Copiable {
+
+        private final int value;
+        private final Nested next;
+
+        Nested(int value, Nested next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
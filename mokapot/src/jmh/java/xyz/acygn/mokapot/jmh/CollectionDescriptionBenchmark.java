@@ -0,0 +1,100 @@
+package xyz.acygn.mokapot.jmh;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import xyz.acygn.mokapot.wireformat.ObjectDescription;
+
+/**
+ * Measures the description of standard collections (as happens when they
+ * migrate or are replicated), and their reproduction from the description.
+ * The "compact" format describes the elements themselves; the
+ * "fieldByField" format is the general-purpose one, which omits the elements
+ * altogether (they're held in <code>transient</code> fields), so it's only
+ * a baseline: the collections that it reproduces are broken.
+ */
+public class CollectionDescriptionBenchmark extends MokapotBenchmark {
+
+    @Param({"arrayList", "linkedList", "arrayDeque", "hashSet", "treeSet",
+        "hashMap", "treeMap"})
+    public String shape;
+
+    @Param({"compact", "fieldByField"})
+    public String format;
+
+    /**
+     * The number of elements in the collection.
+     */
+    @Param({"16", "1024"})
+    public int size;
+
+    private Object collection;
+    private ObjectDescription description;
+
+    @Override
+    protected void connect() {
+        hooks.setEnableCompactCollectionFormats(format.equals("compact"));
+        ArrayList<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(i * 31);
+        }
+        switch (shape) {
+            case "arrayList":
+                collection = new ArrayList<>(elements);
+                break;
+            case "linkedList":
+                collection = new LinkedList<>(elements);
+                break;
+            case "arrayDeque":
+                collection = new ArrayDeque<>(elements);
+                break;
+            case "hashSet":
+                collection = new HashSet<>(elements);
+                break;
+            case "treeSet":
+                collection = new TreeSet<>(elements);
+                break;
+            case "hashMap":
+                HashMap<Integer, String> hashMap = new HashMap<>();
+                elements.forEach((i) -> hashMap.put(i, i.toString()));
+                collection = hashMap;
+                break;
+            case "treeMap":
+                TreeMap<Integer, String> treeMap = new TreeMap<>();
+                elements.forEach((i) -> treeMap.put(i, i.toString()));
+                collection = treeMap;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown shape " + shape);
+        }
+        description = (ObjectDescription) hooks.describe(collection);
+    }
+
+    @Override
+    protected void disconnect() throws Exception {
+        try {
+            super.disconnect();
+        } finally {
+            /* this setting is global to the VM */
+            hooks.setEnableCompactCollectionFormats(true);
+        }
+    }
+
+    @Benchmark
+    public Object describe() {
+        return hooks.describe(collection);
+    }
+
+    @Benchmark
+    public Object reproduce() throws IOException {
+        description.resetForRead();
+        return hooks.reproduce(description, collection.getClass());
+    }
+}
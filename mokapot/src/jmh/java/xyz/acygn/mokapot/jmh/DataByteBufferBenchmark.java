@@ -0,0 +1,79 @@
+package xyz.acygn.mokapot.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.acygn.mokapot.util.DataByteBuffer;
+
+/**
+ * Measures writing primitives to, and reading them from, a
+ * <code>DataByteBuffer</code>, which underlies every description. This doesn't
+ * need a communicator, so it doesn't extend <code>MokapotBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DataByteBufferBenchmark {
+
+    /**
+     * The number of each kind of primitive written or read per operation.
+     */
+    @Param({"16", "1024"})
+    public int count;
+
+    private byte[] storage;
+    private byte[] bytes;
+    private DataByteBuffer written;
+
+    @Setup
+    public void setUp() throws IOException {
+        bytes = new byte[count];
+        storage = new byte[count * (Integer.BYTES + Long.BYTES
+                + Double.BYTES + 1)];
+        written = new DataByteBuffer(storage.length);
+        fill(written);
+    }
+
+    private void fill(DataByteBuffer buffer) throws IOException {
+        for (int i = 0; i < count; i++) {
+            buffer.writeInt(i);
+            buffer.writeLong(i);
+            buffer.writeDouble(i);
+        }
+        buffer.write(bytes);
+        buffer.resetForRead();
+    }
+
+    @Benchmark
+    public DataByteBuffer write() throws IOException {
+        DataByteBuffer buffer = new DataByteBuffer(storage, false);
+        fill(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        written.resetForRead();
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += written.readInt();
+            total += written.readLong();
+            total += (long) written.readDouble();
+        }
+        written.readFully(bytes);
+        return total;
+    }
+}
@@ -0,0 +1,36 @@
+package xyz.acygn.mokapot.jmh;
+
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import xyz.acygn.mokapot.CommunicationAddress;
+import xyz.acygn.mokapot.CopiableSupplier;
+
+/**
+ * Measures turning a remote call into the bytes sent over a connection:
+ * marshalling the message, wrapping it in an envelope, and encoding the
+ * envelope via <code>ConnectionManager.encodeMessage</code>.
+ */
+public class EncodeMessageBenchmark extends MokapotBenchmark {
+
+    /**
+     * The size of the byte array captured by the code being sent.
+     */
+    @Param({"0", "1024"})
+    public int payload;
+
+    private CommunicationAddress target;
+    private CopiableSupplier<Integer> code;
+
+    @Override
+    protected void connect() throws IOException {
+        target = createSecondary("encode-target");
+        byte[] data = new byte[payload];
+        code = () -> data.length;
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return hooks.encodeRemoteCall(code, target);
+    }
+}
@@ -0,0 +1,47 @@
+package xyz.acygn.mokapot.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures calling a method via a long reference to an object that's stored
+ * on the same system, i.e. the local fast path of
+ * <code>LocationManager#invoke</code>, compared with calling the method on the
+ * object directly.
+ */
+public class LocalInvokeBenchmark extends MokapotBenchmark {
+
+    private Counter direct;
+    private Counter viaLongReference;
+
+    @Override
+    protected void connect() {
+        direct = new Counter();
+        viaLongReference = hooks.makeLongReference(new Counter());
+    }
+
+    @Override
+    protected void disconnect() throws Exception {
+        viaLongReference = null;
+        super.disconnect();
+    }
+
+    @Benchmark
+    public int direct() {
+        return direct.increment(1);
+    }
+
+    @Benchmark
+    public int longReference() {
+        return viaLongReference.increment(1);
+    }
+
+    public static class Counter {
+
+        private int count;
+
+        public int increment(int by) {
+            count += by;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package xyz.acygn.mokapot.jmh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.acygn.mokapot.CommunicationAddress;
+import xyz.acygn.mokapot.CommunicationEndpoint;
+import xyz.acygn.mokapot.CopiableRunnable;
+import xyz.acygn.mokapot.DistributedCommunicator;
+import xyz.acygn.mokapot.IsolatedEndpoint;
+import xyz.acygn.mokapot.TestHooks;
+
+/**
+ * The common settings for benchmarks of Mokapot's internals. Each trial runs
+ * with its own communicator, which has test hooks enabled so that the
+ * benchmarks can reach code that isn't part of Mokapot's public API.
+ * <p>
+ * Mokapot won't run without a security manager, so the benchmarks have to be
+ * run with one installed; the <code>benchmark-mokapot-jmh</code> target in the
+ * build file does this (and JMH passes the setting on to its forked VMs).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public abstract class MokapotBenchmark {
+
+    protected DistributedCommunicator communicator;
+    protected TestHooks hooks;
+    private final List<CommunicationAddress> peers = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void startCommunicator() throws Exception {
+        communicator = new DistributedCommunicator(createEndpoint());
+        communicator.enableTestHooks();
+        communicator.startCommunication();
+        hooks = communicator.getTestHooks();
+        connect();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopCommunicator() throws Exception {
+        try {
+            disconnect();
+        } finally {
+            /* The test hooks hold the communicator open until they're garbage
+               collected. */
+            hooks = null;
+            communicator.stopCommunication();
+        }
+    }
+
+    /**
+     * Creates the endpoint for the communicator used by the benchmark. By
+     * default, this is an endpoint that can communicate only with secondary
+     * communicators.
+     *
+     * @return The endpoint.
+     * @throws Exception If the endpoint could not be created
+     */
+    protected CommunicationEndpoint createEndpoint() throws Exception {
+        return new IsolatedEndpoint();
+    }
+
+    /**
+     * Prepares anything else that the benchmark needs, once the communicator
+     * has started.
+     *
+     * @throws Exception If something went wrong during preparation
+     */
+    protected void connect() throws Exception {
+    }
+
+    /**
+     * Stops the communicators that the benchmark started via
+     * <code>addPeer</code>. Called before the benchmark's own communicator is
+     * stopped; benchmarks that hold long references or standins must also
+     * drop them here, as the communicator can't stop while they're alive.
+     *
+     * @throws Exception If something went wrong stopping the communicators
+     */
+    protected void disconnect() throws Exception {
+        for (CommunicationAddress peer : peers) {
+            communicator.runRemotely(new StopCommunication(), peer);
+        }
+        peers.clear();
+    }
+
+    /**
+     * Records a communicator that should be stopped at the end of the trial.
+     *
+     * @param peer The communicator's address.
+     * @return <code>peer</code>.
+     */
+    protected CommunicationAddress addPeer(CommunicationAddress peer) {
+        peers.add(peer);
+        return peer;
+    }
+
+    /**
+     * Creates a secondary communicator on this VM, which will be stopped at
+     * the end of the trial.
+     *
+     * @param name The name of the secondary communicator.
+     * @return The secondary communicator's address.
+     * @throws IOException If the secondary communicator could not be started
+     */
+    protected CommunicationAddress createSecondary(String name)
+            throws IOException {
+        return addPeer(hooks.createSecondaryCommunicator(name, null));
+    }
+
+    /**
+     * Stops the communicator it runs on. A class rather than a lambda, so
+     * that a server on another VM can run it without having to resolve a
+     * lambda.
+     */
+    private static class StopCommunication implements CopiableRunnable {
+
+        private static final long serialVersionUID = 0x5c0e93d1a7f24b68L;
+
+        @Override
+        public void run() {
+            DistributedCommunicator.getCommunicator().asyncStopCommunication();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package xyz.acygn.mokapot.jmh;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import xyz.acygn.mokapot.CommunicationAddress;
+import xyz.acygn.mokapot.CommunicationEndpoint;
+import xyz.acygn.mokapot.CopiableSupplier;
+import xyz.acygn.mokapot.EndpointKeystore;
+import xyz.acygn.mokapot.SecureTCPCommunicationEndpoint;
+import xyz.acygn.mokapot.SharedMemoryCommunicationEndpoint;
+import xyz.acygn.mokapot.util.Pair;
+import xyz.acygn.mokapot.whitelist.KeytoolWhitelistControllerEngine;
+import static xyz.acygn.mokapot.whitelist.WhitelistController.generateEndpointKeystoreSet;
+
+/**
+ * Measures complete remote calls: marshalling, sending, running the code on
+ * the other communicator, and receiving the reply. The other communicator is
+ * either a secondary communicator on the same VM (so no sockets are involved),
+ * or a <code>DistributedServer</code> on a separate VM, reached either via TLS
+ * over the loopback interface or via shared memory.
+ */
+public class RoundTripBenchmark extends MokapotBenchmark {
+
+    /**
+     * The port on which the TLS server listens. This differs from the ports
+     * used by the testsuite and the benchmark suite, so that they can run at
+     * the same time.
+     */
+    private static final int SERVER_PORT = 15240;
+
+    @Param({"secondary", "tls", "shm"})
+    public String transport;
+
+    /**
+     * The size of the byte array sent with, and returned from, each call.
+     */
+    @Param({"0", "1024"})
+    public int payload;
+
+    private List<Pair<File, char[]>> keystores;
+    private Process server;
+    private CommunicationAddress peer;
+    private CopiableSupplier<byte[]> code;
+
+    @Override
+    protected CommunicationEndpoint createEndpoint() throws Exception {
+        if (transport.equals("secondary")) {
+            return super.createEndpoint();
+        }
+        keystores = generateEndpointKeystoreSet(
+                new KeytoolWhitelistControllerEngine(), 2, 1);
+        EndpointKeystore keystore = EndpointKeystore.fromFile(
+                keystores.get(0).getFirst().toString(),
+                keystores.get(0).getSecond().clone());
+        return transport.equals("shm")
+                ? new SharedMemoryCommunicationEndpoint(keystore)
+                : new SecureTCPCommunicationEndpoint(keystore);
+    }
+
+    @Override
+    protected void connect() throws IOException {
+        if (!transport.equals("secondary")) {
+            startServer(keystores.get(1));
+            peer = addPeer(communicator.lookupAddress(
+                    InetAddress.getLoopbackAddress(), SERVER_PORT));
+        } else {
+            peer = createSecondary("round-trip-peer");
+        }
+        byte[] data = new byte[payload];
+        code = () -> data;
+    }
+
+    /**
+     * Starts a <code>DistributedServer</code> on a new VM, and waits for it to
+     * become ready. The server uses the same classpath as this VM, and runs
+     * in watchdog mode, so that it exits by itself if the benchmark crashes,
+     * and uses shared memory if the benchmark does.
+     *
+     * @param keystore The server's keystore, as a filename/password pair.
+     * @throws IOException If the server could not be started
+     */
+    private void startServer(Pair<File, char[]> keystore) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java",
+                "-classpath", System.getProperty("java.class.path"),
+                "-Djava.security.policy=mokapot/src/main/resources/localhost-only.policy",
+                "-Djava.security.manager",
+                "xyz.acygn.mokapot.DistributedServer",
+                keystore.getFirst().toString(),
+                "-w", "127.0.0.1", Integer.toString(SERVER_PORT)));
+        if (transport.equals("shm")) {
+            command.add("-m");
+        }
+        server = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try (OutputStream serverInput = server.getOutputStream()) {
+            for (char c : keystore.getSecond()) {
+                serverInput.write((int) c);
+            }
+        }
+        BufferedReader serverOutput = new BufferedReader(new InputStreamReader(
+                server.getInputStream(), StandardCharsets.UTF_8));
+        String serverLine;
+        do {
+            serverLine = serverOutput.readLine();
+            if (serverLine == null) {
+                throw new IOException("server exited before becoming ready");
+            }
+        } while (!serverLine.startsWith("Server is now ready"));
+    }
+
+    @Override
+    protected void disconnect() throws Exception {
+        try {
+            super.disconnect();
+        } finally {
+            if (server != null) {
+                if (!server.waitFor(10, TimeUnit.SECONDS)) {
+                    server.destroyForcibly();
+                }
+                server = null;
+            }
+            if (keystores != null) {
+                for (Pair<File, char[]> keystore : keystores) {
+                    keystore.getFirst().delete();
+                }
+                keystores = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] runRemotely() {
+        return communicator.runRemotely(code, peer);
+    }
+}
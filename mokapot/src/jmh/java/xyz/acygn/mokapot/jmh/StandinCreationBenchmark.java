@@ -0,0 +1,57 @@
+package xyz.acygn.mokapot.jmh;
+
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import xyz.acygn.mokapot.skeletons.Standin;
+
+/**
+ * Measures the creation of a standin using each of the standin techniques
+ * that produce standins. Techniques that can wrap an existing object do so;
+ * the others create the standin from a description of the object, or (for
+ * <code>REMOTE_ONLY_STANDIN</code>) from its location manager. The standin
+ * class itself is generated during the warmup, so isn't measured.
+ */
+public class StandinCreationBenchmark extends MokapotBenchmark {
+
+    @Param({"INDIRECT_STANDIN", "INHERITED_FROM_CLASS",
+        "INHERITED_FROM_SUPERCLASS", "REFLECTIVE_STANDIN",
+        "REMOTE_ONLY_STANDIN"})
+    public String technique;
+
+    private Referent referent;
+
+    @Override
+    protected void connect() throws IOException {
+        referent = new Referent();
+        hooks.createStandin(referent, technique);
+    }
+
+    @Override
+    protected void disconnect() throws Exception {
+        referent = null;
+        super.disconnect();
+    }
+
+    @Benchmark
+    public Standin<Referent> create() throws IOException {
+        return hooks.createStandin(referent, technique);
+    }
+
+    public interface Named {
+
+        String getName();
+    }
+
+    public static class Referent implements Named {
+
+        private String name = "referent";
+        private int uses;
+
+        @Override
+        public String getName() {
+            uses++;
+            return name;
+        }
+    }
+}
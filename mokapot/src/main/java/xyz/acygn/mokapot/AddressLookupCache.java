@@ -0,0 +1,91 @@
+package xyz.acygn.mokapot;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the results of looking up the communication addresses of remote
+ * systems. The cache is keyed by the IP address and port that were looked up,
+ * and holds a bounded number of entries, discarding the least recently used
+ * entry when it becomes full. Entries don't expire on their own (in
+ * particular, they outlive the connections to the systems in question), so
+ * the cache makes no attempt to determine whether an entry is still correct;
+ * callers must check that before relying on it.
+ *
+ * @see DistributedCommunicator#lookupAddress(java.net.InetAddress, int)
+ */
+class AddressLookupCache {
+
+    /**
+     * The number of entries that the cache holds by default.
+     */
+    static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The cached addresses, keyed by IP address and port, in order of least
+     * recent use.
+     */
+    private final Map<String, CommunicationAddress> addresses;
+
+    /**
+     * Creates a new, empty address lookup cache.
+     *
+     * @param capacity The number of entries that the cache can hold.
+     * @throws IllegalArgumentException If <code>capacity</code> is not
+     * positive
+     */
+    AddressLookupCache(int capacity) throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "capacity must be at least 1");
+        }
+        addresses = new LinkedHashMap<String, CommunicationAddress>(
+                16, 0.75f, true) {
+            private static final long serialVersionUID = 0x3f1a62c8d09b4e57L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, CommunicationAddress> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache key used for a given IP address and port.
+     *
+     * @param host The IP address.
+     * @param port The port.
+     * @return The key.
+     */
+    private static String keyFor(InetAddress host, int port) {
+        return host.getHostAddress() + ":" + port;
+    }
+
+    /**
+     * Returns the address that was most recently recorded for a given IP
+     * address and port.
+     *
+     * @param host The IP address.
+     * @param port The port.
+     * @return The recorded communication address, or <code>null</code> if
+     * there is none.
+     */
+    synchronized CommunicationAddress get(InetAddress host, int port) {
+        return addresses.get(keyFor(host, port));
+    }
+
+    /**
+     * Records the communication address of the system at a given IP address
+     * and port, replacing any previous record.
+     *
+     * @param host The IP address.
+     * @param port The port.
+     * @param address The communication address of the system.
+     */
+    synchronized void put(InetAddress host, int port,
+            CommunicationAddress address) {
+        addresses.put(keyFor(host, port), address);
+    }
+}
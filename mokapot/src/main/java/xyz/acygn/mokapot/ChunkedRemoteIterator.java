@@ -0,0 +1,362 @@
+package xyz.acygn.mokapot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import static xyz.acygn.mokapot.Authorisations.UNRESTRICTED;
+import xyz.acygn.mokapot.markers.Copiable;
+import xyz.acygn.mokapot.skeletons.Standin;
+import xyz.acygn.mokapot.util.AutocloseableLockWrapper;
+import static xyz.acygn.mokapot.util.ThreadUtils.delayInterruptions;
+
+/**
+ * A local iterator over the elements of a remote iterator or spliterator,
+ * which transfers the elements in chunks rather than with a network round
+ * trip per element. This is used in place of a long reference to a remote
+ * <code>Iterator</code>, <code>Spliterator</code> or <code>Stream</code>
+ * returned from a method call, if the communicator has iterator streaming
+ * enabled.
+ * <p>
+ * The remote iterator itself holds the cursor state, and is kept alive via a
+ * long reference in the usual way (thus, it can be deallocated once this
+ * iterator is). Chunks are fetched in the background, so that the next chunk
+ * can be in transit while the consumer works through the current one. Flow
+ * control is credit-based: the consumer allows a fixed number of chunks to be
+ * fetched ahead of it, and each chunk it starts on gives back a credit. Thus,
+ * no more than that many chunks are ever buffered, and an iterator that's
+ * abandoned stops fetching once its credits run out.
+ * <p>
+ * As a consequence, the remote iterator may be ahead of the consumer by up to
+ * the chunk size times the number of credits, plus the chunk being consumed.
+ * <code>remove()</code> isn't supported.
+ *
+ * @param <E> The type of the elements.
+ * @see DistributedCommunicator#setIteratorStreaming(int, int)
+ */
+class ChunkedRemoteIterator<E> implements Iterator<E> {
+
+    /**
+     * A long reference to the remote iterator or spliterator.
+     */
+    private final Object source;
+
+    /**
+     * The location manager of the remote iterator or spliterator.
+     */
+    private final LocationManager<?> manager;
+
+    /**
+     * The communicator via which chunks are fetched.
+     */
+    private final DistributedCommunicator communicator;
+
+    /**
+     * The largest number of elements fetched at once.
+     */
+    private final int chunkSize;
+
+    /**
+     * The largest number of chunks that can be fetched ahead of the consumer.
+     */
+    private final int credits;
+
+    /**
+     * The chunks that have been fetched, but not yet started on by the
+     * consumer. Access to this, <code>fetching</code> and
+     * <code>complete</code> is guarded by this object's monitor.
+     */
+    private final Deque<Chunk> received = new ArrayDeque<>();
+
+    /**
+     * Whether a background task is fetching chunks.
+     */
+    private boolean fetching = false;
+
+    /**
+     * Whether the last chunk has been fetched (because the remote iterator
+     * is exhausted, or threw an exception).
+     */
+    private boolean complete = false;
+
+    /**
+     * The remaining elements of the chunk that the consumer is working
+     * through.
+     */
+    private Iterator<Object> current = Collections.emptyIterator();
+
+    /**
+     * The exception thrown by the remote iterator after the elements in
+     * <code>current</code>, if any. This is thrown by <code>next()</code>
+     * once those elements are used up.
+     */
+    private Throwable failure = null;
+
+    /**
+     * Creates a chunked iterator, and starts fetching the first chunk.
+     *
+     * @param source A long reference to the remote iterator or spliterator.
+     * @param manager The location manager of <code>source</code>.
+     * @param communicator The communicator via which to fetch chunks.
+     */
+    private ChunkedRemoteIterator(Object source, LocationManager<?> manager,
+            DistributedCommunicator communicator) {
+        this.source = source;
+        this.manager = manager;
+        this.communicator = communicator;
+        this.chunkSize = communicator.getIteratorChunkSize();
+        this.credits = communicator.getIteratorCredits();
+    }
+
+    /**
+     * Replaces the return value of a remote method call with a chunked
+     * equivalent, if appropriate. This happens if iterator streaming is
+     * enabled, the method is declared to return exactly
+     * <code>Iterator</code>, <code>Spliterator</code> or <code>Stream</code>,
+     * and the value is a long reference to a remote object.
+     *
+     * @param value The value returned by the method.
+     * @param declaredType The declared return type of the method.
+     * @param communicator The communicator via which the method was called.
+     * @return The chunked equivalent of <code>value</code>, or
+     * <code>value</code> itself if it shouldn't be replaced.
+     */
+    static Object maybeChunk(Object value, Class<?> declaredType,
+            DistributedCommunicator communicator) {
+        if (communicator.getIteratorChunkSize() == 0
+                || !(value instanceof Standin)
+                || ((Standin<?>) value).getStorage(UNRESTRICTED)
+                        .certainlyLocal()) {
+            return value;
+        }
+        try {
+            if (declaredType == Iterator.class) {
+                return start(value, communicator);
+            } else if (declaredType == Spliterator.class) {
+                /* SIZED and SUBSIZED are dropped, as the size isn't known
+                   locally. */
+                return Spliterators.spliteratorUnknownSize(
+                        start(value, communicator),
+                        ((Spliterator<?>) value).characteristics());
+            } else if (declaredType == Stream.class) {
+                /* Iterating the remote stream runs its pipeline remotely;
+                   any further operations on the returned stream run
+                   locally. */
+                Stream<?> stream = (Stream<?>) value;
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                        start(stream.iterator(), communicator),
+                        Spliterator.ORDERED), false).onClose(stream::close);
+            }
+        } catch (AutocloseableLockWrapper.CannotLockException ex) {
+            /* The communicator is shutting down; the plain long reference
+               still works for as long as anything does. */
+        }
+        return value;
+    }
+
+    /**
+     * Creates a chunked iterator over a remote iterator or spliterator, and
+     * starts fetching the first chunk.
+     *
+     * @param source A long reference to the remote iterator or spliterator.
+     * @param communicator The communicator via which to fetch chunks.
+     * @return The chunked iterator.
+     * @throws AutocloseableLockWrapper.CannotLockException If the
+     * communicator has shut down past the point at which location managers
+     * can be found
+     */
+    private static ChunkedRemoteIterator<Object> start(Object source,
+            DistributedCommunicator communicator)
+            throws AutocloseableLockWrapper.CannotLockException {
+        ChunkedRemoteIterator<Object> rv = new ChunkedRemoteIterator<>(
+                source, communicator.findLocationManagerForObject(source),
+                communicator);
+        synchronized (rv) {
+            rv.maybeStartFetching();
+        }
+        return rv;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext() && failure == null) {
+            Chunk chunk = take();
+            if (chunk == null) {
+                return false;
+            }
+            current = Arrays.asList(chunk.elements).iterator();
+            failure = chunk.failure;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (current.hasNext()) {
+            return (E) current.next();
+        }
+        Throwable ex = failure;
+        failure = null;
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        throw new java.lang.reflect.UndeclaredThrowableException(ex);
+    }
+
+    /**
+     * Waits for the next chunk to be fetched, and removes it from the
+     * buffer. This gives back a credit, so another chunk may start to be
+     * fetched.
+     *
+     * @return The chunk, or <code>null</code> if there are no more.
+     */
+    private synchronized Chunk take() {
+        while (received.isEmpty()) {
+            if (complete) {
+                return null;
+            }
+            maybeStartFetching();
+            delayInterruptions(this::wait);
+        }
+        Chunk rv = received.remove();
+        maybeStartFetching();
+        return rv;
+    }
+
+    /**
+     * Starts a background task to fetch chunks, unless one is running
+     * already, the last chunk has been fetched, or there are no credits left.
+     * Must be called with the monitor held.
+     */
+    private void maybeStartFetching() {
+        if (fetching || complete || received.size() >= credits) {
+            return;
+        }
+        fetching = true;
+        new PooledThread(this::fetchWhileCredited).start(communicator);
+    }
+
+    /**
+     * Fetches chunks until the last chunk has been fetched, or there are no
+     * credits left. Runs as a background task.
+     */
+    private void fetchWhileCredited() {
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = fetch(source, chunkSize, manager, communicator);
+            } catch (RuntimeException | Error ex) {
+                chunk = new Chunk(new Object[0], true, ex);
+            }
+            synchronized (this) {
+                received.add(chunk);
+                complete = chunk.exhausted;
+                notifyAll();
+                if (complete || received.size() >= credits) {
+                    fetching = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches one chunk of elements from a remote iterator or spliterator.
+     * This is static so that the code sent to the remote system doesn't
+     * capture the chunked iterator itself.
+     *
+     * @param source A long reference to the remote iterator or spliterator.
+     * @param count The largest number of elements to fetch.
+     * @param manager The location manager of <code>source</code>.
+     * @param communicator The communicator via which to fetch the chunk.
+     * @return The chunk.
+     */
+    private static Chunk fetch(Object source, int count,
+            LocationManager<?> manager, DistributedCommunicator communicator) {
+        CommunicationAddress at = manager.followLocationChain();
+        return communicator.runRemotely(() -> drain(source, count),
+                at == null ? communicator.getMyAddress() : at);
+    }
+
+    /**
+     * Takes the next chunk of elements from a local iterator or spliterator.
+     * This runs on the system that stores it.
+     *
+     * @param source The iterator or spliterator.
+     * @param count The largest number of elements to take.
+     * @return The chunk.
+     */
+    static Chunk drain(Object source, int count) {
+        List<Object> elements = new ArrayList<>(count);
+        try {
+            boolean exhausted;
+            if (source instanceof Iterator) {
+                Iterator<?> it = (Iterator<?>) source;
+                while (elements.size() < count && it.hasNext()) {
+                    elements.add(it.next());
+                }
+                exhausted = !it.hasNext();
+            } else {
+                Spliterator<?> it = (Spliterator<?>) source;
+                while (elements.size() < count
+                        && it.tryAdvance(elements::add)) {
+                }
+                exhausted = elements.size() < count;
+            }
+            return new Chunk(elements.toArray(), exhausted, null);
+        } catch (RuntimeException | Error ex) {
+            return new Chunk(elements.toArray(), true, ex);
+        }
+    }
+
+    /**
+     * A chunk of consecutive elements from a remote iterator or spliterator.
+     */
+    static class Chunk implements Copiable {
+
+        /**
+         * The elements, in order.
+         */
+        private final Object[] elements;
+
+        /**
+         * Whether these are the last elements.
+         */
+        private final boolean exhausted;
+
+        /**
+         * The exception that the iterator or spliterator threw after the
+         * elements, or <code>null</code> if it didn't throw one.
+         */
+        private final Throwable failure;
+
+        /**
+         * Creates a new chunk.
+         *
+         * @param elements The elements, in order.
+         * @param exhausted Whether these are the last elements.
+         * @param failure The exception thrown after the elements, or
+         * <code>null</code>. If this is not <code>null</code>,
+         * <code>exhausted</code> must be <code>true</code>.
+         */
+        Chunk(Object[] elements, boolean exhausted, Throwable failure) {
+            this.elements = elements;
+            this.exhausted = exhausted;
+            this.failure = failure;
+        }
+    }
+}
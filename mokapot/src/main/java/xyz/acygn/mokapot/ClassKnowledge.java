@@ -13,14 +13,17 @@ import java.lang.reflect.UndeclaredThrowableException;
 import static java.security.AccessController.doPrivileged;
 import java.security.PrivilegedAction;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import static xyz.acygn.mokapot.LengthIndependent.getActualClassInternal;
 import xyz.acygn.mokapot.markers.DistributedError;
+import xyz.acygn.mokapot.markers.ReadOnly;
 import xyz.acygn.mokapot.skeletons.Standin;
 import xyz.acygn.mokapot.util.DeterministicAutocloseable;
 import xyz.acygn.mokapot.util.Lazy;
@@ -83,6 +86,13 @@ abstract class ClassKnowledge<T> {
      */
     private final Map<Long, MethodHandle> methodMap;
 
+    /**
+     * The method codes of the methods that are marked as read-only.
+     *
+     * @see ReadOnly
+     */
+    private final Set<Long> readOnlyMethods;
+
     /**
      * The way the name of the class this knowledge is about appears in an
      * object description.
@@ -99,6 +109,17 @@ abstract class ClassKnowledge<T> {
      */
     private StandinFactory<T> standinFactoryOverride = null;
 
+    /**
+     * The field serialiser generated for the class this knowledge is about,
+     * if any. This is generated the first time it's needed; the value is
+     * empty if no field serialiser could be generated.
+     *
+     * @see #getFieldSerializer()
+     */
+    private final Lazy<Optional<GeneratedFieldSerializer<T>>> fieldSerializer
+            = new Lazy<>(() -> Optional.ofNullable(
+                    GeneratedFieldSerializer.generate(this)));
+
     /**
      * Protected constructor. In addition to the behaviour of
      * <code>ObjectMethodDatabase</code>'s constructor, also creates a method
@@ -114,6 +135,7 @@ abstract class ClassKnowledge<T> {
         });
 
         methodMap = new HashMap<>(owf.getMethods().size());
+        readOnlyMethods = new HashSet<>();
         owf.getMethods().forEach((m) -> {
             long code = defaultMethodCode(m,
                     owf.getMethodCodeSalt());
@@ -122,6 +144,9 @@ abstract class ClassKnowledge<T> {
             } catch (IllegalAccessException ex) {
                 throw new SecurityException(ex);
             }
+            if (m.isAnnotationPresent(ReadOnly.class)) {
+                readOnlyMethods.add(code);
+            }
         });
         classNameDescription = ClassNameDescriptions.describe(about);
     }
@@ -157,6 +182,19 @@ abstract class ClassKnowledge<T> {
         return owf.getInstanceFieldList();
     }
 
+    /**
+     * Returns the field serialiser for the class this knowledge is about,
+     * generating it if necessary. This is used to describe and reproduce
+     * objects field-by-field without the use of reflection.
+     *
+     * @return The field serialiser, or <code>null</code> if none could be
+     * generated (in which case the fields should be accessed via reflection,
+     * using <code>getInstanceFieldList</code>).
+     */
+    GeneratedFieldSerializer<T> getFieldSerializer() {
+        return fieldSerializer.get().orElse(null);
+    }
+
     /**
      * Returns a list of methods of this class and its superclasses. All
      * security checks required to invoke the methods will have been called
@@ -182,6 +220,30 @@ abstract class ClassKnowledge<T> {
         return methodMap.get(code);
     }
 
+    /**
+     * Returns whether the method with the given code is marked as read-only,
+     * meaning that its results can be cached.
+     *
+     * @param code The method code of the method.
+     * @return <code>true</code> if the method is marked as read-only.
+     * @see ReadOnly
+     */
+    boolean isReadOnlyMethod(long code) {
+        return readOnlyMethods.contains(code);
+    }
+
+    /**
+     * Returns whether the class this knowledge is about has any methods that
+     * are marked as read-only. If it doesn't, there's no need to track the
+     * caching of results of method calls on its objects.
+     *
+     * @return <code>true</code> if any method is marked as read-only.
+     * @see ReadOnly
+     */
+    boolean hasReadOnlyMethods() {
+        return !readOnlyMethods.isEmpty();
+    }
+
     /**
      * Overrides the default selection of a standin factory for construction of
      * standins for this class. Would typically be called immediately after
@@ -298,6 +360,8 @@ abstract class ClassKnowledge<T> {
                 new PrimitivePOJOKnowledge.Int(), int.class);
         register2MarshallingExceptions(
                 new PrimitivePOJOKnowledge.Long(), long.class);
+        register2MarshallingExceptions(
+                new PrimitivePOJOKnowledge.Short(), short.class);
 
         /* Built-in exceptions to marshalling rules: other fundamental
            classes */
@@ -343,6 +407,9 @@ abstract class ClassKnowledge<T> {
         r.accept(-0x0D200008, MigrationActionsMessage.class);
         r.accept(-0x0D200009, MigrationMessage.class);
         r.accept(-0x0D20000A, MigrationSynchronisationMessage.class);
+        r.accept(-0x0D20000B, ResultCacheInvalidationMessage.class);
+        r.accept(-0x0D20000C, ReplicaRequestMessage.class);
+        r.accept(-0x0D20000D, ReplicaInvalidationMessage.class);
 
         r.accept(-0x0D300001, MarshalledDescription.class);
         r.accept(-0x0D300002, MessageAddress.class);
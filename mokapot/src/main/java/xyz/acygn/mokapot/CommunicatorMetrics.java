@@ -0,0 +1,1023 @@
+package xyz.acygn.mokapot;
+
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import xyz.acygn.mokapot.util.LatencyHistogram;
+import static xyz.acygn.mokapot.util.VMInfo.isRunningOnAndroid;
+
+/**
+ * The live statistics about the activity of a distributed communicator. Every
+ * communicator keeps these statistics at all times; they're cheap to update
+ * (the counters are <code>LongAdder</code>s and the timings are recorded into
+ * fixed-bucket histograms, so recording an event never locks and rarely
+ * contends). While the communicator is running, they're also published via
+ * the platform MBean server, under the object name
+ * <code>xyz.acygn.mokapot:type=DistributedCommunicator,address=</code><i>the
+ * communicator's address</i>.
+ * <p>
+ * The getters of this class read the current values of the statistics, so
+ * two consecutive calls may see inconsistent values; use <code>snapshot</code>
+ * to read all the statistics at once.
+ *
+ * @see DistributedCommunicator#getMetrics()
+ */
+public final class CommunicatorMetrics implements CommunicatorMetricsMXBean {
+
+    /**
+     * The communicator whose statistics these are.
+     */
+    private final DistributedCommunicator communicator;
+
+    /**
+     * The traffic sent and received by the communicator, in total.
+     */
+    private final TrafficCounters total = new TrafficCounters();
+
+    /**
+     * The traffic sent and received by the communicator, broken down by the
+     * system at the other end.
+     */
+    private final ConcurrentMap<CommunicationAddress, TrafficCounters> byPeer
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The traffic sent and received by the communicator, broken down by the
+     * class of the messages.
+     */
+    private final ConcurrentMap<Class<?>, TrafficCounters> byMessageType
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The time taken to marshal outbound messages.
+     */
+    private final LatencyHistogram marshalTime = new LatencyHistogram();
+
+    /**
+     * The time taken to unmarshal inbound messages.
+     */
+    private final LatencyHistogram unmarshalTime = new LatencyHistogram();
+
+    /**
+     * The number of times that inbound messages were throttled.
+     */
+    private final LongAdder throttleEvents = new LongAdder();
+
+    /**
+     * The length of time for which inbound messages were throttled.
+     */
+    private final LatencyHistogram throttleTime = new LatencyHistogram();
+
+    /**
+     * The number of times that throttling gave up with the thread projection
+     * queue still over its soft limits.
+     */
+    private final LongAdder throttleOverruns = new LongAdder();
+
+    /**
+     * The number of location managers created.
+     */
+    private final LongAdder locationManagersCreated = new LongAdder();
+
+    /**
+     * The number of location managers that have been cleaned up.
+     */
+    private final LongAdder locationManagersReleased = new LongAdder();
+
+    /**
+     * The number of connections opened.
+     */
+    private final LongAdder connectionsOpened = new LongAdder();
+
+    /**
+     * The number of connections that have been closed.
+     */
+    private final LongAdder connectionsClosed = new LongAdder();
+
+    /**
+     * The number of objects that have migrated away.
+     */
+    private final LongAdder migrationsOut = new LongAdder();
+
+    /**
+     * The number of objects that have migrated here.
+     */
+    private final LongAdder migrationsIn = new LongAdder();
+
+    /**
+     * The number of read-only method calls answered from the result cache.
+     */
+    private final LongAdder resultCacheHits = new LongAdder();
+
+    /**
+     * The number of cacheable read-only method calls that weren't answered
+     * from the result cache.
+     */
+    private final LongAdder resultCacheMisses = new LongAdder();
+
+    /**
+     * The number of read-only method calls run on a local replica.
+     */
+    private final LongAdder replicaReads = new LongAdder();
+
+    /**
+     * The number of replicas fetched from other systems.
+     */
+    private final LongAdder replicasFetched = new LongAdder();
+
+    /**
+     * The number of address lookups answered from the address lookup cache.
+     */
+    private final LongAdder addressLookupCacheHits = new LongAdder();
+
+    /**
+     * The number of address lookups that had to contact the remote system.
+     */
+    private final LongAdder addressLookupCacheMisses = new LongAdder();
+
+    /**
+     * The name under which these statistics are currently registered with the
+     * platform MBean server; <code>null</code> if they aren't registered.
+     * Access to this field must be synchronised on <code>this</code>.
+     */
+    private ObjectName registeredName = null;
+
+    /**
+     * Creates the statistics for a new communicator. All counts will start at
+     * zero.
+     *
+     * @param communicator The communicator whose statistics are kept.
+     */
+    CommunicatorMetrics(DistributedCommunicator communicator) {
+        this.communicator = communicator;
+    }
+
+    /**
+     * Returns the counters for a given key of a traffic breakdown, creating
+     * them if necessary.
+     *
+     * @param <K> The type of the breakdown's keys.
+     * @param map The breakdown.
+     * @param key The key.
+     * @return The counters for <code>key</code>.
+     */
+    private static <K> TrafficCounters countersFor(
+            ConcurrentMap<K, TrafficCounters> map, K key) {
+        /* Try a plain get() first; computeIfAbsent locks even when the key is
+           present. */
+        TrafficCounters counters = map.get(key);
+        if (counters == null) {
+            counters = map.computeIfAbsent(key, (k) -> new TrafficCounters());
+        }
+        return counters;
+    }
+
+    /**
+     * Records the sending of a message.
+     *
+     * @param recipient The system that the message is being sent to.
+     * @param message The message.
+     * @param bytes The number of bytes of copiable data in the message.
+     * @param marshalNanos The time taken to marshal the message, in
+     * nanoseconds.
+     */
+    void messageSent(CommunicationAddress recipient,
+            DistributedMessage message, int bytes, long marshalNanos) {
+        total.sent(bytes);
+        countersFor(byPeer, recipient).sent(bytes);
+        countersFor(byMessageType, message.getClass()).sent(bytes);
+        marshalTime.record(marshalNanos);
+    }
+
+    /**
+     * Records the receipt of a message.
+     *
+     * @param sender The system that sent the message; can be
+     * <code>null</code> if it isn't known.
+     * @param message The message.
+     * @param bytes The number of bytes of copiable data in the message.
+     * @param unmarshalNanos The time taken to unmarshal the message, in
+     * nanoseconds.
+     */
+    void messageReceived(CommunicationAddress sender,
+            DistributedMessage message, int bytes, long unmarshalNanos) {
+        total.received(bytes);
+        if (sender != null) {
+            countersFor(byPeer, sender).received(bytes);
+        }
+        countersFor(byMessageType, message.getClass()).received(bytes);
+        unmarshalTime.record(unmarshalNanos);
+    }
+
+    /**
+     * Records that inbound messages were throttled, i.e. that a connection
+     * was not read from for a while because too many thread projections were
+     * queued.
+     *
+     * @param nanos The length of time for which the connection was not read
+     * from, in nanoseconds.
+     * @param overran Whether the connection was read from again because the
+     * throttling time ran out, with the queue still over its soft limits.
+     */
+    void throttled(long nanos, boolean overran) {
+        throttleEvents.increment();
+        throttleTime.record(nanos);
+        if (overran) {
+            throttleOverruns.increment();
+        }
+    }
+
+    /**
+     * Records the creation of a location manager.
+     */
+    void locationManagerCreated() {
+        locationManagersCreated.increment();
+    }
+
+    /**
+     * Records the cleanup of a location manager.
+     */
+    void locationManagerReleased() {
+        locationManagersReleased.increment();
+    }
+
+    /**
+     * Records the opening of a connection.
+     */
+    void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    /**
+     * Records the closing of a connection.
+     */
+    void connectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    /**
+     * Records the migration of an object away from this communicator.
+     */
+    void migratedOut() {
+        migrationsOut.increment();
+    }
+
+    /**
+     * Records the migration of an object to this communicator.
+     */
+    void migratedIn() {
+        migrationsIn.increment();
+    }
+
+    /**
+     * Records a lookup in the result cache.
+     *
+     * @param hit <code>true</code> if a result was found.
+     */
+    void resultCacheLookup(boolean hit) {
+        (hit ? resultCacheHits : resultCacheMisses).increment();
+    }
+
+    /**
+     * Records that a read-only method call was run on a local replica.
+     */
+    void replicaRead() {
+        replicaReads.increment();
+    }
+
+    /**
+     * Records that a replica was fetched from another system.
+     */
+    void replicaFetched() {
+        replicasFetched.increment();
+    }
+
+    /**
+     * Records a lookup in the address lookup cache.
+     *
+     * @param hit <code>true</code> if a cached address was found and
+     * confirmed.
+     */
+    void addressLookup(boolean hit) {
+        (hit ? addressLookupCacheHits : addressLookupCacheMisses).increment();
+    }
+
+    /**
+     * Publishes these statistics via the platform MBean server. Does nothing
+     * if they're already published, or if JMX isn't available. A failure to
+     * publish is reported as a warning, rather than preventing the
+     * communicator from starting.
+     */
+    synchronized void register() {
+        if (registeredName != null || isRunningOnAndroid()) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(
+                    "xyz.acygn.mokapot:type=DistributedCommunicator,address="
+                    + ObjectName.quote(communicator.getMyAddress().toString()));
+            AccessController.doPrivileged(
+                    (PrivilegedExceptionAction<Void>) () -> {
+                        ManagementFactory.getPlatformMBeanServer()
+                                .registerMBean(this, name);
+                        return null;
+                    });
+            registeredName = name;
+        } catch (Exception | LinkageError ex) {
+            communicator.sendWarning(
+                    "Could not publish communicator metrics via JMX: " + ex);
+        }
+    }
+
+    /**
+     * Stops publishing these statistics via the platform MBean server. Does
+     * nothing if they aren't currently published.
+     */
+    synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        ObjectName name = registeredName;
+        registeredName = null;
+        try {
+            AccessController.doPrivileged(
+                    (PrivilegedExceptionAction<Void>) () -> {
+                        MBeanServer server
+                                = ManagementFactory.getPlatformMBeanServer();
+                        if (server.isRegistered(name)) {
+                            server.unregisterMBean(name);
+                        }
+                        return null;
+                    });
+        } catch (Exception ex) {
+            communicator.sendWarning(
+                    "Could not withdraw communicator metrics from JMX: " + ex);
+        }
+    }
+
+    /**
+     * Reads all the statistics at once.
+     *
+     * @return An immutable snapshot of the statistics.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return total.messagesSent.sum();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return total.messagesReceived.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return total.bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return total.bytesReceived.sum();
+    }
+
+    @Override
+    public Map<String, Traffic> getTrafficByPeer() {
+        Map<String, Traffic> rv = new TreeMap<>();
+        byPeer.forEach((k, v) -> rv.merge(
+                String.valueOf(k), v.snapshot(), Traffic::plus));
+        return Collections.unmodifiableMap(rv);
+    }
+
+    @Override
+    public Map<String, Traffic> getTrafficByMessageType() {
+        Map<String, Traffic> rv = new TreeMap<>();
+        byMessageType.forEach((k, v) -> rv.put(k.getName(), v.snapshot()));
+        return Collections.unmodifiableMap(rv);
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getMarshalTime() {
+        return marshalTime.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getUnmarshalTime() {
+        return unmarshalTime.snapshot();
+    }
+
+    @Override
+    public int getActiveThreadProjections() {
+        return communicator.getActiveThreadCount();
+    }
+
+    @Override
+    public int getThreadProjectionTrackers() {
+        return communicator.getAllProjectionTrackers().size();
+    }
+
+    @Override
+    public int getQueuedThreadProjections() {
+        return communicator.getQueuedThreadCount();
+    }
+
+    @Override
+    public long getThrottleEvents() {
+        return throttleEvents.sum();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getThrottleTime() {
+        return throttleTime.snapshot();
+    }
+
+    @Override
+    public long getThrottleOverruns() {
+        return throttleOverruns.sum();
+    }
+
+    @Override
+    public long getLocationManagersCreated() {
+        return locationManagersCreated.sum();
+    }
+
+    @Override
+    public long getLiveLocationManagers() {
+        /* Read the releases first, so that a concurrent creation and release
+           can't make the result negative. */
+        long released = locationManagersReleased.sum();
+        return locationManagersCreated.sum() - released;
+    }
+
+    @Override
+    public int getLifetimeManagers() {
+        return communicator.getAllLifetimeManagers().size();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getOpenConnections() {
+        long closed = connectionsClosed.sum();
+        return connectionsOpened.sum() - closed;
+    }
+
+    @Override
+    public long getMigrationsOut() {
+        return migrationsOut.sum();
+    }
+
+    @Override
+    public long getMigrationsIn() {
+        return migrationsIn.sum();
+    }
+
+    @Override
+    public long getResultCacheHits() {
+        return resultCacheHits.sum();
+    }
+
+    @Override
+    public long getResultCacheMisses() {
+        return resultCacheMisses.sum();
+    }
+
+    @Override
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    @Override
+    public long getReplicasFetched() {
+        return replicasFetched.sum();
+    }
+
+    @Override
+    public long getAddressLookupCacheHits() {
+        return addressLookupCacheHits.sum();
+    }
+
+    @Override
+    public long getAddressLookupCacheMisses() {
+        return addressLookupCacheMisses.sum();
+    }
+
+    /**
+     * Counters for the messages exchanged with a particular system, of a
+     * particular type, or in total.
+     */
+    private static class TrafficCounters {
+
+        /**
+         * The number of messages sent.
+         */
+        private final LongAdder messagesSent = new LongAdder();
+
+        /**
+         * The number of messages received.
+         */
+        private final LongAdder messagesReceived = new LongAdder();
+
+        /**
+         * The number of bytes of copiable data sent.
+         */
+        private final LongAdder bytesSent = new LongAdder();
+
+        /**
+         * The number of bytes of copiable data received.
+         */
+        private final LongAdder bytesReceived = new LongAdder();
+
+        /**
+         * Records the sending of a message.
+         *
+         * @param bytes The number of bytes of copiable data in the message.
+         */
+        void sent(int bytes) {
+            messagesSent.increment();
+            bytesSent.add(bytes);
+        }
+
+        /**
+         * Records the receipt of a message.
+         *
+         * @param bytes The number of bytes of copiable data in the message.
+         */
+        void received(int bytes) {
+            messagesReceived.increment();
+            bytesReceived.add(bytes);
+        }
+
+        /**
+         * Reads the counters.
+         *
+         * @return An immutable copy of the counters' values.
+         */
+        Traffic snapshot() {
+            return new Traffic(messagesSent.sum(), messagesReceived.sum(),
+                    bytesSent.sum(), bytesReceived.sum());
+        }
+    }
+
+    /**
+     * The number of messages and bytes sent and received, within some part of
+     * a communicator's traffic.
+     */
+    public static final class Traffic {
+
+        /**
+         * The number of messages sent.
+         */
+        private final long messagesSent;
+
+        /**
+         * The number of messages received.
+         */
+        private final long messagesReceived;
+
+        /**
+         * The number of bytes of copiable data sent.
+         */
+        private final long bytesSent;
+
+        /**
+         * The number of bytes of copiable data received.
+         */
+        private final long bytesReceived;
+
+        /**
+         * Creates a record of traffic from its individual fields.
+         *
+         * @param messagesSent The number of messages sent.
+         * @param messagesReceived The number of messages received.
+         * @param bytesSent The number of bytes of copiable data sent.
+         * @param bytesReceived The number of bytes of copiable data received.
+         */
+        Traffic(long messagesSent, long messagesReceived, long bytesSent,
+                long bytesReceived) {
+            this.messagesSent = messagesSent;
+            this.messagesReceived = messagesReceived;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+
+        /**
+         * Adds two records of traffic. Used when two distinct addresses have
+         * the same string form.
+         *
+         * @param other The traffic to add to this traffic.
+         * @return The combined traffic.
+         */
+        Traffic plus(Traffic other) {
+            return new Traffic(messagesSent + other.messagesSent,
+                    messagesReceived + other.messagesReceived,
+                    bytesSent + other.bytesSent,
+                    bytesReceived + other.bytesReceived);
+        }
+
+        /**
+         * Returns the number of messages sent.
+         *
+         * @return The number of messages.
+         */
+        public long getMessagesSent() {
+            return messagesSent;
+        }
+
+        /**
+         * Returns the number of messages received.
+         *
+         * @return The number of messages.
+         */
+        public long getMessagesReceived() {
+            return messagesReceived;
+        }
+
+        /**
+         * Returns the number of bytes of copiable data sent.
+         *
+         * @return The number of bytes.
+         */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * Returns the number of bytes of copiable data received.
+         *
+         * @return The number of bytes.
+         */
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * Produces a human-readable summary of this traffic.
+         *
+         * @return A string giving the message and byte counts.
+         */
+        @Override
+        public String toString() {
+            return messagesSent + " sent (" + bytesSent + " bytes), "
+                    + messagesReceived + " received (" + bytesReceived
+                    + " bytes)";
+        }
+    }
+
+    /**
+     * An immutable copy of a communicator's statistics at some point in time.
+     */
+    public static final class Snapshot implements CommunicatorMetricsMXBean {
+
+        /**
+         * The number of messages sent.
+         */
+        private final long messagesSent;
+
+        /**
+         * The number of messages received.
+         */
+        private final long messagesReceived;
+
+        /**
+         * The number of bytes of copiable data sent.
+         */
+        private final long bytesSent;
+
+        /**
+         * The number of bytes of copiable data received.
+         */
+        private final long bytesReceived;
+
+        /**
+         * The traffic broken down by the system at the other end.
+         */
+        private final Map<String, Traffic> trafficByPeer;
+
+        /**
+         * The traffic broken down by message class.
+         */
+        private final Map<String, Traffic> trafficByMessageType;
+
+        /**
+         * The time taken to marshal outbound messages.
+         */
+        private final LatencyHistogram.Snapshot marshalTime;
+
+        /**
+         * The time taken to unmarshal inbound messages.
+         */
+        private final LatencyHistogram.Snapshot unmarshalTime;
+
+        /**
+         * The number of active thread projections.
+         */
+        private final int activeThreadProjections;
+
+        /**
+         * The number of thread projection trackers.
+         */
+        private final int threadProjectionTrackers;
+
+        /**
+         * The number of queued thread projections.
+         */
+        private final int queuedThreadProjections;
+
+        /**
+         * The number of times that inbound messages were throttled.
+         */
+        private final long throttleEvents;
+
+        /**
+         * The length of time for which inbound messages were throttled.
+         */
+        private final LatencyHistogram.Snapshot throttleTime;
+
+        /**
+         * The number of times that throttling gave up with the thread
+         * projection queue still over its soft limits.
+         */
+        private final long throttleOverruns;
+
+        /**
+         * The number of location managers created.
+         */
+        private final long locationManagersCreated;
+
+        /**
+         * The number of live location managers.
+         */
+        private final long liveLocationManagers;
+
+        /**
+         * The number of lifetime managers.
+         */
+        private final int lifetimeManagers;
+
+        /**
+         * The number of connections opened.
+         */
+        private final long connectionsOpened;
+
+        /**
+         * The number of open connections.
+         */
+        private final long openConnections;
+
+        /**
+         * The number of outbound migrations.
+         */
+        private final long migrationsOut;
+
+        /**
+         * The number of inbound migrations.
+         */
+        private final long migrationsIn;
+
+        /**
+         * The number of result cache hits.
+         */
+        private final long resultCacheHits;
+
+        /**
+         * The number of result cache misses.
+         */
+        private final long resultCacheMisses;
+
+        /**
+         * The number of read-only method calls run on a local replica.
+         */
+        private final long replicaReads;
+
+        /**
+         * The number of replicas fetched.
+         */
+        private final long replicasFetched;
+
+        /**
+         * The number of address lookup cache hits.
+         */
+        private final long addressLookupCacheHits;
+
+        /**
+         * The number of address lookup cache misses.
+         */
+        private final long addressLookupCacheMisses;
+
+        /**
+         * Copies the current values of a set of statistics.
+         *
+         * @param from The statistics to copy.
+         */
+        private Snapshot(CommunicatorMetricsMXBean from) {
+            this.messagesSent = from.getMessagesSent();
+            this.messagesReceived = from.getMessagesReceived();
+            this.bytesSent = from.getBytesSent();
+            this.bytesReceived = from.getBytesReceived();
+            this.trafficByPeer = from.getTrafficByPeer();
+            this.trafficByMessageType = from.getTrafficByMessageType();
+            this.marshalTime = from.getMarshalTime();
+            this.unmarshalTime = from.getUnmarshalTime();
+            this.activeThreadProjections = from.getActiveThreadProjections();
+            this.threadProjectionTrackers = from.getThreadProjectionTrackers();
+            this.queuedThreadProjections = from.getQueuedThreadProjections();
+            this.throttleEvents = from.getThrottleEvents();
+            this.throttleTime = from.getThrottleTime();
+            this.throttleOverruns = from.getThrottleOverruns();
+            this.locationManagersCreated = from.getLocationManagersCreated();
+            this.liveLocationManagers = from.getLiveLocationManagers();
+            this.lifetimeManagers = from.getLifetimeManagers();
+            this.connectionsOpened = from.getConnectionsOpened();
+            this.openConnections = from.getOpenConnections();
+            this.migrationsOut = from.getMigrationsOut();
+            this.migrationsIn = from.getMigrationsIn();
+            this.resultCacheHits = from.getResultCacheHits();
+            this.resultCacheMisses = from.getResultCacheMisses();
+            this.replicaReads = from.getReplicaReads();
+            this.replicasFetched = from.getReplicasFetched();
+            this.addressLookupCacheHits = from.getAddressLookupCacheHits();
+            this.addressLookupCacheMisses = from.getAddressLookupCacheMisses();
+        }
+
+        @Override
+        public long getMessagesSent() {
+            return messagesSent;
+        }
+
+        @Override
+        public long getMessagesReceived() {
+            return messagesReceived;
+        }
+
+        @Override
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        @Override
+        public Map<String, Traffic> getTrafficByPeer() {
+            return trafficByPeer;
+        }
+
+        @Override
+        public Map<String, Traffic> getTrafficByMessageType() {
+            return trafficByMessageType;
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getMarshalTime() {
+            return marshalTime;
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getUnmarshalTime() {
+            return unmarshalTime;
+        }
+
+        @Override
+        public int getActiveThreadProjections() {
+            return activeThreadProjections;
+        }
+
+        @Override
+        public int getThreadProjectionTrackers() {
+            return threadProjectionTrackers;
+        }
+
+        @Override
+        public int getQueuedThreadProjections() {
+            return queuedThreadProjections;
+        }
+
+        @Override
+        public long getThrottleEvents() {
+            return throttleEvents;
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getThrottleTime() {
+            return throttleTime;
+        }
+
+        @Override
+        public long getThrottleOverruns() {
+            return throttleOverruns;
+        }
+
+        @Override
+        public long getLocationManagersCreated() {
+            return locationManagersCreated;
+        }
+
+        @Override
+        public long getLiveLocationManagers() {
+            return liveLocationManagers;
+        }
+
+        @Override
+        public int getLifetimeManagers() {
+            return lifetimeManagers;
+        }
+
+        @Override
+        public long getConnectionsOpened() {
+            return connectionsOpened;
+        }
+
+        @Override
+        public long getOpenConnections() {
+            return openConnections;
+        }
+
+        @Override
+        public long getMigrationsOut() {
+            return migrationsOut;
+        }
+
+        @Override
+        public long getMigrationsIn() {
+            return migrationsIn;
+        }
+
+        @Override
+        public long getResultCacheHits() {
+            return resultCacheHits;
+        }
+
+        @Override
+        public long getResultCacheMisses() {
+            return resultCacheMisses;
+        }
+
+        @Override
+        public long getReplicaReads() {
+            return replicaReads;
+        }
+
+        @Override
+        public long getReplicasFetched() {
+            return replicasFetched;
+        }
+
+        @Override
+        public long getAddressLookupCacheHits() {
+            return addressLookupCacheHits;
+        }
+
+        @Override
+        public long getAddressLookupCacheMisses() {
+            return addressLookupCacheMisses;
+        }
+
+        /**
+         * Produces a human-readable summary of this snapshot.
+         *
+         * @return A multi-line string giving the main statistics.
+         */
+        @Override
+        public String toString() {
+            return "messages: " + messagesSent + " sent (" + bytesSent
+                    + " bytes), " + messagesReceived + " received ("
+                    + bytesReceived + " bytes)\n"
+                    + "marshal time: " + marshalTime + "\n"
+                    + "unmarshal time: " + unmarshalTime + "\n"
+                    + "thread projections: " + activeThreadProjections
+                    + " active, " + threadProjectionTrackers + " tracked, "
+                    + queuedThreadProjections + " queued\n"
+                    + "throttled: " + throttleEvents + " times ("
+                    + throttleOverruns + " overran), " + throttleTime + "\n"
+                    + "location managers: " + liveLocationManagers + " live ("
+                    + locationManagersCreated + " created); lifetime managers: "
+                    + lifetimeManagers + "\n"
+                    + "connections: " + openConnections + " open ("
+                    + connectionsOpened + " opened); migrations: "
+                    + migrationsOut + " out, " + migrationsIn + " in\n"
+                    + "result cache: " + resultCacheHits + " hits, "
+                    + resultCacheMisses + " misses\n"
+                    + "replicas: " + replicaReads + " reads, "
+                    + replicasFetched + " fetched\n"
+                    + "address lookups: " + addressLookupCacheHits
+                    + " cached, " + addressLookupCacheMisses + " uncached";
+        }
+    }
+}
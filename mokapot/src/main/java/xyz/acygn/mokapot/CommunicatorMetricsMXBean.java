@@ -0,0 +1,259 @@
+package xyz.acygn.mokapot;
+
+import java.util.Map;
+import xyz.acygn.mokapot.util.LatencyHistogram;
+
+/**
+ * The statistics kept about the activity of a distributed communicator. This
+ * interface is implemented both by the live metrics of a communicator (which
+ * are published via JMX while the communicator is running), and by immutable
+ * snapshots of those metrics.
+ * <p>
+ * Counts of events (such as messages sent) are cumulative over the lifetime
+ * of the communicator object, even if it's stopped and restarted. Counts of
+ * objects that currently exist (such as the number of open connections) are
+ * approximate, because they're calculated while the communicator is running
+ * concurrently.
+ *
+ * @see CommunicatorMetrics
+ * @see DistributedCommunicator#getMetrics()
+ */
+public interface CommunicatorMetricsMXBean {
+
+    /**
+     * Returns the number of messages sent by the communicator.
+     *
+     * @return The number of outbound messages.
+     */
+    long getMessagesSent();
+
+    /**
+     * Returns the number of messages received by the communicator.
+     *
+     * @return The number of inbound messages.
+     */
+    long getMessagesReceived();
+
+    /**
+     * Returns the number of bytes of copiable data in the messages sent by the
+     * communicator. This is measured the same way as
+     * <code>DebugMonitor.MessageInfo#getCopiableDataBytes</code>.
+     *
+     * @return The number of outbound bytes.
+     */
+    long getBytesSent();
+
+    /**
+     * Returns the number of bytes of copiable data in the messages received by
+     * the communicator. This is measured the same way as
+     * <code>DebugMonitor.MessageInfo#getCopiableDataBytes</code>.
+     *
+     * @return The number of inbound bytes.
+     */
+    long getBytesReceived();
+
+    /**
+     * Returns a breakdown of the messages sent and received by the
+     * communicator, according to the system at the other end.
+     *
+     * @return A map from the string form of each communication address that
+     * the communicator has exchanged messages with, to the traffic with that
+     * address.
+     */
+    Map<String, CommunicatorMetrics.Traffic> getTrafficByPeer();
+
+    /**
+     * Returns a breakdown of the messages sent and received by the
+     * communicator, according to the class of message.
+     *
+     * @return A map from the names of message classes to the traffic of
+     * messages of that class.
+     */
+    Map<String, CommunicatorMetrics.Traffic> getTrafficByMessageType();
+
+    /**
+     * Returns the distribution of the time taken to marshal outbound messages.
+     *
+     * @return A snapshot of the marshal time histogram.
+     */
+    LatencyHistogram.Snapshot getMarshalTime();
+
+    /**
+     * Returns the distribution of the time taken to unmarshal inbound
+     * messages.
+     *
+     * @return A snapshot of the unmarshal time histogram.
+     */
+    LatencyHistogram.Snapshot getUnmarshalTime();
+
+    /**
+     * Returns the number of distributed threads that are currently projected
+     * onto this communicator, i.e. that have a call stack running via it.
+     *
+     * @return The number of active thread projections.
+     */
+    int getActiveThreadProjections();
+
+    /**
+     * Returns the number of thread projection trackers that currently exist
+     * on this communicator. These hold projections of remote threads alive in
+     * case they have thread-local state.
+     *
+     * @return The number of thread projection trackers.
+     */
+    int getThreadProjectionTrackers();
+
+    /**
+     * Returns the number of thread projections that are waiting to start,
+     * because the communicator's limits on running projections have been
+     * reached.
+     *
+     * @return The number of queued thread projections.
+     */
+    int getQueuedThreadProjections();
+
+    /**
+     * Returns the number of times that the communicator has stopped reading
+     * messages from a connection, because too many thread projections were
+     * queued.
+     *
+     * @return The number of times that inbound messages were throttled.
+     */
+    long getThrottleEvents();
+
+    /**
+     * Returns the distribution of the length of time for which the
+     * communicator stopped reading messages from a connection, each time that
+     * inbound messages were throttled.
+     *
+     * @return A snapshot of the throttle time histogram.
+     */
+    LatencyHistogram.Snapshot getThrottleTime();
+
+    /**
+     * Returns the number of times that the communicator resumed reading
+     * messages from a throttled connection because it had waited for as long
+     * as it can, even though the thread projection queue was still over its
+     * soft limits. A non-zero count means that the queue limits are too small
+     * for the load (or that the system is overloaded).
+     *
+     * @return The number of throttle overruns.
+     * @see DistributedCommunicator#setQueuedProjectionSoftLimits(int, int)
+     */
+    long getThrottleOverruns();
+
+    /**
+     * Returns the number of location managers that have been created by the
+     * communicator.
+     *
+     * @return The number of location managers created.
+     */
+    long getLocationManagersCreated();
+
+    /**
+     * Returns the number of location managers associated with the
+     * communicator that currently exist (i.e. have been created and not yet
+     * cleaned up).
+     *
+     * @return The number of live location managers.
+     */
+    long getLiveLocationManagers();
+
+    /**
+     * Returns the number of lifetime managers that currently exist on this
+     * communicator. Each of these keeps a local object alive on behalf of a
+     * remote system.
+     *
+     * @return The number of lifetime managers.
+     */
+    int getLifetimeManagers();
+
+    /**
+     * Returns the number of connections to other communicators that have been
+     * opened.
+     *
+     * @return The number of connections opened.
+     */
+    long getConnectionsOpened();
+
+    /**
+     * Returns the number of connections to other communicators that are
+     * currently open.
+     *
+     * @return The number of open connections.
+     */
+    long getOpenConnections();
+
+    /**
+     * Returns the number of objects that have migrated away from this
+     * communicator.
+     *
+     * @return The number of outbound migrations.
+     */
+    long getMigrationsOut();
+
+    /**
+     * Returns the number of objects that have migrated to this communicator.
+     *
+     * @return The number of inbound migrations.
+     */
+    long getMigrationsIn();
+
+    /**
+     * Returns the number of calls to read-only methods on remote objects that
+     * were answered from the communicator's result cache.
+     *
+     * @return The number of result cache hits.
+     * @see xyz.acygn.mokapot.markers.ReadOnly
+     */
+    long getResultCacheHits();
+
+    /**
+     * Returns the number of calls to read-only methods on remote objects that
+     * could have been answered from the communicator's result cache, but had
+     * to be sent to the remote system because no result was cached.
+     *
+     * @return The number of result cache misses.
+     * @see xyz.acygn.mokapot.markers.ReadOnly
+     */
+    long getResultCacheMisses();
+
+    /**
+     * Returns the number of calls to read-only methods of remote read-mostly
+     * objects that were run on a local replica, without network traffic.
+     *
+     * @return The number of reads from replicas.
+     * @see xyz.acygn.mokapot.markers.ReadMostly
+     */
+    long getReplicaReads();
+
+    /**
+     * Returns the number of replicas of read-mostly objects that have been
+     * fetched from the systems storing them (either for the first time, or
+     * because an earlier replica was discarded).
+     *
+     * @return The number of replicas fetched.
+     * @see xyz.acygn.mokapot.markers.ReadMostly
+     */
+    long getReplicasFetched();
+
+    /**
+     * Returns the number of calls to <code>lookupAddress</code> that were
+     * answered from the communicator's address lookup cache, without network
+     * access.
+     *
+     * @return The number of address lookup cache hits.
+     * @see DistributedCommunicator#lookupAddress(java.net.InetAddress, int)
+     */
+    long getAddressLookupCacheHits();
+
+    /**
+     * Returns the number of calls to <code>lookupAddress</code> that had to
+     * contact the remote system, either because no address was cached, or
+     * because the cached address couldn't be confirmed.
+     *
+     * @return The number of address lookup cache misses.
+     * @see DistributedCommunicator#lookupAddress(java.net.InetAddress, int)
+     */
+    long getAddressLookupCacheMisses();
+}
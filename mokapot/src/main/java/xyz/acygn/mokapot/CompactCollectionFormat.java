@@ -0,0 +1,351 @@
+package xyz.acygn.mokapot;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import static java.lang.reflect.Modifier.isStatic;
+import static java.security.AccessController.doPrivileged;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import xyz.acygn.mokapot.markers.DistributedError;
+import xyz.acygn.mokapot.wireformat.ObjectDescription.Size;
+import static xyz.acygn.mokapot.wireformat.ObjectWireFormat.COMPACT_COLLECTION_CLASSES;
+import xyz.acygn.mokapot.wireformat.ReadableDescription;
+
+/**
+ * A compact description format for the most commonly used collection classes
+ * in <code>java.util</code>. These classes keep their elements in
+ * <code>transient</code> fields (backing arrays padded with <code>null</code>s,
+ * hash tables and linked nodes), and describing them field-by-field skips
+ * those, sending only bookkeeping such as sizes, load factors and
+ * modification counts; the reproduced collection would be corrupt. Instead,
+ * the description consists of a format version, anything that affects the
+ * collection's behaviour (the comparator of a sorted collection, and the
+ * ordering of a <code>LinkedHashMap</code>), the number of elements, and the
+ * elements themselves (or for a map, its keys and values alternately) in
+ * iteration order. The structure is rebuilt from the elements when the
+ * description is reproduced.
+ * <p>
+ * The format is used only for objects whose actual class is exactly one of
+ * the classes it knows about (subclasses might have extra state of their
+ * own). These classes are always marshalled via long references, so the
+ * format is used only when a collection itself has to be described, e.g. when
+ * it migrates or is replicated. The capacity and load factor of the
+ * collection are not preserved.
+ *
+ * @see xyz.acygn.mokapot.wireformat.ObjectWireFormat#COMPACT_COLLECTION_CLASSES
+ * @see ExposedMethodsImpl#defaultStandinDescription
+ */
+final class CompactCollectionFormat {
+
+    /**
+     * The version of the format that this class writes. This is the first
+     * byte of every description, so that the format can be changed in the
+     * future without old descriptions being misread.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * The instance fields of each class that this format is used for,
+     * including <code>transient</code> fields (which hold the actual
+     * elements, and are skipped by field-by-field descriptions). These have
+     * already been made accessible.
+     */
+    private static final Map<Class<?>, List<Field>> ALL_FIELDS
+            = doPrivileged((PrivilegedAction<Map<Class<?>, List<Field>>>) () -> {
+                Map<Class<?>, List<Field>> rv = new HashMap<>();
+                for (Class<?> about : COMPACT_COLLECTION_CLASSES) {
+                    rv.put(about, findAllFields(about));
+                }
+                return rv;
+            });
+
+    /**
+     * The size of the part of a description that doesn't depend on the
+     * collection's contents: a version byte, plus the element count.
+     */
+    private static final Size HEADER_SIZE = Size.LENGTH_SIZE.addBytes(1);
+
+    /**
+     * Inaccessible constructor. This is a utility class, not meant to be
+     * instantiated.
+     */
+    private CompactCollectionFormat() {
+    }
+
+    /**
+     * Returns whether objects of the given actual class are described using
+     * this format.
+     *
+     * @param about The actual class of the object.
+     * @return <code>true</code> if this format is used for the class.
+     * @see Marshalling#compactCollectionFormatsEnabled()
+     */
+    static boolean appliesTo(Class<?> about) {
+        return Marshalling.compactCollectionFormatsEnabled()
+                && COMPACT_COLLECTION_CLASSES.contains(about);
+    }
+
+    /**
+     * Calculates the size of the description of a collection.
+     *
+     * @param about The actual class of the collection; must be a class for
+     * which <code>appliesTo</code> returns <code>true</code>.
+     * @param collection The collection.
+     * @return The size of its description.
+     */
+    static Size descriptionSize(Class<?> about, Object collection) {
+        Size size = HEADER_SIZE;
+        if (isSorted(about)) {
+            size = size.add(ExposedMethodsImpl.descriptionSizeOfValue(
+                    Comparator.class, comparatorOf(collection), collection));
+        }
+        if (about == LinkedHashMap.class) {
+            size = size.addBytes(1);
+        }
+        for (Object element : contents(collection)) {
+            size = size.add(ExposedMethodsImpl.descriptionSizeOfValue(
+                    Object.class, element, collection));
+        }
+        return size;
+    }
+
+    /**
+     * Writes the description of a collection.
+     *
+     * @param <U> The type of <code>into</code>.
+     * @param writer The method via which the elements will be recursively
+     * written into the description.
+     * @param into The place to write the description.
+     * @param about The actual class of the collection; must be a class for
+     * which <code>appliesTo</code> returns <code>true</code>.
+     * @param collection The collection to describe.
+     * @throws IOException If something goes wrong writing the description
+     */
+    static <U extends DataOutput> void describe(DescriptionWriter<U> writer,
+            U into, Class<?> about, Object collection) throws IOException {
+        into.writeByte(VERSION);
+        if (isSorted(about)) {
+            ExposedMethodsImpl.describeField(writer, into, Comparator.class,
+                    comparatorOf(collection), collection);
+        }
+        if (about == LinkedHashMap.class) {
+            into.writeBoolean(isAccessOrdered(collection));
+        }
+        Collection<?> contents = contents(collection);
+        into.writeInt(collection instanceof Map
+                ? ((Map<?, ?>) collection).size() : contents.size());
+        for (Object element : contents) {
+            ExposedMethodsImpl.describeField(
+                    writer, into, Object.class, element, collection);
+        }
+    }
+
+    /**
+     * Replaces the content of an object with a collection reproduced from a
+     * description. The collection is rebuilt from its elements as a new
+     * object, whose fields are then copied into <code>referent</code>.
+     *
+     * @param referent The object to overwrite. This may have been created
+     * without running its constructor.
+     * @param about The actual class of the collection; must be a class for
+     * which <code>appliesTo</code> returns <code>true</code>.
+     * @param description The description to reproduce.
+     * @throws IOException If the description appears to be corrupted, or was
+     * written using an unknown version of the format
+     */
+    static void reproduceInto(Object referent, Class<?> about,
+            ReadableDescription description) throws IOException {
+        byte version = description.readByte();
+        if (version != VERSION) {
+            throw new IOException("Description of " + about
+                    + " uses unknown collection format version " + version);
+        }
+
+        Comparator<?> comparator = null;
+        if (isSorted(about)) {
+            comparator = (Comparator<?>) ExposedMethodsImpl.reproduceField(
+                    Comparator.class, description, referent);
+        }
+        boolean accessOrder = false;
+        if (about == LinkedHashMap.class) {
+            accessOrder = description.readBoolean();
+        }
+        int count = description.readInt();
+        if (count < 0) {
+            throw new IOException("Description of " + about
+                    + " has negative element count " + count);
+        }
+
+        Object rebuilt = construct(about, comparator, accessOrder, count);
+        if (rebuilt instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> map = (Map<Object, Object>) rebuilt;
+            for (int i = 0; i < count; i++) {
+                Object key = ExposedMethodsImpl.reproduceField(
+                        Object.class, description, referent);
+                map.put(key, ExposedMethodsImpl.reproduceField(
+                        Object.class, description, referent));
+            }
+        } else {
+            @SuppressWarnings("unchecked")
+            Collection<Object> collection = (Collection<Object>) rebuilt;
+            for (int i = 0; i < count; i++) {
+                collection.add(ExposedMethodsImpl.reproduceField(
+                        Object.class, description, referent));
+            }
+        }
+
+        for (Field f : ALL_FIELDS.get(about)) {
+            try {
+                f.set(referent, f.get(rebuilt));
+            } catch (IllegalArgumentException | IllegalAccessException ex) {
+                throw new IOException("Could not set field " + f, ex);
+            }
+        }
+    }
+
+    /**
+     * Creates a new, empty collection, ready to have elements added.
+     *
+     * @param about The class of collection to create.
+     * @param comparator The comparator of a sorted collection, or
+     * <code>null</code> to use the natural ordering.
+     * @param accessOrder For a <code>LinkedHashMap</code>, whether it's
+     * ordered by access rather than by insertion.
+     * @param count The number of elements that will be added.
+     * @return The new collection.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object construct(Class<?> about, Comparator<?> comparator,
+            boolean accessOrder, int count) {
+        /* Enough capacity that adding the elements won't cause a resize at
+           the default load factor. */
+        int hashCapacity = Math.max((int) (count / 0.75f) + 1, 16);
+        if (about == ArrayList.class) {
+            return new ArrayList<>(count);
+        } else if (about == LinkedList.class) {
+            return new LinkedList<>();
+        } else if (about == ArrayDeque.class) {
+            return new ArrayDeque<>(count);
+        } else if (about == HashSet.class) {
+            return new HashSet<>(hashCapacity);
+        } else if (about == LinkedHashSet.class) {
+            return new LinkedHashSet<>(hashCapacity);
+        } else if (about == TreeSet.class) {
+            return new TreeSet<>((Comparator<Object>) comparator);
+        } else if (about == HashMap.class) {
+            return new HashMap<>(hashCapacity);
+        } else if (about == LinkedHashMap.class) {
+            return new LinkedHashMap<>(hashCapacity, 0.75f, accessOrder);
+        } else if (about == TreeMap.class) {
+            return new TreeMap<>((Comparator<Object>) comparator);
+        }
+        throw new IllegalArgumentException(
+                about + " has no compact collection format");
+    }
+
+    /**
+     * Returns the objects that a collection's description lists: its
+     * elements, or for a map, its keys and values alternately.
+     *
+     * @param collection The collection or map.
+     * @return The objects in the order they're described.
+     */
+    private static Collection<?> contents(Object collection) {
+        if (!(collection instanceof Map)) {
+            return (Collection<?>) collection;
+        }
+        Map<?, ?> map = (Map<?, ?>) collection;
+        Collection<Object> rv = new ArrayList<>(map.size() * 2);
+        map.forEach((k, v) -> {
+            rv.add(k);
+            rv.add(v);
+        });
+        return rv;
+    }
+
+    /**
+     * Returns whether collections of the given class have a comparator.
+     *
+     * @param about The actual class of the collection.
+     * @return <code>true</code> if it's a sorted set or map.
+     */
+    private static boolean isSorted(Class<?> about) {
+        return SortedSet.class.isAssignableFrom(about)
+                || SortedMap.class.isAssignableFrom(about);
+    }
+
+    /**
+     * Returns the comparator of a sorted collection.
+     *
+     * @param collection The collection.
+     * @return Its comparator, or <code>null</code> if it uses the natural
+     * ordering or isn't sorted.
+     */
+    private static Comparator<?> comparatorOf(Object collection) {
+        if (collection instanceof SortedSet) {
+            return ((SortedSet<?>) collection).comparator();
+        } else if (collection instanceof SortedMap) {
+            return ((SortedMap<?, ?>) collection).comparator();
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a <code>LinkedHashMap</code> is ordered by access
+     * rather than by insertion. There's no method for this, so it's read from
+     * the field that stores it.
+     *
+     * @param map The map.
+     * @return Whether the map is access-ordered.
+     */
+    private static boolean isAccessOrdered(Object map) {
+        for (Field f : ALL_FIELDS.get(LinkedHashMap.class)) {
+            if (f.getName().equals("accessOrder")) {
+                try {
+                    return f.getBoolean(map);
+                } catch (IllegalAccessException ex) {
+                    /* The field was made accessible when it was found. */
+                    throw new DistributedError(ex, "accessing field: " + f);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds all the instance fields of a class, including those declared in
+     * its superclasses, and makes them accessible. Must be called with
+     * sufficient privileges to do so.
+     *
+     * @param about The class.
+     * @return A list of its instance fields.
+     */
+    private static List<Field> findAllFields(Class<?> about) {
+        List<Field> rv = new ArrayList<>();
+        for (Class<?> c = about; c != null; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (!isStatic(f.getModifiers())) {
+                    f.setAccessible(true);
+                    rv.add(f);
+                }
+            }
+        }
+        return rv;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import static xyz.acygn.mokapot.ClassKnowledge.knowledgeForClass;
@@ -114,6 +115,17 @@ class Connection implements Expirable {
      */
     private final Lock messageWriteLock = new ReentrantLock();
 
+    /**
+     * The number of bytes that threads are waiting to send, or are sending,
+     * via this connection.
+     */
+    private final AtomicLong queuedBytes = new AtomicLong(0);
+
+    /**
+     * The sort of message that this end of the connection reserves it for.
+     */
+    private volatile Lane lane = Lane.ORDINARY;
+
     /**
      * The keepalive on the communicator, to prevent it from exiting while we
      * might still have messages to receive.
@@ -170,6 +182,18 @@ class Connection implements Expirable {
                 ShutdownStage.CONNECTION,
                 "connection " + connectionID + " from " + remoteAddress);
         this.needsListenLoop = needsListenLoop;
+        localCommunicator.getMetrics().connectionOpened();
+    }
+
+    /**
+     * Records, in the communicator's metrics and in any flight recording, that
+     * this connection has closed. Must be called exactly once, when the
+     * keepalive lock is released.
+     */
+    private void recordClosed() {
+        localCommunicator.getMetrics().connectionClosed();
+        FlightRecorderEvents.EVENTS.connectionClosed(
+                remoteAddress, connectionID);
     }
 
     /**
@@ -209,6 +233,39 @@ class Connection implements Expirable {
         this.partner = partner;
     }
 
+    /**
+     * Marks this connection as being reserved, at this end, for sending a
+     * particular sort of message. Should be called before the connection is
+     * registered. (The other end of the connection isn't informed, and can
+     * use it for any sort of message.)
+     *
+     * @param lane The sort of message that the connection is for.
+     */
+    void setLane(Lane lane) {
+        this.lane = lane;
+    }
+
+    /**
+     * Returns the sort of message that this end of the connection reserves it
+     * for.
+     *
+     * @return The connection's lane.
+     */
+    Lane getLane() {
+        return lane;
+    }
+
+    /**
+     * Returns how heavily loaded the send side of this connection is, i.e.
+     * how much a new message would have to wait before being sent.
+     *
+     * @return The number of bytes that are queued to be sent, or are being
+     * sent, via this connection.
+     */
+    long getLoad() {
+        return queuedBytes.get();
+    }
+
     /**
      * Sends the given sequence of bytes via this connection. The sequence must
      * consist of exactly one command (such as <code>MESSAGE_CODE</code> or
@@ -220,16 +277,50 @@ class Connection implements Expirable {
      * @throws IOException If something goes wrong sending the message
      */
     void sendMessage(byte[] dataBytes) throws ExpiredException, IOException {
-        try (DeterministicAutocloseable ac
-                = new AutocloseableLockWrapper(messageWriteLock, "send message")) {
-            if ((expiredWhere.get() & 1) == 1) {
-                throw ExpiredException.SINGLETON;
+        sendMessage(dataBytes, null);
+    }
+
+    /**
+     * Sends the given sequence of bytes via this connection, recording the
+     * time taken for latency tracing. Apart from the tracing, this is the
+     * same as <code>sendMessage(byte[])</code>.
+     *
+     * @param dataBytes The bytes of the message to send.
+     * @param trace The tracing information of the message that the bytes
+     * encode, or <code>null</code> if the message isn't being traced.
+     * @throws ExpiredException If this connection has been locally expired,
+     * causing us to promise to the remote side that we wouldn't send along it
+     * @throws IOException If something goes wrong sending the message
+     */
+    void sendMessage(byte[] dataBytes, MessageTrace trace)
+            throws ExpiredException, IOException {
+        MessageTracer tracer = trace == null ? null
+                : localCommunicator.getMessageTracer();
+        long lockRequestedAt = tracer == null ? 0 : MessageTracer.now();
+        long lockedAt;
+
+        queuedBytes.addAndGet(dataBytes.length);
+        try {
+            try (DeterministicAutocloseable ac
+                    = new AutocloseableLockWrapper(messageWriteLock, "send message")) {
+                if ((expiredWhere.get() & 1) == 1) {
+                    throw ExpiredException.SINGLETON;
+                }
+
+                lockedAt = tracer == null ? 0 : MessageTracer.now();
+                socket.getOutputStream().write(dataBytes);
             }
 
-            socket.getOutputStream().write(dataBytes);
+            socket.getOutputStream().flush();
+        } finally {
+            queuedBytes.addAndGet(-dataBytes.length);
+        }
+        if (tracer != null) {
+            tracer.recordPhase(localCommunicator, "write lock", trace, null,
+                    lockRequestedAt, lockedAt);
+            tracer.recordPhase(localCommunicator, "write", trace, null,
+                    lockedAt, MessageTracer.now());
         }
-
-        socket.getOutputStream().flush();
         if (partner != null) {
             partner.handleOneMessage();
         }
@@ -256,6 +347,7 @@ class Connection implements Expirable {
             /* We must have just set the value from 1 to 3 (the only remaining
                possibility); shut down the connection. */
             keepaliveLock.close();
+            recordClosed();
             try {
                 socket.close();
             } catch (IOException ex1) {
@@ -308,6 +400,7 @@ class Connection implements Expirable {
                the keepalive lock. (The keepalive lock is closed first, because
                closing the socket may throw an exception.) */
             keepaliveLock.close();
+            recordClosed();
             try {
                 socket.close();
             } catch (IOException ex) {
@@ -367,6 +460,8 @@ class Connection implements Expirable {
                 = new AutocloseableLockWrapper(messageReadLock, "read message")) {
             InputStream is = bufferedSocketInputStream;
             int command = is.read();
+            MessageTracer tracer = localCommunicator.getMessageTracer();
+            long arrivedAt = tracer == null ? 0 : MessageTracer.now();
             switch (command) {
                 case MESSAGE_CODE:
                     /* handle message; the main case, code below */
@@ -376,6 +471,7 @@ class Connection implements Expirable {
                        both sides of it */
                     if (expiredWhere.getAndSet(3) != 3) {
                         keepaliveLock.close();
+                        recordClosed();
                         socket.close();
                     }
                     return;
@@ -399,10 +495,41 @@ class Connection implements Expirable {
             MessageEnvelope envelope
                     = knowledgeForClass(MessageEnvelope.class)
                             .reproduce(fds, false);
+            MessageTrace trace = envelope.getAddress().getTrace();
+            if (tracer != null && trace != null) {
+                trace.setReceived(arrivedAt, MessageTracer.now());
+                tracer.recordPhase(localCommunicator, "in transit", trace,
+                        null, trace.getEncodedAt(), arrivedAt);
+                tracer.recordPhase(localCommunicator, "decode", trace, null,
+                        arrivedAt, trace.getDecodedAt());
+            }
             localCommunicator.handleArrivingMessage(envelope);
         } catch (IOException | UnsupportedOperationException ex) {
             localCommunicator.asyncExceptionHandler(ex);
             setRemoteExpiredOrBroken();
         }
     }
+
+    /**
+     * The sorts of message that a connection can be reserved for sending.
+     * Giving each sort its own connection means that each has its own write
+     * lock at this end, and its own read loop at the other end, so that a
+     * backlog of one sort of message doesn't delay the others.
+     */
+    static enum Lane {
+        /**
+         * Small control and housekeeping messages, such as garbage collection
+         * and keepalive messages.
+         */
+        CONTROL,
+        /**
+         * Messages that are neither control nor bulk messages.
+         */
+        ORDINARY,
+        /**
+         * Messages whose encoded size reaches the communicator's bulk
+         * message threshold.
+         */
+        BULK
+    }
 }
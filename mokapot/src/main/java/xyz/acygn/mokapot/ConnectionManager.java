@@ -6,6 +6,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import static xyz.acygn.mokapot.ClassKnowledge.knowledgeForClass;
 import xyz.acygn.mokapot.markers.DistributedError;
 import xyz.acygn.mokapot.util.AutocloseableLockWrapper;
@@ -133,7 +134,7 @@ class ConnectionManager {
         }
         this.listenSocket = newListenSocket;
 
-        addressBytes = new Marshalling(communicator).describeToByteArray(
+        addressBytes = Marshalling.describeToByteArray(
                 communicator.getMyAddress());
 
         try {
@@ -326,6 +327,7 @@ class ConnectionManager {
      *
      * @param envelope The envelope containing the message to send.
      * @param target The address of the communicator to send it to.
+     * @param control Whether the envelope contains a control message.
      * @throws IOException If no existing connection functions, and there was a
      * failure to create a new one
      * @throws CommunicationEndpoint.IncompatibleEndpointException If the local
@@ -333,23 +335,48 @@ class ConnectionManager {
      * endpoint (e.g. they have no protocols in common)
      */
     void sendMessageTo(MessageEnvelope envelope,
-            CommunicationAddress target) throws IOException,
+            CommunicationAddress target, boolean control) throws IOException,
             CommunicationEndpoint.IncompatibleEndpointException {
+        MessageTracer tracer = communicator.getMessageTracer();
+        MessageTrace trace = envelope.getAddress().getTrace();
+        if (trace != null) {
+            /* This has to happen before encoding, so that the recipient knows
+               when the message was sent; and it has to happen even if we
+               aren't recording phases ourselves, in case the recipient is. */
+            trace.setEncodedAt(MessageTracer.now());
+        }
         byte[] encoded = encodeMessage(envelope);
+        if (tracer != null && trace != null) {
+            tracer.recordPhase(communicator, "encode", trace, null,
+                    trace.getEncodedAt(), MessageTracer.now());
+        }
+
+        /* Control messages and large messages go via connections of their
+           own, if those are in use, so that they don't get held up behind
+           other messages or hold up small ones. If all the suitable ordinary
+           connections are busy, we prefer to open another one, as long as we
+           haven't reached the limit. None of this applies if the target can't
+           accept connections; then we can only use the ones it opened. */
+        int bulkThreshold = communicator.getBulkMessageThreshold();
+        boolean canOpen = !(target instanceof OutboundOnlyCommunicationAddress);
+        Connection.Lane lane;
+        if (!canOpen) {
+            lane = Connection.Lane.ORDINARY;
+        } else if (control && communicator.isControlLaneEnabled()) {
+            lane = Connection.Lane.CONTROL;
+        } else if (bulkThreshold > 0 && encoded.length >= bulkThreshold) {
+            lane = Connection.Lane.BULK;
+        } else {
+            lane = Connection.Lane.ORDINARY;
+        }
+        int connectionsPerPeer = communicator.getConnectionsPerPeer();
 
         /* Can we send it using an existing connection? */
-        Holder<Boolean> sent = new Holder<>(Boolean.FALSE);
-        connections.runMethodOn(target,
-                (alt) -> alt.callOnSomething((c) -> {
-                    try {
-                        c.sendMessage(encoded);
-                        sent.setValue(Boolean.TRUE);
-                    } catch (IOException ex) {
-                        /* Treat the connection as though it were shut down,
-                           and try a different connection. */
-                        throw Expirable.ExpiredException.SINGLETON;
-                    }
-                }), ExpirableAlternatives::new);
+        boolean sent = sendViaExisting(target, encoded, trace,
+                (c) -> c.getLane() == lane,
+                (alt) -> canOpen && lane == Connection.Lane.ORDINARY
+                && alt.count((c) -> c.getLane() == Connection.Lane.ORDINARY)
+                < connectionsPerPeer);
 
         /* No, we'll have to create a new one. Note that we need to make sure
            that the message is sent successfully before we add the new
@@ -357,16 +384,18 @@ class ConnectionManager {
            potential thread leak and quadratic slowdown, due to trying an
            ever-increasing number of failing connections with each new message
            attempt. */
-        if (!sent.getValue()) {
+        if (!sent) {
             SocketLike socket;
             try {
-                socket = communicator.getEndpoint().newConnection(target);
-            } catch (CommunicationEndpoint.IncompatibleEndpointException ex) {
-                try {
-                    socket = target.connectHere(target);
-                } catch (CommunicationEndpoint.IncompatibleEndpointException ex1) {
-                    throw ex;
+                socket = openSocket(target);
+            } catch (IOException | CommunicationEndpoint.IncompatibleEndpointException ex) {
+                /* If we were only opening a connection to avoid a busy or
+                   unsuitable one, use that one instead after all. */
+                if (sendViaExisting(target, encoded, trace, (c) -> true,
+                        (alt) -> false)) {
+                    return;
                 }
+                throw ex;
             }
             try {
                 OutputStream os = socket.getOutputStream();
@@ -375,18 +404,19 @@ class ConnectionManager {
                 if (!secondary) {
                     os.write(PERSISTENT_CODE);
                     os.write(addressBytes);
-                    os.write(new Marshalling(communicator).describeToByteArray(id));
+                    os.write(Marshalling.describeToByteArray(id));
                     os.flush();
                 }
                 Connection c = new Connection(
                         socket, id, communicator, target, !secondary);
+                c.setLane(lane);
                 if (socket instanceof SecondaryEndpoint.PairedStreamSocketLike) {
                     Connection otherC = ((SecondaryEndpoint.PairedStreamSocketLike) socket).getLinkedConnection();
                     c.setPartner(otherC);
                     otherC.setPartner(c);
                 }
                 try {
-                    c.sendMessage(encoded);
+                    c.sendMessage(encoded, trace);
                     registerConnection(c);
                 } catch (Expirable.ExpiredException ex) {
                     /* This can only happen due to the remote side of the
@@ -414,6 +444,65 @@ class ConnectionManager {
         }
     }
 
+    /**
+     * Sends an encoded message via the least loaded of the existing
+     * connections to its target that match a filter.
+     *
+     * @param target The address of the communicator to send the message to.
+     * @param encoded The encoded message.
+     * @param trace The tracing information of the message, or
+     * <code>null</code> if it isn't being traced.
+     * @param filter Which connections may be used.
+     * @param onlyIfIdle A function that, given the set of connections to the
+     * target, returns whether only an idle connection may be used (because
+     * the caller would rather open a new connection than wait for a busy
+     * one).
+     * @return <code>true</code> if the message was sent.
+     */
+    private boolean sendViaExisting(CommunicationAddress target,
+            byte[] encoded, MessageTrace trace, Predicate<Connection> filter,
+            Predicate<ExpirableAlternatives<GlobalID, Connection>> onlyIfIdle) {
+        Holder<Boolean> sent = new Holder<>(Boolean.FALSE);
+        connections.runMethodOn(target,
+                (alt) -> sent.setValue(alt.callOnLeastLoaded(filter,
+                        Connection::getLoad,
+                        onlyIfIdle.test(alt) ? 0 : Long.MAX_VALUE,
+                        (c) -> {
+                            try {
+                                c.sendMessage(encoded, trace);
+                            } catch (IOException ex) {
+                                /* Treat the connection as though it were shut
+                                   down, and try a different connection. */
+                                throw Expirable.ExpiredException.SINGLETON;
+                            }
+                        })), ExpirableAlternatives::new);
+        return sent.getValue();
+    }
+
+    /**
+     * Opens a socket to a remote communicator, using our endpoint if possible
+     * and the remote communicator's address otherwise.
+     *
+     * @param target The address of the remote communicator.
+     * @return A connected socket.
+     * @throws IOException If the socket could not be opened
+     * @throws CommunicationEndpoint.IncompatibleEndpointException If neither
+     * our endpoint nor the target's address can create the socket
+     */
+    private SocketLike openSocket(CommunicationAddress target)
+            throws IOException,
+            CommunicationEndpoint.IncompatibleEndpointException {
+        try {
+            return communicator.getEndpoint().newConnection(target);
+        } catch (CommunicationEndpoint.IncompatibleEndpointException ex) {
+            try {
+                return target.connectHere(target);
+            } catch (CommunicationEndpoint.IncompatibleEndpointException ex1) {
+                throw ex;
+            }
+        }
+    }
+
     /**
      * Adds a new connection to the pool of connections being managed by this
      * connection manager. The connection will be added to the set of
@@ -450,6 +539,8 @@ class ConnectionManager {
                     }
                     return ea;
                 });
+        FlightRecorderEvents.EVENTS.connectionOpened(
+                connection.getRemoteAddress(), connection.getConnectionID());
         connection.startListenLoop();
     }
 }
@@ -10,12 +10,17 @@ import java.security.KeyStoreException;
 import java.security.PrivilegedAction;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -24,6 +29,7 @@ import java.util.concurrent.TimeUnit;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import static xyz.acygn.mokapot.Authorisations.UNRESTRICTED;
 import static xyz.acygn.mokapot.ClassKnowledge.knowledgeForActualClass;
@@ -263,6 +269,508 @@ public class DistributedCommunicator {
         this.debugMonitor = debugMonitor;
     }
 
+    /**
+     * The statistics kept about this communicator's activity.
+     */
+    private final CommunicatorMetrics metrics = new CommunicatorMetrics(this);
+
+    /**
+     * Returns the statistics kept about this communicator's activity. These
+     * are always kept, whether or not the communicator is running, and are
+     * additionally published via JMX while it's running.
+     *
+     * @return The communicator's live metrics. Use
+     * <code>CommunicatorMetrics#snapshot</code> to read them consistently.
+     */
+    public CommunicatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The latency tracer used for this communicator.
+     */
+    private volatile MessageTracer messageTracer = null;
+
+    /**
+     * Sets the latency tracer for this communicator. When a tracer is
+     * installed, a sample of the messages sent by this communicator will have
+     * the time spent in each phase of their handling recorded, together with
+     * the messages sent as a consequence of handling them. Messages that are
+     * part of a trace started elsewhere are traced whether or not a tracer is
+     * installed; but the phases that happen on this communicator are recorded
+     * only if it has a tracer.
+     * <p>
+     * The communicator doesn't close the tracer when it stops; that's the
+     * responsibility of the caller.
+     *
+     * @param messageTracer The new tracer. This can be <code>null</code>, in
+     * which case tracing will be turned off.
+     */
+    public void setMessageTracer(MessageTracer messageTracer) {
+        this.messageTracer = messageTracer;
+    }
+
+    /**
+     * Returns the latency tracer used for this communicator.
+     *
+     * @return The tracer, or <code>null</code> if tracing is turned off.
+     */
+    MessageTracer getMessageTracer() {
+        return messageTracer;
+    }
+
+    /**
+     * The largest number of connections used to send ordinary messages to any
+     * one remote communicator.
+     */
+    private volatile int connectionsPerPeer = 1;
+
+    /**
+     * The size, in bytes, from which an encoded message counts as a bulk
+     * message; 0 if no messages do.
+     */
+    private volatile int bulkMessageThreshold = 0;
+
+    /**
+     * Whether control messages are sent via their own connections.
+     */
+    private volatile boolean controlLane = false;
+
+    /**
+     * The executor used to run the threads that this communicator creates, or
+     * <code>null</code> to use a thread pool shared between communicators.
+     */
+    private volatile Executor threadExecutor = null;
+
+    /**
+     * The limits on the number of thread projections that run at once.
+     */
+    private final InboundAdmission admission = new InboundAdmission(this);
+
+    /**
+     * The results of previous calls to <code>lookupAddress</code>.
+     */
+    private final AddressLookupCache addressLookupCache
+            = new AddressLookupCache(AddressLookupCache.DEFAULT_CAPACITY);
+
+    /**
+     * The cached results of read-only methods called on remote objects.
+     */
+    private final ResultCache resultCache = new ResultCache(this);
+
+    /**
+     * The load reports received from other communicators.
+     */
+    private final LoadReports loadReports = new LoadReports(this);
+
+    /**
+     * The policy used to choose where <code>runSomewhere</code> runs code.
+     */
+    private volatile PlacementPolicy placementPolicy
+            = PlacementPolicy.powerOfTwoChoices();
+
+    /**
+     * The number of elements transferred at once when streaming a remote
+     * iterator; 0 if remote iterators aren't streamed.
+     */
+    private volatile int iteratorChunkSize = 0;
+
+    /**
+     * The number of chunks that can be fetched ahead of the consumer when
+     * streaming a remote iterator.
+     */
+    private volatile int iteratorCredits = 1;
+
+    /**
+     * The largest number of invocations that a scatter-gather operation runs
+     * on any one peer at once; 0 for no limit.
+     */
+    private volatile int scatterGatherPeerLimit = 4;
+
+    /**
+     * Sets the number of connections over which messages to a single remote
+     * communicator can be spread. With more than one connection, a message is
+     * sent via whichever connection has the least data waiting to be sent;
+     * a further connection is opened (up to this limit) when all existing
+     * connections are busy, so that a large message doesn't hold up the
+     * messages queued behind it. Connections are only opened on demand, and
+     * never to a communicator that doesn't accept inbound connections.
+     * <p>
+     * Note that messages sent via different connections can arrive in a
+     * different order from the order in which they were sent.
+     *
+     * @param connectionsPerPeer The largest number of connections to use for
+     * ordinary messages to each remote communicator. The default is 1.
+     * @throws IllegalArgumentException If <code>connectionsPerPeer</code> is
+     * less than 1
+     */
+    public void setConnectionsPerPeer(int connectionsPerPeer)
+            throws IllegalArgumentException {
+        if (connectionsPerPeer < 1) {
+            throw new IllegalArgumentException(
+                    "connectionsPerPeer must be at least 1");
+        }
+        this.connectionsPerPeer = connectionsPerPeer;
+    }
+
+    /**
+     * Returns the largest number of connections used to send ordinary
+     * messages to a single remote communicator.
+     *
+     * @return The number of connections.
+     * @see #setConnectionsPerPeer(int)
+     */
+    int getConnectionsPerPeer() {
+        return connectionsPerPeer;
+    }
+
+    /**
+     * Sets the size from which messages are sent via a separate bulk
+     * connection to their recipient, rather than via the connections used for
+     * ordinary messages. This keeps large messages (e.g. large objects being
+     * copied or migrated) from delaying small, latency-sensitive ones. The
+     * bulk connection is opened when the first such message is sent.
+     *
+     * @param bulkMessageThreshold The encoded size, in bytes, from which a
+     * message counts as bulk; or 0 (the default) to send all messages via
+     * the ordinary connections.
+     * @throws IllegalArgumentException If <code>bulkMessageThreshold</code> is
+     * negative
+     */
+    public void setBulkMessageThreshold(int bulkMessageThreshold)
+            throws IllegalArgumentException {
+        if (bulkMessageThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "bulkMessageThreshold must not be negative");
+        }
+        this.bulkMessageThreshold = bulkMessageThreshold;
+    }
+
+    /**
+     * Returns the size from which messages are sent via a bulk connection.
+     *
+     * @return The threshold, in bytes, or 0 if bulk connections are not used.
+     * @see #setBulkMessageThreshold(int)
+     */
+    int getBulkMessageThreshold() {
+        return bulkMessageThreshold;
+    }
+
+    /**
+     * Sets whether control messages (such as garbage collection, keepalive
+     * and migration synchronisation messages) are sent to each remote
+     * communicator via a connection of their own. This gives them a separate
+     * write lock at this end, and a separate read loop at the recipient, so
+     * that they can't be held up behind a backlog of messages from user code;
+     * without it, a burst of large messages can delay control messages for
+     * long enough that the objects they keep alive time out. The control
+     * connection is opened when the first control message is sent; to a
+     * communicator that doesn't accept inbound connections, control messages
+     * share the existing connections instead.
+     *
+     * @param controlLane <code>true</code> to use separate connections for
+     * control messages; <code>false</code> (the default) to send them via the
+     * same connections as other messages.
+     */
+    public void setControlLane(boolean controlLane) {
+        this.controlLane = controlLane;
+    }
+
+    /**
+     * Returns whether control messages are sent via their own connections.
+     *
+     * @return <code>true</code> if control messages have their own
+     * connections.
+     * @see #setControlLane(boolean)
+     */
+    boolean isControlLaneEnabled() {
+        return controlLane;
+    }
+
+    /**
+     * Sets the executor used to run the threads that this communicator
+     * creates. These are mostly the projections onto this system of threads
+     * that started on other systems, which spend most of their time blocked
+     * waiting for messages; so with deep chains of remote calls and many
+     * concurrent threads, they can use up a lot of native threads and memory.
+     * An executor that runs them on virtual threads (such as the one returned
+     * by <code>ThreadUtils#newVirtualThreadExecutor()</code>, on a JDK that
+     * supports them) makes each blocked thread far cheaper.
+     * <p>
+     * The executor is used for threads created after the call; it must run
+     * each task on a thread of its own, starting immediately, as the tasks
+     * can block waiting for each other. The communicator doesn't shut the
+     * executor down when it stops.
+     *
+     * @param threadExecutor The executor to use, or <code>null</code> (the
+     * default) to use a cached thread pool shared between communicators.
+     * @see xyz.acygn.mokapot.util.ThreadUtils#newVirtualThreadExecutor()
+     */
+    public void setThreadExecutor(Executor threadExecutor) {
+        this.threadExecutor = threadExecutor;
+    }
+
+    /**
+     * Returns the executor used to run the threads that this communicator
+     * creates.
+     *
+     * @return The executor, or <code>null</code> if the shared thread pool is
+     * used.
+     * @see #setThreadExecutor(Executor)
+     */
+    Executor getThreadExecutor() {
+        return threadExecutor;
+    }
+
+    /**
+     * Sets the largest number of thread projections that this communicator
+     * runs at once. A thread projection is created whenever a message arrives
+     * for a thread that isn't already running here, e.g. a remote method call
+     * from a new thread; without limits, a burst of such messages creates
+     * threads without bound. Projections beyond the limits wait in a queue
+     * until a running projection ends.
+     * <p>
+     * Note that a running projection may be waiting for a reply from a
+     * remote system (e.g. because it made a remote call of its own), and so
+     * may need another projection to run before it can end. (Calls back into
+     * the same logical thread are handled by its existing projection, and so
+     * aren't limited.) Limits that are too small for the number of distinct
+     * threads that call into each other can thus stop the program from making
+     * progress.
+     *
+     * @param total The largest number of projections to run at once, or 0
+     * (the default) for no limit.
+     * @param perPeer The largest number of projections to run at once on
+     * behalf of messages from any one remote system, or 0 (the default) for
+     * no limit.
+     * @throws IllegalArgumentException If either limit is negative
+     * @see #setQueuedProjectionSoftLimits(int, int)
+     */
+    public void setThreadProjectionLimits(int total, int perPeer)
+            throws IllegalArgumentException {
+        if (total < 0 || perPeer < 0) {
+            throw new IllegalArgumentException(
+                    "thread projection limits must not be negative");
+        }
+        admission.setRunningLimits(total, perPeer);
+    }
+
+    /**
+     * Sets the number of thread projections that can wait to start before
+     * this communicator pushes back on the systems that are sending the
+     * messages. Once the queue is full, the communicator stops reading
+     * messages from a connection that delivers a message that would need a
+     * new projection, until there's space in the queue again; the sender's
+     * writes will then block once the network buffers fill, slowing it down.
+     * <p>
+     * These are soft limits. The messages behind the one that's waiting may
+     * be the replies that the running projections need in order to end, so to
+     * avoid deadlock, reading resumes after at most a second (or the time set
+     * by <code>setQueuedProjectionMaxThrottle</code>), and the projection is
+     * queued even if the queue is still full. How often, and for
+     * how long, the communicator pushes back is recorded in its metrics, as
+     * is the number of times that the queue was allowed to exceed its limits.
+     *
+     * @param total The soft limit on the number of projections to queue, or 0
+     * (the default) for no limit.
+     * @param perPeer The soft limit on the number of projections to queue on
+     * behalf of messages from any one remote system, or 0 (the default) for
+     * no limit.
+     * @throws IllegalArgumentException If either limit is negative
+     * @see #setThreadProjectionLimits(int, int)
+     * @see #setQueuedProjectionMaxThrottle(Duration)
+     * @see CommunicatorMetrics#getThrottleEvents()
+     * @see CommunicatorMetrics#getThrottleOverruns()
+     */
+    public void setQueuedProjectionSoftLimits(int total, int perPeer)
+            throws IllegalArgumentException {
+        if (total < 0 || perPeer < 0) {
+            throw new IllegalArgumentException(
+                    "queued projection limits must not be negative");
+        }
+        admission.setQueueSoftLimits(total, perPeer);
+    }
+
+    /**
+     * Sets the longest time for which this communicator pushes back on a
+     * sender when the queue of thread projections is full. After this time,
+     * the communicator resumes reading from the sender's connection, and the
+     * projection is queued beyond the soft limits.
+     * <p>
+     * Raising this makes the push back stronger, so a sender that's too fast
+     * is slowed down more reliably; but while the communicator waits, it
+     * can't read the replies that its running projections may be waiting
+     * for, so the risk (and length) of a deadlock grows with it. Lowering it
+     * makes overruns of the soft limits more common.
+     *
+     * @param maxThrottle The longest time to push back for; the default is one
+     * second. Zero means that the queue is never waited for.
+     * @throws IllegalArgumentException If <code>maxThrottle</code> is
+     * negative
+     * @see #setQueuedProjectionSoftLimits(int, int)
+     * @see CommunicatorMetrics#getThrottleOverruns()
+     */
+    public void setQueuedProjectionMaxThrottle(Duration maxThrottle)
+            throws IllegalArgumentException {
+        if (maxThrottle.isNegative()) {
+            throw new IllegalArgumentException(
+                    "the throttling time must not be negative");
+        }
+        long nanos;
+        try {
+            nanos = maxThrottle.toNanos();
+        } catch (ArithmeticException ex) {
+            nanos = Long.MAX_VALUE;
+        }
+        admission.setMaxThrottle(nanos);
+    }
+
+    /**
+     * Sets the number of results of read-only methods that this communicator
+     * caches. When a method marked as <code>ReadOnly</code> is called on a
+     * remote object, with arguments that are all immutable values, and
+     * returns an immutable value, the result is cached; repeating the call
+     * returns the cached result without contacting the remote system. Results
+     * are discarded when they might be out of date (see
+     * <code>ReadOnly</code> for details), or when the cache is full (the least
+     * recently used result is discarded). The number of calls answered from
+     * the cache, and not, is recorded in the communicator's metrics.
+     *
+     * @param size The largest number of results to cache, or 0 to disable
+     * the cache. The default is 1024.
+     * @throws IllegalArgumentException If <code>size</code> is negative
+     * @see xyz.acygn.mokapot.markers.ReadOnly
+     * @see CommunicatorMetrics#getResultCacheHits()
+     */
+    public void setResultCacheSize(int size)
+            throws IllegalArgumentException {
+        if (size < 0) {
+            throw new IllegalArgumentException(
+                    "result cache size must not be negative");
+        }
+        resultCache.setCapacity(size);
+    }
+
+    /**
+     * Sets whether, and how, remote iterators are streamed. Normally, when a
+     * method of a remote object returns an iterator, the caller receives a
+     * long reference to it, and every call to <code>hasNext()</code> or
+     * <code>next()</code> is a network round trip. With streaming enabled, a
+     * method that's declared to return <code>Iterator</code>,
+     * <code>Spliterator</code> or <code>Stream</code> instead returns a local
+     * object that fetches the elements from the remote iterator in chunks,
+     * in the background, so that the next chunk can be in transit while the
+     * current one is being used.
+     * <p>
+     * Fetching ahead advances the remote iterator before the caller asks for
+     * the elements, and the returned iterators don't support
+     * <code>remove()</code>; so streaming should only be enabled if callers
+     * don't depend on either. Further operations on a returned
+     * <code>Stream</code> run locally, rather than on the remote system.
+     *
+     * @param chunkSize The largest number of elements to fetch at once, or 0
+     * (the default) to disable streaming.
+     * @param credits The largest number of chunks to fetch ahead of the
+     * caller (default 1).
+     * @throws IllegalArgumentException If <code>chunkSize</code> is negative,
+     * or <code>credits</code> is less than 1
+     */
+    public void setIteratorStreaming(int chunkSize, int credits)
+            throws IllegalArgumentException {
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException(
+                    "iterator chunk size must not be negative");
+        }
+        if (credits < 1) {
+            throw new IllegalArgumentException(
+                    "iterator credits must be at least 1");
+        }
+        this.iteratorCredits = credits;
+        this.iteratorChunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the number of elements transferred at once when streaming a
+     * remote iterator.
+     *
+     * @return The chunk size, or 0 if streaming is disabled.
+     * @see #setIteratorStreaming(int, int)
+     */
+    int getIteratorChunkSize() {
+        return iteratorChunkSize;
+    }
+
+    /**
+     * Returns the number of chunks that can be fetched ahead of the consumer
+     * when streaming a remote iterator.
+     *
+     * @return The number of credits.
+     * @see #setIteratorStreaming(int, int)
+     */
+    int getIteratorCredits() {
+        return iteratorCredits;
+    }
+
+    /**
+     * Sets the largest number of invocations that a scatter-gather operation
+     * runs on any one peer at once. Partitions beyond the limit wait until
+     * one of the peer's earlier invocations finishes, rather than all being
+     * sent at once; sending more invocations than the peer can run at once
+     * would only make them queue there instead, where they couldn't be
+     * started on a less busy peer, and would tie up a thread here each.
+     *
+     * @param perPeer The largest number of invocations to run on each peer at
+     * once, or 0 for no limit. The default is 4.
+     * @throws IllegalArgumentException If <code>perPeer</code> is negative
+     * @see #scatterGather(List, List, Object, BiFunction, Duration)
+     */
+    public void setScatterGatherPeerLimit(int perPeer)
+            throws IllegalArgumentException {
+        if (perPeer < 0) {
+            throw new IllegalArgumentException(
+                    "scatter-gather peer limit must not be negative");
+        }
+        this.scatterGatherPeerLimit = perPeer;
+    }
+
+    /**
+     * Sets the policy that <code>runSomewhere</code> and
+     * <code>choosePlacement</code> use to choose a system. The default is
+     * <code>PlacementPolicy.powerOfTwoChoices()</code>.
+     *
+     * @param placementPolicy The new policy.
+     * @throws NullPointerException If <code>placementPolicy</code> is
+     * <code>null</code>
+     * @see #runSomewhere(CopiableSupplier, Collection, Object...)
+     */
+    public void setPlacementPolicy(PlacementPolicy placementPolicy)
+            throws NullPointerException {
+        if (placementPolicy == null) {
+            throw new NullPointerException("placement policy is null");
+        }
+        this.placementPolicy = placementPolicy;
+    }
+
+    /**
+     * Returns the cache of results of read-only methods called on remote
+     * objects.
+     *
+     * @return The result cache.
+     */
+    ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Returns the load reports received from other communicators, and the
+     * record of placements in flight.
+     *
+     * @return The load report bookkeeping.
+     */
+    LoadReports getLoadReports() {
+        return loadReports;
+    }
+
     /**
      * A method called when an exception is triggered handling a request from
      * another system, and we can't communicate it back to the caller. This
@@ -652,6 +1160,8 @@ public class DistributedCommunicator {
 
             BackgroundGarbageCollection.startKeepalive(this);
         }
+
+        metrics.register();
     }
 
     /**
@@ -749,6 +1259,8 @@ public class DistributedCommunicator {
            have been holding the keepalive lock */
         executorService = null;
 
+        metrics.unregister();
+
         synchronized (DistributedCommunicator.class) {
             myEndpoint.informOfCommunicatorStop(this);
 
@@ -782,7 +1294,7 @@ public class DistributedCommunicator {
             } else {
                 MessageEnvelope envelope = new MessageEnvelope(
                         new MessageAddress(id, true, getMyAddress(),
-                                false, true),
+                                false, true, null, null),
                         new ActiveThreadInfo.LocalThreadShutdownMessage(),
                         this, getMyAddress());
                 /* note: ignore return value; if the attempt fails then the
@@ -863,28 +1375,36 @@ public class DistributedCommunicator {
             try (DeterministicAutocloseable keepThreadActive
                     = labelThreadActive(false, null)) {
                 Stopwatch timer = new Stopwatch(Lazy.TIME_BASE.get()).start();
+                MessageAddress messageAddress = new MessageAddress(
+                        getMyAddress(),
+                        message instanceof SynchronousMessage.BorrowOnly,
+                        message.isUnimportant(),
+                        MessageTrace.forOutgoingMessage(messageTracer),
+                        loadReports.reportFor(address));
                 MessageEnvelope envelope = new MessageEnvelope(
-                        new MessageAddress(getMyAddress(),
-                                message instanceof SynchronousMessage.BorrowOnly,
-                                message.isUnimportant()), message,
-                        this, address);
-                if (debugMonitor != null) {
-                    debugMonitor.newMessage(
-                            envelope.asMessageInfo(this,
-                                    timer.time(ChronoUnit.NANOS),
-                                    message, address));
+                        messageAddress, message, this, address);
+                envelope.recordMessage(debugMonitor, this,
+                        timer.time(ChronoUnit.NANOS), message, address);
+
+                /* Any callbacks we handle while waiting for the reply are part
+                   of the same trace as the message we sent. */
+                MessageTrace outerTrace
+                        = MessageTrace.enter(messageAddress.getTrace());
+                try {
+                    sendToAddress(address, envelope, message.isControl());
+
+                    /* Due to type erasure, we might not necessarily know what T
+                       is, so the best we can do is an unchecked cast. (The
+                       remote end of the connection should have verified that
+                       the type is a desired one, although obviously you can't
+                       prove that over the network.) */
+                    @SuppressWarnings("unchecked")
+                    T rv = (T) receiveMessagesToThread(
+                            myThreadID, address, null, false);
+                    return rv;
+                } finally {
+                    MessageTrace.restore(outerTrace);
                 }
-                sendToAddress(address, envelope);
-
-                /* Due to type erasure, we might not necessarily know what T is,
-                   so the best we can do is an unchecked cast. (The remote end
-                   of the connection should have verified that the type is a
-                   desired one, although obviously you can't prove that over the
-                   network.) */
-                @SuppressWarnings("unchecked")
-                T rv = (T) receiveMessagesToThread(
-                        myThreadID, address, null, false);
-                return rv;
             }
         }
     }
@@ -919,16 +1439,15 @@ public class DistributedCommunicator {
                 = maybeGetKeepaliveLock(ShutdownStage.MESSAGE,
                         "sendMessageAsync")) {
             Stopwatch timer = new Stopwatch(Lazy.TIME_BASE.get()).start();
+            MessageAddress messageAddress = new MessageAddress(threadID,
+                    false, getMyAddress(), false, message.isUnimportant(),
+                    MessageTrace.forOutgoingMessage(messageTracer),
+                    loadReports.reportFor(address));
             MessageEnvelope envelope = new MessageEnvelope(
-                    new MessageAddress(threadID, false, getMyAddress(), false,
-                            message.isUnimportant()),
-                    message, this, address);
-            if (debugMonitor != null) {
-                debugMonitor.newMessage(
-                        envelope.asMessageInfo(this,
-                                timer.time(ChronoUnit.NANOS), message, address));
-            }
-            sendToAddress(address, envelope);
+                    messageAddress, message, this, address);
+            envelope.recordMessage(debugMonitor, this,
+                    timer.time(ChronoUnit.NANOS), message, address);
+            sendToAddress(address, envelope, message.isControl());
         }
     }
 
@@ -940,13 +1459,14 @@ public class DistributedCommunicator {
      *
      * @param address The address of the virtual machine to send the message to.
      * @param envelope The message envelope to send.
+     * @param control Whether the envelope contains a control message.
      * @throws DistributedError If something went wrong sending the message
      */
-    private void sendToAddress(
-            CommunicationAddress address, MessageEnvelope envelope)
+    private void sendToAddress(CommunicationAddress address,
+            MessageEnvelope envelope, boolean control)
             throws DistributedError {
         try {
-            acceptor.sendMessageTo(envelope, address);
+            acceptor.sendMessageTo(envelope, address, control);
         } catch (IOException | CommunicationEndpoint.IncompatibleEndpointException ex) {
             if (envelope.getAddress().isUnimportant()) {
                 /* If the message is unimportant, and we can't send it, it's
@@ -965,8 +1485,13 @@ public class DistributedCommunicator {
 
     /**
      * Attempt to determine the communication address of the system running on
-     * the given address and port. This is a very slow operation, which can
-     * involve network access, so it's best to cache the result.
+     * the given address and port. This can be a very slow operation, which can
+     * involve network access. The communicator caches the results, and can
+     * skip the network access if it can confirm that a cached result is
+     * still correct (e.g. by checking it against the certificate from a
+     * recent connection to the same IP address and port); but if you're going
+     * to need the address repeatedly, it's still best to cache the result
+     * yourself.
      * <p>
      * Note that as long as the remote system continues to use the same keys to
      * authenticate itself, the address will stay the same. As such, you can,
@@ -991,7 +1516,7 @@ public class DistributedCommunicator {
             UnsupportedOperationException {
         IdentityMessage message = new IdentityMessage();
         GlobalID myThreadID = getCurrentThreadID(getMyAddress());
-        Communicable recipient = new TCPCommunicable() {
+        TCPCommunicable recipient = new TCPCommunicable() {
             @Override
             public InetAddress asInetAddress() {
                 return address;
@@ -1003,6 +1528,15 @@ public class DistributedCommunicator {
             }
         };
 
+        CommunicationAddress cached = addressLookupCache.get(address, port);
+        if (cached != null && myEndpoint instanceof SecureTCPCommunicationEndpoint
+                && ((SecureTCPCommunicationEndpoint) myEndpoint)
+                        .confirmAddress(recipient, cached)) {
+            metrics.addressLookup(true);
+            return cached;
+        }
+        metrics.addressLookup(false);
+
         try (SocketLike socket = myEndpoint.newConnection(recipient)) {
             OutputStream os = socket.getOutputStream();
             os.write(ConnectionManager.ADDRESS_LOOKUP_CODE);
@@ -1017,6 +1551,7 @@ public class DistributedCommunicator {
                         + " is claiming to be this client "
                         + "(is it using the same .p12 file?)");
             }
+            addressLookupCache.put(address, port, commAddress);
             return commAddress;
         } catch (CommunicationEndpoint.IncompatibleEndpointException ex) {
             throw new UnsupportedOperationException(ex);
@@ -1215,6 +1750,12 @@ public class DistributedCommunicator {
      * @param envelope The arriving message envelope (i.e. undecoded message).
      */
     void handleArrivingMessage(MessageEnvelope envelope) {
+        LoadReport load = envelope.getAddress().getLoadReport();
+        if (load != null) {
+            loadReports.reportReceived(
+                    envelope.getAddress().getSenderAddress(), load);
+        }
+
         GlobalID tid = envelope.getAddress().getThreadID();
         if (tid == null) {
             /* Lightweight messages are those which are guaranteed to be safe to
@@ -1236,10 +1777,11 @@ public class DistributedCommunicator {
 
         /* The thread is not currently running on this machine, or else its
            projection onto this machine is shutting down. Create a new thread to
-           serve as the projection onto this machine. While the thread exists,
-           it holds the communicator busy. */
+           serve as the projection onto this machine (once the limits on
+           running projections allow). While the thread exists, it holds the
+           communicator busy. */
         Holder<Boolean> needsTracking = new Holder<>();
-        new PooledThread(() -> {
+        admission.admit(envelope.getAddress().getSenderAddress(), () -> {
             try (final DeterministicAutocloseable holdBusy
                     = bestLockForThreadProjection(tid, envelope, needsTracking)) {
                 setCurrentThreadID(tid);
@@ -1283,7 +1825,7 @@ public class DistributedCommunicator {
                 sendWarning(
                         "Received a message while shutting down, cannot handle it");
             }
-        }).start(this);
+        });
     }
 
     /**
@@ -1463,6 +2005,197 @@ public class DistributedCommunicator {
         }, onMachine);
     }
 
+    /**
+     * Chooses one of several systems to run code on, using this
+     * communicator's placement policy. The policy can take into account the
+     * load on each system (as reported by the systems themselves, whenever
+     * they send a message to this one), and where the objects that the code
+     * will use are stored.
+     *
+     * @param candidates The systems that the code could run on. This may
+     * include this communicator's own address.
+     * @param affinity The objects that the code will use. Copiable objects
+     * are ignored, because they'd be copied to wherever the code runs.
+     * @return The chosen system.
+     * @throws IllegalArgumentException If <code>candidates</code> is empty,
+     * or the policy chooses a system that isn't one of the candidates
+     * @see #setPlacementPolicy(PlacementPolicy)
+     */
+    public CommunicationAddress choosePlacement(
+            Collection<CommunicationAddress> candidates, Object... affinity)
+            throws IllegalArgumentException {
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("no candidate systems");
+        }
+        List<CommunicationAddress> affinityLocations = new ArrayList<>();
+        for (Object o : affinity) {
+            CommunicationAddress location = locationForPlacement(o);
+            if (location != null) {
+                affinityLocations.add(location);
+            }
+        }
+        PlacementRequest request = new PlacementRequest(
+                new ArrayList<>(candidates), affinityLocations, loadReports);
+        CommunicationAddress rv = placementPolicy.choose(request);
+        if (!candidates.contains(rv)) {
+            throw new IllegalArgumentException(
+                    "placement policy chose " + rv
+                    + ", which is not a candidate");
+        }
+        return rv;
+    }
+
+    /**
+     * Runs the specified code on one of several systems, and returns its
+     * return value. The system is chosen as for
+     * <code>choosePlacement</code>; otherwise, this works like
+     * <code>runRemotely</code>. To create an object on the chosen system,
+     * the code can simply construct and return it (a noncopiable object will
+     * be returned as a long reference).
+     *
+     * @param <T> The type of the returned value.
+     * @param code The code to run.
+     * @param candidates The systems that the code could run on.
+     * @param affinity The objects that the code will use.
+     * @return The value supplied by the code being run, if any.
+     * @throws IllegalArgumentException If <code>candidates</code> is empty
+     * @see #choosePlacement(Collection, Object...)
+     * @see #runRemotely(CopiableSupplier, CommunicationAddress)
+     */
+    public <T> T runSomewhere(CopiableSupplier<T> code,
+            Collection<CommunicationAddress> candidates, Object... affinity)
+            throws IllegalArgumentException {
+        CommunicationAddress onMachine = choosePlacement(candidates, affinity);
+        loadReports.adjustInFlight(onMachine, 1);
+        try {
+            return runRemotely(code, onMachine);
+        } finally {
+            loadReports.adjustInFlight(onMachine, -1);
+        }
+    }
+
+    /**
+     * Runs a number of pieces of code (partitions) across several systems at
+     * once, and combines their results. Equivalent to
+     * <code>scatterGather(partitions, peers, identity, reducer, null)</code>;
+     * partitions are only re-executed if they fail.
+     *
+     * @param <T> The type of the partitions' results.
+     * @param <R> The type of the combined result.
+     * @param partitions The code to run for each partition.
+     * @param peers The systems to run the partitions on.
+     * @param identity The combined result of no partitions.
+     * @param reducer The function that combines a partition's result into the
+     * combined result so far.
+     * @return The combined result, and the time each peer took.
+     * @throws IllegalArgumentException If <code>peers</code> is empty
+     * @see #scatterGather(List, List, Object, BiFunction, Duration)
+     */
+    public <T, R> ScatterGatherResult<R> scatterGather(
+            List<? extends CopiableSupplier<? extends T>> partitions,
+            List<CommunicationAddress> peers, R identity,
+            BiFunction<R, ? super T, R> reducer)
+            throws IllegalArgumentException {
+        return scatterGather(partitions, peers, identity, reducer, null);
+    }
+
+    /**
+     * Runs a number of pieces of code (partitions) across several systems at
+     * once, and combines their results. The partitions are dealt out to the
+     * peers in turn, and started straight away up to the limit set by
+     * <code>setScatterGatherPeerLimit</code> (so with more partitions than
+     * peers, some peers run more than one partition at once); further
+     * partitions are started on each peer as its earlier ones finish. As each
+     * result arrives, it's combined into the results so far, on the calling
+     * thread, using <code>reducer</code>. The order in which results are
+     * combined is the order in which they arrive, so the reducer should not
+     * care about order.
+     * <p>
+     * If a partition has been running for longer than
+     * <code>stragglerTimeout</code> (time spent waiting to start doesn't
+     * count), it's started again on another peer (chosen by the placement
+     * policy from the peers that haven't run it yet), and the first result to
+     * arrive is used. A partition that fails is retried on another peer in
+     * the same way. Either way, each partition is run on each peer at most
+     * once, so the partitions should not have side effects that would cause
+     * problems if they were run more than once. If a partition fails on every
+     * peer, the exception from its last invocation is thrown; partitions that
+     * are still running at that point are left to finish, and their results
+     * are discarded.
+     * <p>
+     * This replaces the pattern of starting one thread per peer to call
+     * <code>runRemotely</code>, then joining the threads; in addition, the
+     * result reports how long each peer took, so that slow peers are visible.
+     *
+     * @param <T> The type of the partitions' results.
+     * @param <R> The type of the combined result.
+     * @param partitions The code to run for each partition.
+     * @param peers The systems to run the partitions on. This may include
+     * this communicator's own address; duplicates are ignored.
+     * @param identity The combined result of no partitions.
+     * @param reducer The function that combines a partition's result into the
+     * combined result so far.
+     * @param stragglerTimeout How long a partition may run before it's
+     * started again elsewhere; <code>null</code> to only re-execute
+     * partitions that fail.
+     * @return The combined result, and the time each peer took.
+     * @throws IllegalArgumentException If <code>peers</code> is empty, or
+     * <code>stragglerTimeout</code> is negative
+     * @see #setPlacementPolicy(PlacementPolicy)
+     * @see #setScatterGatherPeerLimit(int)
+     */
+    public <T, R> ScatterGatherResult<R> scatterGather(
+            List<? extends CopiableSupplier<? extends T>> partitions,
+            List<CommunicationAddress> peers, R identity,
+            BiFunction<R, ? super T, R> reducer, Duration stragglerTimeout)
+            throws IllegalArgumentException {
+        if (peers.isEmpty()) {
+            throw new IllegalArgumentException("no peers");
+        }
+        if (stragglerTimeout != null && stragglerTimeout.isNegative()) {
+            throw new IllegalArgumentException(
+                    "straggler timeout is negative");
+        }
+        long stragglerNanos = Long.MAX_VALUE;
+        if (stragglerTimeout != null) {
+            try {
+                stragglerNanos = stragglerTimeout.toNanos();
+            } catch (ArithmeticException ex) {
+                /* too long to matter */
+            }
+        }
+        return new ScatterGather<T, R>(this, partitions,
+                new ArrayList<>(new LinkedHashSet<>(peers)), stragglerNanos,
+                scatterGatherPeerLimit).run(identity, reducer);
+    }
+
+    /**
+     * Determines where an object is stored, for the purpose of running code
+     * that uses it nearby.
+     *
+     * @param o The object.
+     * @return The system on which the object is stored (as far as this
+     * system knows), or <code>null</code> if the object is copiable or
+     * <code>null</code>, or its location can't be determined.
+     */
+    private CommunicationAddress locationForPlacement(Object o) {
+        if (o == null || !(knowledgeForActualClass(o)
+                instanceof NonCopiableKnowledge)) {
+            return null;
+        }
+        if (!(o instanceof Standin) || ((Standin<?>) o)
+                .getStorage(UNRESTRICTED).certainlyLocal()) {
+            return getMyAddress();
+        }
+        try {
+            CommunicationAddress at
+                    = findLocationManagerForObject(o).followLocationChain();
+            return at == null ? getMyAddress() : at;
+        } catch (AutocloseableLockWrapper.CannotLockException ex) {
+            return null;
+        }
+    }
+
     /**
      * Adds a "keepalive lock" to this distributed communicator, an object that
      * prevents the communicator from shutting down until that object is
@@ -1517,6 +2250,38 @@ public class DistributedCommunicator {
         return allLifetimeManagers;
     }
 
+    /**
+     * Returns the number of distributed threads that currently have a call
+     * stack running via this communicator.
+     *
+     * @return The number of active threads. This may be approximate due to
+     * concurrent changes.
+     */
+    int getActiveThreadCount() {
+        return activeThreadIDs.size();
+    }
+
+    /**
+     * Returns the number of thread projections that are waiting to start,
+     * because of the limits on running projections.
+     *
+     * @return The number of queued thread projections.
+     * @see #setThreadProjectionLimits(int, int)
+     */
+    int getQueuedThreadCount() {
+        return admission.getQueued();
+    }
+
+    /**
+     * Returns the object that limits the number of thread projections that
+     * run at once.
+     *
+     * @return The admission control for thread projections.
+     */
+    InboundAdmission getAdmission() {
+        return admission;
+    }
+
     /**
      * Gets the set of all thread projection trackers. This would typically be
      * used by <code>ShutdownStage</code> to shut them down in bulk. Note that
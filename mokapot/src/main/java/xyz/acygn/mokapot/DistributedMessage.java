@@ -85,6 +85,20 @@ interface DistributedMessage extends Copiable {
      */
     Duration periodic();
 
+    /**
+     * Checks whether this message is part of Mokapot's control traffic, as
+     * opposed to traffic caused directly by user code. Control messages are
+     * small, and are sent via a separate connection (if the communicator has
+     * one for them), so that they aren't delayed by large messages. By
+     * default, messages that are lightweight-safe, unimportant or periodic
+     * count as control messages.
+     *
+     * @return <code>true</code> if this is a control message.
+     */
+    default boolean isControl() {
+        return lightweightSafe() || isUnimportant() || periodic() != null;
+    }
+
     /**
      * Creates a string representation of the given object, without triggering
      * network calls. Used to prevent recursive network calls in the debug code.
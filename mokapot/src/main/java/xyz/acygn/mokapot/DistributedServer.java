@@ -18,6 +18,7 @@ import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Timer;
 import java.util.TimerTask;
+import xyz.acygn.mokapot.util.ThreadUtils;
 
 /**
  * The main class of this application. Creates a new distributed server and
@@ -76,15 +77,20 @@ public class DistributedServer {
      * compromised simultaneously. (Bear in mind that anyone with access to the
      * .p12 file and its password can run arbitrary code on your computer.)
      * <p>
-     * Finally, it's possible to turn on various options. So far, only two are
-     * implemented: <code>-d</code> turns on a "debug monitor" option that
+     * Finally, it's possible to turn on various options. So far, only four
+     * are implemented: <code>-d</code> turns on a "debug monitor" option that
      * causes all messages sent to and by the server to be summarised on
      * standard output, making it possible to see what the server is doing; and
      * <code>-w</code> turns on a "watchdog" mode in which the server will shut
      * down in an unclean manner if no communication has been received or sent
      * for 40 seconds (this is typically used in a situation in which lack of
      * communication for that long implies that the client has crashed and the
-     * server will never shut down cleanly).
+     * server will never shut down cleanly); and <code>-m</code> makes the
+     * server communicate with clients on the same host via shared memory
+     * (using a <code>SharedMemoryCommunicationEndpoint</code>) rather than via
+     * TLS; and <code>-v</code> runs the server's threads (including the
+     * projections of threads from other systems) on virtual threads, which
+     * requires a JDK that supports them.
      *
      * @param args An array of command-line arguments, as explained above. So
      * far, the only things that can be specified here are Boolean switches (in
@@ -104,6 +110,8 @@ public class DistributedServer {
 
         boolean debug = false;
         boolean useWatchdog = false;
+        boolean sharedMemory = false;
+        boolean virtualThreads = false;
         boolean first = true;
         boolean preReadPasswordFrom = false;
         int port = -1;
@@ -137,6 +145,14 @@ public class DistributedServer {
                 useWatchdog = true;
                 continue;
             }
+            if (arg.equals("-m")) {
+                sharedMemory = true;
+                continue;
+            }
+            if (arg.equals("-v")) {
+                virtualThreads = true;
+                continue;
+            }
             if (arg.equals("-k")) {
                 preReadPasswordFrom = true;
                 continue;
@@ -259,10 +275,19 @@ public class DistributedServer {
             }
         }
 
-        CommunicationEndpoint endpoint
-                = new SecureTCPCommunicationEndpoint(keyStore, address, port);
+        CommunicationEndpoint endpoint = sharedMemory
+                ? new SharedMemoryCommunicationEndpoint(keyStore, address, port)
+                : new SecureTCPCommunicationEndpoint(keyStore, address, port);
         DistributedCommunicator communicator
                 = new DistributedCommunicator(endpoint);
+        if (virtualThreads) {
+            try {
+                communicator.setThreadExecutor(
+                        ThreadUtils.newVirtualThreadExecutor());
+            } catch (UnsupportedOperationException ex) {
+                userInputFailure("This JVM does not support virtual threads");
+            }
+        }
 
         final boolean finalDebug = debug;
         final boolean finalUseWatchdog = useWatchdog;
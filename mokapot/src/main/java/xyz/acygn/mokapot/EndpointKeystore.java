@@ -17,6 +17,7 @@ import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import xyz.acygn.mokapot.util.EnumerationIterator;
@@ -50,6 +51,18 @@ public class EndpointKeystore {
      */
     private final static String ALIAS_NAME = "endpointkey";
 
+    /**
+     * The number of TLS sessions that are remembered for resumption, in each
+     * direction.
+     */
+    private final static int SESSION_CACHE_SIZE = 1024;
+
+    /**
+     * The length of time, in seconds, for which a TLS session can be resumed
+     * after it was created.
+     */
+    private final static int SESSION_TIMEOUT = 24 * 60 * 60;
+
     /**
      * The keystore that contains the cryptographic material.
      */
@@ -160,6 +173,17 @@ public class EndpointKeystore {
                 kmf.init(keyStore, keyPassword);
                 context.init(kmf.getKeyManagers(),
                         new TrustManager[]{new KeystoreTrustManager()}, null);
+
+                /* Connections are closed after being idle for a while, and
+                   reopened when needed; resuming the previous session avoids
+                   a full handshake each time. So make sure that sessions are
+                   remembered for far longer than connections are. */
+                for (SSLSessionContext sessions : new SSLSessionContext[]{
+                    context.getClientSessionContext(),
+                    context.getServerSessionContext()}) {
+                    sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+                    sessions.setSessionTimeout(SESSION_TIMEOUT);
+                }
             } catch (NoSuchAlgorithmException ex) {
                 throw new KeyManagementException(ex);
             } catch (UnrecoverableKeyException ex) {
@@ -217,8 +241,19 @@ public class EndpointKeystore {
      * @return The serial number.
      */
     public Number getSerial() {
-        BigInteger serial = chain[0].getSerialNumber();
+        return packSerial(chain[0].getSerialNumber());
+    }
 
+    /**
+     * Converts a certificate serial number into the form used as the unique
+     * identifier of a communication address.
+     *
+     * @param serial The serial number.
+     * @return The serial number, as a <code>Number</code> whose type depends
+     * on its magnitude.
+     * @see #getSerial()
+     */
+    static Number packSerial(BigInteger serial) {
         /* If the serial number is small, pack it into a smaller Number type so
            that the address itself becomes smaller. */
         try {
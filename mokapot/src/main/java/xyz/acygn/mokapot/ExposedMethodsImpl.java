@@ -50,8 +50,11 @@ class ExposedMethodsImpl extends ExposedMethods {
      * A default implementation of <code>Standin#replaceWithReproduction</code>.
      * See that method for more information.
      * <p>
-     * This default implementation uses reflection to set the fields of the
-     * referent individually from the description.
+     * This default implementation sets the fields of the referent individually
+     * from the description, via the generated field serialiser for the
+     * referent's class if one is available, or via reflection otherwise.
+     * Common collection classes are instead rebuilt from their elements (see
+     * <code>CompactCollectionFormat</code>).
      *
      * @param <T> The type of the standin's referent.
      * @param standin The standin whose referent should be replaced by a
@@ -78,32 +81,21 @@ class ExposedMethodsImpl extends ExposedMethods {
 
         ClassKnowledge<T> referentKnowledge = knowledgeForClass(about);
 
-        for (Field f : referentKnowledge.getInstanceFieldList()) {
-            Class<?> declaredType = f.getType();
+        if (CompactCollectionFormat.appliesTo(about)) {
+            CompactCollectionFormat.reproduceInto(
+                    referent, about, description);
+            return;
+        }
 
-            while (Standin.class.isAssignableFrom(declaredType)) {
-                /* Using a standin class as a declared type is rare, but we
-                   do it internally on at least one occasion. We only do this
-                   on inheritance-based standins, so it's easy to determine the
-                   referent class. (Note that we don't need to do this when
-                   describing the field; in that case, the standin itself would
-                   be doing the describing and knows what type it's describing
-                   for.) */
-                declaredType = declaredType.getSuperclass();
-            }
-            Object fValue;
+        GeneratedFieldSerializer<T> serializer
+                = referentKnowledge.getFieldSerializer();
+        if (serializer != null) {
+            serializer.readFields(referent, description);
+            return;
+        }
 
-            if (isFinal(declaredType.getModifiers())) {
-                /* If the declared type is final, we know that the actual type
-                   must be the same (or null). So we can just nullably describe
-                   the field's contents. */
-                ClassKnowledge<?> ck
-                        = knowledgeForClass(declaredType);
-                fValue = ck.reproduce(description, !declaredType.isPrimitive());
-            } else {
-                fValue = Marshalling.rCAOStatic(
-                        description, referent, declaredType);
-            }
+        for (Field f : referentKnowledge.getInstanceFieldList()) {
+            Object fValue = reproduceField(f.getType(), description, referent);
 
             try {
                 f.set(referent, fValue);
@@ -118,13 +110,54 @@ class ExposedMethodsImpl extends ExposedMethods {
         }
     }
 
+    /**
+     * Reads the value of a single field of an object from a description, in
+     * the format used by the default implementation of
+     * <code>Standin#replaceWithReproduction</code>.
+     *
+     * @param declaredType The declared type of the field.
+     * @param description The description to read from.
+     * @param referent The object that contains the field.
+     * @return The value of the field.
+     * @throws IOException If the description appears to be corrupted
+     */
+    static Object reproduceField(Class<?> declaredType,
+            ReadableDescription description, Object referent)
+            throws IOException {
+        while (Standin.class.isAssignableFrom(declaredType)) {
+            /* Using a standin class as a declared type is rare, but we do it
+               internally on at least one occasion. We only do this on
+               inheritance-based standins, so it's easy to determine the
+               referent class. (Note that we don't need to do this when
+               describing the field; in that case, the standin itself would be
+               doing the describing and knows what type it's describing
+               for.) */
+            declaredType = declaredType.getSuperclass();
+        }
+
+        if (isFinal(declaredType.getModifiers())) {
+            /* If the declared type is final, we know that the actual type
+               must be the same (or null). So we can just nullably describe
+               the field's contents. */
+            ClassKnowledge<?> ck = knowledgeForClass(declaredType);
+            return ck.reproduce(description, !declaredType.isPrimitive());
+        } else {
+            return Marshalling.rCAOStatic(description, referent, declaredType);
+        }
+    }
+
     /**
      * A default implementation of <code>Standin#describeInto</code> and
      * <code>Standin#writeTo</code>. Based on the <code>writer</code> parameter,
      * it can emulate the behaviour of either method.
      * <p>
-     * This implementation works via reflection, iterating over the fields of
-     * the standin's referent and writing them to the description accordingly.
+     * This implementation iterates over the fields of the standin's referent
+     * and writes them to the description accordingly. It uses the generated
+     * field serialiser for the referent's class if one is available, and
+     * reflection otherwise (including when slow debug operations are enabled,
+     * so that the size of each field's description can be checked). Common
+     * collection classes are instead described as a list of their elements
+     * (see <code>CompactCollectionFormat</code>).
      *
      * @param <T> The actual class of the standin's referent.
      * @param <U> The type of <code>into</code>.
@@ -159,6 +192,18 @@ class ExposedMethodsImpl extends ExposedMethods {
             writer.describeTo(referentKnowledge, into, referent, false);
             return;
         }
+        if (CompactCollectionFormat.appliesTo(referentKnowledge.getAbout())) {
+            CompactCollectionFormat.describe(writer, into,
+                    referentKnowledge.getAbout(), referent);
+            return;
+        }
+        GeneratedFieldSerializer<T> serializer
+                = referentKnowledge.getFieldSerializer();
+        if (serializer != null && !(Marshalling.slowDebugOperationsEnabled()
+                && into instanceof DescriptionOutput)) {
+            serializer.writeFields(referent, writer, into);
+            return;
+        }
         for (Field f : referentKnowledge.getInstanceFieldList()) {
             ObjectDescription.Size position = null;
             if (Marshalling.slowDebugOperationsEnabled()
@@ -166,7 +211,6 @@ class ExposedMethodsImpl extends ExposedMethods {
                 position = ((DescriptionOutput) into).getPosition();
             }
 
-            Class<?> declaredType = f.getType();
             Object fValue;
             try {
                 fValue = f.get(referent);
@@ -174,21 +218,7 @@ class ExposedMethodsImpl extends ExposedMethods {
                 /* This shouldn't be able to happen; getInstanceFieldList() checks it */
                 throw new IOException(ex);
             }
-            if (isFinal(declaredType.getModifiers())) {
-                /* If the declared type is final, we know that the actual type
-                must be the same (or null). So we can just nullably describe
-                the field's contents. */
-                ClassKnowledge<?> ck = knowledgeForClass(declaredType);
-                writer.describeTo(ck, into, fValue, !declaredType.isPrimitive());
-            } else if (fValue == null) {
-                into.write(NULL_DESCRIPTION);
-            } else if (fValue == referent) {
-                into.write(SELFREF_DESCRIPTION);
-            } else {
-                ClassKnowledge<?> ck = knowledgeForActualClass(fValue);
-                into.write(ck.getClassNameDescription(declaredType));
-                writer.describeTo(ck, into, fValue, false);
-            }
+            describeField(writer, into, f.getType(), fValue, referent);
 
             if (position != null) {
                 ObjectDescription.Size actual = ((DescriptionOutput) into)
@@ -203,6 +233,40 @@ class ExposedMethodsImpl extends ExposedMethods {
         }
     }
 
+    /**
+     * Writes the value of a single field of an object into a description, in
+     * the format used by the default implementation of
+     * <code>Standin#describeInto</code>.
+     *
+     * @param <U> The type of <code>into</code>.
+     * @param writer The method via which the field's value will be written
+     * into the description.
+     * @param into The place to write the description.
+     * @param declaredType The declared type of the field.
+     * @param fValue The value of the field.
+     * @param referent The object that contains the field.
+     * @throws IOException If something goes wrong writing the description
+     */
+    static <U extends DataOutput> void describeField(
+            DescriptionWriter<U> writer, U into, Class<?> declaredType,
+            Object fValue, Object referent) throws IOException {
+        if (isFinal(declaredType.getModifiers())) {
+            /* If the declared type is final, we know that the actual type
+               must be the same (or null). So we can just nullably describe
+               the field's contents. */
+            ClassKnowledge<?> ck = knowledgeForClass(declaredType);
+            writer.describeTo(ck, into, fValue, !declaredType.isPrimitive());
+        } else if (fValue == null) {
+            into.write(NULL_DESCRIPTION);
+        } else if (fValue == referent) {
+            into.write(SELFREF_DESCRIPTION);
+        } else {
+            ClassKnowledge<?> ck = knowledgeForActualClass(fValue);
+            into.write(ck.getClassNameDescription(declaredType));
+            writer.describeTo(ck, into, fValue, false);
+        }
+    }
+
     /**
      * Default method for calculating the size of the description of the object
      * represented by a standin. This is the method that
@@ -248,6 +312,11 @@ class ExposedMethodsImpl extends ExposedMethods {
 
         T referent = standin.getReferent(auth);
 
+        if (CompactCollectionFormat.appliesTo(referentKnowledge.getAbout())) {
+            return CompactCollectionFormat.descriptionSize(
+                    referentKnowledge.getAbout(), referent);
+        }
+
         ObjectDescription.Size size = ObjectDescription.Size.ZERO;
 
         for (Field f : referentKnowledge.getInstanceFieldList()) {
@@ -295,20 +364,32 @@ class ExposedMethodsImpl extends ExposedMethods {
             } catch (IllegalAccessException ex) {
                 throw new DistributedError(ex, "accessing field: " + f);
             }
-            if (fValue == null || fValue == referent) {
-                size = size.addBytes(4);
-            } else {
-                ClassKnowledge<?> ck
-                        = knowledgeForActualClass(fValue);
-                size = size.add(
-                        new ObjectDescription.Size(ck.getClassNameDescription(
-                                declaredType).length, 0));
-                size = size.add(ck.descriptionSize(() -> fValue, false));
-            }
+            size = size.add(
+                    descriptionSizeOfValue(declaredType, fValue, referent));
         }
         return size;
     }
 
+    /**
+     * Returns the amount of space that <code>describeField</code> will use to
+     * describe a value whose declared type is not <code>final</code>.
+     *
+     * @param declaredType The declared type of the value.
+     * @param fValue The value.
+     * @param referent The object that contains the value.
+     * @return The amount of space that will be used to describe the value.
+     */
+    static ObjectDescription.Size descriptionSizeOfValue(
+            Class<?> declaredType, Object fValue, Object referent) {
+        if (fValue == null || fValue == referent) {
+            return new ObjectDescription.Size(4, 0);
+        }
+        ClassKnowledge<?> ck = knowledgeForActualClass(fValue);
+        return new ObjectDescription.Size(
+                ck.getClassNameDescription(declaredType).length, 0)
+                .add(ck.descriptionSize(() -> fValue, false));
+    }
+
     @Override
     @SuppressWarnings("Convert2Lambda")
     public Consumer<Object> getSettingConsumerFor(Object o, Authorisation auth) {
@@ -0,0 +1,196 @@
+package xyz.acygn.mokapot;
+
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+
+/**
+ * Hooks via which Mokapot reports its activity to Java Flight Recorder. This
+ * class itself does nothing; if JFR is available, it's replaced by a subclass
+ * (compiled separately, and only when the build JDK supports JFR) that emits
+ * custom JFR events. This means that Mokapot can run on platforms that don't
+ * have JFR, such as Android or older JDKs, without any dependency on it.
+ * <p>
+ * Events that have a duration are reported in two halves: a
+ * <code>begin...</code> method is called at the start of the operation, and
+ * its return value is passed to the corresponding <code>end...</code> method
+ * at the end. When the event in question isn't being recorded, the
+ * <code>begin...</code> method returns <code>null</code> and the
+ * <code>end...</code> method returns immediately, so the cost of an unrecorded
+ * event is a couple of calls that the JIT compiler can inline.
+ */
+class FlightRecorderEvents {
+
+    /**
+     * The hooks in use in this JVM.
+     */
+    static final FlightRecorderEvents EVENTS = load();
+
+    /**
+     * The class that implements the hooks when JFR is available.
+     */
+    private static final String JFR_IMPLEMENTATION
+            = "xyz.acygn.mokapot.JfrEvents";
+
+    /**
+     * Loads the JFR implementation of the hooks, if possible. Registering the
+     * events requires <code>FlightRecorderPermission "registerEvent"</code>;
+     * this is done with Mokapot's own permissions, because it can be triggered
+     * by whichever code happens to use Mokapot first.
+     *
+     * @return The JFR implementation, or an implementation that does nothing
+     * if JFR or the JFR implementation is unavailable.
+     */
+    private static FlightRecorderEvents load() {
+        try {
+            return AccessController.doPrivileged(
+                    (PrivilegedExceptionAction<FlightRecorderEvents>) ()
+                    -> (FlightRecorderEvents) Class.forName(JFR_IMPLEMENTATION)
+                            .getDeclaredConstructor().newInstance());
+        } catch (PrivilegedActionException | LinkageError
+                | SecurityException ex) {
+            return new FlightRecorderEvents();
+        }
+    }
+
+    /**
+     * Reports that a message was sent.
+     *
+     * @param peer The communicator that the message was sent to.
+     * @param messageType The class of the message.
+     * @param bytes The size of the message's copiable data.
+     */
+    void messageSent(CommunicationAddress peer, Class<?> messageType,
+            int bytes) {
+    }
+
+    /**
+     * Reports that a message was received.
+     *
+     * @param peer The communicator that sent the message.
+     * @param messageType The class of the message.
+     * @param bytes The size of the message's copiable data.
+     */
+    void messageReceived(CommunicationAddress peer, Class<?> messageType,
+            int bytes) {
+    }
+
+    /**
+     * Reports the start of the marshalling of an object into a
+     * <code>MarshalledDescription</code>.
+     *
+     * @return A value to pass to <code>endMarshal</code>.
+     */
+    Object beginMarshal() {
+        return null;
+    }
+
+    /**
+     * Reports the end of the marshalling of an object.
+     *
+     * @param token The value returned from <code>beginMarshal</code>.
+     * @param marshalledClass The class of the object that was marshalled.
+     * @param bytes The size of the resulting marshalled description.
+     * @param noncopiableObjects The number of noncopiable objects referenced
+     * from the marshalled description.
+     */
+    void endMarshal(Object token, Class<?> marshalledClass, int bytes,
+            int noncopiableObjects) {
+    }
+
+    /**
+     * Reports the start of a call to <code>LocationManager#invoke</code>.
+     *
+     * @return A value to pass to <code>endInvoke</code>.
+     */
+    Object beginInvoke() {
+        return null;
+    }
+
+    /**
+     * Returns whether calls to <code>LocationManager#invoke</code> are being
+     * recorded. While they are, method calls on local objects are made via
+     * <code>invoke</code> (rather than directly), so that they're recorded
+     * too.
+     *
+     * @return <code>true</code> if <code>beginInvoke</code> could return a
+     * non-<code>null</code> value.
+     */
+    boolean recordingInvoke() {
+        return false;
+    }
+
+    /**
+     * Reports the end of a call to <code>LocationManager#invoke</code>.
+     *
+     * @param token The value returned from <code>beginInvoke</code>.
+     * @param objectClass The class of the object whose method was invoked.
+     * @param methodCode The method code of the invoked method.
+     * @param forwardedTo The system to which the call was forwarded, or
+     * <code>null</code> if the method ran locally.
+     */
+    void endInvoke(Object token, Class<?> objectClass, long methodCode,
+            CommunicationAddress forwardedTo) {
+    }
+
+    /**
+     * Reports the start of a step of a manual migration.
+     *
+     * @return A value to pass to <code>endMigration</code>.
+     */
+    Object beginMigration() {
+        return null;
+    }
+
+    /**
+     * Reports the end of a step of a manual migration.
+     *
+     * @param token The value returned from <code>beginMigration</code>.
+     * @param phase The step in question: <code>"prepare"</code>,
+     * <code>"commit"</code> or <code>"conclude"</code>.
+     * @param objectClass The class of the object being migrated.
+     * @param destination The system the object was migrated to, or
+     * <code>null</code> if there was no specific destination.
+     */
+    void endMigration(Object token, String phase, Class<?> objectClass,
+            CommunicationAddress destination) {
+    }
+
+    /**
+     * Reports that a lifetime manager was created, i.e. that an object became
+     * referenced from a remote system.
+     *
+     * @param objectClass The class of the object that's being kept alive.
+     * @param weight The initial GC weight of the lifetime manager.
+     */
+    void lifetimeManagerCreated(Class<?> objectClass, long weight) {
+    }
+
+    /**
+     * Reports that a lifetime manager expired due to a timeout, losing its
+     * GC weight.
+     *
+     * @param objectClass The class of the object that was being kept alive.
+     * @param weight The GC weight that was lost.
+     */
+    void lifetimeManagerExpired(Class<?> objectClass, long weight) {
+    }
+
+    /**
+     * Reports that a connection to another communicator was opened.
+     *
+     * @param peer The communicator at the other end of the connection.
+     * @param connectionID The ID of the connection.
+     */
+    void connectionOpened(CommunicationAddress peer, GlobalID connectionID) {
+    }
+
+    /**
+     * Reports that a connection to another communicator was closed.
+     *
+     * @param peer The communicator at the other end of the connection.
+     * @param connectionID The ID of the connection.
+     */
+    void connectionClosed(CommunicationAddress peer, GlobalID connectionID) {
+    }
+}
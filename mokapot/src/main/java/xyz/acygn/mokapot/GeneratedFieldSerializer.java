@@ -0,0 +1,257 @@
+package xyz.acygn.mokapot;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import static java.lang.invoke.MethodType.methodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.UndeclaredThrowableException;
+import static java.security.AccessController.doPrivileged;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import xyz.acygn.millr.generation.FieldSerializerGenerator;
+import static xyz.acygn.mokapot.Authorisations.OBJECT_CREATOR;
+import static xyz.acygn.mokapot.Authorisations.UNRESTRICTED;
+import static xyz.acygn.mokapot.ClassKnowledge.LOOKUP;
+import static xyz.acygn.mokapot.DescriptionWriter.DESCRIBE_FIELD_INTO;
+import static xyz.acygn.mokapot.DescriptionWriter.WRITE_FIELD_DESCRIPTION_TO;
+import static xyz.acygn.mokapot.GeneratedStandinFactory.CLASS_INJECTOR;
+import xyz.acygn.mokapot.skeletons.FieldSerializer;
+import static xyz.acygn.mokapot.util.VMInfo.isClassNameInSealedPackage;
+import static xyz.acygn.mokapot.util.VMInfo.isRunningOnAndroid;
+import xyz.acygn.mokapot.wireformat.ReadableDescription;
+
+/**
+ * A field serialiser generated at runtime for a particular class, together
+ * with the code it needs to handle fields of non-primitive type. This is used
+ * by the default implementations of <code>Standin#describeInto</code>,
+ * <code>Standin#writeTo</code> and
+ * <code>Standin#replaceWithReproduction</code> in place of reflection, and
+ * produces the same description format.
+ * <p>
+ * Field serialisers are created lazily, the first time an object of their
+ * class is described or reproduced field-by-field, and cached in the class's
+ * knowledge.
+ *
+ * @param <T> The class whose objects' fields are serialised.
+ * @see FieldSerializerGenerator
+ * @see ClassKnowledge#getFieldSerializer()
+ */
+final class GeneratedFieldSerializer<T> {
+
+    /**
+     * The generated serialiser.
+     */
+    private final FieldSerializer<T> serializer;
+
+    /**
+     * The declared types of the fields, in wire format order.
+     */
+    private final Class<?>[] declaredTypes;
+
+    /**
+     * The code used to describe non-primitive fields when describing into an
+     * object description.
+     */
+    private final FieldSerializer.ReferenceFields describeReferences;
+
+    /**
+     * The code used to describe non-primitive fields when writing to an
+     * arbitrary data output sink; also used to reproduce them.
+     */
+    private final FieldSerializer.ReferenceFields writeReferences;
+
+    /**
+     * Creates a wrapper for a generated field serialiser.
+     *
+     * @param serializer The serialiser itself, with its accessors already
+     * set.
+     * @param declaredTypes The declared types of the fields, in wire format
+     * order.
+     */
+    private GeneratedFieldSerializer(FieldSerializer<T> serializer,
+            Class<?>[] declaredTypes) {
+        this.serializer = serializer;
+        this.declaredTypes = declaredTypes;
+        this.describeReferences = new References<>(DESCRIBE_FIELD_INTO);
+        this.writeReferences = new References<>(WRITE_FIELD_DESCRIPTION_TO);
+    }
+
+    /**
+     * Generates and loads a field serialiser for the class that the given
+     * knowledge is about.
+     *
+     * @param <T> The class that the knowledge is about.
+     * @param knowledge The class knowledge.
+     * @return The field serialiser, or <code>null</code> if one can't be
+     * generated for the class in question (in which case the fields will have
+     * to be accessed via reflection).
+     */
+    static <T> GeneratedFieldSerializer<T> generate(
+            ClassKnowledge<T> knowledge) {
+        Class<T> about = knowledge.getAbout();
+        ClassLoader loader = about.getClassLoader();
+
+        /* The generated class must be loaded into the same runtime package as
+           the class it's about, which isn't possible if we can't generate
+           bytecode at all, or if the class is in a package that we aren't
+           allowed to add to. Classes that aren't described field-by-field
+           don't need a field serialiser. */
+        if (isRunningOnAndroid() || loader == null
+                || isClassNameInSealedPackage(about.getName())
+                || about.isArray() || about.isInterface()
+                || knowledge instanceof SpecialCaseKnowledge
+                || knowledge instanceof LambdaKnowledge
+                || knowledge instanceof EnumKnowledge
+                || knowledge instanceof ArrayKnowledge) {
+            return null;
+        }
+
+        try {
+            List<Field> fields = new ArrayList<>();
+            knowledge.getInstanceFieldList().forEach(fields::add);
+
+            MethodHandle[] accessors = new MethodHandle[fields.size() * 2];
+            Class<?>[] declaredTypes = new Class<?>[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                Field f = fields.get(i);
+                Class<?> wireClass = FieldSerializerGenerator.wireClass(f);
+                declaredTypes[i] = f.getType();
+                accessors[i * 2] = LOOKUP.unreflectGetter(f)
+                        .asType(methodType(wireClass, Object.class));
+                accessors[i * 2 + 1] = LOOKUP.unreflectSetter(f)
+                        .asType(methodType(void.class, Object.class, wireClass));
+            }
+
+            byte[] bytecode = new FieldSerializerGenerator<>(
+                    knowledge.getWireFormat()).generateAsBytecode().getFirst();
+            String name = FieldSerializerGenerator.mangleClassName(
+                    about.getName());
+            @SuppressWarnings("unchecked")
+            Class<? extends FieldSerializer<T>> serializerClass
+                    = (Class) inject(loader, name, bytecode);
+
+            FieldSerializer<T> serializer = doPrivileged(
+                    (PrivilegedAction<FieldSerializer<T>>) ()
+                    -> OBJECT_CREATOR.newInstance(serializerClass));
+            serializer.setAccessors(accessors, UNRESTRICTED);
+            return new GeneratedFieldSerializer<>(serializer, declaredTypes);
+        } catch (IllegalAccessException | LinkageError | SecurityException ex) {
+            /* Fall back to reflection: a field couldn't be accessed via a
+               method handle, or the generated class couldn't be defined in
+               the package of the class it's about (e.g. because the package
+               is sealed by its JAR file) or failed to verify. This is slower
+               but otherwise harmless; still, it probably indicates a bug in
+               the generator, so it's worth mentioning. */
+            DistributedCommunicator communicator
+                    = DistributedCommunicator.getCommunicator();
+            if (communicator != null) {
+                communicator.sendWarning("could not generate a field "
+                        + "serialiser for " + about.getName()
+                        + ", falling back to reflection: " + ex);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Defines a generated class in a given class loader, via the class
+     * injector.
+     *
+     * @param loader The class loader to define the class in.
+     * @param name The name of the class, in Java format.
+     * @param bytecode The class file.
+     * @return The newly defined class.
+     * @throws LinkageError If the class could not be defined or verified
+     * @throws SecurityException If the class loader does not allow classes to
+     * be defined in the class's package
+     */
+    private static Class<?> inject(ClassLoader loader, String name,
+            byte[] bytecode) throws LinkageError, SecurityException {
+        try {
+            return (Class<?>) CLASS_INJECTOR.invoke(
+                    loader, name, bytecode, 0, bytecode.length);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            /* ClassLoader#defineClass has no checked exceptions, so this
+               can't happen; but the method handle doesn't know that. */
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    /**
+     * Writes the fields of an object into a description. This has the same
+     * behaviour as the field-by-field loop in
+     * <code>ExposedMethodsImpl#defaultStandinDescription</code>.
+     *
+     * @param <U> The type of <code>into</code>.
+     * @param referent The object whose fields should be written.
+     * @param writer The method via which the fields' values will be
+     * recursively written into the description.
+     * @param into The place to write the description.
+     * @throws IOException If something goes wrong writing the description
+     */
+    <U extends DataOutput> void writeFields(T referent,
+            DescriptionWriter<U> writer, U into) throws IOException {
+        serializer.writeFields(referent, into, writer == DESCRIBE_FIELD_INTO
+                ? describeReferences : writeReferences, UNRESTRICTED);
+    }
+
+    /**
+     * Sets the fields of an object from a description. This has the same
+     * behaviour as the field-by-field loop in
+     * <code>ExposedMethodsImpl#defaultStandinReplaceWithReproduction</code>.
+     *
+     * @param referent The object whose fields should be set.
+     * @param description The description to read from.
+     * @throws IOException If the description appears to be corrupted
+     */
+    void readFields(T referent, ReadableDescription description)
+            throws IOException {
+        serializer.readFields(referent, description, writeReferences,
+                UNRESTRICTED);
+    }
+
+    /**
+     * The code used by the generated serialiser for fields of non-primitive
+     * type.
+     *
+     * @param <U> The type of output that the fields are written to.
+     */
+    private class References<U extends DataOutput>
+            implements FieldSerializer.ReferenceFields {
+
+        /**
+         * The method via which field values are written into the
+         * description.
+         */
+        private final DescriptionWriter<U> writer;
+
+        /**
+         * Creates the code used for fields of non-primitive type.
+         *
+         * @param writer The method via which field values are written into
+         * the description.
+         */
+        References(DescriptionWriter<U> writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void writeField(DataOutput into, Object object, int index,
+                Object value) throws IOException {
+            ExposedMethodsImpl.describeField(writer, (U) into,
+                    declaredTypes[index], value, object);
+        }
+
+        @Override
+        public Object readField(ReadableDescription from, Object object,
+                int index) throws IOException {
+            return ExposedMethodsImpl.reproduceField(declaredTypes[index],
+                    from, object);
+        }
+    }
+}
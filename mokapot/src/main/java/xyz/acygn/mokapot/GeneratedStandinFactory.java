@@ -56,9 +56,10 @@ class GeneratedStandinFactory<T> implements StandinFactory<T> {
 
     /**
      * Method handle for injecting classes into the class loaders. Obviously,
-     * this should be kept well clear of untrusted code.
+     * this should be kept well clear of untrusted code. (It's also used to
+     * load generated field serialisers.)
      */
-    private static final MethodHandle CLASS_INJECTOR;
+    static final MethodHandle CLASS_INJECTOR;
 
     static {
         try {
@@ -1,6 +1,7 @@
 package xyz.acygn.mokapot;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import xyz.acygn.mokapot.markers.Copiable;
 import xyz.acygn.mokapot.util.ObjectUtils;
 import xyz.acygn.mokapot.util.ResettableThreadLocal;
@@ -80,15 +81,18 @@ final class GlobalID implements Copiable {
      */
     private final long counter;
     /**
-     * The next value to be used for the counter.
+     * The next value to be used for the counter. This is atomic because IDs
+     * are created concurrently (e.g. whenever a new thread first makes a
+     * remote call), and two IDs created in the same millisecond with the same
+     * counter value would be equal.
      *
      * @see #counter
      */
-    private static long nextCounter = 1;
+    private static final AtomicLong NEXT_COUNTER = new AtomicLong(1);
 
     /**
-     * A method of preventing clashes in nextCounter in situations where a
-     * virtual machine was restarted (thus losing the value of nextCounter).
+     * A method of preventing clashes in NEXT_COUNTER in situations where a
+     * virtual machine was restarted (thus losing the value of NEXT_COUNTER).
      */
     private final long generationTime;
 
@@ -109,8 +113,7 @@ final class GlobalID implements Copiable {
      */
     GlobalID(CommunicationAddress address) {
         this.address = address;
-        this.counter = nextCounter;
-        nextCounter++;
+        this.counter = NEXT_COUNTER.getAndIncrement();
         this.generationTime = System.currentTimeMillis();
 
         int hash = 5;
@@ -19,4 +19,15 @@ class IdentityMessage extends SynchronousMessage<Void> {
     public Duration periodic() {
         return null;
     }
+
+    /**
+     * Always returns <code>true</code>; this message is sent by Mokapot itself,
+     * for verifying identities, not on behalf of user code.
+     *
+     * @return <code>true</code>.
+     */
+    @Override
+    public boolean isControl() {
+        return true;
+    }
 }
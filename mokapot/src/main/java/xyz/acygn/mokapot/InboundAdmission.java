@@ -0,0 +1,295 @@
+package xyz.acygn.mokapot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of thread projections that a communicator runs at once.
+ * Projections beyond the limits wait in a queue until a running projection
+ * ends. If the queue is also full, the thread that's trying to admit a new
+ * projection (normally a connection's read thread) is made to wait for space
+ * in the queue. That stops it from reading further messages from the
+ * connection, so the sender's writes block once the network buffers fill up,
+ * slowing it down to the rate at which its messages can be handled.
+ * <p>
+ * Both the running projections and the queue are limited in total and for
+ * each sending system; a limit of 0 means no limit. The limits on running
+ * projections are hard limits. The limits on the queue are soft limits: the
+ * wait for space in the queue is bounded (by a second, by default), after
+ * which the projection is queued anyway, because the messages behind it
+ * on the connection could be the replies that the running projections are
+ * waiting for, so waiting indefinitely could deadlock. Each time that happens
+ * is counted in the communicator's metrics as a throttle overrun.
+ */
+class InboundAdmission {
+
+    /**
+     * The communicator whose projections are being limited.
+     */
+    private final DistributedCommunicator communicator;
+
+    /**
+     * The longest time for which a thread will wait for space in the queue,
+     * in nanoseconds. Once this has passed, the projection is queued even if
+     * that takes the queue over its soft limits.
+     */
+    private long maxThrottleNanos = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The largest number of projections that can run at once; 0 for no limit.
+     */
+    private int maxRunning = 0;
+
+    /**
+     * The largest number of projections for any one sender that can run at
+     * once; 0 for no limit.
+     */
+    private int maxRunningPerPeer = 0;
+
+    /**
+     * The soft limit on the number of projections that can wait in the queue:
+     * the number above which the threads that admit more are throttled; 0 for
+     * no limit.
+     */
+    private int softMaxQueued = 0;
+
+    /**
+     * The soft limit on the number of projections for any one sender that can
+     * wait in the queue: the number above which the threads that admit more
+     * for that sender are throttled; 0 for no limit.
+     */
+    private int softMaxQueuedPerPeer = 0;
+
+    /**
+     * The number of projections that are running.
+     */
+    private int running = 0;
+
+    /**
+     * The number of projections that are running, for each sender that has
+     * any.
+     */
+    private final Map<CommunicationAddress, Integer> runningByPeer
+            = new HashMap<>();
+
+    /**
+     * The number of projections that are queued, for each sender that has
+     * any.
+     */
+    private final Map<CommunicationAddress, Integer> queuedByPeer
+            = new HashMap<>();
+
+    /**
+     * The projections waiting to run, in the order in which they were
+     * admitted.
+     */
+    private final Deque<Pending> queue = new ArrayDeque<>();
+
+    /**
+     * Creates the admission control for a communicator. Initially, there
+     * are no limits.
+     *
+     * @param communicator The communicator that runs the projections.
+     */
+    InboundAdmission(DistributedCommunicator communicator) {
+        this.communicator = communicator;
+    }
+
+    /**
+     * Sets the limits on the number of projections that can run at once.
+     * Projections that are already running are unaffected.
+     *
+     * @param total The limit in total, or 0 for no limit.
+     * @param perPeer The limit for each sender, or 0 for no limit.
+     */
+    void setRunningLimits(int total, int perPeer) {
+        List<Runnable> toStart;
+        synchronized (this) {
+            maxRunning = total;
+            maxRunningPerPeer = perPeer;
+            toStart = startable();
+        }
+        toStart.forEach(Runnable::run);
+    }
+
+    /**
+     * Sets the soft limits on the number of projections that can be queued
+     * without throttling. The queue can exceed these limits if a throttled
+     * thread waits for the longest throttling time without space becoming
+     * available.
+     *
+     * @param total The limit in total, or 0 for no limit.
+     * @param perPeer The limit for each sender, or 0 for no limit.
+     */
+    synchronized void setQueueSoftLimits(int total, int perPeer) {
+        softMaxQueued = total;
+        softMaxQueuedPerPeer = perPeer;
+        notifyAll();
+    }
+
+    /**
+     * Sets the longest time for which a thread will wait for space in the
+     * queue. Threads that are already waiting use the new time, counted from
+     * when they started waiting.
+     *
+     * @param nanos The time, in nanoseconds.
+     */
+    synchronized void setMaxThrottle(long nanos) {
+        maxThrottleNanos = nanos;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of projections waiting in the queue.
+     *
+     * @return The length of the queue.
+     */
+    synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Runs a thread projection, as soon as the limits allow. If the queue is
+     * full, this method blocks until there's space in it, or until the
+     * longest throttling time has passed or the thread is interrupted, in
+     * which case the projection is queued anyway.
+     *
+     * @param sender The system whose message requested the projection; can
+     * be <code>null</code> if it isn't known.
+     * @param body The code that the projection runs.
+     */
+    void admit(CommunicationAddress sender, Runnable body) {
+        List<Runnable> toStart;
+        synchronized (this) {
+            if (!hasQueueSpace(sender)) {
+                long throttledAt = System.nanoTime();
+                long remaining = maxThrottleNanos;
+                do {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException ex) {
+                        /* Stop throttling, but remember the interruption. */
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    remaining = maxThrottleNanos
+                            - (System.nanoTime() - throttledAt);
+                } while (!hasQueueSpace(sender) && remaining > 0);
+                communicator.getMetrics().throttled(
+                        System.nanoTime() - throttledAt,
+                        !hasQueueSpace(sender));
+            }
+            queue.add(new Pending(sender, body));
+            queuedByPeer.merge(sender, 1, Integer::sum);
+            toStart = startable();
+        }
+        toStart.forEach(Runnable::run);
+    }
+
+    /**
+     * Records the end of a running projection, and starts any queued
+     * projections that can now run.
+     *
+     * @param sender The sender that the projection was run for.
+     */
+    private void finished(CommunicationAddress sender) {
+        List<Runnable> toStart;
+        synchronized (this) {
+            running--;
+            decrement(runningByPeer, sender);
+            toStart = startable();
+        }
+        toStart.forEach(Runnable::run);
+    }
+
+    /**
+     * Checks whether there's space in the queue for another projection.
+     *
+     * @param sender The sender that the projection would be for.
+     * @return <code>true</code> if the projection can be queued without
+     * throttling.
+     */
+    private boolean hasQueueSpace(CommunicationAddress sender) {
+        return (softMaxQueued == 0 || queue.size() < softMaxQueued)
+                && (softMaxQueuedPerPeer == 0 || queuedByPeer.getOrDefault(
+                        sender, 0) < softMaxQueuedPerPeer);
+    }
+
+    /**
+     * Removes from the queue all the projections that the limits allow to
+     * run, in order, and counts them as running. Must be called with the
+     * monitor held; the returned tasks must be run once it's released.
+     *
+     * @return The tasks that start the projections.
+     */
+    private List<Runnable> startable() {
+        List<Runnable> rv = new ArrayList<>();
+        Iterator<Pending> it = queue.iterator();
+        while (it.hasNext() && (maxRunning == 0 || running < maxRunning)) {
+            Pending p = it.next();
+            if (maxRunningPerPeer != 0 && runningByPeer.getOrDefault(
+                    p.sender, 0) >= maxRunningPerPeer) {
+                continue;
+            }
+            it.remove();
+            decrement(queuedByPeer, p.sender);
+            running++;
+            runningByPeer.merge(p.sender, 1, Integer::sum);
+            rv.add(() -> new PooledThread(() -> {
+                try {
+                    p.body.run();
+                } finally {
+                    finished(p.sender);
+                }
+            }).start(communicator));
+        }
+        if (!rv.isEmpty()) {
+            notifyAll();
+        }
+        return rv;
+    }
+
+    /**
+     * Decrements a per-sender count, removing it once it reaches 0.
+     *
+     * @param counts The per-sender counts.
+     * @param sender The sender whose count is decremented.
+     */
+    private static void decrement(Map<CommunicationAddress, Integer> counts,
+            CommunicationAddress sender) {
+        counts.computeIfPresent(sender, (k, v) -> v == 1 ? null : v - 1);
+    }
+
+    /**
+     * A projection that's waiting to run.
+     */
+    private static class Pending {
+
+        /**
+         * The sender that the projection is for.
+         */
+        private final CommunicationAddress sender;
+
+        /**
+         * The code that the projection runs.
+         */
+        private final Runnable body;
+
+        /**
+         * Creates a record of a waiting projection.
+         *
+         * @param sender The sender that the projection is for.
+         * @param body The code that the projection runs.
+         */
+        Pending(CommunicationAddress sender, Runnable body) {
+            this.sender = sender;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package xyz.acygn.mokapot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import xyz.acygn.mokapot.markers.Copiable;
+import xyz.acygn.mokapot.markers.DistributedError;
+import xyz.acygn.mokapot.wireformat.FakeDescriptionStream;
+
+/**
+ * A holder for a deeply copiable value, whose copies are unmarshalled only
+ * when the value is first accessed. Normally, the arguments of a remote method
+ * call are unmarshalled in full before the method starts running, even if it
+ * only uses a small part of them; wrapping a large argument (or a large field
+ * of an argument) in a <code>LazyCopy</code> means that the recipient keeps
+ * the value in its marshalled form until it calls <code>get()</code>, and
+ * doesn't reproduce it at all if it never does.
+ * <p>
+ * The value is described when the holder is created; it's this description
+ * that's sent whenever the holder is copied to another system. As such, the
+ * value should not be modified after it has been placed in the holder (as
+ * usual for copiable objects, copying it has to be safe). The description is
+ * retained even after the value has been reproduced, so that the holder can
+ * be sent onwards without describing the value again.
+ * <p>
+ * Only deeply copiable values can be held. An object and its copies must be
+ * unmarshalled exactly once, which could not be guaranteed for long
+ * references embedded in a description that might never be read; a deeply
+ * copiable description contains no long references, and so can be read any
+ * number of times (including zero).
+ *
+ * @param <T> The type of the value.
+ */
+public final class LazyCopy<T> implements Copiable {
+
+    /**
+     * The described form of the value, including its class.
+     */
+    private final byte[] description;
+
+    /**
+     * The value, once it's available on this system. Access to this and
+     * <code>reproduced</code> is guarded by this object's monitor.
+     */
+    private transient T value;
+
+    /**
+     * Whether <code>value</code> is available on this system. This is the
+     * case on the system that created the holder, and on other systems once
+     * <code>get()</code> has been called.
+     */
+    private transient boolean reproduced;
+
+    /**
+     * Creates a holder that contains the given value.
+     *
+     * @param value The value to hold.
+     * @param description The described form of <code>value</code>.
+     */
+    private LazyCopy(T value, byte[] description) {
+        this.value = value;
+        this.description = description;
+        this.reproduced = true;
+    }
+
+    /**
+     * Places a value in a lazily unmarshalled holder. The value is described
+     * immediately.
+     *
+     * @param <T> The type of the value.
+     * @param value The value to hold. This can be <code>null</code>.
+     * @return A holder for the value.
+     * @throws IllegalArgumentException If the value is not deeply copiable
+     */
+    public static <T> LazyCopy<T> of(T value) throws IllegalArgumentException {
+        try {
+            return new LazyCopy<>(value,
+                    Marshalling.describeToByteArray(value));
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(
+                    "Only deeply copiable values can be held lazily", ex);
+        }
+    }
+
+    /**
+     * Returns the held value, reproducing it from its description if this is
+     * the first time it has been accessed on this system.
+     *
+     * @return The held value.
+     * @throws DistributedError If the description could not be reproduced
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get() throws DistributedError {
+        if (!reproduced) {
+            try {
+                value = (T) Marshalling.rCAOStatic(new FakeDescriptionStream(
+                        new ByteArrayInputStream(description)), null, null);
+            } catch (IOException ex) {
+                throw new DistributedError(ex, "reproducing lazy copy");
+            }
+            reproduced = true;
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether the held value is available on this system without
+     * being reproduced. This is the case if the holder was created on this
+     * system, or if <code>get()</code> has already been called on it.
+     *
+     * @return <code>true</code> if the value has been reproduced.
+     */
+    public synchronized boolean isReproduced() {
+        return reproduced;
+    }
+
+    /**
+     * Returns the size of the described form of the held value. This is the
+     * amount of data that the holder adds to a message when it's sent.
+     *
+     * @return The length of the description, in bytes.
+     */
+    public int getDescriptionLength() {
+        return description.length;
+    }
+
+    /**
+     * Produces a string representation of this holder. This does not cause
+     * the value to be reproduced.
+     *
+     * @return A string describing the holder.
+     */
+    @Override
+    public synchronized String toString() {
+        return reproduced ? "LazyCopy{" + value + "}"
+                : "LazyCopy{" + description.length + " bytes}";
+    }
+}
@@ -134,6 +134,8 @@ class LifetimeManager implements Expirable {
             throw ExpiredException.SINGLETON;
         }
         keepAlive.adjustTotalGeneratedWeight(-oldWeight);
+        FlightRecorderEvents.EVENTS.lifetimeManagerExpired(
+                keepAlive.getObjectClass(), oldWeight);
         keepAlive.getCommunicator().sendWarning(
                 "Timeout handling object with " + keepAlive + ": " + oldWeight
                 + " units of GC weight lost, object may have been deallocated early");
@@ -173,6 +175,8 @@ class LifetimeManager implements Expirable {
         this.keepAlive = keepAlive;
         this.negativeWeight = new AtomicLong(weight);
         keepAlive.adjustTotalGeneratedWeight(weight);
+        FlightRecorderEvents.EVENTS.lifetimeManagerCreated(
+                keepAlive.getObjectClass(), weight);
     }
 
     /**
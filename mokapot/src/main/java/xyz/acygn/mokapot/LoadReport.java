@@ -0,0 +1,140 @@
+package xyz.acygn.mokapot;
+
+import java.lang.management.ManagementFactory;
+import xyz.acygn.mokapot.markers.Copiable;
+
+/**
+ * A snapshot of how busy a communicator's system is. Communicators send these
+ * to each other, piggybacked on the messages they'd be sending anyway (at
+ * most once a second to any one peer), so that a
+ * <code>PlacementPolicy</code> can take the load of each candidate system
+ * into account when choosing where to run code.
+ *
+ * @see DistributedCommunicator#runSomewhere(CopiableSupplier,
+ * java.util.Collection, java.lang.Object...)
+ */
+public final class LoadReport implements Copiable {
+
+    /**
+     * The system load average divided by the number of processors, or a
+     * negative number if it isn't available.
+     */
+    private final double cpuLoad;
+
+    /**
+     * The proportion of the maximum heap size that's in use.
+     */
+    private final double heapUsage;
+
+    /**
+     * The number of distributed threads running via the communicator.
+     */
+    private final int activeThreads;
+
+    /**
+     * The number of thread projections waiting to start on the communicator.
+     */
+    private final int queuedThreads;
+
+    /**
+     * Creates a load report from its individual fields.
+     *
+     * @param cpuLoad The load average per processor; negative if unknown.
+     * @param heapUsage The proportion of the heap in use.
+     * @param activeThreads The number of active distributed threads.
+     * @param queuedThreads The number of queued thread projections.
+     */
+    private LoadReport(double cpuLoad, double heapUsage, int activeThreads,
+            int queuedThreads) {
+        this.cpuLoad = cpuLoad;
+        this.heapUsage = heapUsage;
+        this.activeThreads = activeThreads;
+        this.queuedThreads = queuedThreads;
+    }
+
+    /**
+     * Measures the current load on the system that runs a given communicator.
+     *
+     * @param communicator The communicator.
+     * @return A report of the load as it is now.
+     */
+    static LoadReport current(DistributedCommunicator communicator) {
+        Runtime runtime = Runtime.getRuntime();
+        double loadAverage = ManagementFactory.getOperatingSystemMXBean()
+                .getSystemLoadAverage();
+        return new LoadReport(
+                loadAverage < 0 ? -1.0
+                        : loadAverage / runtime.availableProcessors(),
+                (double) (runtime.totalMemory() - runtime.freeMemory())
+                / runtime.maxMemory(),
+                communicator.getActiveThreadCount(),
+                communicator.getQueuedThreadCount());
+    }
+
+    /**
+     * Returns the system load average per processor. A value of 1 means that,
+     * on average, there was one runnable task for each processor.
+     *
+     * @return The load average per processor, or a negative number if the
+     * system doesn't provide one.
+     */
+    public double getCpuLoad() {
+        return cpuLoad;
+    }
+
+    /**
+     * Returns the proportion of the maximum heap size that was in use.
+     *
+     * @return A number between 0 and 1.
+     */
+    public double getHeapUsage() {
+        return heapUsage;
+    }
+
+    /**
+     * Returns the number of distributed threads that were running via the
+     * communicator. This includes threads that are waiting for a call to
+     * another system to return.
+     *
+     * @return The number of active threads.
+     */
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    /**
+     * Returns the number of thread projections that were waiting to start,
+     * because of the communicator's limits on running projections.
+     *
+     * @return The number of queued thread projections.
+     * @see DistributedCommunicator#setThreadProjectionLimits(int, int)
+     */
+    public int getQueuedThreads() {
+        return queuedThreads;
+    }
+
+    /**
+     * Combines the measurements in this report into a single number, for
+     * comparing the loads of different systems. This is the number of active
+     * and queued threads, plus the load average per processor and the heap
+     * usage (each of which is around 1 for a fully loaded system).
+     *
+     * @return The load score; higher means busier.
+     */
+    public double getScore() {
+        return activeThreads + queuedThreads + Math.max(cpuLoad, 0.0)
+                + heapUsage;
+    }
+
+    /**
+     * Produces a human-readable representation of this report.
+     *
+     * @return A string showing the measurements in the report.
+     */
+    @Override
+    public String toString() {
+        return "LoadReport{cpu=" + cpuLoad + ", heap=" + heapUsage
+                + ", active=" + activeThreads + ", queued=" + queuedThreads
+                + "}";
+    }
+}
@@ -0,0 +1,145 @@
+package xyz.acygn.mokapot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import xyz.acygn.mokapot.util.Pair;
+
+/**
+ * The load reports that a communicator has received from its peers, and the
+ * bookkeeping needed to send its own. A report is attached to an outgoing
+ * message whenever the previous report sent to the same peer is more than
+ * <code>REPORT_INTERVAL</code> old; as replies to method calls are messages
+ * too, a system that places work on a peer learns the peer's load as a side
+ * effect of doing so.
+ * <p>
+ * Reports describe the past, and say nothing of work that this communicator
+ * has placed on a peer since the last one arrived. So that several placements
+ * in quick succession don't all go to the same system, the number of
+ * placements that are still running on each peer is tracked here too.
+ */
+class LoadReports {
+
+    /**
+     * The shortest time between two load reports sent to the same peer, in
+     * nanoseconds.
+     */
+    static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The age, in nanoseconds, beyond which a received load report is
+     * considered too out of date to use.
+     */
+    static final long MAX_REPORT_AGE = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * The communicator whose load is reported.
+     */
+    private final DistributedCommunicator communicator;
+
+    /**
+     * The most recent load report from each peer, together with the time
+     * (according to <code>System.nanoTime()</code>) at which it arrived.
+     */
+    private final ConcurrentHashMap<CommunicationAddress, Pair<LoadReport, Long>> received
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The time (according to <code>System.nanoTime()</code>) at which a load
+     * report was last sent to each peer.
+     */
+    private final ConcurrentHashMap<CommunicationAddress, Long> lastSent
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The number of placements made by this communicator that are running on
+     * each peer. Entries are never removed, but there's only one per peer.
+     */
+    private final ConcurrentHashMap<CommunicationAddress, AtomicInteger> inFlight
+            = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the load report bookkeeping for a communicator. Initially, no
+     * reports have been sent or received.
+     *
+     * @param communicator The communicator whose load is reported.
+     */
+    LoadReports(DistributedCommunicator communicator) {
+        this.communicator = communicator;
+    }
+
+    /**
+     * Returns the load report to attach to a message that's about to be sent,
+     * if one is due.
+     *
+     * @param recipient The system the message is being sent to.
+     * @return A report of this system's current load, or <code>null</code>
+     * if a report was sent to the recipient recently.
+     */
+    LoadReport reportFor(CommunicationAddress recipient) {
+        long now = System.nanoTime();
+        Long previous = lastSent.get(recipient);
+        if (previous != null && now - previous < REPORT_INTERVAL) {
+            return null;
+        }
+        /* If two threads race to send a report, only one of them sends it. */
+        if (previous == null ? lastSent.putIfAbsent(recipient, now) != null
+                : !lastSent.replace(recipient, previous, now)) {
+            return null;
+        }
+        return LoadReport.current(communicator);
+    }
+
+    /**
+     * Records a load report that arrived with a message.
+     *
+     * @param sender The system that sent the report.
+     * @param report The report.
+     */
+    void reportReceived(CommunicationAddress sender, LoadReport report) {
+        received.put(sender, new Pair<>(report, System.nanoTime()));
+    }
+
+    /**
+     * Returns the most recent load report from a given system. For this
+     * communicator's own system, the report is of the load as it is now.
+     *
+     * @param system The system whose load is wanted.
+     * @return The report, or <code>null</code> if none has been received
+     * recently enough to be useful.
+     */
+    LoadReport getLoad(CommunicationAddress system) {
+        if (system.equals(communicator.getMyAddress())) {
+            return LoadReport.current(communicator);
+        }
+        Pair<LoadReport, Long> report = received.get(system);
+        if (report == null
+                || System.nanoTime() - report.getSecond() > MAX_REPORT_AGE) {
+            return null;
+        }
+        return report.getFirst();
+    }
+
+    /**
+     * Returns the number of placements made by this communicator that are
+     * running on a given system.
+     *
+     * @param system The system.
+     * @return The number of placements in flight.
+     */
+    int getInFlight(CommunicationAddress system) {
+        AtomicInteger count = inFlight.get(system);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Records that a placement on a given system has started or finished.
+     *
+     * @param system The system the placement was made on.
+     * @param delta 1 if the placement started, -1 if it finished.
+     */
+    void adjustInFlight(CommunicationAddress system, int delta) {
+        inFlight.computeIfAbsent(system, (s) -> new AtomicInteger())
+                .addAndGet(delta);
+    }
+}
@@ -1,8 +1,11 @@
 package xyz.acygn.mokapot;
 
+import java.io.IOException;
 import static java.lang.System.arraycopy;
 import java.lang.ref.WeakReference;
+import java.util.HashSet;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
@@ -18,7 +21,9 @@ import static xyz.acygn.mokapot.ClassKnowledge.knowledgeForClass;
 import static xyz.acygn.mokapot.DistributedCommunicator.LIFETIME_TIMEOUT;
 import static xyz.acygn.mokapot.LengthIndependent.getActualClassInternal;
 import static xyz.acygn.mokapot.NonCopiableKnowledge.StandinFactoryPurpose.LONG_REFERENCE;
+import static xyz.acygn.mokapot.NonCopiableKnowledge.StandinFactoryPurpose.STANDIN_WRAPPER;
 import xyz.acygn.mokapot.markers.DistributedError;
+import xyz.acygn.mokapot.markers.ReadMostly;
 import xyz.acygn.mokapot.skeletons.ForwardingStandinStorage;
 import xyz.acygn.mokapot.skeletons.InvokeByCode;
 import xyz.acygn.mokapot.skeletons.Standin;
@@ -164,6 +169,41 @@ class LocationManager<T> extends LooseTightStandinReference<T>
      */
     private final Class<T> objectClass;
 
+    /**
+     * The systems that hold read replicas of the object, while it's stored
+     * here. This is <code>null</code> if the object's class doesn't implement
+     * <code>ReadMostly</code>. The set's monitor also guards changes to
+     * <code>replica</code>, and <code>replicaGeneration</code>.
+     *
+     * @see ReadMostly
+     */
+    private final Set<CommunicationAddress> replicaHolders;
+
+    /**
+     * Lock used to keep replicas coherent with the object. This is
+     * read-locked while a method that isn't read-only runs on the object (and
+     * while the replicas are discarded afterwards), and write-locked while
+     * the object is described for a new replica; thus a replica never sees a
+     * change in progress, and a system can't gain a replica between a change
+     * and the discarding of replicas that follows it. This is
+     * <code>null</code> if the object's class doesn't implement
+     * <code>ReadMostly</code>.
+     */
+    private final ReadWriteLock replicaLock;
+
+    /**
+     * This system's read replica of the object, if the object is stored
+     * elsewhere and a replica has been fetched; <code>null</code> otherwise.
+     */
+    private volatile Standin<T> replica = null;
+
+    /**
+     * The number of times this system's read replica of the object has been
+     * discarded. Used to avoid keeping a replica that went out of date while
+     * it was being fetched.
+     */
+    private long replicaGeneration = 0;
+
     /**
      * Returns the global ID of the object that this location manager is
      * managing.
@@ -646,6 +686,7 @@ class LocationManager<T> extends LooseTightStandinReference<T>
         addFinaliser(this, () -> thisState.start(thisState.communicator));
         ID_INDEX.putIfAbsent(new Pair<>(
                 thisState.communicator, thisState.objectID), this);
+        thisState.communicator.getMetrics().locationManagerCreated();
     }
 
     /**
@@ -706,6 +747,9 @@ class LocationManager<T> extends LooseTightStandinReference<T>
                 newID, communicator);
         this.objectClass = (Class) getActualClassInternal(
                 localStandin.getReferent(UNRESTRICTED));
+        boolean replicable = ReadMostly.class.isAssignableFrom(objectClass);
+        this.replicaHolders = replicable ? new HashSet<>() : null;
+        this.replicaLock = replicable ? new ReentrantReadWriteLock() : null;
 
         initIndexesAndFinalisers();
     }
@@ -751,6 +795,9 @@ class LocationManager<T> extends LooseTightStandinReference<T>
                 lastKnownLocation, objectID, communicator);
         this.objectClass = objectClass;
         this.directReferencesToStandinReferent = false;
+        boolean replicable = ReadMostly.class.isAssignableFrom(objectClass);
+        this.replicaHolders = replicable ? new HashSet<>() : null;
+        this.replicaLock = replicable ? new ReentrantReadWriteLock() : null;
 
         finishInitialization(newLongReference());
         initIndexesAndFinalisers();
@@ -860,6 +907,34 @@ class LocationManager<T> extends LooseTightStandinReference<T>
             return null;
         }
 
+        /* A method that might change a read-mostly object can't run while a
+           replica is being described, and must discard the replicas before
+           it returns. */
+        if (replicaLock == null
+                || knowledgeForClass(objectClass).isReadOnlyMethod(methodCode)) {
+            return invokeUnreplicated(methodCode, methodParams);
+        }
+        beginReplicatedChange();
+        try {
+            return invokeUnreplicated(methodCode, methodParams);
+        } finally {
+            endReplicatedChange();
+        }
+    }
+
+    /**
+     * Runs the given method on the object managed by this location manager,
+     * without regard to the object's replicas. This is the implementation of
+     * <code>invoke</code>, other than its special cases.
+     *
+     * @param methodCode The method code of the method to run.
+     * @param methodParams The parameters of the method to run.
+     * @return The return value of the invoked method.
+     * @throws Throwable If invoking the method on the object throws an
+     * exception, this method throws the same exception.
+     */
+    private Object invokeUnreplicated(long methodCode, Object[] methodParams)
+            throws Throwable {
         /* We're going to need to take the migration lock to do this safely.
            However, it's important that we don't block here if the object isn't
            local; migration has a lock order (referent system migration lock,
@@ -871,6 +946,7 @@ class LocationManager<T> extends LooseTightStandinReference<T>
            deadlocks. The lock is thus unlocked early (inside the try{} block
            because the control flow would be mind-bending otherwise) in order to
            prevent the issue from occuring. */
+        Object event = FlightRecorderEvents.EVENTS.beginInvoke();
         try (AutocloseableLockWrapper locked = new AutocloseableLockWrapper(
                 migrationLock.readLock(), "invoke")) {
             if (!state.isObjectLocal()) {
@@ -895,6 +971,26 @@ class LocationManager<T> extends LooseTightStandinReference<T>
                    weight being held here is sufficient to stop the reference on
                    the system in question from being entirely removed. */
                 DistributedCommunicator communicator = getCommunicator();
+
+                /* Results of read-only methods can be cached; other methods
+                   might change the results, so discard them (both now and
+                   once the method has run, in case a concurrent call cached
+                   an old result in between). */
+                ResultCache cache = communicator.getResultCache();
+                ClassKnowledge<T> knowledge = knowledgeForClass(objectClass);
+                boolean readOnly = knowledge.isReadOnlyMethod(methodCode);
+                /* Read-only methods of read-mostly objects run on a local
+                   replica of the object instead (fetched the first time it's
+                   needed), so there's no need to cache their results. */
+                boolean replicated = readOnly && replicaLock != null;
+                boolean cacheable = readOnly && !replicated && cache.isEnabled()
+                        && ResultCache.areCacheableArguments(methodParams, 0);
+                boolean invalidates = !readOnly
+                        && knowledge.hasReadOnlyMethods();
+                if (invalidates) {
+                    cache.invalidate(state.objectID);
+                }
+
                 while (true) {
                     TimestampedLocation believedLocation
                             = state.locationAndWeight.get().location;
@@ -904,6 +1000,41 @@ class LocationManager<T> extends LooseTightStandinReference<T>
                         throw new RuntimeException("object migrated here"
                                 + " while we were holding the migration lock");
                     }
+
+                    long sinceReplicaGeneration = 0;
+                    if (replicated) {
+                        Standin<T> localReplica = replica;
+                        if (localReplica != null) {
+                            locked.unlockEarly();
+                            communicator.getMetrics().replicaRead();
+                            try {
+                                return localReplica.invoke(methodCode,
+                                        methodParams, UNRESTRICTED);
+                            } finally {
+                                FlightRecorderEvents.EVENTS.endInvoke(event,
+                                        objectClass, methodCode, null);
+                            }
+                        }
+                        synchronized (replicaHolders) {
+                            sinceReplicaGeneration = replicaGeneration;
+                        }
+                    }
+
+                    long generation = 0;
+                    if (cacheable) {
+                        Object cached = cache.get(state.objectID,
+                                believedLocation, methodCode, methodParams);
+                        communicator.getMetrics().resultCacheLookup(
+                                cached != ResultCache.MISS);
+                        if (cached != ResultCache.MISS) {
+                            FlightRecorderEvents.EVENTS.endInvoke(event,
+                                    objectClass, methodCode,
+                                    believedLocation.getLocation());
+                            return cached;
+                        }
+                        generation = cache.getGeneration();
+                    }
+
                     final long storedWeight = 1000000L;
                     /* This is only safe because requestGCWeight never does I/O
                        on its own. */
@@ -918,16 +1049,40 @@ class LocationManager<T> extends LooseTightStandinReference<T>
                            even if the object migrates here). */
                         locked.unlockEarly();
 
+                        if (replicated) {
+                            Standin<T> fetched = fetchReplica(
+                                    believedLocation.getLocation(),
+                                    sinceReplicaGeneration);
+                            if (fetched != null) {
+                                return fetched.invoke(methodCode,
+                                        methodParams, UNRESTRICTED);
+                            }
+                        }
+
                         Object[] newParams = new Object[methodParams.length + 1];
                         arraycopy(methodParams, 0, newParams, 1,
                                 methodParams.length);
                         newParams[0] = new RemoteOnlyStandin<>(this);
                         MethodMessage methodMessage
                                 = new MethodMessage(methodCode, newParams);
-                        return communicator.sendMessageSync(
+                        Object rv = communicator.sendMessageSync(
                                 methodMessage, believedLocation.getLocation());
+                        if (cacheable) {
+                            cache.put(state.objectID, believedLocation,
+                                    methodCode, methodParams, rv, generation);
+                        }
+                        return ChunkedRemoteIterator.maybeChunk(rv,
+                                knowledge.getMethodByCode(methodCode)
+                                        .type().returnType(),
+                                communicator);
                     } finally {
+                        if (invalidates) {
+                            cache.invalidate(state.objectID);
+                        }
                         supplyGCWeight(storedWeight, believedLocation);
+                        FlightRecorderEvents.EVENTS.endInvoke(event,
+                                objectClass, methodCode,
+                                believedLocation.getLocation());
                     }
                 }
             }
@@ -935,8 +1090,241 @@ class LocationManager<T> extends LooseTightStandinReference<T>
             /* If this reference was tight, it shouldn't be any more; we just
                used the object locally, so we don't want to migrate it away. */
             maybeLoosen();
-            return getLocalStandin().invoke(
-                    methodCode, methodParams, UNRESTRICTED);
+            try {
+                return getLocalStandin().invoke(
+                        methodCode, methodParams, UNRESTRICTED);
+            } finally {
+                /* If other systems might have cached the results of
+                   read-only methods, and this method isn't one, tell them
+                   that the results might have changed. */
+                ResultCache cache = getCommunicator().getResultCache();
+                if (cache.hasRemoteCachers(state.objectID)
+                        && !knowledgeForClass(objectClass)
+                                .isReadOnlyMethod(methodCode)) {
+                    cache.invalidateRemote(state.objectID);
+                }
+                FlightRecorderEvents.EVENTS.endInvoke(
+                        event, objectClass, methodCode, null);
+            }
+        }
+    }
+
+    /**
+     * Prepares for a method to be called directly on the object managed by
+     * this location manager, if it's local. The migration lock is held
+     * read-locked from a successful call to this method until the
+     * corresponding call to <code>endDirectCall</code>, exactly as it is
+     * during a local call to <code>invoke</code>; this means that the object
+     * can't migrate away while the method is running.
+     * <p>
+     * The object returned is the local standin's referent, i.e. the object
+     * itself, which for an inheritance-based standin is the standin. (The
+     * standin's storage is forwarding, so a method called virtually on an
+     * inheritance-based standin would be forwarded straight back here; the
+     * caller must call the method that the standin overrides instead, as the
+     * standin's <code>invoke</code> does.)
+     * <p>
+     * A direct call isn't possible if the object isn't local, if the
+     * referent isn't an instance of the object's class (in which case the
+     * method could only be called on it via its method code), if other
+     * systems might have cached the results of its read-only methods (the
+     * call might need to tell them that the results have changed), if its
+     * class implements <code>ReadMostly</code> (the call might need to
+     * discard replicas of it), or if invocations are being recorded by Java
+     * Flight Recorder (the call wouldn't be recorded).
+     * <p>
+     * Unlike <code>invoke</code>, this needs no check that the caller is
+     * allowed to call the method, because it doesn't call anything itself.
+     * <code>invoke</code> accepts the method code of a method of any
+     * visibility, whereas the caller of this method gets a reference to an
+     * instance of the object's class, and any call it makes on that is linked
+     * and access-checked by the virtual machine as at any other call site. It
+     * can thus only reach the methods that it could already have called on
+     * the standin through which it reached this location manager, and those
+     * would have run on the same object. (Failing to call
+     * <code>endDirectCall</code> keeps the object from migrating, but so does
+     * a method call that never returns.)
+     *
+     * @return The local standin's referent, on which the method should be
+     * called; or
+     * <code>null</code> if the method must be called via <code>invoke</code>.
+     */
+    @Override
+    public Object beginDirectCall() {
+        if (FlightRecorderEvents.EVENTS.recordingInvoke()) {
+            return null;
+        }
+        Lock lock = migrationLock.readLock();
+        lock.lock();
+        boolean direct = false;
+        try {
+            if (!state.isObjectLocal()) {
+                return null;
+            }
+            T referent = getLocalStandin().getReferent(UNRESTRICTED);
+            if (!objectClass.isInstance(referent) || replicaLock != null
+                    || getCommunicator().getResultCache()
+                            .hasRemoteCachers(state.objectID)) {
+                return null;
+            }
+            /* As in invoke(): we're using the object locally, so we don't
+               want to migrate it away. */
+            maybeLoosen();
+            direct = true;
+            return referent;
+        } finally {
+            if (!direct) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Unlocks the migration lock that was locked by a successful call to
+     * <code>beginDirectCall</code>.
+     */
+    @Override
+    public void endDirectCall() {
+        migrationLock.readLock().unlock();
+    }
+
+    /**
+     * Prepares for a method that might change the object to run. If the
+     * object is stored here, this stops new replicas of it from being
+     * described until the matching call to <code>endReplicatedChange</code>.
+     * Must only be called if the object's class implements
+     * <code>ReadMostly</code>.
+     */
+    void beginReplicatedChange() {
+        replicaLock.readLock().lock();
+    }
+
+    /**
+     * Discards all replicas of the object, after a method that might have
+     * changed it has run, and then allows new replicas to be described again.
+     * This waits for each system holding a replica to confirm that it's been
+     * discarded. A system that can't be contacted is reported via the
+     * communicator's asynchronous exception handler, and assumed to no longer
+     * be holding a replica.
+     */
+    void endReplicatedChange() {
+        try {
+            discardReplicas();
+        } finally {
+            replicaLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tells every system holding a replica of the object to discard it, and
+     * waits for them to do so. Afterwards, no systems are recorded as holding
+     * replicas.
+     */
+    private void discardReplicas() {
+        Set<CommunicationAddress> holders;
+        synchronized (replicaHolders) {
+            if (replicaHolders.isEmpty()) {
+                return;
+            }
+            holders = new HashSet<>(replicaHolders);
+            replicaHolders.clear();
+        }
+        for (CommunicationAddress holder : holders) {
+            try {
+                getCommunicator().sendMessageSync(
+                        new ReplicaInvalidationMessage(state.objectID),
+                        holder);
+            } catch (Throwable ex) {
+                getCommunicator().asyncExceptionHandler(ex);
+            }
+        }
+    }
+
+    /**
+     * Describes the object for a replica to be made of it on another system,
+     * and records that that system holds a replica. No method that might
+     * change the object can be running at the time.
+     *
+     * @param holder The system that will hold the replica.
+     * @return The marshalled description of the object, to be unmarshalled on
+     * <code>holder</code>; or <code>null</code> if the object isn't stored
+     * here, or its class doesn't implement <code>ReadMostly</code>.
+     * @throws IOException If something goes wrong describing the object
+     */
+    MarshalledDescription describeForReplica(CommunicationAddress holder)
+            throws IOException {
+        if (replicaLock == null) {
+            return null;
+        }
+        /* The replica lock is locked before the migration lock, as it is
+           while a change runs via invoke(). */
+        replicaLock.writeLock().lock();
+        try (AutocloseableLockWrapper locked = new AutocloseableLockWrapper(
+                migrationLock.readLock(), "describeForReplica")) {
+            if (!state.isObjectLocal()) {
+                return null;
+            }
+            synchronized (replicaHolders) {
+                replicaHolders.add(holder);
+            }
+            return new MarshalledDescriptionStandin(
+                    Marshalling.describeStandin(getLocalStandin()),
+                    getCommunicator(), holder);
+        } finally {
+            replicaLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Fetches a replica of the object from the system that stores it, and
+     * keeps it for use by later calls to read-only methods (unless it was
+     * discarded while being fetched). This must be called while holding GC
+     * weight for the object at <code>home</code>.
+     *
+     * @param home The system that's believed to store the object.
+     * @param sinceGeneration The value of <code>replicaGeneration</code> from
+     * before the fetch started.
+     * @return The replica, or <code>null</code> if the object isn't stored at
+     * <code>home</code>.
+     * @throws Throwable If something goes wrong fetching the replica
+     */
+    private Standin<T> fetchReplica(CommunicationAddress home,
+            long sinceGeneration) throws Throwable {
+        MarshalledDescription description = getCommunicator().sendMessageSync(
+                new ReplicaRequestMessage(new RemoteOnlyStandin<>(this)),
+                home);
+        if (description == null) {
+            return null;
+        }
+        description.setUnmarshalCommunicator(getCommunicator());
+        Standin<T> fetched = knowledgeForClass(objectClass)
+                .getStandinFactory(STANDIN_WRAPPER)
+                .newFromDescription(description);
+        synchronized (replicaHolders) {
+            if (replicaGeneration == sinceGeneration) {
+                replica = fetched;
+            }
+        }
+        getCommunicator().getMetrics().replicaFetched();
+        return fetched;
+    }
+
+    /**
+     * Discards this system's replica of an object, if it has one.
+     *
+     * @param objectID The global ID of the object.
+     * @param communicator The communicator whose replica is discarded.
+     */
+    static void dropReplica(GlobalID objectID,
+            DistributedCommunicator communicator) {
+        LocationManager<?> manager = ID_INDEX.get(
+                new Pair<>(communicator, objectID));
+        if (manager == null || manager.replicaHolders == null) {
+            return;
+        }
+        synchronized (manager.replicaHolders) {
+            manager.replicaGeneration++;
+            manager.replica = null;
         }
     }
 
@@ -1123,6 +1511,19 @@ class LocationManager<T> extends LooseTightStandinReference<T>
                block indefinitely if we don't change it.) */
             state.locationAndWeight.set(newLaW);
             supplyGCWeight(sentWeight, newLaW.location);
+            getCommunicator().getMetrics().migratedOut();
+
+            /* Results of the object's methods cached elsewhere were cached
+               against its old location, and won't be invalidated from here
+               any more. */
+            getCommunicator().getResultCache().invalidateRemote(
+                    state.objectID);
+
+            /* Likewise, replicas made from here would no longer be discarded
+               when the object changes. */
+            if (replicaHolders != null) {
+                discardReplicas();
+            }
 
             /* The standin needs its referent dropped, as it's going from local
                to remote. The storage is already correct. */
@@ -1300,6 +1701,7 @@ class LocationManager<T> extends LooseTightStandinReference<T>
                     communicator.asyncExceptionHandler(ex);
                 }
             }
+            communicator.getMetrics().locationManagerReleased();
             communicatorKeepalive.close();
         }
     }
@@ -3,7 +3,9 @@ package xyz.acygn.mokapot;
 import java.io.IOException;
 import java.lang.invoke.SerializedLambda;
 import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import javax.net.ssl.SSLSessionContext;
 import static xyz.acygn.mokapot.Authorisations.UNRESTRICTED;
 import static xyz.acygn.mokapot.ClassKnowledge.knowledgeForActualClass;
 import static xyz.acygn.mokapot.ClassKnowledge.knowledgeForClass;
@@ -11,9 +13,12 @@ import static xyz.acygn.mokapot.LambdaKnowledge.READ_RESOLVE_METHOD;
 import static xyz.acygn.mokapot.LambdaKnowledge.SERIALIZED_LAMBDA_KNOWLEDGE;
 import static xyz.acygn.mokapot.LengthIndependent.getActualClassInternal;
 import static xyz.acygn.mokapot.NonCopiableKnowledge.StandinFactoryPurpose.STANDIN_WRAPPER;
+import static xyz.acygn.mokapot.StandinTechnique.Functionality.DESCRIBE;
+import static xyz.acygn.mokapot.StandinTechnique.Functionality.WRAP_EXISTING;
 import xyz.acygn.mokapot.markers.DistributedError;
 import xyz.acygn.mokapot.skeletons.Standin;
 import xyz.acygn.mokapot.util.AutocloseableLockWrapper;
+import xyz.acygn.mokapot.util.BackgroundGarbageCollection;
 import static xyz.acygn.mokapot.util.StringifyUtils.stringify;
 import xyz.acygn.mokapot.wireformat.ClassNameDescriptions;
 import static xyz.acygn.mokapot.wireformat.ClassNameDescriptions.NULL_DESCRIPTION_INT;
@@ -174,6 +179,20 @@ class Marshalling implements TestHooks {
 
     @Override
     public ObjectDescription describeField(Object obj, Class<?> declaredType) {
+        return describeFieldStatic(obj, declaredType);
+    }
+
+    /**
+     * Static version of <code>describeField</code>. Like description of whole
+     * objects, this is not inherently tied to a communicator.
+     *
+     * @param obj The object to describe.
+     * @param declaredType The declared type of the field that holds the
+     * object, or <code>null</code> to describe its class in full.
+     * @return The description of the object as a field.
+     */
+    static ObjectDescription describeFieldStatic(
+            Object obj, Class<?> declaredType) {
         ClassKnowledge<?> ck = knowledgeForActualClass(obj);
         ObjectDescription.Size oSize
                 = ck.descriptionSize(() -> obj, false);
@@ -205,8 +224,8 @@ class Marshalling implements TestHooks {
      * @throws IOException If something goes wrong in serialisation, or if the
      * given object is not actually deeply copiable.
      */
-    byte[] describeToByteArray(Object obj) throws IOException {
-        ObjectDescription description = describeField(obj, null);
+    static byte[] describeToByteArray(Object obj) throws IOException {
+        ObjectDescription description = describeFieldStatic(obj, null);
         if (!description.listAllNoncopiableObjects().isEmpty()) {
             throw new IOException("Object of " + obj.getClass() + " is not deeply copiable");
         }
@@ -223,6 +242,69 @@ class Marshalling implements TestHooks {
         return rCAOStatic(description, parent, expected);
     }
 
+    @Override
+    public <T> T reproduce(ReadableDescription description,
+            Class<T> actualClass) throws IOException {
+        ClassKnowledge<T> ck = knowledgeForClass(actualClass);
+        if (ck instanceof NonCopiableKnowledge) {
+            /* The reverse of describeExact: the description is of the
+               object's fields, so reproduce it via a standin. */
+            return ck.getStandinFactory(STANDIN_WRAPPER)
+                    .newFromDescription(description).getReferent(UNRESTRICTED);
+        }
+        return ck.reproduce(description, false);
+    }
+
+    @Override
+    public <T> Standin<T> createStandin(T referent, String technique)
+            throws IllegalArgumentException, IOException {
+        StandinTechnique st = StandinTechnique.valueOf(technique);
+        @SuppressWarnings("unchecked")
+        Class<T> actualClass = (Class<T>) getActualClassInternal(referent);
+        StandinFactory<T> sf;
+        try {
+            sf = st.standinFactoryFor(actualClass);
+        } catch (StandinFactory.CannotConstructException ex) {
+            throw new IllegalArgumentException(
+                    "Cannot create a " + st + " standin for " + actualClass,
+                    ex);
+        }
+
+        if (st.functionalities.contains(WRAP_EXISTING)) {
+            return sf.wrapObject(referent);
+        } else if (st.functionalities.contains(DESCRIBE)) {
+            return sf.newFromDescription(describe(referent));
+        } else {
+            try {
+                return sf.standinFromLocationManager(
+                        communicator.findLocationManagerForObject(referent));
+            } catch (AutocloseableLockWrapper.CannotLockException ex) {
+                /* As in makeLongReference. */
+                throw new IllegalStateException(
+                        "attempting to create a standin as the communicator "
+                        + "shuts down", ex);
+            }
+        }
+    }
+
+    @Override
+    public byte[] encodeRemoteCall(CopiableSupplier<?> code,
+            CommunicationAddress target) throws IOException {
+        MethodMessage mm;
+        try {
+            mm = new MethodMessage(
+                    CopiableSupplier.class.getMethod("get"), code);
+        } catch (NoSuchMethodException ex) {
+            /* Should never happen. */
+            throw new RuntimeException(ex);
+        }
+        MessageEnvelope envelope = new MessageEnvelope(
+                new MessageAddress(communicator.getMyAddress(), false,
+                        mm.isUnimportant(), null, null),
+                mm, communicator, target);
+        return ConnectionManager.encodeMessage(envelope);
+    }
+
     /**
      * Static version of <code>readClassAndObject</code>. (The communicator to
      * use, if one is necessary, is implied via <code>description</code>.)
@@ -316,9 +398,16 @@ class Marshalling implements TestHooks {
      */
     MarshalledDescriptionStandin describeAndMarshal(
             Object o, CommunicationAddress targetSystem) {
+        Object event = FlightRecorderEvents.EVENTS.beginMarshal();
         ObjectDescription desc = describeField(o, null);
-        return new MarshalledDescriptionStandin(
-                desc, communicator, targetSystem);
+        MarshalledDescriptionStandin marshalled
+                = new MarshalledDescriptionStandin(
+                        desc, communicator, targetSystem);
+        FlightRecorderEvents.EVENTS.endMarshal(event,
+                o == null ? null : o.getClass(),
+                marshalled.getWrittenLength(),
+                marshalled.getMarshalledNoncopiableObjects().length);
+        return marshalled;
     }
 
     /**
@@ -346,6 +435,54 @@ class Marshalling implements TestHooks {
         return enableSlowDebugOperations;
     }
 
+    /**
+     * Whether compact formats are used to describe common collection classes.
+     * This is a JVM-global setting.
+     *
+     * @see CompactCollectionFormat
+     */
+    private static volatile boolean enableCompactCollectionFormats = true;
+
+    @Override
+    public void setEnableCompactCollectionFormats(
+            boolean enableCompactCollectionFormats) {
+        Marshalling.enableCompactCollectionFormats
+                = enableCompactCollectionFormats;
+    }
+
+    /**
+     * Returns whether compact formats are used to describe common collection
+     * classes. If not, they're described field-by-field, like any other
+     * class.
+     *
+     * @return Whether the compact collection formats are enabled.
+     * @see CompactCollectionFormat
+     */
+    static boolean compactCollectionFormatsEnabled() {
+        return enableCompactCollectionFormats;
+    }
+
+    @Override
+    public boolean confirmAddress(SSLSessionContext sessions,
+            InetAddress host, int port, CommunicationAddress expected) {
+        return SecureTCPCommunicationEndpoint.confirmAddress(
+                sessions, host, port, expected);
+    }
+
+    @Override
+    public void admitThreadProjection(CommunicationAddress sender,
+            Runnable body) {
+        communicator.getAdmission().admit(sender, body);
+    }
+
+    @Override
+    public void requestGarbageCollection(CommunicationAddress target)
+            throws AutocloseableLockWrapper.CannotLockException {
+        communicator.sendMessageAsync(new GarbageCollectionMessage(
+                BackgroundGarbageCollection.Operation.GARBAGE_COLLECT),
+                null, target);
+    }
+
     @Override
     public CommunicationAddress createSecondaryCommunicator(
             String name, DebugMonitor debugMonitor) throws IOException {
@@ -63,6 +63,22 @@ final class MessageAddress implements Copiable {
      */
     private final boolean isUnimportant;
 
+    /**
+     * The latency tracing information for the message, or <code>null</code>
+     * if the message isn't being traced.
+     *
+     * @see MessageTracer
+     */
+    private final MessageTrace trace;
+
+    /**
+     * The sender's load at the time the message was sent, or
+     * <code>null</code> if the message doesn't carry a load report.
+     *
+     * @see LoadReports
+     */
+    private final LoadReport loadReport;
+
     /**
      * Creates a message address with typical default settings for synchronous
      * communication. The message will be sent on the global extension of the
@@ -80,14 +96,21 @@ final class MessageAddress implements Copiable {
      * @param isUnimportant Whether the recipient is allowed to discard the
      * message because it's shutting down or because the named thread is not
      * alive.
+     * @param trace The latency tracing information for the message, or
+     * <code>null</code> if the message shouldn't be traced.
+     * @param loadReport A report of the sender's load, or <code>null</code>
+     * to send the message without one.
      */
     MessageAddress(CommunicationAddress returnAddress,
-            boolean temporaryOnRecipient, boolean isUnimportant) {
+            boolean temporaryOnRecipient, boolean isUnimportant,
+            MessageTrace trace, LoadReport loadReport) {
         threadID = getCurrentThreadID(returnAddress);
         senderAddress = returnAddress;
         requiresReply = true;
         this.temporaryOnRecipient = temporaryOnRecipient;
         this.isUnimportant = isUnimportant;
+        this.trace = trace;
+        this.loadReport = loadReport;
     }
 
     /**
@@ -110,13 +133,18 @@ final class MessageAddress implements Copiable {
      * @param isUnimportant Whether the recipient is allowed to discard the
      * message because it's shutting down or because the named thread is not
      * alive.
+     * @param trace The latency tracing information for the message, or
+     * <code>null</code> if the message shouldn't be traced.
+     * @param loadReport A report of the sender's load, or <code>null</code>
+     * to send the message without one.
      *
      * @see #getThreadID()
      * @see #getReturnAddress()
      */
     MessageAddress(GlobalID threadID, boolean requiresReply,
             CommunicationAddress senderAddress, boolean temporaryOnRecipient,
-            boolean isUnimportant) {
+            boolean isUnimportant, MessageTrace trace,
+            LoadReport loadReport) {
         if (requiresReply) {
             requireNonNull(threadID);
         }
@@ -125,6 +153,8 @@ final class MessageAddress implements Copiable {
         this.senderAddress = senderAddress;
         this.temporaryOnRecipient = temporaryOnRecipient;
         this.isUnimportant = isUnimportant;
+        this.trace = trace;
+        this.loadReport = loadReport;
     }
 
     /**
@@ -176,6 +206,25 @@ final class MessageAddress implements Copiable {
         return isUnimportant;
     }
 
+    /**
+     * Returns the latency tracing information for the message.
+     *
+     * @return The tracing information, or <code>null</code> if the message
+     * isn't being traced.
+     */
+    MessageTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Returns the load report that the sender attached to the message.
+     *
+     * @return The load report, or <code>null</code> if there isn't one.
+     */
+    LoadReport getLoadReport() {
+        return loadReport;
+    }
+
     /**
      * Places the given reply into an envelope and sends it to the reply address
      * stated in this address.
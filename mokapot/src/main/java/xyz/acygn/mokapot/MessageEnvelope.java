@@ -84,7 +84,9 @@ final class MessageEnvelope implements Copiable {
             throw new IllegalArgumentException("requesting a thread tracker"
                     + " in a reply that doesn't exist");
         }
+        MessageTrace outerTrace = MessageTrace.enter(address.getTrace());
         try {
+            recordDispatch(communicator);
             Stopwatch timer = new Stopwatch(Lazy.TIME_BASE.get()).start();
             marshalledMessage.setUnmarshalCommunicator(communicator);
             marshalledMessage.setTemporaryOnRecipient(
@@ -93,10 +95,8 @@ final class MessageEnvelope implements Copiable {
                     = (DistributedMessage) Marshalling.rCAOStatic(
                             marshalledMessage, null, null);
 
-            if (monitor != null) {
-                monitor.newMessage(asMessageInfo(communicator,
-                        timer.time(ChronoUnit.NANOS), message, null));
-            }
+            recordMessage(monitor, communicator,
+                    timer.time(ChronoUnit.NANOS), message, null);
             message.process(this, communicator, requestTracking);
         } catch (Throwable ex) {
             if (address.sendsReply()) {
@@ -105,6 +105,8 @@ final class MessageEnvelope implements Copiable {
             } else {
                 communicator.asyncExceptionHandler(ex);
             }
+        } finally {
+            MessageTrace.restore(outerTrace);
         }
     }
 
@@ -133,6 +135,7 @@ final class MessageEnvelope implements Copiable {
      */
     Object getOCMReturnValue(DebugMonitor monitor,
             DistributedCommunicator communicator) throws Throwable {
+        recordDispatch(communicator);
         Stopwatch timer = new Stopwatch(Lazy.TIME_BASE.get()).start();
         marshalledMessage.setUnmarshalCommunicator(communicator);
         marshalledMessage.setTemporaryOnRecipient(
@@ -140,10 +143,8 @@ final class MessageEnvelope implements Copiable {
         DistributedMessage message
                 = (DistributedMessage) Marshalling.rCAOStatic(
                         marshalledMessage, null, null);
-        if (monitor != null) {
-            monitor.newMessage(asMessageInfo(
-                    communicator, timer.time(ChronoUnit.NANOS), message, null));
-        }
+        recordMessage(monitor, communicator,
+                timer.time(ChronoUnit.NANOS), message, null);
 
         return ((OperationCompleteMessage) message).getReturnValue(
                 communicator, getAddress());
@@ -182,6 +183,69 @@ final class MessageEnvelope implements Copiable {
         return "[" + marshalledMessage.toString() + "]" + address.inDebugOutput();
     }
 
+    /**
+     * Records the sending or receipt of this message in the statistics of the
+     * communicator that's processing it, and reports it to a debug monitor if
+     * there is one.
+     *
+     * @param monitor The debug monitor to report the message to. Can be
+     * <code>null</code> if this feature is not required.
+     * @param communicator The distributed communicator that is processing the
+     * message (the sender if <code>sentTo</code> is valid, the recipient if
+     * <code>sentTo</code> is <code>null</code>).
+     * @param marshalTimeNanos The length of time spent marshalling or
+     * unmarshalling the message, in nanoseconds.
+     * @param message The message that was sent or received.
+     * @param sentTo If just about to send the message, the system it's just
+     * about to be sent to; if the message was just received, <code>null</code>.
+     */
+    void recordMessage(DebugMonitor monitor,
+            DistributedCommunicator communicator, long marshalTimeNanos,
+            DistributedMessage message, CommunicationAddress sentTo) {
+        int bytes = marshalledMessage.getWrittenLength();
+        if (sentTo != null) {
+            communicator.getMetrics().messageSent(
+                    sentTo, message, bytes, marshalTimeNanos);
+            FlightRecorderEvents.EVENTS.messageSent(
+                    sentTo, message.getClass(), bytes);
+        } else {
+            communicator.getMetrics().messageReceived(
+                    address.getSenderAddress(), message, bytes,
+                    marshalTimeNanos);
+            FlightRecorderEvents.EVENTS.messageReceived(
+                    address.getSenderAddress(), message.getClass(), bytes);
+        }
+        if (monitor != null) {
+            monitor.newMessage(asMessageInfo(
+                    communicator, marshalTimeNanos, message, sentTo));
+        }
+
+        MessageTracer tracer = communicator.getMessageTracer();
+        MessageTrace trace = address.getTrace();
+        if (tracer != null && trace != null) {
+            long now = MessageTracer.now();
+            tracer.recordPhase(communicator,
+                    sentTo != null ? "marshal" : "unmarshal", trace,
+                    message.getClass(), now - marshalTimeNanos / 1000, now);
+        }
+    }
+
+    /**
+     * Records, for latency tracing, the time this envelope spent waiting for a
+     * thread to handle it after being decoded. Does nothing unless the
+     * envelope is traced and the communicator has a tracer.
+     *
+     * @param communicator The communicator that received the envelope.
+     */
+    private void recordDispatch(DistributedCommunicator communicator) {
+        MessageTracer tracer = communicator.getMessageTracer();
+        MessageTrace trace = address.getTrace();
+        if (tracer != null && trace != null) {
+            tracer.recordPhase(communicator, "dispatch", trace, null,
+                    trace.getDecodedAt(), MessageTracer.now());
+        }
+    }
+
     /**
      * Produces information suitable for a debug monitor that describes this
      * message.
@@ -0,0 +1,200 @@
+package xyz.acygn.mokapot;
+
+import java.util.concurrent.ThreadLocalRandom;
+import xyz.acygn.mokapot.markers.Copiable;
+
+/**
+ * Tracing information carried by a message that was sampled for latency
+ * tracing. All messages that are sent as a consequence of handling a traced
+ * message on the same thread (nested calls, callbacks and replies) carry the
+ * same trace ID, so that the time spent on a remote call can be broken down
+ * across every system it touched.
+ * <p>
+ * The timestamps are in microseconds, as given by
+ * <code>MessageTracer#now()</code>; they're comparable between systems to the
+ * extent that the systems' wall clocks agree.
+ *
+ * @see MessageTracer
+ */
+final class MessageTrace implements Copiable {
+
+    /**
+     * The trace that the current thread is working on behalf of, if any.
+     */
+    private static final ThreadLocal<MessageTrace> CURRENT
+            = new ThreadLocal<>();
+
+    /**
+     * The ID shared by every message in the trace.
+     */
+    private final long traceID;
+
+    /**
+     * An ID for this message specifically.
+     */
+    private final long messageID;
+
+    /**
+     * The time at which the sender started to encode the message for
+     * transmission; 0 if it hasn't been encoded yet.
+     */
+    private long encodedAt;
+
+    /**
+     * The time at which the recipient started to read the message from the
+     * network. This is set only on the recipient, after the message has been
+     * decoded, and so is always 0 on the wire.
+     */
+    private long arrivedAt;
+
+    /**
+     * The time at which the recipient finished decoding the message's
+     * envelope. As with <code>arrivedAt</code>, this is meaningful only on the
+     * recipient.
+     */
+    private long decodedAt;
+
+    /**
+     * Creates tracing information for a new message.
+     *
+     * @param traceID The ID of the trace that the message belongs to.
+     */
+    private MessageTrace(long traceID) {
+        this.traceID = traceID;
+        this.messageID = ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Decides whether a message that's about to be sent from the current
+     * thread should be traced. It's traced if the thread is already working
+     * on behalf of a trace (in which case the message joins that trace), or
+     * if the given tracer decides to sample it (in which case it starts a new
+     * trace).
+     *
+     * @param tracer The tracer of the communicator sending the message. Can
+     * be <code>null</code>, in which case only messages that are part of an
+     * existing trace will be traced.
+     * @return The tracing information for the message, or <code>null</code>
+     * if it shouldn't be traced.
+     */
+    static MessageTrace forOutgoingMessage(MessageTracer tracer) {
+        MessageTrace current = CURRENT.get();
+        if (current != null) {
+            return new MessageTrace(current.traceID);
+        }
+        if (tracer != null && tracer.sample()) {
+            return new MessageTrace(ThreadLocalRandom.current().nextLong());
+        }
+        return null;
+    }
+
+    /**
+     * Marks the current thread as working on behalf of the given trace, so
+     * that messages it sends become part of the trace.
+     *
+     * @param trace The trace; can be <code>null</code>, in which case the
+     * current thread's trace is left unchanged.
+     * @return The trace that the current thread was working on previously,
+     * which should be passed to <code>restore</code> once the thread stops
+     * working on behalf of <code>trace</code>.
+     */
+    static MessageTrace enter(MessageTrace trace) {
+        MessageTrace previous = CURRENT.get();
+        if (trace != null) {
+            CURRENT.set(trace);
+        }
+        return previous;
+    }
+
+    /**
+     * Undoes the effect of <code>enter</code>.
+     *
+     * @param previous The value that <code>enter</code> returned.
+     */
+    static void restore(MessageTrace previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Returns the ID shared by every message in this message's trace.
+     *
+     * @return The trace ID.
+     */
+    long getTraceID() {
+        return traceID;
+    }
+
+    /**
+     * Returns the ID of this message specifically.
+     *
+     * @return The message ID.
+     */
+    long getMessageID() {
+        return messageID;
+    }
+
+    /**
+     * Returns the time at which the sender started to encode the message.
+     *
+     * @return A timestamp in microseconds.
+     */
+    long getEncodedAt() {
+        return encodedAt;
+    }
+
+    /**
+     * Records the time at which the sender started to encode the message.
+     * This must be called before the message is encoded, in order for the
+     * time to reach the recipient.
+     *
+     * @param encodedAt A timestamp in microseconds.
+     */
+    void setEncodedAt(long encodedAt) {
+        this.encodedAt = encodedAt;
+    }
+
+    /**
+     * Returns the time at which the recipient started to read the message.
+     *
+     * @return A timestamp in microseconds, or 0 if not known.
+     */
+    long getArrivedAt() {
+        return arrivedAt;
+    }
+
+    /**
+     * Returns the time at which the recipient finished decoding the message's
+     * envelope.
+     *
+     * @return A timestamp in microseconds, or 0 if not known.
+     */
+    long getDecodedAt() {
+        return decodedAt;
+    }
+
+    /**
+     * Records when the recipient read and decoded the message's envelope.
+     *
+     * @param arrivedAt The time at which reading started, in microseconds.
+     * @param decodedAt The time at which decoding finished, in microseconds.
+     */
+    void setReceived(long arrivedAt, long decodedAt) {
+        this.arrivedAt = arrivedAt;
+        this.decodedAt = decodedAt;
+    }
+
+    /**
+     * Produces a debug representation of this trace.
+     *
+     * @return The trace and message IDs, in hexadecimal.
+     */
+    @Override
+    public String toString() {
+        return "trace " + Long.toHexString(traceID) + "/"
+                + Long.toHexString(messageID);
+    }
+}
@@ -0,0 +1,252 @@
+package xyz.acygn.mokapot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A recorder of latency breakdowns for a sample of the messages sent by
+ * distributed communicators. Install one onto a communicator using
+ * <code>DistributedCommunicator#setMessageTracer</code>; each message the
+ * communicator sends (other than as part of an existing trace) is then traced
+ * with the configured probability. Tracing is off by default, and a message
+ * that isn't traced costs only a random number generation.
+ * <p>
+ * A traced message carries a trace ID, which is inherited by every message sent
+ * while handling it on the same thread, including nested calls back to the
+ * original system and the eventual reply; so if a remote call is sampled, the
+ * whole call is traced. Each system records the phases that it sees:
+ * <ul>
+ * <li><code>marshal</code>: describing and marshalling the message;</li>
+ * <li><code>encode</code>: encoding the envelope into bytes;</li>
+ * <li><code>write lock</code>: waiting for the connection to be free;</li>
+ * <li><code>write</code>: writing the bytes to the connection;</li>
+ * <li><code>in transit</code>: from the sender starting to encode the message
+ * (as measured by the sender's clock) until the recipient starts to read it
+ * (thus including the sender's <code>encode</code>, <code>write lock</code> and
+ * <code>write</code> phases, as well as the time on the network);</li>
+ * <li><code>decode</code>: decoding the envelope;</li>
+ * <li><code>dispatch</code>: waiting for the thread that will handle the
+ * message;</li>
+ * <li><code>unmarshal</code>: unmarshalling the message;</li>
+ * <li><code>calculateReply</code>: running the method or other operation that
+ * the message requests.</li>
+ * </ul>
+ * <p>
+ * The phases are written to a file in the Chrome trace event format (which can
+ * be viewed using <code>chrome://tracing</code> or Perfetto), with each
+ * communicator shown as a process. If multiple systems are being traced, their
+ * files can be concatenated (after removing the opening <code>[</code> from
+ * all but the first) to view the trace as a whole.
+ */
+public final class MessageTracer implements Closeable {
+
+    /**
+     * The wall-clock time at which the tracing clock was calibrated, in
+     * microseconds since the epoch.
+     */
+    private static final long EPOCH_MICROS
+            = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+    /**
+     * The value of <code>System.nanoTime()</code> at the moment that the
+     * tracing clock was calibrated.
+     */
+    private static final long EPOCH_NANOS = System.nanoTime();
+
+    /**
+     * The probability with which an untraced message is sampled.
+     */
+    private final double samplingRate;
+
+    /**
+     * The file to which the trace is written. Access to this field must be
+     * synchronised on <code>this</code>.
+     */
+    private Writer output;
+
+    /**
+     * The numbers that represent each communicator in the trace file, by
+     * communicator address. Access to this field must be synchronised on
+     * <code>this</code>.
+     */
+    private final Map<String, Integer> processIDs = new HashMap<>();
+
+    /**
+     * The threads that have been named in the trace file. Access to this
+     * field must be synchronised on <code>this</code>.
+     */
+    private final Set<Long> namedThreads = new HashSet<>();
+
+    /**
+     * Creates a new tracer, writing to the given file. The file will be
+     * overwritten if it already exists.
+     *
+     * @param file The file to write the trace to.
+     * @param samplingRate The probability with which each message is sampled,
+     * from 0 (never sample a message) to 1 (sample every message).
+     * @throws IOException If the file could not be created
+     * @throws IllegalArgumentException If <code>samplingRate</code> is out of
+     * range
+     */
+    public MessageTracer(Path file, double samplingRate)
+            throws IOException, IllegalArgumentException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8),
+                samplingRate);
+    }
+
+    /**
+     * Creates a new tracer, writing to the given writer. This is useful if
+     * Mokapot doesn't have permission to open files itself. The tracer takes
+     * ownership of the writer, and closes it when the tracer is closed.
+     *
+     * @param output The writer to write the trace to. This should be buffered.
+     * @param samplingRate The probability with which each message is sampled,
+     * from 0 (never sample a message) to 1 (sample every message).
+     * @throws IOException If something went wrong writing to
+     * <code>output</code>
+     * @throws IllegalArgumentException If <code>samplingRate</code> is out of
+     * range
+     */
+    public MessageTracer(Writer output, double samplingRate)
+            throws IOException, IllegalArgumentException {
+        if (!(samplingRate >= 0 && samplingRate <= 1)) {
+            throw new IllegalArgumentException(
+                    "sampling rate " + samplingRate + " is out of range");
+        }
+        this.samplingRate = samplingRate;
+        this.output = output;
+        output.write("[\n");
+    }
+
+    /**
+     * Returns the probability with which each message is sampled.
+     *
+     * @return The sampling rate, from 0 to 1.
+     */
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Returns the current time, as used for trace timestamps.
+     *
+     * @return The time in microseconds since the epoch.
+     */
+    static long now() {
+        return EPOCH_MICROS + (System.nanoTime() - EPOCH_NANOS) / 1000;
+    }
+
+    /**
+     * Decides whether to sample a message.
+     *
+     * @return <code>true</code> if the message should be traced.
+     */
+    boolean sample() {
+        return samplingRate > 0
+                && ThreadLocalRandom.current().nextDouble() < samplingRate;
+    }
+
+    /**
+     * Records a phase in the handling of a traced message. Phases with an
+     * unknown start time are ignored.
+     *
+     * @param communicator The communicator on which the phase happened.
+     * @param phase The name of the phase.
+     * @param trace The tracing information of the message.
+     * @param messageType The class of the message, if known; otherwise
+     * <code>null</code>.
+     * @param start The time at which the phase started, in microseconds.
+     * @param end The time at which the phase ended, in microseconds.
+     */
+    void recordPhase(DistributedCommunicator communicator, String phase,
+            MessageTrace trace, Class<?> messageType, long start, long end) {
+        if (start == 0) {
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        String process = String.valueOf(communicator.getMyAddress());
+
+        synchronized (this) {
+            if (output == null) {
+                return;
+            }
+            try {
+                Integer pid = processIDs.get(process);
+                if (pid == null) {
+                    pid = processIDs.size() + 1;
+                    processIDs.put(process, pid);
+                    output.write("{\"name\":\"process_name\",\"ph\":\"M\","
+                            + "\"pid\":" + pid + ",\"args\":{\"name\":"
+                            + quote(process) + "}},\n");
+                }
+                if (namedThreads.add(thread.getId())) {
+                    output.write("{\"name\":\"thread_name\",\"ph\":\"M\","
+                            + "\"pid\":" + pid + ",\"tid\":" + thread.getId()
+                            + ",\"args\":{\"name\":" + quote(thread.getName())
+                            + "}},\n");
+                }
+                output.write("{\"name\":" + quote(phase)
+                        + ",\"cat\":\"mokapot\",\"ph\":\"X\",\"ts\":" + start
+                        + ",\"dur\":" + Math.max(end - start, 0)
+                        + ",\"pid\":" + pid + ",\"tid\":" + thread.getId()
+                        + ",\"args\":{\"trace\":\""
+                        + Long.toHexString(trace.getTraceID())
+                        + "\",\"message\":\""
+                        + Long.toHexString(trace.getMessageID()) + "\""
+                        + (messageType == null ? ""
+                                : ",\"type\":" + quote(messageType.getName()))
+                        + "}},\n");
+            } catch (IOException ex) {
+                communicator.asyncExceptionHandler(ex);
+            }
+        }
+    }
+
+    /**
+     * Produces a JSON string literal.
+     *
+     * @param s The contents of the string.
+     * @return <code>s</code>, quoted and escaped.
+     */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Finishes writing the trace file. Subsequent phases won't be recorded.
+     *
+     * @throws IOException If something went wrong writing the file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (output == null) {
+            return;
+        }
+        /* The trace event format allows a trailing comma before the closing
+           bracket, which saves us from having to track whether an event has
+           been written yet. */
+        output.write("{}]\n");
+        output.close();
+        output = null;
+    }
+}
@@ -7,6 +7,8 @@ import java.time.Duration;
 import static xyz.acygn.mokapot.ClassKnowledge.knowledgeForClass;
 import static xyz.acygn.mokapot.ClassKnowledge.methodCode;
 import static xyz.acygn.mokapot.LengthIndependent.getActualClassInternal;
+import xyz.acygn.mokapot.markers.ReadMostly;
+import xyz.acygn.mokapot.util.AutocloseableLockWrapper;
 import xyz.acygn.mokapot.wireformat.MethodCodes;
 
 /**
@@ -102,7 +104,56 @@ class MethodMessage extends SynchronousMessage<Object> {
         // TODO: If the location manager is tight, migrate?
 
         MethodHandle m = getMethod();
-        return m.invokeWithArguments(arguments);
+        if (declaringClass != null) {
+            return m.invokeWithArguments(arguments);
+        }
+
+        /* If the method is read-only, the caller might cache its result, so
+           we'll need to tell it when the result could have changed. If it
+           isn't, it might change the results of read-only methods that have
+           been cached elsewhere. */
+        ClassKnowledge<?> knowledge
+                = knowledgeForClass(getActualClassInternal(arguments[0]));
+        ResultCache cache = getCommunicator().getResultCache();
+        if (knowledge.isReadOnlyMethod(methodCode)) {
+            if (ResultCache.areCacheableArguments(arguments, 1)) {
+                cache.cachedBy(getObjectID(), getSentInEnvelope()
+                        .getAddress().getSenderAddress());
+            }
+            return m.invokeWithArguments(arguments);
+        }
+        /* Likewise, it might make replicas of a read-mostly object out of
+           date. */
+        LocationManager<?> replicated = arguments[0] instanceof ReadMostly
+                ? getCommunicator().findLocationManagerForObject(arguments[0])
+                : null;
+        if (replicated != null) {
+            replicated.beginReplicatedChange();
+        }
+        try {
+            return m.invokeWithArguments(arguments);
+        } finally {
+            if (knowledge.hasReadOnlyMethods() && cache.hasRemoteCachers()) {
+                cache.invalidateRemote(getObjectID());
+            }
+            if (replicated != null) {
+                replicated.endReplicatedChange();
+            }
+        }
+    }
+
+    /**
+     * Returns the global ID of the object on which this message invokes an
+     * instance method.
+     *
+     * @return The object's global ID.
+     * @throws AutocloseableLockWrapper.CannotLockException If the communicator
+     * has shut down past the stage at which location tracking is possible
+     */
+    private GlobalID getObjectID()
+            throws AutocloseableLockWrapper.CannotLockException {
+        return getCommunicator().findLocationManagerForObject(arguments[0])
+                .getObjectID();
     }
 
     /**
@@ -262,6 +262,7 @@ public class MigrationActions<T> implements NonCopiable, NonMigratable {
      * copiable type, and <code>force</code> is <code>false</code>
      */
     public void migratePrepare(boolean force) throws CannotMigrateException {
+        Object event = FlightRecorderEvents.EVENTS.beginMigration();
         try (MigrationMonitor<T> mm = new MigrationMonitor<>(lm, true)) {
             if (mm.getRemoteActions() != null) {
                 /* The migration monitor couldn't get a lock on the manager. */
@@ -282,6 +283,9 @@ public class MigrationActions<T> implements NonCopiable, NonMigratable {
                 setStorageToForwarding(lm, standin);
                 BackgroundGarbageCollection.volatileAccess(standin);
             }
+        } finally {
+            FlightRecorderEvents.EVENTS.endMigration(
+                    event, "prepare", lm.getObjectClass(), null);
         }
     }
 
@@ -327,6 +331,7 @@ public class MigrationActions<T> implements NonCopiable, NonMigratable {
     public void migrateCommit(CommunicationAddress newLocation,
             boolean remigrate)
             throws CannotMigrateException, IllegalStateException {
+        Object event = FlightRecorderEvents.EVENTS.beginMigration();
         try (MigrationMonitor<T> mm = new MigrationMonitor<>(lm, false)) {
             if (mm.getRemoteActions() != null) {
                 /* Huh, what happened to the object? */
@@ -367,6 +372,9 @@ public class MigrationActions<T> implements NonCopiable, NonMigratable {
                     }
                 }
             }
+        } finally {
+            FlightRecorderEvents.EVENTS.endMigration(
+                    event, "commit", lm.getObjectClass(), newLocation);
         }
     }
 
@@ -389,6 +397,7 @@ public class MigrationActions<T> implements NonCopiable, NonMigratable {
      * for the object to which this action relates.
      */
     public void migrateConclude() {
+        Object event = FlightRecorderEvents.EVENTS.beginMigration();
         try (MigrationMonitor<T> mm = new MigrationMonitor<>(lm, true)) {
             if (mm.getRemoteActions() != null) {
                 /* The migration monitor couldn't get a lock on the manager. */
@@ -411,6 +420,9 @@ public class MigrationActions<T> implements NonCopiable, NonMigratable {
                 setStoragetoTight(lm, standin);
                 lm.maybeLoosen();
             }
+        } finally {
+            FlightRecorderEvents.EVENTS.endMigration(
+                    event, "conclude", lm.getObjectClass(), null);
         }
     }
 
@@ -100,6 +100,7 @@ class MigrationMessage<T> extends SynchronousMessage<Void> {
             MigrationActions.setStoragetoTight(manager, standin);
             manager.maybeLoosen();
         }
+        manager.getCommunicator().getMetrics().migratedIn();
 
         return null;
     }
@@ -1,7 +1,8 @@
 package xyz.acygn.mokapot;
 
 import java.time.Duration;
-import java.util.concurrent.locks.Lock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import xyz.acygn.mokapot.markers.NonCopiable;
 import xyz.acygn.mokapot.markers.NonMigratable;
 import xyz.acygn.mokapot.util.AutocloseableLockWrapper;
@@ -33,6 +34,22 @@ class MigrationSynchronisationMessage extends SynchronousMessage<AutocloseableLo
         this.object = object;
     }
 
+    /**
+     * The location managers whose migration write locks are currently locked
+     * on behalf of another system.
+     * <p>
+     * The other system will shortly send a <code>MigrationMessage</code> that
+     * needs to find the location manager again, but the location manager
+     * index only references location managers weakly. Nothing else on this
+     * system necessarily refers to the object, and the lock wrapper that
+     * refers to the location manager is itself only loosely referenced (by
+     * its own location manager), which doesn't prevent weak references to
+     * the objects reachable from it from being cleared. So this set holds the
+     * location managers strongly, until their locks are unlocked.
+     */
+    private static final Set<LocationManager<?>> LOCKED_MANAGERS
+            = ConcurrentHashMap.newKeySet();
+
     /**
      * The object to synchronise on. The object's location manager's migration
      * write lock will be the lock that this message is about.
@@ -51,7 +68,7 @@ class MigrationSynchronisationMessage extends SynchronousMessage<AutocloseableLo
     protected AutocloseableLockWrapper calculateReply() {
         try {
             return new LockWrapper(getCommunicator()
-                    .findLocationManagerForObject(object).getMigrationLock(false));
+                    .findLocationManagerForObject(object));
         } catch (AutocloseableLockWrapper.CannotLockException ex) {
             /* This shouldn't be possible; the location manager must already
                exist, because otherwise the remote system couldn't have told us
@@ -65,6 +82,17 @@ class MigrationSynchronisationMessage extends SynchronousMessage<AutocloseableLo
         return null;
     }
 
+    /**
+     * Always returns <code>true</code>; this message is sent by Mokapot itself,
+     * for synchronising migrations, not on behalf of user code.
+     *
+     * @return <code>true</code>.
+     */
+    @Override
+    public boolean isControl() {
+        return true;
+    }
+
     /**
      * A class that locks a lock during construction and unlocks it during
      * close. A long reference to this is sent over the network, so that unlocks
@@ -80,13 +108,35 @@ class MigrationSynchronisationMessage extends SynchronousMessage<AutocloseableLo
             NonCopiable, NonMigratable {
 
         /**
-         * Creates a new lock wrapper for the given lock. As a side effect,
-         * locks the lock in question.
+         * The location manager whose migration write lock is locked.
+         */
+        private final LocationManager<?> manager;
+
+        /**
+         * Creates a new lock wrapper for the given location manager's
+         * migration write lock. As a side effect, locks the lock in question,
+         * and keeps the location manager alive until it's unlocked.
          *
-         * @param lock The lock to unlock when this class is autoclosed.
+         * @param manager The location manager whose migration write lock
+         * should be locked, and unlocked when this class is autoclosed.
          */
-        LockWrapper(Lock lock) {
-            super(lock, "MigrationSynchronisationMessage");
+        LockWrapper(LocationManager<?> manager) {
+            super(manager.getMigrationLock(false),
+                    "MigrationSynchronisationMessage");
+            this.manager = manager;
+            LOCKED_MANAGERS.add(manager);
+        }
+
+        @Override
+        public synchronized void unlockEarly() {
+            super.unlockEarly();
+            LOCKED_MANAGERS.remove(manager);
+        }
+
+        @Override
+        public synchronized void close() throws IllegalStateException {
+            super.close();
+            LOCKED_MANAGERS.remove(manager);
         }
     }
 }
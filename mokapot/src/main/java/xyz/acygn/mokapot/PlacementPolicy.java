@@ -0,0 +1,121 @@
+package xyz.acygn.mokapot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A rule for choosing which of several systems to run code on. Policies are
+ * used by <code>DistributedCommunicator#runSomewhere</code> and
+ * <code>DistributedCommunicator#choosePlacement</code>; a few common ones are
+ * available via the static methods of this interface, and others can be
+ * written as lambdas.
+ * <p>
+ * A policy may be called concurrently from several threads, and should not
+ * block.
+ *
+ * @see DistributedCommunicator#setPlacementPolicy(PlacementPolicy)
+ */
+@FunctionalInterface
+public interface PlacementPolicy {
+
+    /**
+     * Chooses a system to run code on.
+     *
+     * @param request The candidate systems, and information about them.
+     * @return One of the candidates in <code>request</code>.
+     */
+    CommunicationAddress choose(PlacementRequest request);
+
+    /**
+     * Returns a policy that chooses the candidate with the lowest estimated
+     * load. Ties are broken at random.
+     * <p>
+     * This makes the best use of up-to-date information, but as load reports
+     * lag behind the actual load, several communicators that use this policy
+     * at once may all pick the same system.
+     *
+     * @return The least-loaded policy.
+     * @see PlacementRequest#getScore(CommunicationAddress)
+     */
+    static PlacementPolicy leastLoaded() {
+        return (request) -> {
+            List<CommunicationAddress> candidates = request.getCandidates();
+            int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+            CommunicationAddress best = null;
+            double bestScore = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < candidates.size(); i++) {
+                CommunicationAddress candidate
+                        = candidates.get((i + offset) % candidates.size());
+                double score = request.getScore(candidate);
+                if (best == null || score < bestScore) {
+                    best = candidate;
+                    bestScore = score;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Returns a policy that picks two candidates at random, and chooses the
+     * less loaded of them. This spreads work almost as evenly as
+     * <code>leastLoaded</code> does, but is much less prone to sending all
+     * the work to one system when the load reports are out of date.
+     *
+     * @return The power-of-two-choices policy.
+     * @see PlacementRequest#getScore(CommunicationAddress)
+     */
+    static PlacementPolicy powerOfTwoChoices() {
+        return (request) -> {
+            List<CommunicationAddress> candidates = request.getCandidates();
+            if (candidates.size() == 1) {
+                return candidates.get(0);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(candidates.size());
+            int second = random.nextInt(candidates.size() - 1);
+            if (second >= first) {
+                second++;
+            }
+            CommunicationAddress a = candidates.get(first);
+            CommunicationAddress b = candidates.get(second);
+            return request.getScore(b) < request.getScore(a) ? b : a;
+        };
+    }
+
+    /**
+     * Returns a policy that runs the code where most of the objects it uses
+     * are stored, so that it can call them without going over the network.
+     * If none of those objects are stored on a candidate system, another
+     * policy makes the choice instead.
+     *
+     * @param fallback The policy to use if no candidate holds any of the
+     * objects.
+     * @return The affinity policy.
+     * @see PlacementRequest#getAffinityLocations()
+     */
+    static PlacementPolicy affinity(PlacementPolicy fallback) {
+        return (request) -> {
+            Map<CommunicationAddress, Integer> counts = new HashMap<>();
+            for (CommunicationAddress location
+                    : request.getAffinityLocations()) {
+                if (request.getCandidates().contains(location)) {
+                    counts.merge(location, 1, Integer::sum);
+                }
+            }
+            CommunicationAddress best = null;
+            for (Map.Entry<CommunicationAddress, Integer> e
+                    : counts.entrySet()) {
+                if (best == null || e.getValue() > counts.get(best)
+                        || e.getValue().equals(counts.get(best))
+                        && request.getScore(e.getKey())
+                        < request.getScore(best)) {
+                    best = e.getKey();
+                }
+            }
+            return best != null ? best : fallback.choose(request);
+        };
+    }
+}
@@ -0,0 +1,109 @@
+package xyz.acygn.mokapot;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The information available to a <code>PlacementPolicy</code> when it chooses
+ * a system to run code on: the candidate systems, what's known about their
+ * load, and where the objects that the code will use are stored.
+ *
+ * @see DistributedCommunicator#choosePlacement(java.util.Collection,
+ * java.lang.Object...)
+ */
+public final class PlacementRequest {
+
+    /**
+     * The systems that the code could run on.
+     */
+    private final List<CommunicationAddress> candidates;
+
+    /**
+     * The locations of the objects that the code will use, one per object.
+     */
+    private final List<CommunicationAddress> affinityLocations;
+
+    /**
+     * The load reports received by the communicator making the placement.
+     */
+    private final LoadReports loads;
+
+    /**
+     * Creates a placement request.
+     *
+     * @param candidates The systems that the code could run on. Must not be
+     * empty.
+     * @param affinityLocations The locations of the objects that the code
+     * will use.
+     * @param loads The load reports received by the communicator making the
+     * placement.
+     */
+    PlacementRequest(List<CommunicationAddress> candidates,
+            List<CommunicationAddress> affinityLocations, LoadReports loads) {
+        this.candidates = Collections.unmodifiableList(candidates);
+        this.affinityLocations
+                = Collections.unmodifiableList(affinityLocations);
+        this.loads = loads;
+    }
+
+    /**
+     * Returns the systems that the code could run on. The policy must choose
+     * one of these.
+     *
+     * @return A nonempty, unmodifiable list of candidate systems.
+     */
+    public List<CommunicationAddress> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Returns the locations of the objects that the code will use, as far as
+     * they're known. Each object that's stored on a known system contributes
+     * one entry (so a system may appear more than once); copiable objects
+     * are omitted, because they'd be copied to wherever the code runs.
+     *
+     * @return An unmodifiable list of locations, possibly empty.
+     */
+    public List<CommunicationAddress> getAffinityLocations() {
+        return affinityLocations;
+    }
+
+    /**
+     * Returns the most recent load report received from a given system.
+     *
+     * @param system The system.
+     * @return The report, or <code>null</code> if no report has been received
+     * recently enough to be useful.
+     */
+    public LoadReport getLoad(CommunicationAddress system) {
+        return loads.getLoad(system);
+    }
+
+    /**
+     * Returns the number of placements made by this communicator that are
+     * still running on a given system. These may not yet be reflected in the
+     * system's load reports.
+     *
+     * @param system The system.
+     * @return The number of placements in flight.
+     */
+    public int getInFlight(CommunicationAddress system) {
+        return loads.getInFlight(system);
+    }
+
+    /**
+     * Estimates how busy a given system is. This is the score of its most
+     * recent load report (or 0 if there isn't one, so that systems whose
+     * load isn't known get tried), plus the number of placements in flight
+     * on it.
+     *
+     * @param system The system.
+     * @return The estimated load; higher means busier.
+     * @see LoadReport#getScore()
+     */
+    public double getScore(CommunicationAddress system) {
+        LoadReport report = getLoad(system);
+        return (report == null ? 0.0 : report.getScore())
+                + getInFlight(system);
+    }
+}
@@ -1,5 +1,6 @@
 package xyz.acygn.mokapot;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import xyz.acygn.mokapot.util.ResettableThreadLocal;
@@ -99,23 +100,33 @@ class PooledThread {
      * Each individual task should only be run once. Create a duplicate task if
      * you wish to run a task again.
      * <p>
+     * The task runs on the communicator's thread executor, if it has one, and
+     * on a thread pool shared between all communicators otherwise.
+     * <p>
      * Note that the communicator will not be held alive by the thread; the
      * caller will need to do that if necessary.
      *
      * @param madeBy The distributed communicator that created this thread pool
      * task (and will be reported via <code>getCommunicator()</code>.
+     * @see DistributedCommunicator#setThreadExecutor(Executor)
      */
     public void start(DistributedCommunicator madeBy) {
+        Runnable task = () -> {
+            threadTreeCommunicator.set(madeBy);
+            try {
+                this.run();
+            } finally {
+                threadTreeCommunicator.set(null);
+                ResettableThreadLocal.reset();
+            }
+        };
+        Executor executor = madeBy == null ? null : madeBy.getThreadExecutor();
+        if (executor != null) {
+            executor.execute(task);
+            return;
+        }
         synchronized (PooledThread.class) {
-            threadPool.execute(() -> {
-                threadTreeCommunicator.set(madeBy);
-                try {
-                    this.run();
-                } finally {
-                    threadTreeCommunicator.set(null);
-                    ResettableThreadLocal.reset();
-                }
-            });
+            threadPool.execute(task);
         }
     }
 
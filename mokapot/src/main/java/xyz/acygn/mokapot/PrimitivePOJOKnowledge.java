@@ -260,6 +260,34 @@ abstract class PrimitivePOJOKnowledge<T extends Serializable>
         }
     }
 
+    /**
+     * Special-cased class knowledge for <code>short</code> and
+     * <code>Short</code>.
+     */
+    static class Short extends PrimitivePOJOKnowledge<java.lang.Short> {
+
+        /**
+         * Constructs the object. As usual for special-cased knowledge, all
+         * objects of this type are effectively identical.
+         */
+        Short() {
+            super(java.lang.Short.class);
+        }
+
+        @Override
+        protected void describeNonNullFields(
+                DataOutput sink, java.lang.Short obj)
+                throws IOException {
+            sink.writeShort(obj);
+        }
+
+        @Override
+        protected java.lang.Short reproduceNonNullFields(
+                ReadableDescription description) throws IOException {
+            return description.readShort();
+        }
+    }
+
     /**
      * Special-cased class knowledge for <code>int</code> and
      * <code>Integer</code>.
@@ -0,0 +1,69 @@
+package xyz.acygn.mokapot;
+
+import java.time.Duration;
+
+/**
+ * A message telling the recipient to discard its replica of a read-mostly
+ * object, because the object has changed or migrated. This is synchronous:
+ * the system storing the object waits for every replica to be discarded
+ * before letting the change return, so that no system can read the old state
+ * after the change has completed.
+ *
+ * @see xyz.acygn.mokapot.markers.ReadMostly
+ * @see ReplicaRequestMessage
+ */
+class ReplicaInvalidationMessage extends SynchronousMessage<Void> {
+
+    /**
+     * The global ID of the object whose replica is out of date.
+     */
+    private final GlobalID objectID;
+
+    /**
+     * Creates a new message to discard a replica.
+     *
+     * @param objectID The global ID of the object whose replica is out of
+     * date.
+     */
+    ReplicaInvalidationMessage(GlobalID objectID) {
+        this.objectID = objectID;
+    }
+
+    /**
+     * Discards the recipient's replica of the object, if it has one.
+     *
+     * @return <code>null</code>.
+     */
+    @Override
+    protected Void calculateReply() {
+        LocationManager.dropReplica(objectID, getCommunicator());
+        return null;
+    }
+
+    /**
+     * Produces a human-readable string describing this message.
+     *
+     * @return A human-readable version of the message.
+     */
+    @Override
+    public String toString() {
+        return "discard replica of " + objectID;
+    }
+
+    @Override
+    public Duration periodic() {
+        return null;
+    }
+
+    /**
+     * Always returns <code>true</code>. This message is sent by Mokapot
+     * itself, and a change to the object is waiting for it, so it shouldn't be
+     * queued behind large messages.
+     *
+     * @return <code>true</code>.
+     */
+    @Override
+    public boolean isControl() {
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package xyz.acygn.mokapot;
+
+import java.time.Duration;
+
+/**
+ * A message asking the system that stores a read-mostly object for a replica
+ * of it. The reply is a marshalled description of the object, from which the
+ * sender can reproduce the replica; or <code>null</code> if the object isn't
+ * stored on the recipient (in which case the sender should call the method
+ * it wanted in the usual way). Once the reply has been sent, the recipient
+ * will tell the sender when the replica goes out of date.
+ *
+ * @see xyz.acygn.mokapot.markers.ReadMostly
+ * @see ReplicaInvalidationMessage
+ */
+class ReplicaRequestMessage extends SynchronousMessage<MarshalledDescription> {
+
+    /**
+     * The object to replicate. This is the object itself on the recipient,
+     * if it's stored there, and a long reference to it otherwise.
+     */
+    private final Object object;
+
+    /**
+     * Creates a new replica request message.
+     *
+     * @param object The object to replicate.
+     */
+    ReplicaRequestMessage(RemoteOnlyStandin<?> object) {
+        this.object = object;
+    }
+
+    /**
+     * Describes the object, and records the sender as holding a replica of
+     * it.
+     *
+     * @return The marshalled description of the object, or <code>null</code>
+     * if it isn't stored here.
+     * @throws Throwable If something goes wrong describing the object
+     */
+    @Override
+    protected MarshalledDescription calculateReply() throws Throwable {
+        return getCommunicator().findLocationManagerForObject(object)
+                .describeForReplica(getSentInEnvelope().getAddress()
+                        .getSenderAddress());
+    }
+
+    /**
+     * Produces a human-readable string describing this message.
+     *
+     * @return A human-readable version of the message.
+     */
+    @Override
+    public String toString() {
+        return "request a replica of "
+                + DistributedMessage.safeStringify(object);
+    }
+
+    @Override
+    public Duration periodic() {
+        return null;
+    }
+}
@@ -0,0 +1,430 @@
+package xyz.acygn.mokapot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A cache of the results of read-only methods called on remote objects. The
+ * cache holds a bounded number of results, discarding the least recently used
+ * result when it becomes full, and can discard all the results for a given
+ * object at once (when the object might have changed).
+ * <p>
+ * Results are keyed by the object, the location at which it was believed to
+ * be stored, the method, and the arguments. Including the location means that
+ * results are not reused after the calling system learns that the object has
+ * migrated. Only calls whose arguments are all immutable values can be cached
+ * (as other arguments might change, or compare equal when they shouldn't);
+ * likewise, only immutable results are cached, as a mutable result could be
+ * changed by one caller and then seen by another.
+ * <p>
+ * A result can be invalidated while the method call that produces it is still
+ * in progress (e.g. if an invalidation and the call's reply overtake each other
+ * on the network). To avoid caching such a result, callers read the
+ * cache's generation before making the call, and pass it to <code>put</code>;
+ * the result is only stored if there have been no invalidations since.
+ * <p>
+ * The cache also records which remote systems might have cached the results
+ * of methods of objects stored here (or of objects whose method calls were
+ * forwarded via here), so that they can be told when those results become
+ * out of date. Telling them is synchronous, so a change to an object doesn't
+ * return until every other system has discarded its old results. This record
+ * is bounded in size too; when an object is dropped from it, the systems in
+ * question are told to discard their results for the object.
+ *
+ * @see xyz.acygn.mokapot.markers.ReadOnly
+ */
+class ResultCache {
+
+    /**
+     * The number of results that the cache holds by default.
+     */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The number of objects for which the cache records the remote systems
+     * that might have cached results.
+     */
+    static final int CACHER_CAPACITY = 4096;
+
+    /**
+     * The value returned by <code>get</code> when there is no cached result.
+     * (<code>null</code> can't be used for this purpose, as it can be cached
+     * as a result.)
+     */
+    static final Object MISS = new Object();
+
+    /**
+     * The classes (other than enums) whose objects are immutable values.
+     */
+    private static final Set<Class<?>> IMMUTABLE_CLASSES
+            = new HashSet<>(Arrays.asList(String.class, Boolean.class,
+                    Character.class, Byte.class, Short.class, Integer.class,
+                    Long.class, Float.class, Double.class));
+
+    /**
+     * The communicator whose results are cached.
+     */
+    private final DistributedCommunicator communicator;
+
+    /**
+     * The cached results, in order of least recent use.
+     */
+    private final LinkedHashMap<Key, Object> results
+            = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The keys of the cached results for each object that has any.
+     */
+    private final Map<GlobalID, List<Key>> keysByObject = new HashMap<>();
+
+    /**
+     * The largest number of results that the cache holds; 0 if caching is
+     * disabled.
+     */
+    private int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * The number of invalidations that have happened so far.
+     */
+    private long generation = 0;
+
+    /**
+     * The remote systems that might have cached results for each object, in
+     * order of least recent use.
+     */
+    private final LinkedHashMap<GlobalID, Set<CommunicationAddress>> cachers
+            = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Whether <code>cachers</code> has any entries. This allows the common
+     * case, in which no remote system is caching anything, to be checked
+     * without locking.
+     */
+    private volatile boolean anyCachers = false;
+
+    /**
+     * Creates a new, empty result cache with the default capacity.
+     *
+     * @param communicator The communicator whose results are cached, and via
+     * which remote caches are invalidated.
+     */
+    ResultCache(DistributedCommunicator communicator) {
+        this.communicator = communicator;
+    }
+
+    /**
+     * Returns whether a value is immutable, and thus can be cached as an
+     * argument or result.
+     *
+     * @param value The value to check.
+     * @return <code>true</code> if the value is <code>null</code>, a string, a
+     * boxed primitive, or an enum constant.
+     */
+    static boolean isCacheableValue(Object value) {
+        return value == null || IMMUTABLE_CLASSES.contains(value.getClass())
+                || value instanceof Enum;
+    }
+
+    /**
+     * Returns whether all the arguments of a method call are immutable, and
+     * thus whether its result could be cached.
+     *
+     * @param args An array containing the arguments of the call.
+     * @param from The index in <code>args</code> of the first argument.
+     * @return <code>true</code> if the result of the call can be cached.
+     */
+    static boolean areCacheableArguments(Object[] args, int from) {
+        for (int i = from; i < args.length; i++) {
+            if (!isCacheableValue(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Changes the number of results that the cache holds. If the cache holds
+     * more than the new capacity, the least recently used results are
+     * discarded.
+     *
+     * @param capacity The new capacity; 0 to disable caching (and discard all
+     * cached results).
+     */
+    synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Returns whether the cache is enabled, i.e. has a nonzero capacity.
+     *
+     * @return <code>true</code> if results can be cached.
+     */
+    synchronized boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Returns the current generation of the cache. This changes whenever a
+     * result is invalidated.
+     *
+     * @return The generation, to be passed to <code>put</code>.
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Looks up a cached result.
+     *
+     * @param object The object whose method was called.
+     * @param location The location at which the object is believed to be.
+     * @param methodCode The method code of the method.
+     * @param args The arguments of the call (which must be cacheable).
+     * @return The cached result, or <code>MISS</code> if there isn't one.
+     */
+    synchronized Object get(GlobalID object, TimestampedLocation location,
+            long methodCode, Object[] args) {
+        Key key = new Key(object, location, methodCode, args);
+        Object rv = results.get(key);
+        if (rv == null && !results.containsKey(key)) {
+            return MISS;
+        }
+        return rv;
+    }
+
+    /**
+     * Stores a result in the cache, unless an invalidation has happened since
+     * the given generation or the result is not cacheable.
+     *
+     * @param object The object whose method was called.
+     * @param location The location at which the object was believed to be.
+     * @param methodCode The method code of the method.
+     * @param args The arguments of the call (which must be cacheable).
+     * @param result The result of the call.
+     * @param sinceGeneration The generation of the cache from before the
+     * method was called.
+     */
+    synchronized void put(GlobalID object, TimestampedLocation location,
+            long methodCode, Object[] args, Object result,
+            long sinceGeneration) {
+        if (capacity == 0 || sinceGeneration != generation
+                || !isCacheableValue(result)) {
+            return;
+        }
+        Key key = new Key(object, location, methodCode, args.clone());
+        if (!results.containsKey(key)) {
+            keysByObject.computeIfAbsent(object, (o) -> new ArrayList<>())
+                    .add(key);
+        }
+        results.put(key, result);
+        evict();
+    }
+
+    /**
+     * Discards all cached results for a given object.
+     *
+     * @param object The object whose results might be out of date.
+     */
+    synchronized void invalidate(GlobalID object) {
+        generation++;
+        List<Key> keys = keysByObject.remove(object);
+        if (keys != null) {
+            keys.forEach(results::remove);
+        }
+    }
+
+    /**
+     * Discards the least recently used results until the cache is within its
+     * capacity. Must be called with the monitor held.
+     */
+    private void evict() {
+        Iterator<Key> it = results.keySet().iterator();
+        while (results.size() > capacity) {
+            Key eldest = it.next();
+            it.remove();
+            List<Key> keys = keysByObject.get(eldest.object);
+            keys.remove(eldest);
+            if (keys.isEmpty()) {
+                keysByObject.remove(eldest.object);
+            }
+        }
+    }
+
+    /**
+     * Records that a remote system might cache the results of methods of a
+     * given object. It will be told to discard them when
+     * <code>invalidateRemote</code> is next called for the object.
+     *
+     * @param object The object whose methods were called.
+     * @param cacher The system that called them.
+     */
+    void cachedBy(GlobalID object, CommunicationAddress cacher) {
+        Map<GlobalID, Set<CommunicationAddress>> evicted;
+        synchronized (this) {
+            cachers.computeIfAbsent(object, (o) -> new HashSet<>())
+                    .add(cacher);
+            anyCachers = true;
+            evicted = evictCachers();
+        }
+        evicted.forEach(this::sendInvalidations);
+    }
+
+    /**
+     * Returns whether any remote system might have cached the results of
+     * methods of any object. This doesn't lock the cache.
+     *
+     * @return <code>false</code> if <code>invalidateRemote</code> would not
+     * send any messages, whatever its argument.
+     */
+    boolean hasRemoteCachers() {
+        return anyCachers;
+    }
+
+    /**
+     * Returns whether any remote system might have cached the results of
+     * methods of a given object.
+     *
+     * @param object The object.
+     * @return <code>true</code> if <code>invalidateRemote</code> would send
+     * any messages.
+     */
+    boolean hasRemoteCachers(GlobalID object) {
+        if (!anyCachers) {
+            return false;
+        }
+        synchronized (this) {
+            return cachers.containsKey(object);
+        }
+    }
+
+    /**
+     * Tells all the remote systems that might have cached the results of
+     * methods of a given object to discard them, and waits for them to do so.
+     *
+     * @param object The object whose results might be out of date.
+     */
+    void invalidateRemote(GlobalID object) {
+        if (!anyCachers) {
+            return;
+        }
+        Set<CommunicationAddress> toInvalidate;
+        synchronized (this) {
+            toInvalidate = cachers.remove(object);
+            anyCachers = !cachers.isEmpty();
+        }
+        if (toInvalidate != null) {
+            sendInvalidations(object, toInvalidate);
+        }
+    }
+
+    /**
+     * Forgets the least recently used objects from the record of remote
+     * caches, until it's within <code>CACHER_CAPACITY</code>. Must be called
+     * with the monitor held.
+     *
+     * @return The forgotten objects, and the remote systems that need to be
+     * told to discard their results for them.
+     */
+    private Map<GlobalID, Set<CommunicationAddress>> evictCachers() {
+        Map<GlobalID, Set<CommunicationAddress>> rv = new HashMap<>();
+        Iterator<Map.Entry<GlobalID, Set<CommunicationAddress>>> it
+                = cachers.entrySet().iterator();
+        while (cachers.size() > CACHER_CAPACITY) {
+            Map.Entry<GlobalID, Set<CommunicationAddress>> eldest = it.next();
+            rv.put(eldest.getKey(), eldest.getValue());
+            it.remove();
+        }
+        anyCachers = !cachers.isEmpty();
+        return rv;
+    }
+
+    /**
+     * Tells remote systems to discard their cached results for an object, and
+     * waits for them to do so. Must be called without the monitor held.
+     *
+     * @param object The object whose results might be out of date.
+     * @param toInvalidate The systems that might have cached them.
+     */
+    private void sendInvalidations(GlobalID object,
+            Set<CommunicationAddress> toInvalidate) {
+        for (CommunicationAddress cacher : toInvalidate) {
+            try {
+                communicator.sendMessageSync(
+                        new ResultCacheInvalidationMessage(object), cacher);
+            } catch (Throwable ex) {
+                communicator.asyncExceptionHandler(ex);
+            }
+        }
+    }
+
+    /**
+     * The key under which a cached result is stored.
+     */
+    private static class Key {
+
+        /**
+         * The object whose method was called.
+         */
+        private final GlobalID object;
+
+        /**
+         * The location at which the object was believed to be.
+         */
+        private final TimestampedLocation location;
+
+        /**
+         * The method code of the method.
+         */
+        private final long methodCode;
+
+        /**
+         * The arguments of the call.
+         */
+        private final Object[] args;
+
+        /**
+         * Creates a cache key.
+         *
+         * @param object The object whose method was called.
+         * @param location The location at which the object was believed to
+         * be.
+         * @param methodCode The method code of the method.
+         * @param args The arguments of the call. The array must not be
+         * modified while the key is in use.
+         */
+        Key(GlobalID object, TimestampedLocation location, long methodCode,
+                Object[] args) {
+            this.object = object;
+            this.location = location;
+            this.methodCode = methodCode;
+            this.args = args;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(object, location, methodCode)
+                    ^ Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return methodCode == other.methodCode
+                    && object.equals(other.object)
+                    && location.equals(other.location)
+                    && Arrays.equals(args, other.args);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package xyz.acygn.mokapot;
+
+import java.time.Duration;
+
+/**
+ * A message informing the recipient that the results of read-only methods of
+ * an object, which the recipient may have cached, might be out of date. This
+ * is sent by the system storing the object when a method that isn't
+ * read-only runs on it, or when it migrates away, to each system that called
+ * a read-only method on it since the last such message. This is synchronous:
+ * the change waits for every cached result to be discarded before it returns,
+ * so that no system can see the old results after the change has completed.
+ *
+ * @see ResultCache
+ * @see xyz.acygn.mokapot.markers.ReadOnly
+ */
+class ResultCacheInvalidationMessage extends SynchronousMessage<Void> {
+
+    /**
+     * The global ID of the object whose cached results are out of date.
+     */
+    private final GlobalID objectID;
+
+    /**
+     * Creates a new message to invalidate cached results.
+     *
+     * @param objectID The global ID of the object whose cached results are
+     * out of date.
+     */
+    ResultCacheInvalidationMessage(GlobalID objectID) {
+        this.objectID = objectID;
+    }
+
+    /**
+     * Discards the cached results for the object from the communicator's
+     * result cache. If the communicator forwarded calls of read-only methods
+     * of the object from other systems, they're told to discard their
+     * results too, and the reply waits until they have.
+     *
+     * @return <code>null</code>.
+     */
+    @Override
+    protected Void calculateReply() {
+        getCommunicator().getResultCache().invalidate(objectID);
+        getCommunicator().getResultCache().invalidateRemote(objectID);
+        return null;
+    }
+
+    /**
+     * Produces a human-readable string describing this message.
+     *
+     * @return A human-readable version of the message.
+     */
+    @Override
+    public String toString() {
+        return "invalidate cached results for " + objectID;
+    }
+
+    @Override
+    public Duration periodic() {
+        return null;
+    }
+
+    /**
+     * Always returns <code>true</code>. This message is sent by Mokapot
+     * itself, and a change to the object is waiting for it, so it shouldn't be
+     * queued behind large messages.
+     *
+     * @return <code>true</code>.
+     */
+    @Override
+    public boolean isControl() {
+        return true;
+    }
+}
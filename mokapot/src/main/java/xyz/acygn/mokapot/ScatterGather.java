@@ -0,0 +1,445 @@
+package xyz.acygn.mokapot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.function.BiFunction;
+import xyz.acygn.mokapot.util.LatencyHistogram;
+import static xyz.acygn.mokapot.util.ThreadUtils.delayInterruptionsRv;
+
+/**
+ * A single scatter-gather operation. Each invocation runs on a pooled thread of
+ * its own (a remote call occupies its thread until the reply arrives, so this
+ * is what allows the calls to be in flight at the same time); the threads do
+ * nothing but wait for their replies and pass them back to the thread that
+ * started the operation, which combines them in the order they arrive.
+ * <p>
+ * The partitions are initially dealt out to the peers in turn. Only a limited
+ * number of invocations run on each peer at once; the rest wait in a queue for
+ * that peer, and are started as the peer's earlier invocations finish. A
+ * partition whose invocation has been running for longer than the straggler
+ * deadline is started a second time on a peer that hasn't run it yet, chosen
+ * using the communicator's placement policy, and whichever invocation finishes
+ * first provides the result (the other is left to finish, and its result is
+ * discarded). Likewise, a partition whose invocation fails is retried on
+ * another peer; the operation as a whole fails only when every peer has failed
+ * to run some partition. Failures are counted separately from stragglers in
+ * the result.
+ *
+ * @param <T> The type of the partitions' results.
+ * @param <R> The type of the combined result.
+ */
+class ScatterGather<T, R> {
+
+    /**
+     * The communicator through which the partitions are run.
+     */
+    private final DistributedCommunicator communicator;
+
+    /**
+     * The code to run for each partition.
+     */
+    private final List<? extends CopiableSupplier<? extends T>> partitions;
+
+    /**
+     * The systems that the partitions may run on.
+     */
+    private final List<CommunicationAddress> peers;
+
+    /**
+     * How long, in nanoseconds, an invocation may run before its partition is
+     * started again elsewhere. <code>Long.MAX_VALUE</code> means that
+     * partitions are only started again if they fail.
+     */
+    private final long stragglerNanos;
+
+    /**
+     * The largest number of invocations that may run on each peer at once; 0
+     * for no limit.
+     */
+    private final int peerLimit;
+
+    /**
+     * Invocations that have finished, in the order they finished. Written by
+     * the pooled threads, and read by the thread running the operation.
+     */
+    private final BlockingQueue<Invocation> finished
+            = new LinkedBlockingQueue<>();
+
+    /**
+     * The invocations of each partition that are still running, or waiting to
+     * start. The fields from here onwards are only accessed by the thread
+     * running the operation.
+     */
+    private final List<List<Invocation>> running;
+
+    /**
+     * The number of invocations that have been started on each peer and
+     * haven't finished yet.
+     */
+    private final Map<CommunicationAddress, Integer> inFlight
+            = new HashMap<>();
+
+    /**
+     * The invocations waiting for each peer to have fewer than
+     * <code>peerLimit</code> invocations in flight, in the order they'll be
+     * started.
+     */
+    private final Map<CommunicationAddress, Deque<Invocation>> waiting
+            = new HashMap<>();
+
+    /**
+     * The peers that each partition has been started on.
+     */
+    private final List<Set<CommunicationAddress>> tried;
+
+    /**
+     * Whether each partition's result has been combined yet.
+     */
+    private final boolean[] done;
+
+    /**
+     * The time taken by finished invocations, for each peer.
+     */
+    private final Map<CommunicationAddress, LatencyHistogram> latencies
+            = new HashMap<>();
+
+    /**
+     * The number of invocations that missed the straggler deadline, and were
+     * started again elsewhere as a consequence, for each peer that was
+     * running them.
+     */
+    private final Map<CommunicationAddress, Integer> stragglers
+            = new HashMap<>();
+
+    /**
+     * The number of invocations that failed, for each peer that was running
+     * them.
+     */
+    private final Map<CommunicationAddress, Integer> failures
+            = new HashMap<>();
+
+    /**
+     * The number of invocations started in addition to the first invocation
+     * of each partition.
+     */
+    private int reexecutions = 0;
+
+    /**
+     * Sets up a scatter-gather operation. Nothing is run until
+     * <code>run</code> is called.
+     *
+     * @param communicator The communicator through which to run the
+     * partitions.
+     * @param partitions The code to run for each partition.
+     * @param peers The systems that the partitions may run on. Must not be
+     * empty.
+     * @param stragglerNanos The straggler deadline, in nanoseconds, or
+     * <code>Long.MAX_VALUE</code> for no deadline.
+     * @param peerLimit The largest number of invocations to run on each peer
+     * at once, or 0 for no limit.
+     */
+    ScatterGather(DistributedCommunicator communicator,
+            List<? extends CopiableSupplier<? extends T>> partitions,
+            List<CommunicationAddress> peers, long stragglerNanos,
+            int peerLimit) {
+        this.communicator = communicator;
+        this.partitions = partitions;
+        this.peers = peers;
+        this.stragglerNanos = stragglerNanos;
+        this.peerLimit = peerLimit;
+        this.running = new ArrayList<>(partitions.size());
+        this.tried = new ArrayList<>(partitions.size());
+        this.done = new boolean[partitions.size()];
+        for (int i = 0; i < partitions.size(); i++) {
+            running.add(new ArrayList<>(2));
+            tried.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Runs the operation, blocking until every partition's result has been
+     * combined.
+     *
+     * @param identity The combined result of no partitions.
+     * @param reducer The function used to combine a partition's result into
+     * the combined result so far. This is only called on the current thread.
+     * @return The combined result, together with per-peer timings.
+     * @throws RuntimeException If a partition failed on every peer; the
+     * exception from its last invocation is rethrown
+     * @throws Error If a partition failed on every peer; the error from its
+     * last invocation is rethrown
+     */
+    ScatterGatherResult<R> run(R identity,
+            BiFunction<R, ? super T, R> reducer)
+            throws RuntimeException, Error {
+        for (int i = 0; i < partitions.size(); i++) {
+            start(i, peers.get(i % peers.size()));
+        }
+
+        R value = identity;
+        int remaining = partitions.size();
+        while (remaining > 0) {
+            long wait = timeToNextDeadline();
+            Invocation inv = wait == Long.MAX_VALUE
+                    ? delayInterruptionsRv(finished::take)
+                    : delayInterruptionsRv(() -> finished.poll(
+                            Math.max(wait, 0), NANOSECONDS));
+            if (inv == null) {
+                restartStragglers();
+                continue;
+            }
+
+            int p = inv.partition;
+            running.get(p).remove(inv);
+            latencies.computeIfAbsent(inv.peer, (a) -> new LatencyHistogram())
+                    .record(inv.endTime - inv.startTime);
+            if (inv.failure != null) {
+                failures.merge(inv.peer, 1, Integer::sum);
+            }
+            inFlight.merge(inv.peer, -1, Integer::sum);
+            startWaiting(inv.peer);
+            if (done[p]) {
+                continue;
+            }
+            if (inv.failure == null) {
+                done[p] = true;
+                remaining--;
+                value = reducer.apply(value, inv.result);
+            } else if (running.get(p).isEmpty()) {
+                if (!restart(p)) {
+                    if (inv.failure instanceof Error) {
+                        throw (Error) inv.failure;
+                    }
+                    throw (RuntimeException) inv.failure;
+                }
+            }
+        }
+
+        Map<CommunicationAddress, LatencyHistogram.Snapshot> snapshots
+                = new HashMap<>();
+        latencies.forEach((peer, h) -> snapshots.put(peer, h.snapshot()));
+        return new ScatterGatherResult<>(
+                value, snapshots, stragglers, failures, reexecutions);
+    }
+
+    /**
+     * Determines whether a peer is running as many invocations as it's
+     * allowed to.
+     *
+     * @param peer The peer.
+     * @return <code>true</code> if another invocation on that peer would have
+     * to wait.
+     */
+    private boolean isFull(CommunicationAddress peer) {
+        return peerLimit > 0 && inFlight.getOrDefault(peer, 0) >= peerLimit;
+    }
+
+    /**
+     * Arranges for a partition to be run on a given peer. The invocation is
+     * started straight away if the peer has room for it, and otherwise waits
+     * for the peer's earlier invocations to finish.
+     *
+     * @param partition The index of the partition.
+     * @param peer The peer to run it on.
+     */
+    private void start(int partition, CommunicationAddress peer) {
+        Invocation inv = new Invocation(partition, peer);
+        running.get(partition).add(inv);
+        tried.get(partition).add(peer);
+        if (isFull(peer)) {
+            waiting.computeIfAbsent(peer, (a) -> new ArrayDeque<>()).add(inv);
+        } else {
+            launch(inv);
+        }
+    }
+
+    /**
+     * Starts as many of the invocations waiting for a peer as the peer has
+     * room for. Invocations of partitions whose result has already been
+     * combined are discarded rather than started.
+     *
+     * @param peer The peer.
+     */
+    private void startWaiting(CommunicationAddress peer) {
+        Deque<Invocation> queue = waiting.get(peer);
+        while (queue != null && !queue.isEmpty() && !isFull(peer)) {
+            Invocation inv = queue.remove();
+            if (done[inv.partition]) {
+                running.get(inv.partition).remove(inv);
+            } else {
+                launch(inv);
+            }
+        }
+    }
+
+    /**
+     * Starts running an invocation on a pooled thread.
+     *
+     * @param inv The invocation.
+     */
+    private void launch(Invocation inv) {
+        int partition = inv.partition;
+        CommunicationAddress peer = inv.peer;
+        inFlight.merge(peer, 1, Integer::sum);
+        inv.started = true;
+        inv.startTime = System.nanoTime();
+        communicator.getLoadReports().adjustInFlight(peer, 1);
+        new PooledThread(() -> {
+            try {
+                inv.result = communicator.runRemotely(
+                        partitions.get(partition), peer);
+            } catch (RuntimeException | Error ex) {
+                inv.failure = ex;
+            } finally {
+                communicator.getLoadReports().adjustInFlight(peer, -1);
+                inv.endTime = System.nanoTime();
+                finished.add(inv);
+            }
+        }).start(communicator);
+    }
+
+    /**
+     * Starts a partition again, on a peer that it hasn't been started on
+     * before. Peers that have room to start it straight away are preferred.
+     *
+     * @param partition The index of the partition.
+     * @return <code>false</code> if the partition has already been started on
+     * every peer.
+     */
+    private boolean restart(int partition) {
+        List<CommunicationAddress> candidates = new ArrayList<>(peers);
+        candidates.removeAll(tried.get(partition));
+        if (candidates.isEmpty()) {
+            return false;
+        }
+        List<CommunicationAddress> roomy = new ArrayList<>(candidates);
+        roomy.removeIf(this::isFull);
+        if (!roomy.isEmpty()) {
+            candidates = roomy;
+        }
+        reexecutions++;
+        start(partition, communicator.choosePlacement(candidates));
+        return true;
+    }
+
+    /**
+     * Starts again every partition that has only one invocation, if that
+     * invocation has been running for longer than the straggler deadline.
+     */
+    private void restartStragglers() {
+        long now = System.nanoTime();
+        for (int p = 0; p < partitions.size(); p++) {
+            if (isRestartable(p)) {
+                Invocation inv = running.get(p).get(0);
+                if (now - inv.startTime >= stragglerNanos) {
+                    stragglers.merge(inv.peer, 1, Integer::sum);
+                    restart(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines whether a partition could be started again if it missed the
+     * straggler deadline: it isn't done, has only one invocation, which has
+     * been started (rather than waiting for its peer to have room), and
+     * hasn't been tried on every peer.
+     *
+     * @param partition The index of the partition.
+     * @return <code>true</code> if the partition could be started again.
+     */
+    private boolean isRestartable(int partition) {
+        return !done[partition] && running.get(partition).size() == 1
+                && running.get(partition).get(0).started
+                && tried.get(partition).size() < peers.size();
+    }
+
+    /**
+     * Returns how long it is until the next straggler deadline passes. Only
+     * partitions that could be started again are considered.
+     *
+     * @return The time until the deadline in nanoseconds (negative if it has
+     * already passed), or <code>Long.MAX_VALUE</code> if there is no deadline
+     * to wait for.
+     */
+    private long timeToNextDeadline() {
+        if (stragglerNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long now = System.nanoTime();
+        long earliest = Long.MAX_VALUE;
+        for (int p = 0; p < partitions.size(); p++) {
+            if (isRestartable(p)) {
+                earliest = Math.min(earliest,
+                        running.get(p).get(0).startTime + stragglerNanos - now);
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * One attempt at running a partition on a peer. The fields written by the
+     * pooled thread are published to the operation's thread via the
+     * <code>finished</code> queue.
+     */
+    private class Invocation {
+
+        /**
+         * The index of the partition being run.
+         */
+        private final int partition;
+
+        /**
+         * The peer that's running it.
+         */
+        private final CommunicationAddress peer;
+
+        /**
+         * Whether the invocation has been started, rather than waiting for
+         * its peer to have room for it.
+         */
+        private boolean started = false;
+
+        /**
+         * The time at which the invocation was started, according to
+         * <code>System.nanoTime()</code>.
+         */
+        private long startTime;
+
+        /**
+         * The time at which the invocation finished, according to
+         * <code>System.nanoTime()</code>.
+         */
+        private long endTime;
+
+        /**
+         * The partition's result, if it succeeded.
+         */
+        private T result;
+
+        /**
+         * The exception or error thrown by the partition, if it failed.
+         */
+        private Throwable failure;
+
+        /**
+         * Creates a record of an invocation that hasn't been started yet.
+         *
+         * @param partition The index of the partition.
+         * @param peer The peer on which it's being run.
+         */
+        Invocation(int partition, CommunicationAddress peer) {
+            this.partition = partition;
+            this.peer = peer;
+        }
+    }
+}
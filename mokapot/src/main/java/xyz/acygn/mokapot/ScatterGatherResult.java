@@ -0,0 +1,139 @@
+package xyz.acygn.mokapot;
+
+import java.util.Collections;
+import java.util.Map;
+import xyz.acygn.mokapot.util.LatencyHistogram;
+
+/**
+ * The outcome of a scatter-gather operation: the combined result of all the
+ * partitions, and how long each peer took to run the partitions sent to it.
+ * The timings make it possible to see which peers are slow, e.g. so that they
+ * can be given less work (or left out) next time.
+ *
+ * @param <R> The type of the combined result.
+ * @see DistributedCommunicator#scatterGather(java.util.List, java.util.List,
+ * java.lang.Object, java.util.function.BiFunction, java.time.Duration)
+ */
+public final class ScatterGatherResult<R> {
+
+    /**
+     * The combined result of all the partitions.
+     */
+    private final R value;
+
+    /**
+     * The time taken by each invocation that finished before the operation
+     * did, grouped by the peer that ran it.
+     */
+    private final Map<CommunicationAddress, LatencyHistogram.Snapshot> latencies;
+
+    /**
+     * The number of invocations on each peer that missed the straggler
+     * deadline, and were run again elsewhere as a consequence.
+     */
+    private final Map<CommunicationAddress, Integer> stragglers;
+
+    /**
+     * The number of invocations on each peer that failed.
+     */
+    private final Map<CommunicationAddress, Integer> failures;
+
+    /**
+     * The total number of invocations that were run in addition to the first
+     * invocation of each partition.
+     */
+    private final int reexecutions;
+
+    /**
+     * Creates a scatter-gather result.
+     *
+     * @param value The combined result of all the partitions.
+     * @param latencies The invocation times for each peer.
+     * @param stragglers The number of invocations that missed the straggler
+     * deadline, for each peer.
+     * @param failures The number of invocations that failed, for each peer.
+     * @param reexecutions The total number of re-executions.
+     */
+    ScatterGatherResult(R value,
+            Map<CommunicationAddress, LatencyHistogram.Snapshot> latencies,
+            Map<CommunicationAddress, Integer> stragglers,
+            Map<CommunicationAddress, Integer> failures, int reexecutions) {
+        this.value = value;
+        this.latencies = Collections.unmodifiableMap(latencies);
+        this.stragglers = Collections.unmodifiableMap(stragglers);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.reexecutions = reexecutions;
+    }
+
+    /**
+     * Returns the combined result of all the partitions, as calculated by the
+     * reducer.
+     *
+     * @return The combined result.
+     */
+    public R getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the time taken by the invocations that each peer ran. An
+     * invocation's time is measured from when it was started until its
+     * result (or exception) arrived back on this system. Invocations that
+     * were still running when the operation finished (because another peer
+     * ran the same partition faster) are not included.
+     *
+     * @return An unmodifiable map from peers to histograms of their
+     * invocation times; peers that didn't finish any invocations are
+     * omitted.
+     */
+    public Map<CommunicationAddress, LatencyHistogram.Snapshot> getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Returns the number of invocations on each peer that were run again on a
+     * different peer, because they missed the straggler deadline. Invocations
+     * that failed are counted by <code>getFailures()</code> instead.
+     *
+     * @return An unmodifiable map from peers to straggler counts; peers with
+     * no stragglers are omitted.
+     */
+    public Map<CommunicationAddress, Integer> getStragglers() {
+        return stragglers;
+    }
+
+    /**
+     * Returns the number of invocations on each peer that failed, i.e. threw
+     * an exception or error rather than returning a result. This includes
+     * invocations whose partition had already been run successfully
+     * elsewhere.
+     *
+     * @return An unmodifiable map from peers to failure counts; peers with no
+     * failures are omitted.
+     */
+    public Map<CommunicationAddress, Integer> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the number of extra invocations that were started to replace
+     * stragglers and failures.
+     *
+     * @return The number of re-executions.
+     */
+    public int getReexecutions() {
+        return reexecutions;
+    }
+
+    /**
+     * Produces a human-readable representation of this result.
+     *
+     * @return A string showing the value and the per-peer timings.
+     */
+    @Override
+    public String toString() {
+        return "ScatterGatherResult{value=" + value + ", latencies="
+                + latencies + ", stragglers=" + stragglers + ", failures="
+                + failures + "}";
+    }
+}
@@ -2,12 +2,17 @@ package xyz.acygn.mokapot;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.Collections;
+import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import xyz.acygn.mokapot.util.ServerSocketLike;
 import xyz.acygn.mokapot.util.ServerSocketWrapper;
@@ -36,6 +41,13 @@ public class SecureTCPCommunicationEndpoint implements CommunicationEndpoint {
      */
     private final CommunicationAddress address;
 
+    /**
+     * The name under which a TLS session records that its peer's certificate
+     * chain has been checked against the white-list.
+     */
+    private static final String CHECKED_SESSION_KEY
+            = "xyz.acygn.mokapot.checked";
+
     /**
      * Creates a new secure TCP communication endpoint that supports both
      * inbound and outbound connections.
@@ -84,6 +96,7 @@ public class SecureTCPCommunicationEndpoint implements CommunicationEndpoint {
                 = (SSLSocket) (keyStore.getContext().getSocketFactory()
                         .createSocket(a.asInetAddress(), a.getTransmissionPort()));
         sendSocket.setNeedClientAuth(true);
+        configureSocket(sendSocket, remoteAddress);
         /* We can reverify the socket immediately, because it's already
            connected. */
         SocketLike rv = new SocketWrapper(sendSocket);
@@ -104,6 +117,7 @@ public class SecureTCPCommunicationEndpoint implements CommunicationEndpoint {
                 = (SSLServerSocket) (keyStore.getContext().getServerSocketFactory()
                         .createServerSocket(a.getTransmissionPort()));
         receiveSocket.setNeedClientAuth(true);
+        configureServerSocket(receiveSocket);
         /* We can't reverify the socket immediately; we have to wait until we
            receive a connection first, as we need to be in communication with
            the other end to reverify it. */
@@ -120,8 +134,46 @@ public class SecureTCPCommunicationEndpoint implements CommunicationEndpoint {
         return "Endpoint{" + address + '}';
     }
 
+    /**
+     * Configures a newly created outbound socket, before its TLS handshake
+     * starts. By default, this does nothing; subclasses can override it (e.g.
+     * to offer additional protocols).
+     *
+     * @param socket The socket, which is connected but hasn't handshaken.
+     * @param remoteAddress The identifier that the socket was created for.
+     * @throws IOException If the socket could not be configured
+     */
+    protected void configureSocket(SSLSocket socket, Communicable remoteAddress)
+            throws IOException {
+    }
+
+    /**
+     * Configures a newly created listen socket, before it accepts any
+     * connections. By default, this does nothing; subclasses can override it.
+     *
+     * @param socket The listen socket.
+     * @throws IOException If the socket could not be configured
+     */
+    protected void configureServerSocket(SSLServerSocket socket)
+            throws IOException {
+    }
+
     @Override
     public void initialVerifySocket(SocketLike socket) throws IOException {
+        SSLSocket castSocket = sslSocketOf(socket);
+        castSocket.startHandshake();
+        checkPeerTrusted(castSocket);
+    }
+
+    /**
+     * Returns the TLS socket that underlies a socket-like.
+     *
+     * @param socket The socket-like, which must have been created by this
+     * class.
+     * @return The TLS socket that it wraps.
+     * @throws IOException If the socket-like doesn't wrap a TLS socket
+     */
+    static SSLSocket sslSocketOf(SocketLike socket) throws IOException {
         if (!(socket instanceof SocketWrapper)) {
             throw new IOException(
                     "Attempted to reverify a fake socket");
@@ -131,9 +183,25 @@ public class SecureTCPCommunicationEndpoint implements CommunicationEndpoint {
             throw new IOException(
                     "Attempted to reverify the wrong sort of socket");
         }
-        SSLSocket castSocket = (SSLSocket) wrappedSocket;
-        castSocket.startHandshake();
-        Certificate[] certChain = castSocket.getSession().getPeerCertificates();
+        return (SSLSocket) wrappedSocket;
+    }
+
+    /**
+     * Checks that the other end of a TLS socket presented a certificate chain
+     * that this endpoint's keystore trusts. The handshake must already have
+     * completed.
+     *
+     * @param castSocket The socket to check.
+     * @throws IOException If the other end is not trusted
+     */
+    void checkPeerTrusted(SSLSocket castSocket) throws IOException {
+        /* A resumed session has the same peer as when it was first created,
+           so there's no need to check its chain again. */
+        SSLSession session = castSocket.getSession();
+        if (session.getValue(CHECKED_SESSION_KEY) == keyStore) {
+            return;
+        }
+        Certificate[] certChain = session.getPeerCertificates();
         X509Certificate[] castCertChain;
         try {
             castCertChain = Arrays.stream(certChain).map(
@@ -148,6 +216,94 @@ public class SecureTCPCommunicationEndpoint implements CommunicationEndpoint {
         } catch (CertificateException ex) {
             throw new IOException(ex);
         }
+        session.putValue(CHECKED_SESSION_KEY, keyStore);
+    }
+
+    /**
+     * Checks, without network access, whether the system at a given IP
+     * address and port has a given communication address. This is possible
+     * if this endpoint still has a resumable TLS session with that system; if
+     * the serial number of the certificate presented in that session is the
+     * unique identifier of the address, the system is the one with that
+     * address (as only it has the private key for the certificate).
+     *
+     * @param remoteAddress The IP address and port of the system.
+     * @param expected The communication address that the system is expected
+     * to have.
+     * @return <code>true</code> if the system was confirmed to have the
+     * address; <code>false</code> if it has a different address, or if there
+     * is no session with it that could be used to tell.
+     * @see #confirmAddress(SSLSessionContext, InetAddress, int,
+     * CommunicationAddress)
+     */
+    boolean confirmAddress(TCPCommunicable remoteAddress,
+            CommunicationAddress expected) {
+        return confirmAddress(keyStore.getContext().getClientSessionContext(),
+                remoteAddress.asInetAddress(),
+                remoteAddress.getTransmissionPort(), expected);
+    }
+
+    /**
+     * Checks whether the most recent of a set of TLS sessions with the system
+     * at a given IP address and port shows it to have a given communication
+     * address.
+     * <p>
+     * There may be more than one valid session with the same system, e.g. if
+     * it was restarted (possibly with a new key) while a session with its
+     * previous incarnation was still cached. The order in which a session
+     * context lists its sessions is unspecified, so the session to use is
+     * chosen by when it was last used (and then by when it was created);
+     * connecting to the system after a restart would have required a new
+     * handshake, so the most recently used session is the one that reflects
+     * the system's current key.
+     *
+     * @param sessions The sessions to consider.
+     * @param host The IP address of the system.
+     * @param port The port of the system.
+     * @param expected The communication address that the system is expected
+     * to have.
+     * @return <code>true</code> if the most recent valid session with the
+     * system presented a certificate whose serial number is the unique
+     * identifier of <code>expected</code>; <code>false</code> if it didn't,
+     * or if there is no such session.
+     */
+    static boolean confirmAddress(SSLSessionContext sessions,
+            InetAddress host, int port, CommunicationAddress expected) {
+        /* The session remembers the host in the form the socket was created
+           with, which is either its name or its IP address. */
+        String hostName = new InetSocketAddress(host, port).getHostString();
+        String hostAddress = host.getHostAddress();
+
+        SSLSession latest = null;
+        for (byte[] id : Collections.list(sessions.getIds())) {
+            SSLSession session = sessions.getSession(id);
+            if (session == null || !session.isValid()
+                    || session.getPeerPort() != port
+                    || !(hostName.equals(session.getPeerHost())
+                    || hostAddress.equals(session.getPeerHost()))) {
+                continue;
+            }
+            if (latest == null
+                    || session.getLastAccessedTime()
+                    > latest.getLastAccessedTime()
+                    || session.getLastAccessedTime()
+                    == latest.getLastAccessedTime()
+                    && session.getCreationTime()
+                    > latest.getCreationTime()) {
+                latest = session;
+            }
+        }
+        if (latest == null) {
+            return false;
+        }
+        try {
+            Certificate peer = latest.getPeerCertificates()[0];
+            return peer instanceof X509Certificate
+                    && expected.getUID().equals(EndpointKeystore.packSerial(
+                            ((X509Certificate) peer).getSerialNumber()));
+        } catch (SSLPeerUnverifiedException ex) {
+            return false;
+        }
     }
 
     /**
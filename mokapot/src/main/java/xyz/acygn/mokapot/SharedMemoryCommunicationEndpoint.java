@@ -0,0 +1,575 @@
+package xyz.acygn.mokapot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import xyz.acygn.mokapot.util.ServerSocketLike;
+import xyz.acygn.mokapot.util.SharedMemorySocketLike;
+import xyz.acygn.mokapot.util.SocketLike;
+import xyz.acygn.mokapot.util.SocketWrapper;
+
+/**
+ * A communication endpoint that communicates with endpoints on the same host
+ * via shared memory, and with other endpoints using TLS over TCP. The
+ * connection is always set up via TLS, so authentication and authorisation
+ * are carried out using the <code>EndpointKeystore</code> in the same way as
+ * for a <code>SecureTCPCommunicationEndpoint</code>.
+ * <p>
+ * When connecting to an address on the local host, the endpoint offers to
+ * switch to shared memory during the TLS handshake (via ALPN). If the other
+ * end is also a shared-memory endpoint, the connecting end creates two ring
+ * buffer files in its ring directory, sends their names over the TLS
+ * connection, and both ends map them into memory; messages are then written
+ * straight into the mapped files. The TLS connection stays open, and is used
+ * to wake a reader that's waiting for data and to detect when the other end
+ * goes away. If either end can't use shared memory, the connection carries on
+ * over TLS as normal.
+ * <p>
+ * Both ends must use the same ring directory (by default, the system's
+ * temporary directory), and must have permission to read, write and delete
+ * files in it. The files are only ever accessible by the user who created
+ * them, so both ends must run as the same user.
+ *
+ * @see SharedMemorySocketLike
+ */
+public class SharedMemoryCommunicationEndpoint
+        extends SecureTCPCommunicationEndpoint {
+
+    /**
+     * The ALPN protocol name that requests a switch to shared memory.
+     */
+    private static final String SHARED_MEMORY_PROTOCOL = "mokapot-shm";
+
+    /**
+     * The ALPN protocol name for an ordinary TLS connection.
+     */
+    private static final String STREAM_PROTOCOL = "mokapot";
+
+    /**
+     * The protocols offered, in order of preference.
+     */
+    private static final String[] PROTOCOLS
+            = {SHARED_MEMORY_PROTOCOL, STREAM_PROTOCOL};
+
+    /**
+     * The prefix of the names of ring buffer files.
+     */
+    private static final String RING_FILE_PREFIX = "mokapot-shm-";
+
+    /**
+     * The default size of the data area of each ring buffer, in bytes.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * The largest data area that the endpoint will map at the request of the
+     * other end of a connection, in bytes.
+     */
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * The directory in which ring buffer files are created.
+     */
+    private final Path ringDirectory;
+
+    /**
+     * The size of the data area of the ring buffers that this endpoint
+     * creates.
+     */
+    private final int capacity;
+
+    /**
+     * Creates a new shared-memory communication endpoint that supports both
+     * inbound and outbound connections. Ring buffer files are created in the
+     * system's temporary directory.
+     *
+     * @param keyStore The cryptographic material used to secure the endpoint.
+     * @param ipAddress The IP address which the endpoint uses for connections
+     * (i.e. the globally visible IP address of the local system).
+     * @param port The port on which the endpoint listens.
+     */
+    public SharedMemoryCommunicationEndpoint(EndpointKeystore keyStore,
+            InetAddress ipAddress, int port) {
+        this(keyStore, ipAddress, port, defaultRingDirectory(),
+                DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new shared-memory communication endpoint that supports both
+     * inbound and outbound connections, with a specified ring directory and
+     * ring buffer size.
+     *
+     * @param keyStore The cryptographic material used to secure the endpoint.
+     * @param ipAddress The IP address which the endpoint uses for connections
+     * (i.e. the globally visible IP address of the local system).
+     * @param port The port on which the endpoint listens.
+     * @param ringDirectory The directory in which ring buffer files are
+     * created. Endpoints that communicate via shared memory must use the same
+     * directory.
+     * @param capacity The size of the data area of each ring buffer that this
+     * endpoint creates, in bytes.
+     * @throws IllegalArgumentException If <code>capacity</code> is not a
+     * power of 2, or is too large
+     */
+    public SharedMemoryCommunicationEndpoint(EndpointKeystore keyStore,
+            InetAddress ipAddress, int port, Path ringDirectory, int capacity)
+            throws IllegalArgumentException {
+        super(keyStore, ipAddress, port);
+        this.ringDirectory = checkRingDirectory(ringDirectory);
+        this.capacity = checkCapacity(capacity);
+    }
+
+    /**
+     * Creates a new shared-memory communication endpoint that supports
+     * outbound connections only. Ring buffer files are created in the
+     * system's temporary directory.
+     *
+     * @param keyStore The cryptographic material used to secure the endpoint.
+     */
+    public SharedMemoryCommunicationEndpoint(EndpointKeystore keyStore) {
+        this(keyStore, defaultRingDirectory(), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new shared-memory communication endpoint that supports
+     * outbound connections only, with a specified ring directory and ring
+     * buffer size.
+     *
+     * @param keyStore The cryptographic material used to secure the endpoint.
+     * @param ringDirectory The directory in which ring buffer files are
+     * created. Endpoints that communicate via shared memory must use the same
+     * directory.
+     * @param capacity The size of the data area of each ring buffer that this
+     * endpoint creates, in bytes.
+     * @throws IllegalArgumentException If <code>capacity</code> is not a
+     * power of 2, or is too large
+     */
+    public SharedMemoryCommunicationEndpoint(EndpointKeystore keyStore,
+            Path ringDirectory, int capacity) throws IllegalArgumentException {
+        super(keyStore);
+        this.ringDirectory = checkRingDirectory(ringDirectory);
+        this.capacity = checkCapacity(capacity);
+    }
+
+    /**
+     * Returns the system's temporary directory.
+     *
+     * @return The value of the <code>java.io.tmpdir</code> property, as a
+     * path.
+     */
+    private static Path defaultRingDirectory() {
+        return Paths.get(AccessController.doPrivileged(
+                (PrivilegedAction<String>) ()
+                -> System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Normalises a ring directory, so that file names received from the other
+     * end of a connection can be compared against it.
+     *
+     * @param ringDirectory The ring directory.
+     * @return The absolute, normalised form of <code>ringDirectory</code>.
+     */
+    private static Path checkRingDirectory(Path ringDirectory) {
+        return ringDirectory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Checks that a ring buffer size is usable.
+     *
+     * @param capacity The size of a ring buffer's data area.
+     * @return <code>capacity</code>.
+     * @throws IllegalArgumentException If <code>capacity</code> is not a
+     * power of 2, or is too large
+     */
+    private static int checkCapacity(int capacity)
+            throws IllegalArgumentException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1
+                || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException(
+                    "invalid ring buffer capacity " + capacity);
+        }
+        return capacity;
+    }
+
+    /**
+     * Offers shared memory to the other end of a new outbound connection, if
+     * it's on the same host. Connections to ourself (which are only used to
+     * shut down the listen loop) and address lookups don't use shared memory.
+     *
+     * @param socket The socket, which is connected but hasn't handshaken.
+     * @param remoteAddress The identifier that the socket was created for.
+     */
+    @Override
+    protected void configureSocket(SSLSocket socket, Communicable remoteAddress) {
+        if (!(remoteAddress instanceof CommunicationAddress)
+                || remoteAddress.equals(getAddress())
+                || !SharedMemorySocketLike.isSupported()
+                || !isLocalHost(socket.getInetAddress())) {
+            return;
+        }
+        SSLParameters parameters = socket.getSSLParameters();
+        parameters.setApplicationProtocols(PROTOCOLS);
+        socket.setSSLParameters(parameters);
+    }
+
+    /**
+     * Allows the other end of an inbound connection to request shared
+     * memory.
+     *
+     * @param socket The listen socket.
+     */
+    @Override
+    protected void configureServerSocket(SSLServerSocket socket) {
+        SSLParameters parameters = socket.getSSLParameters();
+        parameters.setApplicationProtocols(PROTOCOLS);
+        socket.setSSLParameters(parameters);
+    }
+
+    /**
+     * Returns whether an IP address belongs to the local host.
+     *
+     * @param address The address to check.
+     * @return <code>true</code> if the address is a loopback address or
+     * belongs to one of the local host's network interfaces.
+     */
+    private static boolean isLocalHost(InetAddress address) {
+        if (address.isLoopbackAddress()) {
+            return true;
+        }
+        try {
+            return NetworkInterface.getByInetAddress(address) != null;
+        } catch (SocketException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public SocketLike newConnection(Communicable remoteAddress)
+            throws IOException, IncompatibleEndpointException {
+        SocketLike socket = super.newConnection(remoteAddress);
+        if (!SHARED_MEMORY_PROTOCOL.equals(
+                sslSocketOf(socket).getApplicationProtocol())) {
+            return socket;
+        }
+        try {
+            return requestSharedMemory(socket);
+        } catch (IOException | RuntimeException ex) {
+            closeAfterFailure(socket, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Switches a newly verified outbound connection to shared memory. The
+     * ring buffer files are deleted once both ends have mapped them (or have
+     * failed to do so).
+     *
+     * @param socket The TLS connection, on which shared memory was negotiated.
+     * @return A shared-memory socket that uses <code>socket</code> for
+     * control, or <code>socket</code> itself if either end was unable to
+     * create or map the ring buffers.
+     * @throws IOException If communication via <code>socket</code> failed
+     */
+    private SocketLike requestSharedMemory(SocketLike socket)
+            throws IOException {
+        OutputStream os = socket.getOutputStream();
+        Path toServer = null;
+        Path toClient = null;
+        try {
+            ByteBuffer outbound;
+            ByteBuffer inbound;
+            try {
+                toServer = privileged(() -> Files.createTempFile(
+                        ringDirectory, RING_FILE_PREFIX, null));
+                toClient = privileged(() -> Files.createTempFile(
+                        ringDirectory, RING_FILE_PREFIX, null));
+                outbound = mapRing(toServer, capacity);
+                inbound = mapRing(toClient, capacity);
+            } catch (IOException ex) {
+                os.write(0);
+                os.flush();
+                return socket;
+            }
+
+            /* Send the request as a single write, so that it goes in a single
+               TLS record. */
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(request);
+            dos.write(1);
+            dos.writeUTF(toServer.toString());
+            dos.writeUTF(toClient.toString());
+            dos.writeInt(capacity);
+            os.write(request.toByteArray());
+            os.flush();
+
+            switch (socket.getInputStream().read()) {
+                case 1:
+                    return new SharedMemorySocketLike(
+                            socket, inbound, outbound);
+                case 0:
+                    return socket;
+                default:
+                    throw new IOException(
+                            "Unexpected reply to a shared memory request");
+            }
+        } finally {
+            deleteRing(toServer);
+            deleteRing(toClient);
+        }
+    }
+
+    /**
+     * Switches a newly accepted inbound connection to shared memory, if the
+     * other end requested it during the TLS handshake.
+     *
+     * @param socket The TLS connection, which must already have been
+     * verified.
+     * @return A shared-memory socket that uses <code>socket</code> for
+     * control, or a socket that continues using TLS, if shared memory was not
+     * requested or the ring buffers couldn't be mapped.
+     * @throws IOException If communication via <code>socket</code> failed
+     */
+    private SocketLike acceptSharedMemory(SocketWrapper socket)
+            throws IOException {
+        HandshakenSocket tls = new HandshakenSocket(socket);
+        if (!SHARED_MEMORY_PROTOCOL.equals(
+                sslSocketOf(socket).getApplicationProtocol())) {
+            return tls;
+        }
+
+        DataInputStream dis = new DataInputStream(tls.getInputStream());
+        if (dis.readUnsignedByte() != 1) {
+            /* The other end couldn't create the ring buffers. */
+            return tls;
+        }
+        String toServer = dis.readUTF();
+        String toClient = dis.readUTF();
+        int requestedCapacity = dis.readInt();
+
+        OutputStream os = tls.getOutputStream();
+        ByteBuffer inbound;
+        ByteBuffer outbound;
+        try {
+            inbound = mapRing(checkRingFile(toServer), requestedCapacity);
+            outbound = mapRing(checkRingFile(toClient), requestedCapacity);
+        } catch (IOException | IllegalArgumentException ex) {
+            os.write(0);
+            os.flush();
+            return tls;
+        }
+        os.write(1);
+        os.flush();
+        return new SharedMemorySocketLike(tls, inbound, outbound);
+    }
+
+    /**
+     * Checks that a file name received from the other end of a connection
+     * names a ring buffer file in our ring directory. This prevents the other
+     * end from asking us to map an arbitrary file.
+     *
+     * @param filename The file name.
+     * @return The file name, as a path.
+     * @throws IOException If the file name does not name a ring buffer file
+     */
+    private Path checkRingFile(String filename) throws IOException {
+        Path path = Paths.get(filename).toAbsolutePath().normalize();
+        if (!ringDirectory.equals(path.getParent())
+                || !path.getFileName().toString().startsWith(RING_FILE_PREFIX)
+                || !privileged(() -> Files.isRegularFile(
+                        path, LinkOption.NOFOLLOW_LINKS))) {
+            throw new IOException("Not a ring buffer file: " + filename);
+        }
+        return path;
+    }
+
+    /**
+     * Maps a ring buffer file into memory. A newly created file is extended
+     * to the required size (and thus initially zero, as
+     * <code>SharedMemorySocketLike</code> requires); an existing file must
+     * already have the right size.
+     *
+     * @param file The file to map.
+     * @param dataSize The size of the ring buffer's data area.
+     * @return The mapped memory.
+     * @throws IOException If the file has the wrong size, or could not be
+     * mapped
+     * @throws IllegalArgumentException If <code>dataSize</code> is not a
+     * usable ring buffer size
+     */
+    private static ByteBuffer mapRing(Path file, int dataSize)
+            throws IOException, IllegalArgumentException {
+        long size = SharedMemorySocketLike.HEADER_SIZE
+                + (long) checkCapacity(dataSize);
+        return privileged(() -> {
+            try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+                long existingSize = channel.size();
+                if (existingSize != 0 && existingSize != size) {
+                    throw new IOException("Ring buffer file " + file
+                            + " has the wrong size");
+                }
+                /* The mapping stays valid after the channel is closed. */
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        });
+    }
+
+    /**
+     * Deletes a ring buffer file, if it exists. Failures are ignored; the file
+     * is only needed until both ends have mapped it.
+     *
+     * @param file The file to delete, or <code>null</code>.
+     */
+    private static void deleteRing(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            privileged(() -> Files.deleteIfExists(file));
+        } catch (IOException ex) {
+            /* Some operating systems can't delete a file while it's mapped;
+               try again when the VM exits. */
+            AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                file.toFile().deleteOnExit();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs a file operation with this class's permissions, rather than those
+     * of the code that's using the endpoint.
+     *
+     * @param <T> The type of the operation's result.
+     * @param action The operation to run.
+     * @return The operation's result.
+     * @throws IOException If the operation failed
+     */
+    private static <T> T privileged(PrivilegedExceptionAction<T> action)
+            throws IOException {
+        try {
+            return AccessController.doPrivileged(action);
+        } catch (PrivilegedActionException ex) {
+            throw (IOException) ex.getException();
+        }
+    }
+
+    /**
+     * Closes a socket whose setup failed, without hiding the original
+     * failure.
+     *
+     * @param socket The socket to close.
+     * @param failure The exception that caused the setup to fail.
+     */
+    private static void closeAfterFailure(SocketLike socket,
+            Exception failure) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    @Override
+    public ServerSocketLike newListenSocket() throws IOException,
+            UnsupportedOperationException {
+        ServerSocketLike listenSocket = super.newListenSocket();
+        return new ServerSocketLike() {
+            /**
+             * Accepts a connection, and verifies it. The verification has to
+             * happen here, rather than in <code>initialVerifySocket</code>,
+             * because it decides whether the connection switches to shared
+             * memory, and thus what sort of socket-like is returned.
+             *
+             * @return A shared-memory socket, or a socket that continues using
+             * TLS.
+             * @throws IOException If something goes wrong while listening, or
+             * if the connection could not be verified
+             */
+            @Override
+            public SocketLike accept() throws IOException {
+                SocketLike socket = listenSocket.accept();
+                try {
+                    SSLSocket sslSocket = sslSocketOf(socket);
+                    sslSocket.startHandshake();
+                    checkPeerTrusted(sslSocket);
+                    return acceptSharedMemory((SocketWrapper) socket);
+                } catch (IOException | RuntimeException ex) {
+                    closeAfterFailure(socket, ex);
+                    throw ex;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                listenSocket.close();
+            }
+        };
+    }
+
+    /**
+     * Verifies a socket. Sockets that were accepted by this endpoint's listen
+     * socket, and shared-memory sockets, have already handshaken, so for them
+     * this just checks the certificates of the other end again.
+     *
+     * @param socket The socket to verify.
+     * @throws IOException If the socket could not be verified
+     */
+    @Override
+    public void initialVerifySocket(SocketLike socket) throws IOException {
+        if (socket instanceof SharedMemorySocketLike) {
+            checkPeerTrusted(sslSocketOf(
+                    ((SharedMemorySocketLike) socket).getControlSocket()));
+        } else if (socket instanceof HandshakenSocket) {
+            checkPeerTrusted(sslSocketOf(socket));
+        } else {
+            super.initialVerifySocket(socket);
+        }
+    }
+
+    /**
+     * Creates a debug representation of this endpoint.
+     *
+     * @return A string containing the communication address of the endpoint.
+     */
+    @Override
+    public String toString() {
+        return "SharedMemoryEndpoint{" + getAddress() + '}';
+    }
+
+    /**
+     * A TLS socket that has already completed its handshake, and been
+     * verified, by the time it's returned from the listen socket.
+     */
+    private static class HandshakenSocket extends SocketWrapper {
+
+        /**
+         * Wraps the socket inside an existing socket wrapper.
+         *
+         * @param socket The socket wrapper.
+         */
+        HandshakenSocket(SocketWrapper socket) {
+            super(socket.getSocket());
+        }
+    }
+}
@@ -370,6 +370,31 @@ enum StandinTechnique {
                 "Cannot create any sort of standin for " + about);
     }
 
+    /**
+     * Creates a standin factory that uses this specific standin technique,
+     * rather than the best technique for the class. This is mostly useful for
+     * comparing techniques with each other; the caller is responsible for
+     * checking that the technique can be used with the class, and that it has
+     * the functionalities that the caller needs.
+     *
+     * @param <T> The class to create standins for.
+     * @param about <code>T.class</code>, given explicitly due to Java's type
+     * erasure rules.
+     * @return A standin factory that creates standins using this technique.
+     * @throws StandinFactory.CannotConstructException If this technique does
+     * not produce standins at all (as with <code>OBJECT_ITSELF</code>), or
+     * cannot produce them for the given class
+     */
+    <T> StandinFactory<T> standinFactoryFor(Class<T> about)
+            throws StandinFactory.CannotConstructException {
+        if (metafactory == null) {
+            throw new StandinFactory.CannotConstructException(
+                    new UnsupportedOperationException(
+                            this + " does not produce standins"));
+        }
+        return Objects.requireNonNull(metafactory.metafactory(about));
+    }
+
     /**
      * A functionality that a standin technique can provide. In other words,
      * something that can be done reliably with the created standin.
@@ -73,6 +73,11 @@ abstract class SynchronousMessage<T> implements DistributedMessage {
         sentInEnvelope = envelope;
         this.communicator = communicator;
 
+        MessageTracer tracer = communicator.getMessageTracer();
+        MessageTrace trace = envelope.getAddress().getTrace();
+        long startedAt = tracer != null && trace != null
+                ? MessageTracer.now() : 0;
+
         try {
             returnValue = calculateReply();
             returnValueIsException = false;
@@ -83,6 +88,11 @@ abstract class SynchronousMessage<T> implements DistributedMessage {
             returnValueIsException = true;
         }
 
+        if (startedAt != 0) {
+            tracer.recordPhase(communicator, "calculateReply", trace,
+                    getClass(), startedAt, MessageTracer.now());
+        }
+
         envelope.getAddress().sendReply(new OperationCompleteMessage(
                 returnValue, returnValueIsException, requestTracking),
                 getCommunicator());
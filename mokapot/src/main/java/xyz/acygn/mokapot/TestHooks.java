@@ -1,6 +1,10 @@
 package xyz.acygn.mokapot;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import javax.net.ssl.SSLSessionContext;
+import xyz.acygn.mokapot.skeletons.Standin;
+import xyz.acygn.mokapot.util.AutocloseableLockWrapper;
 import xyz.acygn.mokapot.wireformat.ReadableDescription;
 
 /**
@@ -91,6 +95,62 @@ public interface TestHooks {
     Object readClassAndObject(ReadableDescription description, Object parent,
             Class<?> expected) throws IOException;
 
+    /**
+     * Reproduces an object from a description created by
+     * <code>describe</code>. The result is a new object, rather than a
+     * reference to the original object, even if the object would normally be
+     * marshalled via reference.
+     *
+     * @param <T> The actual class of the described object.
+     * @param description The description to reproduce, rewound to the start.
+     * @param actualClass <code>T.class</code>, given explicitly due to Java's
+     * type erasure rules.
+     * @return The reproduced object.
+     * @throws IOException If corruption of the description is detected
+     */
+    <T> T reproduce(ReadableDescription description, Class<T> actualClass)
+            throws IOException;
+
+    /**
+     * Creates a standin for the given object using a specific standin
+     * technique, rather than the technique that would normally be chosen for
+     * its class. The standin is created in the most direct way the technique
+     * supports: by wrapping the object if possible; otherwise from a
+     * description of the object; otherwise (for techniques that can only
+     * refer to a location manager) by forwarding to the object's location
+     * manager, which will be created if necessary.
+     *
+     * @param <T> The actual class of the object.
+     * @param referent The object to create a standin for.
+     * @param technique The name of the standin technique to use, e.g.
+     * <code>"INHERITED_FROM_CLASS"</code>.
+     * @return The new standin.
+     * @throws IllegalArgumentException If there is no standin technique with
+     * the given name, or it cannot produce standins for the object's class
+     * @throws IOException If the object could not be described or reproduced
+     */
+    <T> Standin<T> createStandin(T referent, String technique)
+            throws IllegalArgumentException, IOException;
+
+    /**
+     * Encodes the message that would be sent to another communicator to ask
+     * it to run the given code, without sending it. The result is the exact
+     * sequence of bytes that would be written to a connection (minus any
+     * framing that the endpoint adds). This is mostly useful for measuring
+     * the cost of marshalling and encoding messages.
+     * <p>
+     * The code should be deeply copiable: because the message is never
+     * received, any noncopiable objects it referred to would be kept alive
+     * indefinitely.
+     *
+     * @param code The code that the message would ask to be run.
+     * @param target The communicator that the message would be sent to.
+     * @return The encoded message.
+     * @throws IOException If something goes wrong encoding the message
+     */
+    byte[] encodeRemoteCall(CopiableSupplier<?> code,
+            CommunicationAddress target) throws IOException;
+
     /**
      * Creates and starts a secondary communicator with the given name. The same
      * name should not be used more than once in calls to this method, but the
@@ -151,4 +211,64 @@ public interface TestHooks {
      * operations (<code>true</code> to enable).
      */
     void setEnableSlowDebugOperations(boolean enableSlowDebugOperations);
+
+    /**
+     * Changes whether common <code>java.util</code> collection classes are
+     * described using a compact format (listing only their elements), rather
+     * than field-by-field. The compact formats are enabled by default; this
+     * exists so that the two can be compared.
+     * <p>
+     * This is a JVM-global setting. It changes the format of descriptions, so
+     * it must be the same on every system that exchanges collections.
+     *
+     * @param enableCompactCollectionFormats Whether to use the compact formats
+     * (<code>true</code> to use them).
+     */
+    void setEnableCompactCollectionFormats(
+            boolean enableCompactCollectionFormats);
+
+    /**
+     * Checks whether a set of TLS sessions confirms that the system at a given
+     * IP address and port has a given communication address. This is the
+     * check that decides whether <code>lookupAddress</code> can use a cached
+     * result without contacting the system.
+     *
+     * @param sessions The TLS sessions to check.
+     * @param host The IP address of the system.
+     * @param port The port of the system.
+     * @param expected The communication address that the system is expected
+     * to have.
+     * @return <code>true</code> if the most recently used valid session with
+     * the system confirms the address.
+     * @see DistributedCommunicator#lookupAddress(java.net.InetAddress, int)
+     */
+    boolean confirmAddress(SSLSessionContext sessions, InetAddress host,
+            int port, CommunicationAddress expected);
+
+    /**
+     * Runs code in the same way as a thread projection created for an
+     * incoming message, subject to the communicator's limits on running and
+     * queued projections. Like the connection's read thread would be, the
+     * calling thread is throttled if the queue is over its soft limits.
+     *
+     * @param sender The system that the projection would be on behalf of.
+     * @param body The code to run.
+     * @see DistributedCommunicator#setThreadProjectionLimits(int, int)
+     * @see DistributedCommunicator#setQueuedProjectionSoftLimits(int, int)
+     */
+    void admitThreadProjection(CommunicationAddress sender, Runnable body);
+
+    /**
+     * Sends a request to perform garbage collection to another system. This
+     * is a control message, so it travels via the control connection if the
+     * communicator has one; its arrival can be seen in the recipient's
+     * metrics.
+     *
+     * @param target The system to send the request to.
+     * @throws AutocloseableLockWrapper.CannotLockException If the
+     * communicator has shut down past the point at which it sends messages
+     * @see DistributedCommunicator#setControlLane(boolean)
+     */
+    void requestGarbageCollection(CommunicationAddress target)
+            throws AutocloseableLockWrapper.CannotLockException;
 }
@@ -0,0 +1,252 @@
+package xyz.acygn.mokapot.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+
+/**
+ * Ordered reads and writes of memory outside the Java heap, such as the
+ * memory of a memory-mapped file. Java 8 has no public API for this, so the
+ * methods of <code>sun.misc.Unsafe</code> are used; they're looked up
+ * reflectively and called via method handles, meaning that no internal class
+ * is named in the source (which would make javac warn about every use of it).
+ * The method handles are constants, so the JIT compiler inlines them just as
+ * it would direct calls.
+ * <p>
+ * All addresses are absolute. Nothing checks that they're valid; the caller
+ * must ensure that the memory stays mapped for as long as it's accessed.
+ */
+final class DirectMemoryAccess {
+
+    /**
+     * Reads the address of a direct buffer's memory. Type
+     * <code>(Buffer)long</code>.
+     */
+    private static final MethodHandle BUFFER_ADDRESS;
+
+    /**
+     * <code>Unsafe#getLongVolatile</code>. Type <code>(long)long</code>.
+     */
+    private static final MethodHandle GET_LONG_VOLATILE;
+
+    /**
+     * <code>Unsafe#putOrderedLong</code>. Type <code>(long, long)void</code>.
+     */
+    private static final MethodHandle PUT_ORDERED_LONG;
+
+    /**
+     * <code>Unsafe#getIntVolatile</code>. Type <code>(long)int</code>.
+     */
+    private static final MethodHandle GET_INT_VOLATILE;
+
+    /**
+     * <code>Unsafe#putIntVolatile</code>. Type <code>(long, int)void</code>.
+     */
+    private static final MethodHandle PUT_INT_VOLATILE;
+
+    /**
+     * <code>Unsafe#compareAndSwapInt</code>. Type
+     * <code>(long, int, int)boolean</code>.
+     */
+    private static final MethodHandle COMPARE_AND_SWAP_INT;
+
+    /**
+     * <code>Unsafe#fullFence</code>. Type <code>()void</code>.
+     */
+    private static final MethodHandle FULL_FENCE;
+
+    static {
+        MethodHandle[] handles;
+        try {
+            handles = AccessController.doPrivileged(
+                    (PrivilegedExceptionAction<MethodHandle[]>) () -> {
+                        MethodHandles.Lookup lookup = MethodHandles.lookup();
+                        Class<?> unsafeClass
+                                = Class.forName("sun.misc.Unsafe");
+                        Field theUnsafe
+                                = unsafeClass.getDeclaredField("theUnsafe");
+                        theUnsafe.setAccessible(true);
+                        Object unsafe = theUnsafe.get(null);
+                        Field address
+                                = Buffer.class.getDeclaredField("address");
+                        address.setAccessible(true);
+
+                        /* Every method takes a base object followed by an
+                           offset; with a null base, the offset is an
+                           absolute address. */
+                        MethodHandle[] rv = new MethodHandle[7];
+                        rv[0] = lookup.unreflectGetter(address);
+                        String[] names = {"getLongVolatile", "putOrderedLong",
+                            "getIntVolatile", "putIntVolatile",
+                            "compareAndSwapInt"};
+                        Class<?>[][] parameters = {
+                            {Object.class, long.class},
+                            {Object.class, long.class, long.class},
+                            {Object.class, long.class},
+                            {Object.class, long.class, int.class},
+                            {Object.class, long.class, int.class, int.class}};
+                        for (int i = 0; i < names.length; i++) {
+                            Method m = unsafeClass.getMethod(
+                                    names[i], parameters[i]);
+                            rv[i + 1] = insertArguments(
+                                    lookup.unreflect(m), 0, unsafe, null);
+                        }
+                        rv[6] = lookup.unreflect(
+                                unsafeClass.getMethod("fullFence"))
+                                .bindTo(unsafe);
+                        return rv;
+                    });
+        } catch (Exception | LinkageError ex) {
+            handles = new MethodHandle[7];
+        }
+        BUFFER_ADDRESS = handles[0];
+        GET_LONG_VOLATILE = handles[1];
+        PUT_ORDERED_LONG = handles[2];
+        GET_INT_VOLATILE = handles[3];
+        PUT_INT_VOLATILE = handles[4];
+        COMPARE_AND_SWAP_INT = handles[5];
+        FULL_FENCE = handles[6];
+    }
+
+    /**
+     * Inaccessible constructor. This is a utility class, not meant to be
+     * instantiated.
+     */
+    private DirectMemoryAccess() {
+    }
+
+    /**
+     * Returns whether direct memory access is possible on this virtual
+     * machine. If it isn't, the other methods of this class throw
+     * <code>NullPointerException</code>.
+     *
+     * @return <code>true</code> if the methods of this class can be used.
+     */
+    static boolean isAvailable() {
+        return FULL_FENCE != null;
+    }
+
+    /**
+     * Returns the address of a direct buffer's memory.
+     *
+     * @param buffer The buffer. Must be a direct buffer.
+     * @return The address of the buffer's first byte (ignoring its position).
+     */
+    static long address(Buffer buffer) {
+        try {
+            return (long) BUFFER_ADDRESS.invokeExact(buffer);
+        } catch (Throwable ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Reads a long from memory, with volatile semantics.
+     *
+     * @param address The address to read.
+     * @return The value at that address.
+     */
+    static long getLongVolatile(long address) {
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact(address);
+        } catch (Throwable ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Writes a long to memory, with release semantics: earlier writes become
+     * visible no later than this one does.
+     *
+     * @param address The address to write.
+     * @param value The value to write there.
+     */
+    static void putOrderedLong(long address, long value) {
+        try {
+            PUT_ORDERED_LONG.invokeExact(address, value);
+        } catch (Throwable ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Reads an int from memory, with volatile semantics.
+     *
+     * @param address The address to read.
+     * @return The value at that address.
+     */
+    static int getIntVolatile(long address) {
+        try {
+            return (int) GET_INT_VOLATILE.invokeExact(address);
+        } catch (Throwable ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Writes an int to memory, with volatile semantics.
+     *
+     * @param address The address to write.
+     * @param value The value to write there.
+     */
+    static void putIntVolatile(long address, int value) {
+        try {
+            PUT_INT_VOLATILE.invokeExact(address, value);
+        } catch (Throwable ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Atomically replaces an int in memory, if it has an expected value.
+     *
+     * @param address The address of the int.
+     * @param expected The value that must be there.
+     * @param value The value to replace it with.
+     * @return <code>true</code> if the value was replaced.
+     */
+    static boolean compareAndSwapInt(long address, int expected, int value) {
+        try {
+            return (boolean) COMPARE_AND_SWAP_INT.invokeExact(
+                    address, expected, value);
+        } catch (Throwable ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Prevents reads and writes before the fence from being reordered with
+     * reads and writes after it.
+     */
+    static void fullFence() {
+        try {
+            FULL_FENCE.invokeExact();
+        } catch (Throwable ex) {
+            throw propagate(ex);
+        }
+    }
+
+    /**
+     * Rethrows an exception thrown via a method handle. None of the methods
+     * called declare checked exceptions, so the exception will be unchecked.
+     *
+     * @param ex The exception.
+     * @return Never returns; the return type allows callers to write
+     * <code>throw propagate(ex)</code>, so that the compiler knows the
+     * statement doesn't complete normally.
+     */
+    private static RuntimeException propagate(Throwable ex) {
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        }
+        if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        throw new IllegalStateException(ex);
+    }
+}
@@ -5,6 +5,8 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 /**
  * A set of <code>Expirable</code> objects that are interchangeable. Its main
@@ -122,6 +124,89 @@ public class ExpirableAlternatives<K, T extends Expirable>
         throw ExpiredException.SINGLETON;
     }
 
+    /**
+     * Calls the given method on the least loaded of the elements that match a
+     * filter. Elements are tried in increasing order of load until one of them
+     * runs the method successfully. Among equally loaded elements, the order
+     * depends on the calling thread, so that threads which find several idle
+     * elements spread out between them.
+     * <p>
+     * Unlike <code>callOnSomething</code>, this does not expire the set if no
+     * suitable element is found, because the caller may want to add one.
+     *
+     * @param filter Which elements may be used.
+     * @param load A function that returns the current load on an element.
+     * @param maxLoad The highest load with which an element can be used.
+     * @param m The method to run.
+     * @return <code>true</code> if the method was run successfully;
+     * <code>false</code> if no unexpired element matching the filter had a
+     * low enough load.
+     * @throws Expirable.ExpiredException If this set has expired already
+     */
+    public boolean callOnLeastLoaded(Predicate<? super T> filter,
+            ToLongFunction<? super T> load, long maxLoad,
+            ExpirableVoidMethod<T> m) throws ExpiredException {
+        while (true) {
+            if (expired.get()) {
+                throw ExpiredException.SINGLETON;
+            }
+
+            int size = Math.max(objects.size(), 1);
+            int start = (int) (Thread.currentThread().getId() % size);
+            K bestKey = null;
+            T best = null;
+            long bestLoad = 0;
+            int bestRank = 0;
+            int i = 0;
+            for (Map.Entry<K, T> entry : objects.entrySet()) {
+                T t = entry.getValue();
+                int rank = Math.floorMod(i++ - start, size);
+                if (!filter.test(t)) {
+                    continue;
+                }
+                long l = load.applyAsLong(t);
+                if (l > maxLoad) {
+                    continue;
+                }
+                if (best == null || l < bestLoad
+                        || (l == bestLoad && rank < bestRank)) {
+                    bestKey = entry.getKey();
+                    best = t;
+                    bestLoad = l;
+                    bestRank = rank;
+                }
+            }
+            if (best == null) {
+                return false;
+            }
+
+            try {
+                m.invoke(best);
+                return true;
+            } catch (ExpiredException ex) {
+                objects.remove(bestKey, best);
+            }
+        }
+    }
+
+    /**
+     * Counts the elements in the set that match a filter. Elements that have
+     * expired, but that haven't been noticed to have expired yet, may be
+     * included in the count.
+     *
+     * @param filter Which elements to count.
+     * @return The number of elements matching <code>filter</code>.
+     */
+    public int count(Predicate<? super T> filter) {
+        int count = 0;
+        for (T t : objects.values()) {
+            if (filter.test(t)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Calls a given method on a particular object within the set.
      *
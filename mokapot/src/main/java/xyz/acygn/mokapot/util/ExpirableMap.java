@@ -96,6 +96,17 @@ public class ExpirableMap<K, V extends Expirable> {
         weakMap.clear();
     }
 
+    /**
+     * Returns the number of entries in the map. This may be approximate, due
+     * to concurrent changes, and because entries whose values have been
+     * deallocated or expired might still be counted until the map notices.
+     *
+     * @return The number of entries in the map.
+     */
+    public int size() {
+        return weakMap.size();
+    }
+
     /**
      * Greatly improves performance if called from the expire() method of the
      * corresponding value. Note that the value has to know that it belongs to
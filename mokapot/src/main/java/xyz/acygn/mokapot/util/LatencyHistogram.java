@@ -0,0 +1,340 @@
+package xyz.acygn.mokapot.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations, with fixed, exponentially sized buckets. Bucket
+ * <i>n</i> counts durations of at least 2<sup><i>n</i></sup> and less than
+ * 2<sup><i>n</i>+1</sup> nanoseconds (with bucket 0 also counting durations of
+ * 0, and the last bucket counting everything too large for the others).
+ * <p>
+ * Each bucket is further divided into <code>SUB_BUCKET_COUNT</code> equally
+ * sized sub-buckets (in the same way as an HDR histogram), and percentiles are
+ * read from the sub-buckets; they are thus accurate to within 1 part in
+ * <code>SUB_BUCKET_COUNT</code> (about 6%), rather than to within a factor
+ * of 2. Buckets below 2<sup>4</sup> nanoseconds have fewer possible durations
+ * than sub-buckets, and so record durations exactly.
+ * <p>
+ * Recording a duration doesn't allocate or lock; each sub-bucket is a
+ * <code>LongAdder</code>, so threads recording at the same time rarely contend
+ * with each other. The price is that reading the histogram is comparatively
+ * slow, and isn't atomic with respect to concurrent recording (so a snapshot
+ * might see a duration in one statistic but not another).
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of buckets in the histogram. The last bucket starts at
+     * 2<sup>39</sup> nanoseconds, a little over nine minutes.
+     */
+    public static final int BUCKET_COUNT = 40;
+
+    /**
+     * The base 2 logarithm of <code>SUB_BUCKET_COUNT</code>.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of sub-buckets that each bucket is divided into.
+     */
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of durations recorded into each sub-bucket. Sub-bucket
+     * <i>s</i> of bucket <i>n</i> is at index
+     * <i>n</i>&nbsp;*&nbsp;<code>SUB_BUCKET_COUNT</code>&nbsp;+&nbsp;<i>s</i>.
+     */
+    private final LongAdder[] buckets
+            = new LongAdder[BUCKET_COUNT * SUB_BUCKET_COUNT];
+
+    /**
+     * The sum of all the durations recorded, in nanoseconds.
+     */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * The longest duration recorded, in nanoseconds.
+     */
+    private final LongAccumulator maxNanos
+            = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Creates a new, empty histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the sub-bucket that a given duration is counted in.
+     *
+     * @param nanos The duration, in nanoseconds.
+     * @return The index of the sub-bucket in <code>buckets</code>.
+     */
+    private static int subBucketFor(long nanos) {
+        if (nanos <= 1) {
+            return 0;
+        }
+        int bucket = 63 - Long.numberOfLeadingZeros(nanos);
+        if (bucket >= BUCKET_COUNT) {
+            return BUCKET_COUNT * SUB_BUCKET_COUNT - 1;
+        }
+        /* The sub-bucket is given by the bits just below the leading 1 bit;
+           small buckets have fewer than SUB_BUCKET_BITS of those. */
+        int sub = bucket >= SUB_BUCKET_BITS
+                ? (int) (nanos >>> (bucket - SUB_BUCKET_BITS))
+                - SUB_BUCKET_COUNT
+                : (int) (nanos - (1L << bucket));
+        return bucket * SUB_BUCKET_COUNT + sub;
+    }
+
+    /**
+     * Returns the largest duration that would be counted in the given
+     * sub-bucket.
+     *
+     * @param index The index of the sub-bucket in <code>buckets</code>.
+     * @return The upper bound of the sub-bucket, in nanoseconds.
+     */
+    private static long subBucketUpperBound(int index) {
+        int bucket = index / SUB_BUCKET_COUNT;
+        int sub = index % SUB_BUCKET_COUNT;
+        if (bucket == BUCKET_COUNT - 1 && sub == SUB_BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        if (bucket < SUB_BUCKET_BITS) {
+            return (1L << bucket) + sub;
+        }
+        int shift = bucket - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKET_COUNT + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a duration into the histogram. Negative durations (which can
+     * happen when timing against a clock that isn't monotonic) are recorded as
+     * 0.
+     *
+     * @param nanos The duration, in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[subBucketFor(nanos)].increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Resets the histogram to its empty state. This isn't atomic with respect
+     * to concurrent calls to <code>record</code>.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    /**
+     * Takes a snapshot of the current contents of the histogram.
+     *
+     * @return An immutable snapshot of the histogram.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * An immutable copy of the contents of a latency histogram at some point
+     * in time. The getters of this class follow JavaBean conventions, so that
+     * a snapshot can be published as a JMX attribute.
+     */
+    public static final class Snapshot {
+
+        /**
+         * The number of durations in each sub-bucket.
+         */
+        private final long[] counts;
+
+        /**
+         * The number of durations recorded in total.
+         */
+        private final long count;
+
+        /**
+         * The sum of all the durations recorded, in nanoseconds.
+         */
+        private final long totalNanos;
+
+        /**
+         * The longest duration recorded, in nanoseconds.
+         */
+        private final long maxNanos;
+
+        /**
+         * Creates a snapshot from the bucket counts and summary statistics.
+         *
+         * @param counts The number of durations in each sub-bucket. This array
+         * will be owned by the snapshot, so must not be modified afterwards.
+         * @param totalNanos The sum of all the durations recorded.
+         * @param maxNanos The longest duration recorded.
+         */
+        private Snapshot(long[] counts, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = Arrays.stream(counts).sum();
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * Returns the number of durations recorded into each bucket. Bucket
+         * <i>n</i> counts durations from 2<sup><i>n</i></sup> nanoseconds,
+         * up to but not including 2<sup><i>n</i>+1</sup> nanoseconds.
+         *
+         * @return The bucket counts (each being the sum of the counts of the
+         * bucket's sub-buckets).
+         */
+        public long[] getBucketCounts() {
+            long[] rv = new long[BUCKET_COUNT];
+            for (int i = 0; i < counts.length; i++) {
+                rv[i / SUB_BUCKET_COUNT] += counts[i];
+            }
+            return rv;
+        }
+
+        /**
+         * Returns the number of durations that were recorded.
+         *
+         * @return The number of durations.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of all the durations that were recorded.
+         *
+         * @return The total duration, in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Returns the longest duration that was recorded.
+         *
+         * @return The longest duration, in nanoseconds, or 0 if nothing was
+         * recorded.
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Returns the mean of the durations that were recorded.
+         *
+         * @return The mean duration, in nanoseconds, or 0 if nothing was
+         * recorded.
+         */
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Estimates a percentile of the durations that were recorded. The
+         * estimate is the upper bound of the sub-bucket that contains the
+         * percentile (or the longest duration recorded, if that's smaller), and
+         * thus errs on the side of overestimating, by at most 1 part in
+         * <code>SUB_BUCKET_COUNT</code>.
+         *
+         * @param percentile The percentile to estimate, from 0 to 100.
+         * @return The estimated duration, in nanoseconds, or 0 if nothing was
+         * recorded.
+         * @throws IllegalArgumentException If <code>percentile</code> is out
+         * of range
+         */
+        public long percentileNanos(double percentile)
+                throws IllegalArgumentException {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException(
+                        "percentile " + percentile + " is out of range");
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(subBucketUpperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        /**
+         * Estimates the median of the durations that were recorded.
+         *
+         * @return The estimated duration, in nanoseconds.
+         * @see #percentileNanos(double)
+         */
+        public long getP50Nanos() {
+            return percentileNanos(50);
+        }
+
+        /**
+         * Estimates the 90th percentile of the durations that were recorded.
+         *
+         * @return The estimated duration, in nanoseconds.
+         * @see #percentileNanos(double)
+         */
+        public long getP90Nanos() {
+            return percentileNanos(90);
+        }
+
+        /**
+         * Estimates the 99th percentile of the durations that were recorded.
+         *
+         * @return The estimated duration, in nanoseconds.
+         * @see #percentileNanos(double)
+         */
+        public long getP99Nanos() {
+            return percentileNanos(99);
+        }
+
+        /**
+         * Estimates the 99.9th percentile of the durations that were
+         * recorded.
+         *
+         * @return The estimated duration, in nanoseconds.
+         * @see #percentileNanos(double)
+         */
+        public long getP999Nanos() {
+            return percentileNanos(99.9);
+        }
+
+        /**
+         * Produces a human-readable summary of this snapshot.
+         *
+         * @return A string giving the count, mean, some percentiles, and the
+         * maximum.
+         */
+        @Override
+        public String toString() {
+            return count + " samples, mean " + getMeanNanos() + "ns, p50 "
+                    + getP50Nanos() + "ns, p99 " + getP99Nanos() + "ns, max "
+                    + maxNanos + "ns";
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package xyz.acygn.mokapot.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A SocketLike that transfers data through a pair of ring buffers in shared
+ * memory (typically memory-mapped files), one for each direction. This allows
+ * two virtual machines on the same host to communicate without the data going
+ * through the kernel. A separate "control" socket to the same peer is used to
+ * wake the peer when it's waiting for data, and to notice when the peer goes
+ * away; no data goes via the control socket.
+ * <p>
+ * Each ring buffer has exactly one writer and one reader, and starts with a
+ * header of <code>HEADER_SIZE</code> bytes (which must initially be zero),
+ * followed by the data area, whose size must be a power of 2. The header
+ * contains the total number of bytes written and read so far, a flag that the
+ * reader sets when it's about to sleep, and a flag that either end sets when
+ * it closes the socket.
+ * <p>
+ * Waiting works along the same lines as a futex. A reader that finds no data
+ * spins, then yields, and then sets its "waiting" flag and blocks reading the
+ * control socket. A writer checks the flag only after publishing its data, and
+ * writes a byte to the control socket only if the flag was set (clearing it
+ * in the process), so no system calls are made while the reader is keeping up.
+ * A writer that finds the ring buffer full spins, and then sleeps for
+ * increasing lengths of time until there's room.
+ * <p>
+ * The header is accessed using <code>DirectMemoryAccess</code>, because
+ * Java 8 has no public way to order reads and writes of memory shared with
+ * another process. If it isn't available, <code>isSupported()</code> returns false
+ * and the constructor throws an exception.
+ */
+public class SharedMemorySocketLike implements SocketLike {
+
+    /**
+     * The number of bytes at the start of each ring buffer that are used for
+     * its header, rather than for data. Each field of the header is on its own
+     * cache line, so that the two ends of the ring buffer don't contend.
+     */
+    public static final int HEADER_SIZE = 256;
+
+    /**
+     * The offset, within the header, of the number of bytes written so far.
+     */
+    private static final int WRITE_POSITION = 0;
+
+    /**
+     * The offset, within the header, of the number of bytes read so far.
+     */
+    private static final int READ_POSITION = 64;
+
+    /**
+     * The offset, within the header, of the flag that the reader sets when
+     * it's about to block on the control socket.
+     */
+    private static final int READER_WAITING = 128;
+
+    /**
+     * The offset, within the header, of the flag that's set when either end
+     * closes the socket.
+     */
+    private static final int CLOSED = 192;
+
+    /**
+     * The number of times to check for progress before yielding. On a single
+     * processor, the other end can't make progress while we spin, so we
+     * don't.
+     */
+    private static final int SPIN_TRIES
+            = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+
+    /**
+     * The number of times to yield (and check for progress) before blocking.
+     */
+    private static final int YIELD_TRIES = 20;
+
+    /**
+     * The longest time for which a writer waiting for room in a full ring
+     * buffer sleeps before checking again, in nanoseconds.
+     */
+    private static final long MAX_PARK_NANOS = 1000000;
+
+    /**
+     * Returns whether shared-memory sockets can be used on this virtual
+     * machine.
+     *
+     * @return <code>true</code> if the constructor can be used.
+     */
+    public static boolean isSupported() {
+        return DirectMemoryAccess.isAvailable();
+    }
+
+    /**
+     * The socket used to wake the other end of the connection.
+     */
+    private final SocketLike control;
+
+    /**
+     * The ring buffer that the other end writes and we read.
+     */
+    private final Ring inbound;
+
+    /**
+     * The ring buffer that we write and the other end reads.
+     */
+    private final Ring outbound;
+
+    /**
+     * The stream that reads from <code>inbound</code>.
+     */
+    private final InputStream inputStream = new RingInputStream();
+
+    /**
+     * The stream that writes to <code>outbound</code>.
+     */
+    private final OutputStream outputStream = new RingOutputStream();
+
+    /**
+     * Whether this end of the socket has been closed.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Whether the control socket has reached end of file, meaning that the
+     * other end has closed the socket or gone away.
+     */
+    private volatile boolean peerGone = false;
+
+    /**
+     * Creates a socket-like from a pair of ring buffers and a control socket.
+     * The other end of the connection must use the same ring buffers, the
+     * other way round, and the other end of the same control socket.
+     *
+     * @param control A socket connected to the other end of the connection.
+     * It will be closed when this socket-like is closed.
+     * @param inbound The memory for the ring buffer that this end reads.
+     * @param outbound The memory for the ring buffer that this end writes.
+     * @throws IOException If the control socket's streams could not be
+     * obtained
+     * @throws IllegalArgumentException If a ring buffer isn't a direct buffer,
+     * or its data area isn't a power of 2 in size
+     * @throws UnsupportedOperationException If shared-memory sockets aren't
+     * supported on this virtual machine
+     */
+    public SharedMemorySocketLike(SocketLike control, ByteBuffer inbound,
+            ByteBuffer outbound) throws IOException, IllegalArgumentException,
+            UnsupportedOperationException {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException(
+                    "shared memory is not accessible on this VM");
+        }
+        checkRingMemory(inbound);
+        checkRingMemory(outbound);
+        this.control = control;
+        this.inbound = new Ring(inbound, control.getInputStream(), null);
+        this.outbound = new Ring(outbound, null, control.getOutputStream());
+    }
+
+    /**
+     * Checks that memory is usable as a ring buffer.
+     *
+     * @param memory The ring buffer's memory, including its header.
+     * @return The size of the ring buffer's data area.
+     * @throws IllegalArgumentException If <code>memory</code> isn't a direct
+     * buffer, or its data area isn't a power of 2 in size
+     */
+    private static int checkRingMemory(ByteBuffer memory)
+            throws IllegalArgumentException {
+        int capacity = memory.capacity() - HEADER_SIZE;
+        if (!memory.isDirect() || capacity <= 0
+                || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                    "invalid ring buffer memory: " + memory);
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the socket that's used to wake the other end of the connection.
+     *
+     * @return The control socket.
+     */
+    public SocketLike getControlSocket() {
+        return control;
+    }
+
+    /**
+     * Returns a description of the other end of the control socket.
+     *
+     * @return The control socket's address description.
+     */
+    @Override
+    public Object getAddressDescription() {
+        return control.getAddressDescription();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Closes the socket. Data already written by the other end can still be
+     * read by it, but any further writes by either end will fail.
+     *
+     * @throws IOException If something went wrong closing the control socket
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inbound.putInt(CLOSED, 1);
+        outbound.putInt(CLOSED, 1);
+        control.close();
+    }
+
+    /**
+     * One direction of a shared-memory socket. Contains the positions that this
+     * end has reached, as well as the memory itself.
+     */
+    private static class Ring {
+
+        /**
+         * The memory containing the ring buffer, with its position at the
+         * start of the data area. Only used for copying data.
+         */
+        private final ByteBuffer data;
+
+        /**
+         * The address of the ring buffer's header.
+         */
+        private final long address;
+
+        /**
+         * The size of the data area minus 1, for wrapping positions.
+         */
+        private final int mask;
+
+        /**
+         * The position up to which this end has read or written.
+         */
+        private long position;
+
+        /**
+         * The stream via which the reader is woken, if this end reads.
+         */
+        private final InputStream wakeupIn;
+
+        /**
+         * The stream via which the reader is woken, if this end writes.
+         */
+        private final OutputStream wakeupOut;
+
+        /**
+         * Wraps the memory of a ring buffer.
+         *
+         * @param memory The ring buffer's memory, including its header.
+         * @param wakeupIn The stream to wait on for wakeups, or
+         * <code>null</code>.
+         * @param wakeupOut The stream to send wakeups to, or
+         * <code>null</code>.
+         * @throws IllegalArgumentException If <code>memory</code> isn't a
+         * direct buffer, or its data area isn't a power of 2 in size
+         */
+        Ring(ByteBuffer memory, InputStream wakeupIn, OutputStream wakeupOut)
+                throws IllegalArgumentException {
+            int capacity = checkRingMemory(memory);
+            ByteBuffer d = memory.duplicate();
+            d.position(HEADER_SIZE);
+            this.data = d.slice();
+            this.address = DirectMemoryAccess.address(memory);
+            this.mask = capacity - 1;
+            this.wakeupIn = wakeupIn;
+            this.wakeupOut = wakeupOut;
+            this.position = getLong(wakeupIn != null
+                    ? READ_POSITION : WRITE_POSITION);
+        }
+
+        /**
+         * Reads a position from the header, with acquire semantics.
+         *
+         * @param field The offset of the position within the header.
+         * @return The position.
+         */
+        long getLong(int field) {
+            return DirectMemoryAccess.getLongVolatile(address + field);
+        }
+
+        /**
+         * Writes a position to the header, with release semantics (so that
+         * data copied before the write is visible to the other end once the
+         * new position is).
+         *
+         * @param field The offset of the position within the header.
+         * @param value The new position.
+         */
+        void putLong(int field, long value) {
+            DirectMemoryAccess.putOrderedLong(address + field, value);
+        }
+
+        /**
+         * Reads a flag from the header, as a volatile read.
+         *
+         * @param field The offset of the flag within the header.
+         * @return The value of the flag.
+         */
+        int getInt(int field) {
+            return DirectMemoryAccess.getIntVolatile(address + field);
+        }
+
+        /**
+         * Writes a flag to the header, as a volatile write.
+         *
+         * @param field The offset of the flag within the header.
+         * @param value The new value of the flag.
+         */
+        void putInt(int field, int value) {
+            DirectMemoryAccess.putIntVolatile(address + field, value);
+        }
+
+        /**
+         * Atomically changes a flag in the header, if it has an expected
+         * value.
+         *
+         * @param field The offset of the flag within the header.
+         * @param expected The value that the flag must have.
+         * @param value The new value of the flag.
+         * @return <code>true</code> if the flag was changed.
+         */
+        boolean casInt(int field, int expected, int value) {
+            return DirectMemoryAccess.compareAndSwapInt(
+                    address + field, expected, value);
+        }
+
+        /**
+         * Copies data between the data area and an array. The data is
+         * taken from, or placed at, the current position (which is not
+         * changed); it may wrap around the end of the data area.
+         *
+         * @param array The array.
+         * @param offset The index of the first byte in the array.
+         * @param length The number of bytes to copy.
+         * @param in <code>true</code> to copy into the ring buffer,
+         * <code>false</code> to copy out of it.
+         */
+        void copy(byte[] array, int offset, int length, boolean in) {
+            int start = (int) position & mask;
+            int first = Math.min(length, mask + 1 - start);
+            ByteBuffer d = data.duplicate();
+            d.position(start);
+            if (in) {
+                d.put(array, offset, first);
+            } else {
+                d.get(array, offset, first);
+            }
+            if (first < length) {
+                d.position(0);
+                if (in) {
+                    d.put(array, offset + first, length - first);
+                } else {
+                    d.get(array, offset + first, length - first);
+                }
+            }
+        }
+    }
+
+    /**
+     * The input stream of a shared-memory socket.
+     */
+    private class RingInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] array, int offset, int length)
+                throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            long available;
+            while ((available = inbound.getLong(WRITE_POSITION)
+                    - inbound.position) == 0) {
+                if (!awaitData()) {
+                    return -1;
+                }
+            }
+            int n = (int) Math.min(length, available);
+            inbound.copy(array, offset, n, false);
+            inbound.position += n;
+            inbound.putLong(READ_POSITION, inbound.position);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE,
+                    inbound.getLong(WRITE_POSITION) - inbound.position);
+        }
+
+        /**
+         * Waits until there might be more data in the inbound ring buffer.
+         *
+         * @return <code>false</code> if there is no data and never will be,
+         * because the socket is closed.
+         * @throws IOException If the control socket broke
+         */
+        private boolean awaitData() throws IOException {
+            for (int i = 0; i < SPIN_TRIES + YIELD_TRIES; i++) {
+                if (inbound.getLong(WRITE_POSITION) != inbound.position) {
+                    return true;
+                }
+                if (i >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+            if (closed || peerGone || inbound.getInt(CLOSED) != 0) {
+                return inbound.getLong(WRITE_POSITION) != inbound.position;
+            }
+
+            /* This is a volatile write, so the recheck below can't be
+               reordered before it; likewise, the writer fences between
+               publishing data and checking the flag. So either we'll see the
+               data, or the writer will see the flag. */
+            inbound.putInt(READER_WAITING, 1);
+            if (inbound.getLong(WRITE_POSITION) != inbound.position
+                    && inbound.casInt(READER_WAITING, 1, 0)) {
+                return true;
+            }
+            /* Otherwise, the writer cleared the flag, and has sent (or is
+               about to send) a wakeup, which we must consume. */
+            int wakeup;
+            try {
+                wakeup = inbound.wakeupIn.read();
+            } catch (IOException ex) {
+                if (closed) {
+                    return false;
+                }
+                throw ex;
+            }
+            if (wakeup == -1) {
+                peerGone = true;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The output stream of a shared-memory socket. This is unbuffered: each
+     * write is copied straight into the outbound ring buffer.
+     */
+    private class RingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] array, int offset, int length)
+                throws IOException {
+            checkOpen();
+            while (length > 0) {
+                long free = outbound.mask + 1
+                        - (outbound.position - outbound.getLong(READ_POSITION));
+                if (free == 0) {
+                    awaitSpace();
+                    continue;
+                }
+                int n = (int) Math.min(length, free);
+                outbound.copy(array, offset, n, true);
+                outbound.position += n;
+                outbound.putLong(WRITE_POSITION, outbound.position);
+                offset += n;
+                length -= n;
+                wakeReader();
+            }
+        }
+
+        /**
+         * Wakes the reader at the other end, if it's waiting for data.
+         *
+         * @throws IOException If the wakeup could not be sent
+         */
+        private void wakeReader() throws IOException {
+            DirectMemoryAccess.fullFence();
+            if (outbound.getInt(READER_WAITING) != 0
+                    && outbound.casInt(READER_WAITING, 1, 0)) {
+                outbound.wakeupOut.write(1);
+                outbound.wakeupOut.flush();
+            }
+        }
+
+        /**
+         * Waits until the reader has made some room in the outbound ring
+         * buffer.
+         *
+         * @throws IOException If the socket is closed while waiting
+         */
+        private void awaitSpace() throws IOException {
+            long readPosition = outbound.getLong(READ_POSITION);
+            long parkNanos = 1000;
+            for (int i = 0;
+                    outbound.getLong(READ_POSITION) == readPosition; i++) {
+                checkOpen();
+                if (i >= SPIN_TRIES) {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                }
+            }
+        }
+
+        /**
+         * Checks that the socket is still open. Written data is already
+         * visible to the reader, so there's nothing else to flush.
+         *
+         * @throws IOException If the socket is closed
+         */
+        @Override
+        public void flush() throws IOException {
+            checkOpen();
+        }
+
+        /**
+         * Checks that neither end of the socket has been closed.
+         *
+         * @throws IOException If the socket is closed
+         */
+        private void checkOpen() throws IOException {
+            if (closed || peerGone || outbound.getInt(CLOSED) != 0) {
+                throw new IOException("shared-memory socket is closed");
+            }
+        }
+    }
+}
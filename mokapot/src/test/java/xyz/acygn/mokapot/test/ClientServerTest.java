@@ -13,6 +13,8 @@ import java.security.KeyStoreException;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +27,7 @@ import xyz.acygn.mokapot.DistributedCommunicator;
 import xyz.acygn.mokapot.EndpointKeystore;
 import xyz.acygn.mokapot.IsolatedEndpoint;
 import xyz.acygn.mokapot.SecureTCPCommunicationEndpoint;
+import xyz.acygn.mokapot.SharedMemoryCommunicationEndpoint;
 import xyz.acygn.mokapot.util.Lazy;
 import xyz.acygn.mokapot.util.Pair;
 import xyz.acygn.mokapot.util.Stopwatch;
@@ -55,6 +58,12 @@ public class ClientServerTest extends ParallelTests {
      */
     private static boolean localServer = false;
 
+    /**
+     * Whether a separate server and the client should communicate via shared
+     * memory, rather than via TLS.
+     */
+    private static boolean sharedMemory = false;
+
     /**
      * The keystores to use when using a separate server. Global, because
      * keystore generation is slow; and lazy, because we don't always need it.
@@ -99,6 +108,17 @@ public class ClientServerTest extends ParallelTests {
         ClientServerTest.localServer = localServer;
     }
 
+    /**
+     * Set whether the client and a separate server should communicate via
+     * shared memory, using a <code>SharedMemoryCommunicationEndpoint</code>
+     * at each end. Has no effect if a local server is in use.
+     *
+     * @param sharedMemory Whether to use shared memory.
+     */
+    static void setSharedMemory(boolean sharedMemory) {
+        ClientServerTest.sharedMemory = sharedMemory;
+    }
+
     /**
      * Return whether a secondary communicator is in use (as opposed to a
      * separate Java executable).
@@ -260,7 +280,9 @@ public class ClientServerTest extends ParallelTests {
             System.out.println("# client: Constructing commmunicator");
             final CommunicationEndpoint endpoint
                     = keystore == null ? new IsolatedEndpoint()
-                            : new SecureTCPCommunicationEndpoint(keystore);
+                            : sharedMemory
+                                    ? new SharedMemoryCommunicationEndpoint(keystore)
+                                    : new SecureTCPCommunicationEndpoint(keystore);
             final DistributedCommunicator communicator
                     = new DistributedCommunicator(endpoint, !disableTimeouts);
             final CommunicationAddress clientAddress
@@ -521,7 +543,7 @@ public class ClientServerTest extends ParallelTests {
         protected void testImplementation()
                 throws IOException, InterruptedException {
             // TODO: This isn't safe against spaces in filenames.
-            Process server = new ProcessBuilder("java",
+            List<String> command = new ArrayList<>(Arrays.asList("java",
                     "-classpath", System.getProperty("java.class.path"),
                     "-Djava.security.policy=mokapot/src/main/resources/localhost-only.policy",
                     "-Djava.security.manager",
@@ -530,7 +552,11 @@ public class ClientServerTest extends ParallelTests {
                     "-Xrunjdwp:transport=dt_socket,server=y,address=15234,suspend=n",
                     "xyz.acygn.mokapot.DistributedServer",
                     keystore.getFirst().toString(),
-                    "-w", "127.0.0.1", "15239").redirectError(
+                    "-w", "127.0.0.1", "15239"));
+            if (sharedMemory) {
+                command.add("-m");
+            }
+            Process server = new ProcessBuilder(command).redirectError(
                     ProcessBuilder.Redirect.INHERIT).start();
             try (OutputStream serverInput = server.getOutputStream()) {
                 for (char c : keystore.getSecond()) {
@@ -0,0 +1,295 @@
+package xyz.acygn.mokapot.test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * A TLS session that was never actually negotiated, for testing code that
+ * inspects cached sessions. Only the peer's host, port, certificate, the
+ * session's timestamps and its validity are meaningful; everything else
+ * returns a placeholder value.
+ */
+class FakeSSLSession implements SSLSession {
+
+    /**
+     * A self-signed certificate with serial number 1001.
+     */
+    private static final String CERTIFICATE_1001
+            = "-----BEGIN CERTIFICATE-----\n"
+            + "MIIBbDCCARGgAwIBAgICA+kwCgYIKoZIzj0EAwIwEzERMA8GA1UEAwwIdGVzdDEw\n"
+            + "MDEwIBcNMjYxMDE5MTcyOTU2WhgPMjEyNjA5MjUxNzI5NTZaMBMxETAPBgNVBAMM\n"
+            + "CHRlc3QxMDAxMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEw7abgEH7BdMdTl8m\n"
+            + "0q1NwFmfDQGtDvZJtsW1vHhANABkAMvqgWlvvoFVWLZifpNXvFhZH30TAid7KMnH\n"
+            + "I1GJ86NTMFEwHQYDVR0OBBYEFGkAI3pK5yxcyhTP2NlRIB9naEJgMB8GA1UdIwQY\n"
+            + "MBaAFGkAI3pK5yxcyhTP2NlRIB9naEJgMA8GA1UdEwEB/wQFMAMBAf8wCgYIKoZI\n"
+            + "zj0EAwIDSQAwRgIhANxaBS9ODu2OVqjpZQ4cH7b9bY2WySoxwgkAsN08j+R+AiEA\n"
+            + "zyF6fAdvX7jRi05ffNWoG0qWLMvjp+ny/Ubk4xLFJho=\n"
+            + "-----END CERTIFICATE-----\n";
+
+    /**
+     * A self-signed certificate with serial number 1002, and a different key
+     * from <code>CERTIFICATE_1001</code>.
+     */
+    private static final String CERTIFICATE_1002
+            = "-----BEGIN CERTIFICATE-----\n"
+            + "MIIBajCCARGgAwIBAgICA+owCgYIKoZIzj0EAwIwEzERMA8GA1UEAwwIdGVzdDEw\n"
+            + "MDIwIBcNMjYxMDE5MTcyOTU2WhgPMjEyNjA5MjUxNzI5NTZaMBMxETAPBgNVBAMM\n"
+            + "CHRlc3QxMDAyMFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEfLjRGBcXKL0UQIRW\n"
+            + "QL6X8GViQ8xrP9IPClNj05NSCs+7W5gd9djWbRs2pbKQ48ZjE4w2lSTBLXV6PNpy\n"
+            + "pPrMmqNTMFEwHQYDVR0OBBYEFIyvu1HJ23cRSWhIVipY70ZHp4pGMB8GA1UdIwQY\n"
+            + "MBaAFIyvu1HJ23cRSWhIVipY70ZHp4pGMA8GA1UdEwEB/wQFMAMBAf8wCgYIKoZI\n"
+            + "zj0EAwIDRwAwRAIgSMyaTI4JEWExv2Vj1JUp4DJz3QfQiS0dlELD4UtAwMICIFBi\n"
+            + "J9wB+H3lP7JNGTzAzHWMF++LFgmmaxKCwLmyB6Zi\n"
+            + "-----END CERTIFICATE-----\n";
+
+    /**
+     * The session ID.
+     */
+    private final byte[] id;
+
+    /**
+     * The host name or IP address of the peer.
+     */
+    private final String peerHost;
+
+    /**
+     * The port of the peer.
+     */
+    private final int peerPort;
+
+    /**
+     * The certificate chain presented by the peer.
+     */
+    private final Certificate[] peerCertificates;
+
+    /**
+     * The time at which the session was created, in milliseconds since the
+     * epoch.
+     */
+    private final long creationTime;
+
+    /**
+     * The time at which the session was last used, in milliseconds since the
+     * epoch.
+     */
+    private final long lastAccessedTime;
+
+    /**
+     * Whether the session can still be resumed.
+     */
+    private boolean valid = true;
+
+    /**
+     * Creates a fake session.
+     *
+     * @param id The session ID. Must be distinct from the IDs of other
+     * sessions in the same context.
+     * @param peerHost The host name or IP address of the peer.
+     * @param peerPort The port of the peer.
+     * @param serial The serial number of the peer's certificate; must be 1001
+     * or 1002.
+     * @param creationTime The time at which the session was created.
+     * @param lastAccessedTime The time at which the session was last used.
+     */
+    FakeSSLSession(int id, String peerHost, int peerPort, int serial,
+            long creationTime, long lastAccessedTime) {
+        this.id = new byte[]{(byte) id};
+        this.peerHost = peerHost;
+        this.peerPort = peerPort;
+        this.peerCertificates = new Certificate[]{certificate(serial)};
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+    }
+
+    /**
+     * Returns one of the test certificates.
+     *
+     * @param serial The serial number of the certificate; 1001 or 1002.
+     * @return The certificate.
+     */
+    private static Certificate certificate(int serial) {
+        String pem = serial == 1001 ? CERTIFICATE_1001 : CERTIFICATE_1002;
+        try {
+            return CertificateFactory.getInstance("X.509").generateCertificate(
+                    new ByteArrayInputStream(
+                            pem.getBytes(StandardCharsets.US_ASCII)));
+        } catch (CertificateException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public byte[] getId() {
+        return id.clone();
+    }
+
+    @Override
+    public SSLSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    @Override
+    public void invalidate() {
+        valid = false;
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public void putValue(String name, Object value) {
+    }
+
+    @Override
+    public Object getValue(String name) {
+        return null;
+    }
+
+    @Override
+    public void removeValue(String name) {
+    }
+
+    @Override
+    public String[] getValueNames() {
+        return new String[0];
+    }
+
+    @Override
+    public Certificate[] getPeerCertificates()
+            throws SSLPeerUnverifiedException {
+        return peerCertificates.clone();
+    }
+
+    @Override
+    public Certificate[] getLocalCertificates() {
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public javax.security.cert.X509Certificate[] getPeerCertificateChain()
+            throws SSLPeerUnverifiedException {
+        throw new SSLPeerUnverifiedException("not supported by fake sessions");
+    }
+
+    @Override
+    public Principal getPeerPrincipal() throws SSLPeerUnverifiedException {
+        throw new SSLPeerUnverifiedException("not supported by fake sessions");
+    }
+
+    @Override
+    public Principal getLocalPrincipal() {
+        return null;
+    }
+
+    @Override
+    public String getCipherSuite() {
+        return "SSL_NULL_WITH_NULL_NULL";
+    }
+
+    @Override
+    public String getProtocol() {
+        return "NONE";
+    }
+
+    @Override
+    public String getPeerHost() {
+        return peerHost;
+    }
+
+    @Override
+    public int getPeerPort() {
+        return peerPort;
+    }
+
+    @Override
+    public int getPacketBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public int getApplicationBufferSize() {
+        return 0;
+    }
+
+    /**
+     * A session cache containing fake sessions, which lists them in a given
+     * order.
+     */
+    static class Context implements SSLSessionContext {
+
+        /**
+         * The sessions in the cache, in the order they're listed.
+         */
+        private final List<FakeSSLSession> sessions;
+
+        /**
+         * Creates a session cache containing the given sessions.
+         *
+         * @param sessions The sessions, in the order in which
+         * <code>getIds()</code> should list them.
+         */
+        Context(FakeSSLSession... sessions) {
+            this.sessions = new ArrayList<>(Arrays.asList(sessions));
+        }
+
+        @Override
+        public SSLSession getSession(byte[] sessionId) {
+            for (FakeSSLSession session : sessions) {
+                if (Arrays.equals(session.id, sessionId)) {
+                    return session;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Enumeration<byte[]> getIds() {
+            List<byte[]> ids = new ArrayList<>();
+            sessions.forEach((session) -> ids.add(session.getId()));
+            return Collections.enumeration(ids);
+        }
+
+        @Override
+        public void setSessionTimeout(int seconds) {
+        }
+
+        @Override
+        public int getSessionTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setSessionCacheSize(int size) {
+        }
+
+        @Override
+        public int getSessionCacheSize() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package xyz.acygn.mokapot.test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Java Flight Recorder recording of some of Mokapot's events, for testing
+ * them. Mokapot can be built on JDKs that don't have JFR, so the testsuite
+ * mustn't depend on it either; this class accesses JFR reflectively.
+ */
+class FlightRecording {
+
+    /**
+     * The <code>jdk.jfr.Recording</code> that's recording the events.
+     */
+    private final Object recording;
+
+    /**
+     * Returns whether this JVM has Java Flight Recorder.
+     *
+     * @return <code>true</code> if JFR is available.
+     */
+    static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Recording");
+            Class.forName("jdk.jfr.consumer.RecordingFile");
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts recording a given set of events.
+     *
+     * @param eventNames The names of the events to record, e.g.
+     * <code>"xyz.acygn.mokapot.MessageSent"</code>.
+     * @throws ReflectiveOperationException If JFR is unavailable, or the
+     * recording could not be started
+     */
+    FlightRecording(String... eventNames) throws ReflectiveOperationException {
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        recording = recordingClass.newInstance();
+        for (String eventName : eventNames) {
+            unwrap(recordingClass.getMethod("enable", String.class),
+                    recording, eventName);
+        }
+        unwrap(recordingClass.getMethod("start"), recording);
+    }
+
+    /**
+     * Stops the recording, and reads back the events it recorded.
+     *
+     * @return The events, in the order they were read. Each event is a map
+     * from the names of its fields to their values, with the name of the
+     * event under the key <code>"eventType"</code>. Values that are not
+     * strings or boxed primitives are given as strings.
+     * @throws Exception If the recording could not be stopped or read
+     */
+    List<Map<String, Object>> stop() throws Exception {
+        Class<?> recordingClass = recording.getClass();
+        Path file = Files.createTempFile("mokapot-test", ".jfr");
+        try {
+            unwrap(recordingClass.getMethod("stop"), recording);
+            unwrap(recordingClass.getMethod("dump", Path.class),
+                    recording, file);
+
+            List<?> recorded = (List<?>) unwrap(
+                    Class.forName("jdk.jfr.consumer.RecordingFile")
+                    .getMethod("readAllEvents", Path.class), null, file);
+            List<Map<String, Object>> events = new ArrayList<>();
+            for (Object event : recorded) {
+                events.add(fieldsOf(event));
+            }
+            return events;
+        } finally {
+            unwrap(recordingClass.getMethod("close"), recording);
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Converts a recorded event into a map of its fields.
+     *
+     * @param event The <code>jdk.jfr.consumer.RecordedEvent</code>.
+     * @return The event's fields and type, as described for
+     * <code>stop()</code>.
+     * @throws ReflectiveOperationException If the event could not be inspected
+     */
+    private static Map<String, Object> fieldsOf(Object event)
+            throws ReflectiveOperationException {
+        Class<?> recordedObject
+                = Class.forName("jdk.jfr.consumer.RecordedObject");
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        Method getName = valueDescriptor.getMethod("getName");
+        Method getValue = recordedObject.getMethod("getValue", String.class);
+
+        Map<String, Object> fields = new HashMap<>();
+        for (Object field : (List<?>) unwrap(
+                recordedObject.getMethod("getFields"), event)) {
+            String name = (String) unwrap(getName, field);
+            Object value = unwrap(getValue, event, name);
+            if (value != null && !(value instanceof String)
+                    && !(value instanceof Number)
+                    && !(value instanceof Boolean)) {
+                value = value.toString();
+            }
+            fields.put(name, value);
+        }
+        Object eventType = unwrap(Class.forName("jdk.jfr.consumer.RecordedEvent")
+                .getMethod("getEventType"), event);
+        fields.put("eventType", unwrap(Class.forName("jdk.jfr.EventType")
+                .getMethod("getName"), eventType));
+        return fields;
+    }
+
+    /**
+     * Calls a method reflectively, rethrowing any unchecked exception that it
+     * throws.
+     *
+     * @param method The method to call.
+     * @param target The object to call it on; <code>null</code> for a static
+     * method.
+     * @param args The arguments to the method.
+     * @return The method's return value.
+     * @throws ReflectiveOperationException If the method could not be called,
+     * or threw a checked exception
+     */
+    private static Object unwrap(Method method, Object target, Object... args)
+            throws ReflectiveOperationException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * A class loader that loads classes from given locations as though Java
+     * Flight Recorder didn't exist. Classes that aren't in those locations are
+     * loaded from the bootstrap class loader (i.e. not from the class path),
+     * except for the classes of JFR, which can't be loaded at all.
+     */
+    static class WithoutJfr extends URLClassLoader {
+
+        /**
+         * Creates a class loader that can't see JFR.
+         *
+         * @param urls The locations to load classes from.
+         */
+        WithoutJfr(URL... urls) {
+            super(urls, null);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            if (name.startsWith("jdk.jfr.")) {
+                throw new ClassNotFoundException(name);
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
@@ -7,29 +7,54 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import static java.lang.Thread.sleep;
+import java.lang.management.ManagementFactory;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyManagementException;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import java.util.function.Function;
 import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.management.ObjectName;
 import xyz.acygn.millr.generation.StandinGenerator;
 import xyz.acygn.mokapot.CommunicationAddress;
 import xyz.acygn.mokapot.CommunicationEndpoint;
+import xyz.acygn.mokapot.CommunicatorMetrics;
 import xyz.acygn.mokapot.CopiableRunnable;
 import xyz.acygn.mokapot.CopiableSupplier;
 import xyz.acygn.mokapot.DebugMonitor;
@@ -37,13 +62,21 @@ import xyz.acygn.mokapot.DistributedCommunicator;
 import static xyz.acygn.mokapot.DistributedCommunicator.LIFETIME_TIMEOUT;
 import static xyz.acygn.mokapot.DistributedCommunicator.getCommunicator;
 import xyz.acygn.mokapot.IsolatedEndpoint;
+import xyz.acygn.mokapot.LazyCopy;
 import xyz.acygn.mokapot.LengthIndependent;
+import xyz.acygn.mokapot.LoadReport;
 import static xyz.acygn.mokapot.LengthIndependent.getActualClass;
+import xyz.acygn.mokapot.MessageTracer;
 import xyz.acygn.mokapot.MigrationActions;
+import xyz.acygn.mokapot.PlacementPolicy;
+import xyz.acygn.mokapot.ScatterGatherResult;
+import xyz.acygn.mokapot.TestHooks;
 import static xyz.acygn.mokapot.MigrationActions.createMigratably;
 import static xyz.acygn.mokapot.MigrationActions.isStoredRemotely;
 import xyz.acygn.mokapot.markers.Copiable;
 import xyz.acygn.mokapot.markers.NonCopiable;
+import xyz.acygn.mokapot.markers.ReadMostly;
+import xyz.acygn.mokapot.markers.ReadOnly;
 import xyz.acygn.mokapot.skeletons.Standin;
 import xyz.acygn.mokapot.util.BackgroundGarbageCollection;
 import static xyz.acygn.mokapot.util.BackgroundGarbageCollection.Operation.FINALIZE;
@@ -55,6 +88,7 @@ import xyz.acygn.mokapot.util.Pair;
 import xyz.acygn.mokapot.util.ResettableThreadLocal;
 import static xyz.acygn.mokapot.util.ThreadUtils.delayInterruptions;
 import static xyz.acygn.mokapot.util.ThreadUtils.delayInterruptionsRv;
+import xyz.acygn.mokapot.wireformat.ObjectDescription;
 import xyz.acygn.mokapot.wireformat.ObjectWireFormat;
 import xyz.acygn.mokapot.wireformat.ReadableDescription;
 
@@ -103,11 +137,12 @@ public class TestMain {
     /**
      * Runs the distributed communication tests.
      *
-     * @param args Command-line arguments. There are three recognised arguments:
+     * @param args Command-line arguments. There are four recognised arguments:
      * <code>-wfk</code> to wait for a newline before starting testing (making
      * it possible to attach a profiler or similar tool), <code>-dt</code> to
-     * disable timeouts, and <code>-local</code> to perform the entire test on a
-     * single JVM via the use of secondary communicators.
+     * disable timeouts, <code>-local</code> to perform the entire test on a
+     * single JVM via the use of secondary communicators, and <code>-shm</code>
+     * to have the client and server communicate via shared memory.
      * @throws java.io.IOException If there was an error creating a temporary
      * file on disk
      * @throws java.security.KeyManagementException If there was an error
@@ -145,6 +180,8 @@ public class TestMain {
         ClientServerTest.setDisableTimeouts(disableTimeouts);
         ClientServerTest.setLocalServer(
                 Arrays.stream(args).anyMatch((s) -> s.equals("-local")));
+        ClientServerTest.setSharedMemory(
+                Arrays.stream(args).anyMatch((s) -> s.equals("-shm")));
 
         StandinGenerator.setListener((generatedBytecode, name) -> {
             synchronized (System.out) {
@@ -309,6 +346,303 @@ public class TestMain {
             "homogenous array"),
             marshalUnmarshalTest(System.getSecurityManager(),
             "uncopiable object as Object"),
+            /* test the compact descriptions of standard collections */
+            new ClientOnlyTest(11, "compact collection descriptions",
+            (communicator, address, testGroup) -> {
+                List<Integer> numbers = Arrays.asList(5, 3, 8, 1);
+                Map<Integer, String> names = new HashMap<>();
+                numbers.forEach((i) -> names.put(i, "#" + i));
+
+                LinkedHashMap<Integer, String> accessOrdered
+                        = new LinkedHashMap<>(16, 0.75f, true);
+                accessOrdered.putAll(names);
+                accessOrdered.get(3);
+                TreeSet<Integer> reversed
+                        = new TreeSet<>(Collections.reverseOrder());
+                reversed.addAll(numbers);
+
+                List<Object> collections = Arrays.asList(
+                        new ArrayList<>(numbers), new LinkedList<>(numbers),
+                        new ArrayDeque<>(numbers), new HashSet<>(numbers),
+                        new LinkedHashSet<>(numbers), reversed,
+                        new HashMap<>(names), accessOrdered,
+                        new TreeMap<>(names));
+                for (Object c : collections) {
+                    Object copy = communicator.getTestHooks().reproduce(
+                            communicator.getTestHooks().describe(c),
+                            c.getClass());
+                    /* toString shows the iteration order, and also works
+                       for ArrayDeque, which doesn't override equals; the
+                       order of a HashSet or HashMap depends on its capacity,
+                       so those are compared with equals instead */
+                    boolean hashed = c instanceof HashSet
+                            && !(c instanceof LinkedHashSet)
+                            || c instanceof HashMap
+                            && !(c instanceof LinkedHashMap);
+                    testGroup.okEq(copy.getClass() + ": "
+                            + (hashed ? copy.equals(c) : copy),
+                            c.getClass() + ": " + (hashed ? true : c),
+                            c.getClass().getSimpleName()
+                            + " is reproduced from its description");
+                }
+
+                ArrayList<Integer> padded = new ArrayList<>(1000);
+                padded.addAll(numbers);
+                testGroup.okEq(describedLength(communicator, padded),
+                        describedLength(communicator, new ArrayList<>(numbers)),
+                        "ArrayList description doesn't depend on capacity");
+                testGroup.ok(((ObjectDescription) communicator.getTestHooks()
+                        .describe(names)).listAllNoncopiableObjects().isEmpty(),
+                        "HashMap description doesn't refer to its entries");
+            }),
+            /* test that generated field serialisers describe and reproduce
+               objects exactly as reflection does; slow debug operations make
+               descriptions use reflection */
+            new ClientOnlyTest(9, "generated field serialisers match reflection",
+            (communicator, address, testGroup) -> {
+                TestHooks hooks = communicator.getTestHooks();
+                for (Object o : Arrays.asList(new PrimitiveFields(),
+                        new InheritedFields(),
+                        new FinalFields(-5, 1L << 40, "final"))) {
+                    String what = o.getClass().getSimpleName();
+                    String reflective;
+                    hooks.setEnableSlowDebugOperations(true);
+                    try {
+                        reflective = hooks.describe(o).toString();
+                    } finally {
+                        hooks.setEnableSlowDebugOperations(false);
+                    }
+                    String generated = hooks.describe(o).toString();
+
+                    /* The serialiser is injected at runtime, so its class
+                       only exists if generating it worked. */
+                    boolean wasGenerated;
+                    try {
+                        Class.forName(o.getClass().getName()
+                                + "$mokapot_fieldserializer", false,
+                                o.getClass().getClassLoader());
+                        wasGenerated = true;
+                    } catch (ClassNotFoundException ex) {
+                        wasGenerated = false;
+                    }
+                    testGroup.ok(wasGenerated,
+                            what + ": field serialiser was generated");
+                    testGroup.okEq(generated, reflective,
+                            what + ": description matches reflection");
+                    Object copy = hooks.reproduce(
+                            hooks.describe(o), o.getClass());
+                    testGroup.okEq(hooks.describe(copy).toString(), generated,
+                            what + ": reproduction has the same fields");
+                }
+            }),
+            /* test the check that lets lookupAddress use a cached address */
+            new ClientOnlyTest(5, "cached addresses are confirmed by TLS sessions",
+            (communicator, address, testGroup) -> {
+                TestHooks hooks = communicator.getTestHooks();
+                InetAddress host = InetAddress.getLoopbackAddress();
+                String ip = host.getHostAddress();
+                CommunicationAddress oldAddress
+                        = new CommunicationAddress(1001) {
+                };
+                CommunicationAddress newAddress
+                        = new CommunicationAddress(1002) {
+                };
+
+                FakeSSLSession oldSession
+                        = new FakeSSLSession(1, ip, 15239, 1001, 1000, 2000);
+                testGroup.ok(hooks.confirmAddress(
+                        new FakeSSLSession.Context(oldSession),
+                        host, 15239, oldAddress),
+                        "a session with the system confirms its address");
+                testGroup.ok(!hooks.confirmAddress(
+                        new FakeSSLSession.Context(new FakeSSLSession(
+                                2, ip, 15240, 1001, 1000, 2000)),
+                        host, 15239, oldAddress),
+                        "sessions with other systems confirm nothing");
+
+                /* the system restarted with a new key, and there's been a
+                   full handshake with it since */
+                FakeSSLSession newSession
+                        = new FakeSSLSession(3, ip, 15239, 1002, 3000, 4000);
+                boolean newKeyWins = true;
+                for (FakeSSLSession.Context sessions : Arrays.asList(
+                        new FakeSSLSession.Context(oldSession, newSession),
+                        new FakeSSLSession.Context(newSession, oldSession))) {
+                    newKeyWins &= hooks.confirmAddress(
+                            sessions, host, 15239, newAddress)
+                            && !hooks.confirmAddress(
+                                    sessions, host, 15239, oldAddress);
+                }
+                testGroup.ok(newKeyWins,
+                        "the most recent session decides after a key change");
+                testGroup.ok(!hooks.confirmAddress(
+                        new FakeSSLSession.Context(newSession),
+                        host, 15239, oldAddress),
+                        "a session with a different key rejects the address");
+
+                newSession.invalidate();
+                testGroup.ok(!hooks.confirmAddress(
+                        new FakeSSLSession.Context(newSession),
+                        host, 15239, newAddress),
+                        "an expired session confirms nothing");
+            }),
+            /* test the limits on running and queued thread projections */
+            new ClientOnlyTest(7, "thread projections are admitted within limits",
+            (communicator, address, testGroup) -> {
+                TestHooks hooks = communicator.getTestHooks();
+                CommunicationAddress alice = new CommunicationAddress(2001) {
+                };
+                CommunicationAddress bob = new CommunicationAddress(2002) {
+                };
+                CommunicationAddress carol = new CommunicationAddress(2003) {
+                };
+                Semaphore started = new Semaphore(0);
+                Function<CountDownLatch, Runnable> runUntil
+                        = (latch) -> () -> {
+                            started.release();
+                            delayInterruptions(latch::await);
+                        };
+                List<CountDownLatch> latches = new ArrayList<>();
+                for (int i = 0; i < 7; i++) {
+                    latches.add(new CountDownLatch(1));
+                }
+
+                try {
+                    communicator.setThreadProjectionLimits(2, 0);
+                    for (int i = 0; i < 3; i++) {
+                        hooks.admitThreadProjection(
+                                alice, runUntil.apply(latches.get(i)));
+                    }
+                    testGroup.ok(started.tryAcquire(2, 5, SECONDS)
+                            && !started.tryAcquire(200, MILLISECONDS),
+                            "projections run at once up to the limit");
+                    testGroup.okEq(communicator.getMetrics()
+                            .getQueuedThreadProjections(), 1,
+                            "projections beyond the limit are queued");
+                    latches.get(0).countDown();
+                    testGroup.ok(started.tryAcquire(5, SECONDS)
+                            && communicator.getMetrics()
+                                    .getQueuedThreadProjections() == 0,
+                            "a queued projection starts when another ends");
+
+                    /* The per-sender limit holds back only the sender that
+                       reached it. Alice's projections don't count, because
+                       there's no longer a limit in total. */
+                    communicator.setThreadProjectionLimits(0, 1);
+                    hooks.admitThreadProjection(
+                            bob, runUntil.apply(latches.get(3)));
+                    hooks.admitThreadProjection(
+                            bob, runUntil.apply(latches.get(4)));
+                    hooks.admitThreadProjection(
+                            carol, runUntil.apply(latches.get(5)));
+                    boolean perPeer = started.tryAcquire(2, 5, SECONDS)
+                            && !started.tryAcquire(200, MILLISECONDS);
+                    latches.get(5).countDown();
+                    perPeer &= !started.tryAcquire(200, MILLISECONDS);
+                    latches.get(3).countDown();
+                    perPeer &= started.tryAcquire(5, SECONDS);
+                    testGroup.ok(perPeer,
+                            "the per-sender limit applies to each sender");
+
+                    /* Bob has one projection running; fill his queue, then
+                       check that admitting another is throttled until the
+                       running one ends. */
+                    communicator.setQueuedProjectionSoftLimits(0, 1);
+                    hooks.admitThreadProjection(
+                            bob, runUntil.apply(latches.get(6)));
+                    long events = communicator.getMetrics().getThrottleEvents();
+                    long overruns
+                            = communicator.getMetrics().getThrottleOverruns();
+                    CountDownLatch admitted = new CountDownLatch(1);
+                    new Thread(() -> {
+                        hooks.admitThreadProjection(bob, () -> {
+                        });
+                        admitted.countDown();
+                    }).start();
+                    boolean throttled
+                            = !admitted.await(200, MILLISECONDS);
+                    latches.get(4).countDown();
+                    testGroup.ok(throttled && admitted.await(5, SECONDS)
+                            && communicator.getMetrics().getThrottleEvents()
+                            == events + 1
+                            && communicator.getMetrics().getThrottleOverruns()
+                            == overruns,
+                            "a full queue throttles the sender until there's space");
+
+                    /* Bob's queue is full again, and stays full; the limit
+                       is soft, so throttling gives up after a bounded time,
+                       and the overrun is counted. */
+                    long before = System.nanoTime();
+                    hooks.admitThreadProjection(bob, () -> {
+                    });
+                    testGroup.ok(System.nanoTime() - before
+                            < SECONDS.toNanos(5)
+                            && communicator.getMetrics().getThrottleOverruns()
+                            == overruns + 1
+                            && communicator.getMetrics()
+                                    .getQueuedThreadProjections() == 2,
+                            "the queue limit is soft, and overruns are counted");
+
+                    /* The time after which throttling gives up can be
+                       changed; Bob's queue is still full. */
+                    communicator.setQueuedProjectionMaxThrottle(
+                            Duration.ofMillis(300));
+                    before = System.nanoTime();
+                    hooks.admitThreadProjection(bob, () -> {
+                    });
+                    long elapsed = System.nanoTime() - before;
+                    testGroup.ok(elapsed >= MILLISECONDS.toNanos(300)
+                            && elapsed < SECONDS.toNanos(5)
+                            && communicator.getMetrics().getThrottleOverruns()
+                            == overruns + 2,
+                            "the throttling time limit can be changed");
+                } finally {
+                    communicator.setThreadProjectionLimits(0, 0);
+                    communicator.setQueuedProjectionSoftLimits(0, 0);
+                    communicator.setQueuedProjectionMaxThrottle(
+                            Duration.ofSeconds(1));
+                    latches.forEach(CountDownLatch::countDown);
+                }
+            }),
+            new ClientOnlyTest(3, "flight recorder hooks without JFR",
+            (communicator, address, testGroup) -> {
+                /* Load a second copy of Mokapot that can't see JFR, as though
+                   it were running on a JVM that doesn't have it. */
+                URL mokapotJar = Paths.get(System.getProperty("mokapot.jar"))
+                        .toUri().toURL();
+                try (URLClassLoader loader
+                        = new FlightRecording.WithoutJfr(mokapotJar)) {
+                    Class<?> hooksClass = Class.forName(
+                            "xyz.acygn.mokapot.FlightRecorderEvents",
+                            true, loader);
+                    Field eventsField = hooksClass.getDeclaredField("EVENTS");
+                    eventsField.setAccessible(true);
+                    Object events = eventsField.get(null);
+                    testGroup.ok(events.getClass() == hooksClass
+                            && loader.getResource(
+                                    "xyz/acygn/mokapot/JfrEvents.class")
+                            != null,
+                            "the JFR implementation is skipped without JFR");
+
+                    Method beginInvoke
+                            = hooksClass.getDeclaredMethod("beginInvoke");
+                    Method recordingInvoke
+                            = hooksClass.getDeclaredMethod("recordingInvoke");
+                    beginInvoke.setAccessible(true);
+                    recordingInvoke.setAccessible(true);
+                    testGroup.ok(beginInvoke.invoke(events) == null
+                            && !(Boolean) recordingInvoke.invoke(events),
+                            "nothing is recorded without JFR");
+
+                    Method messageSent = hooksClass.getDeclaredMethod(
+                            "messageSent", loader.loadClass(
+                                    CommunicationAddress.class.getName()),
+                            Class.class, int.class);
+                    messageSent.setAccessible(true);
+                    messageSent.invoke(events, null, Object.class, 0);
+                    testGroup.ok(true, "events can be reported without JFR");
+                }
+            }),
             new TestBailOutPoint(() -> !bailAfterUnmarshal),
             /* Client/server tests */
             /* the simplest possible client/server test */
@@ -933,6 +1267,584 @@ public class TestMain {
                         address.getServerAddress());
                 testGroup.okEq(total, 5050,
                         "no race repeatedly managing the same object");
+            }, true),
+            /* test that message traffic shows up in the communicator's
+               metrics, and that the metrics are published via JMX */
+            new ClientServerTest("communicator metrics", 4,
+            (communicator, address, testGroup) -> {
+                CommunicatorMetrics.Snapshot before
+                        = communicator.getMetrics().snapshot();
+                for (int j = 0; j < 10; j++) {
+                    communicator.runRemotely(() -> 1,
+                            address.getServerAddress());
+                }
+                CommunicatorMetrics.Snapshot after
+                        = communicator.getMetrics().snapshot();
+                testGroup.ok(after.getMessagesSent()
+                        >= before.getMessagesSent() + 10
+                        && after.getMessagesReceived()
+                        >= before.getMessagesReceived() + 10,
+                        "remote calls are counted as messages");
+                testGroup.ok(after.getTrafficByPeer().containsKey(
+                        address.getServerAddress().toString()),
+                        "traffic is broken down by peer");
+                testGroup.ok(after.getMarshalTime().getCount()
+                        >= after.getMessagesSent(),
+                        "marshal times are recorded for every message");
+                Object jmxCount = ManagementFactory.getPlatformMBeanServer()
+                        .getAttribute(new ObjectName("xyz.acygn.mokapot:"
+                                + "type=DistributedCommunicator,address="
+                                + ObjectName.quote(
+                                        communicator.getMyAddress().toString())),
+                                "MessagesSent");
+                testGroup.ok(jmxCount instanceof Long
+                        && (Long) jmxCount >= after.getMessagesSent(),
+                        "metrics are published via JMX: " + jmxCount);
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            new ClientServerTest("address lookups are cached", 2,
+            (communicator, address, testGroup) -> {
+                if (ClientServerTest.isLocalServer()) {
+                    /* secondary communicators don't have network addresses
+                       to look up */
+                    testGroup.skipTest("a repeated lookup gives the same address");
+                    testGroup.skipTest("a repeated lookup uses the cache");
+                } else {
+                    CommunicatorMetrics.Snapshot before
+                            = communicator.getMetrics().snapshot();
+                    testGroup.okEq(communicator.lookupAddress(
+                            InetAddress.getLoopbackAddress(), 15239),
+                            address.getServerAddress(),
+                            "a repeated lookup gives the same address");
+                    CommunicatorMetrics.Snapshot after
+                            = communicator.getMetrics().snapshot();
+                    testGroup.ok(after.getAddressLookupCacheHits()
+                            == before.getAddressLookupCacheHits() + 1
+                            && after.getAddressLookupCacheMisses()
+                            == before.getAddressLookupCacheMisses(),
+                            "a repeated lookup uses the cache");
+                }
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            /* test that control messages aren't held up behind a backlog of
+               method calls, when they have a connection of their own */
+            new ClientServerTest("control messages have their own connection", 3,
+            (communicator, address, testGroup) -> {
+                CommunicationAddress server = address.getServerAddress();
+                int calls = 6;
+                communicator.setControlLane(true);
+
+                /* Only one call runs at a time on the server (in addition to
+                   this thread's projection, which lives as long as this
+                   thread does), and only one more can wait in its queue;
+                   beyond that, the server stops reading the connection that
+                   the calls arrive on for up to a second per call, so the
+                   connection is backed up. */
+                long baseline = communicator.runRemotely(() -> {
+                    DistributedCommunicator c = getCommunicator();
+                    c.setThreadProjectionLimits(2, 0);
+                    c.setQueuedProjectionSoftLimits(1, 0);
+                    return garbageCollectionRequestsReceived(c);
+                }, server);
+
+                /* Each call waits for the control message to arrive (or for
+                   ten seconds to pass), then reports how many calls were
+                   queued at the time. Finished calls' projections live until
+                   the client notices that their threads have ended, so the
+                   first call to see the control message lifts the limits to
+                   let the rest run. */
+                CopiableSupplier<Integer> waitForControl = () -> {
+                    DistributedCommunicator c = getCommunicator();
+                    long deadline = System.nanoTime() + SECONDS.toNanos(10);
+                    while (garbageCollectionRequestsReceived(c) == baseline) {
+                        if (System.nanoTime() > deadline) {
+                            return -1;
+                        }
+                        delayInterruptions(() -> sleep(10));
+                    }
+                    int q = c.getMetrics().getQueuedThreadProjections();
+                    c.setThreadProjectionLimits(0, 0);
+                    c.setQueuedProjectionSoftLimits(0, 0);
+                    return q;
+                };
+                BlockingQueue<Integer> results = new LinkedBlockingQueue<>();
+                long sent = communicator.getMetrics().getMessagesSent();
+                for (int i = 0; i < calls; i++) {
+                    new Thread(() -> results.add(communicator.runRemotely(
+                            waitForControl, server))).start();
+                }
+                long deadline = System.nanoTime() + SECONDS.toNanos(10);
+                while (communicator.getMetrics().getMessagesSent()
+                        < sent + calls && System.nanoTime() < deadline) {
+                    sleep(10);
+                }
+                communicator.getTestHooks().requestGarbageCollection(server);
+
+                List<Integer> queued = new ArrayList<>();
+                for (int i = 0; i < calls; i++) {
+                    Integer q = results.poll(30, SECONDS);
+                    if (q == null) {
+                        break;
+                    }
+                    queued.add(q);
+                }
+                testGroup.okEq(queued.size(), calls,
+                        "method calls complete while control messages are sent");
+                /* Had the control message been behind the calls, every call
+                   would have been read (and all but the running one queued)
+                   before it arrived. */
+                testGroup.ok(queued.size() == calls && !queued.contains(-1)
+                        && Collections.max(queued) < calls - 1,
+                        "control messages overtake a backlog of method calls");
+                testGroup.okEq(communicator.runRemotely(() -> 6 * 7, server),
+                        42, "method calls still work after the backlog");
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            /* test that results of read-only methods are cached, and that
+               the cache is invalidated by other methods */
+            new ClientServerTest("read-only results are cached", 3,
+            (communicator, address, testGroup) -> {
+                CachedCounter c = communicator.runRemotely(
+                        () -> new CachedCounter(), address.getServerAddress());
+                long hits = communicator.getMetrics().getResultCacheHits();
+                int first = c.get();
+                int second = c.get();
+                testGroup.ok(first == 0 && second == 0,
+                        "read-only methods return the correct value");
+                testGroup.ok(communicator.getMetrics().getResultCacheHits()
+                        > hits, "repeated read-only calls use the cache");
+                c.increment();
+                testGroup.okEq(c.get(), 1,
+                        "other methods invalidate the cache");
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            /* test that a change made by one system discards the results
+               cached by another */
+            new ClientServerTest("cached results are invalidated everywhere", 2,
+            (communicator, address, testGroup) -> {
+                if (ClientServerTest.isLocalServer()) {
+                    CachedCounter c = communicator.runRemotely(
+                            () -> new CachedCounter(),
+                            address.getServerAddress());
+                    CommunicationAddress third = communicator.getTestHooks()
+                            .createSecondaryCommunicator("third", null);
+                    CopiableSupplier<Pair<Integer, Long>> read
+                            = () -> new Pair<>(c.get(), getCommunicator()
+                                    .getMetrics().getResultCacheHits());
+                    Pair<Integer, Long> first
+                            = communicator.runRemotely(read, third);
+                    Pair<Integer, Long> second
+                            = communicator.runRemotely(read, third);
+                    testGroup.ok(first.getFirst() == 0
+                            && second.getFirst() == 0
+                            && second.getSecond() > first.getSecond(),
+                            "another system caches the results");
+
+                    c.increment();
+                    testGroup.okEq(communicator.runRemotely(
+                            () -> c.get(), third), 1,
+                            "a change discards the results cached elsewhere");
+                    communicator.runRemotely(() -> {
+                        getCommunicator().asyncStopCommunication();
+                    }, third);
+                } else {
+                    /* a third system can only be created with a local
+                       server; see "simple three-communicator case" */
+                    testGroup.skipTest("another system caches the results");
+                    testGroup.skipTest(
+                            "a change discards the results cached elsewhere");
+                }
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            /* test that read-only methods of read-mostly objects run on a
+               local replica, and that changes discard the replica */
+            new ClientServerTest("read-mostly objects are replicated", 3,
+            (communicator, address, testGroup) -> {
+                ReplicatedCounter c = communicator.runRemotely(
+                        () -> new ReplicatedCounter("replicated"),
+                        address.getServerAddress());
+                long fetched = communicator.getMetrics().getReplicasFetched();
+                long reads = communicator.getMetrics().getReplicaReads();
+                String first = c.describe();
+                String second = c.describe();
+                testGroup.ok(first.equals("replicated: 0")
+                        && second.equals("replicated: 0"),
+                        "replicas return the correct value");
+                testGroup.ok(communicator.getMetrics().getReplicasFetched()
+                        == fetched + 1
+                        && communicator.getMetrics().getReplicaReads() > reads,
+                        "repeated reads use the same replica");
+                c.increment();
+                testGroup.okEq(c.describe(), "replicated: 1",
+                        "changes discard the replica before returning");
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            /* test that remote iterators and streams are transferred in
+               chunks when streaming is enabled */
+            /* test when standins call local objects directly, rather than
+               via their location managers' invoke method */
+            new ClientServerTest("direct calls to local objects", 9,
+            (communicator, address, testGroup) -> {
+                CommunicationAddress server = address.getServerAddress();
+
+                /* Preparing to migrate an object makes calls to it go via its
+                   location manager, even while it's still local. */
+                DirectCallProbe direct
+                        = createMigratably(DirectCallProbe::new, false);
+                communicator.getMigrationActionsFor(direct)
+                        .migratePrepare(false);
+                DirectCallProbe replicated
+                        = createMigratably(ReadMostlyDirectCallProbe::new, false);
+                communicator.getMigrationActionsFor(replicated)
+                        .migratePrepare(false);
+                testGroup.ok(!direct.viaInvoke(),
+                        "calls to a local object skip invoke");
+                testGroup.ok(replicated.viaInvoke(),
+                        "calls to a read-mostly object use invoke");
+
+                int[] array = {1, 2, 3};
+                testGroup.ok(direct.combine((byte) -1, (short) 2, 3, 4L,
+                        5.5f, 6.25, 'x', true, "str", array).equals(
+                        replicated.combine((byte) -1, (short) 2, 3, 4L,
+                                5.5f, 6.25, 'x', true, "str", array))
+                        && direct.scale(1.5, 2.0f)
+                        == replicated.scale(1.5, 2.0f)
+                        && Arrays.equals(direct.reversed(array),
+                                replicated.reversed(array))
+                        && direct.checkNotNegative(7)
+                        == replicated.checkNotNegative(7),
+                        "direct calls return the same results as invoke");
+                List<String> failures = new ArrayList<>();
+                for (DirectCallProbe probe : Arrays.asList(direct, replicated)) {
+                    try {
+                        probe.checkNotNegative(-1);
+                        failures.add("no exception");
+                    } catch (IOException ex) {
+                        failures.add(ex.getMessage());
+                    }
+                }
+                testGroup.okEq(failures, Arrays.asList("negative: -1",
+                        "negative: -1"),
+                        "direct calls throw the same exceptions as invoke");
+
+                DirectCallProbe remote = communicator.runRemotely(
+                        DirectCallProbe::new, server);
+                testGroup.okEq(remote.where(), server,
+                        "calls to a remote object run remotely");
+
+                /* Once another system might have cached the results of
+                   read-only methods, calls need to go via invoke, so that
+                   the cached results are invalidated. */
+                DirectCallProbe cached
+                        = createMigratably(DirectCallProbe::new, false);
+                communicator.getMigrationActionsFor(cached)
+                        .migratePrepare(false);
+                boolean before = cached.viaInvoke();
+                int seen = communicator.runRemotely(
+                        () -> cached.get() + cached.get(), server);
+                testGroup.ok(!before && seen == 0 && cached.viaInvoke(),
+                        "calls use invoke once results might be cached remotely");
+                cached.increment();
+                testGroup.okEq(communicator.runRemotely(cached::get, server),
+                        1, "local changes invalidate results cached remotely");
+
+                /* A migration waits for a direct call to finish, and calls
+                   go via invoke once the object has migrated. */
+                DirectCallProbe moving
+                        = createMigratably(DirectCallProbe::new, false);
+                MigrationActions<?> ma
+                        = communicator.getMigrationActionsFor(moving);
+                ma.migratePrepare(false);
+                CountDownLatch entered = new CountDownLatch(1);
+                CountDownLatch release = new CountDownLatch(1);
+                CountDownLatch migrated = new CountDownLatch(1);
+                BlockingQueue<Boolean> viaInvoke = new LinkedBlockingQueue<>();
+                new Thread(() -> viaInvoke.add(
+                        moving.viaInvokeOnceReleased(entered, release)))
+                        .start();
+                entered.await(5, SECONDS);
+                new Thread(() -> {
+                    try {
+                        ma.migrateCommit(server, false);
+                        migrated.countDown();
+                    } catch (MigrationActions.CannotMigrateException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }).start();
+                boolean waited = !migrated.await(200, MILLISECONDS);
+                release.countDown();
+                testGroup.ok(waited && Boolean.FALSE.equals(
+                        viaInvoke.poll(5, SECONDS))
+                        && migrated.await(5, SECONDS),
+                        "a migration waits for a direct call to finish");
+                ma.migrateConclude();
+                testGroup.okEq(moving.where(), server,
+                        "calls use invoke after the object migrates");
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            new ClientServerTest("remote iterators are streamed", 3,
+            (communicator, address, testGroup) -> {
+                List<String> expected = new ArrayList<>();
+                for (int j = 0; j < 50; j++) {
+                    expected.add("word " + j);
+                }
+                WordList w = communicator.runRemotely(
+                        () -> new WordList(50), address.getServerAddress());
+                communicator.setIteratorStreaming(8, 2);
+                try {
+                    long sent = communicator.getMetrics().getMessagesSent();
+                    List<String> iterated = new ArrayList<>();
+                    Iterator<String> it = w.iterator();
+                    while (it.hasNext()) {
+                        iterated.add(it.next());
+                    }
+                    testGroup.okEq(iterated, expected,
+                            "streamed iterators return every element");
+                    testGroup.ok(communicator.getMetrics().getMessagesSent()
+                            - sent < 20, "elements are fetched in chunks");
+                    testGroup.okEq(w.stream().collect(Collectors.toList()),
+                            expected, "streamed streams return every element");
+                } finally {
+                    communicator.setIteratorStreaming(0, 1);
+                }
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            new ClientServerTest("large arguments are unmarshalled lazily", 4,
+            (communicator, address, testGroup) -> {
+                int[] large = new int[100000];
+                Arrays.setAll(large, (j) -> j * 7);
+                LazyCopy<int[]> lazy = LazyCopy.of(large);
+                testGroup.ok(lazy.isReproduced() && lazy.get() == large,
+                        "lazy copies hold the original value locally");
+                testGroup.ok(lazy.getDescriptionLength() > 400000,
+                        "the value is described when the holder is created");
+                testGroup.okEq(communicator.runRemotely(() -> {
+                    boolean before = lazy.isReproduced();
+                    int last = lazy.get()[99999];
+                    return before + " " + last + " " + lazy.isReproduced();
+                }, address.getServerAddress()), "false 699993 true",
+                        "lazy copies are reproduced on first access");
+                boolean rejected = false;
+                try {
+                    LazyCopy.of(new ArrayList<>());
+                } catch (IllegalArgumentException ex) {
+                    rejected = true;
+                }
+                testGroup.ok(rejected,
+                        "lazy copies reject values that aren't deeply copiable");
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            new ClientServerTest("code is placed on a chosen system", 4,
+            (communicator, address, testGroup) -> {
+                CommunicationAddress server = address.getServerAddress();
+                List<CommunicationAddress> both = Arrays.asList(
+                        communicator.getMyAddress(), server);
+                testGroup.okEq(communicator.runSomewhere(
+                        () -> getCommunicator().getMyAddress(),
+                        Collections.singletonList(server)), server,
+                        "code runs on the only candidate");
+
+                List<LoadReport> seen = new ArrayList<>();
+                communicator.setPlacementPolicy((request) -> {
+                    seen.add(request.getLoad(server));
+                    return PlacementPolicy.leastLoaded().choose(request);
+                });
+                communicator.choosePlacement(both);
+                testGroup.ok(seen.size() == 1 && seen.get(0) != null,
+                        "replies carry load reports");
+
+                WordList w = communicator.runRemotely(
+                        () -> new WordList(5), server);
+                communicator.setPlacementPolicy(PlacementPolicy.affinity(
+                        (request) -> communicator.getMyAddress()));
+                testGroup.okEq(communicator.choosePlacement(both, w), server,
+                        "affinity places code near the objects it uses");
+                testGroup.okEq(communicator.choosePlacement(both, "copiable"),
+                        communicator.getMyAddress(),
+                        "copiable objects don't affect placement");
+                communicator.setPlacementPolicy(
+                        PlacementPolicy.powerOfTwoChoices());
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            new ClientServerTest("scatter-gather across peers", 7,
+            (communicator, address, testGroup) -> {
+                CommunicationAddress server = address.getServerAddress();
+                List<CommunicationAddress> both = Arrays.asList(
+                        server, communicator.getMyAddress());
+                List<CopiableSupplier<Integer>> squares = Arrays.asList(
+                        () -> 0, () -> 1, () -> 4, () -> 9, () -> 16, () -> 25);
+                ScatterGatherResult<Integer> result = communicator
+                        .scatterGather(squares, both, 0, Integer::sum);
+                testGroup.okEq(result.getValue(), 55,
+                        "the results of every partition are combined");
+                testGroup.ok(result.getLatencies().containsKey(server)
+                        && result.getLatencies().get(server).getCount() == 3,
+                        "latencies are reported for each peer");
+
+                List<CopiableSupplier<Integer>> tracked = new ArrayList<>();
+                for (int i = 0; i < 6; i++) {
+                    tracked.add(() -> runTrackedPartition(1));
+                }
+                mostPartitionsRunning.set(0);
+                communicator.setScatterGatherPeerLimit(2);
+                try {
+                    result = communicator.scatterGather(tracked,
+                            Collections.singletonList(
+                                    communicator.getMyAddress()),
+                            0, Integer::sum);
+                } finally {
+                    communicator.setScatterGatherPeerLimit(4);
+                }
+                testGroup.ok(result.getValue() == 6
+                        && mostPartitionsRunning.get() == 2,
+                        "the number of partitions running on a peer is limited");
+
+                List<CopiableSupplier<Integer>> slow = Arrays.asList(() -> {
+                    if (getCommunicator().getMyAddress().equals(server)) {
+                        delayInterruptions(() -> sleep(2000));
+                    }
+                    return 1;
+                }, () -> 2);
+                result = communicator.scatterGather(slow, both, 0,
+                        Integer::sum, Duration.ofMillis(200));
+                testGroup.ok(result.getValue() == 3
+                        && result.getReexecutions() == 1,
+                        "stragglers are re-executed on another peer");
+                testGroup.ok(result.getStragglers().equals(
+                        Collections.singletonMap(server, 1))
+                        && result.getFailures().isEmpty(),
+                        "stragglers are reported");
+
+                List<CopiableSupplier<Integer>> failing = Arrays.asList(() -> {
+                    if (getCommunicator().getMyAddress().equals(server)) {
+                        throw new IllegalStateException("failing on purpose");
+                    }
+                    return 1;
+                }, () -> 2);
+                result = communicator.scatterGather(failing, both, 0,
+                        Integer::sum);
+                testGroup.ok(result.getValue() == 3
+                        && result.getReexecutions() == 1,
+                        "failed partitions are re-executed on another peer");
+                testGroup.ok(result.getFailures().equals(
+                        Collections.singletonMap(server, 1))
+                        && result.getStragglers().isEmpty(),
+                        "failures are reported separately from stragglers");
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            new ClientServerTest("message tracing", 3,
+            (communicator, address, testGroup) -> {
+                Path traceFile = Files.createTempFile("mokapot-trace", ".json");
+                try {
+                    try (MessageTracer tracer
+                            = new MessageTracer(Files.newBufferedWriter(
+                                    traceFile, StandardCharsets.UTF_8), 1.0)) {
+                        communicator.setMessageTracer(tracer);
+                        communicator.runRemotely(() -> 1,
+                                address.getServerAddress());
+                        communicator.setMessageTracer(null);
+                    }
+                    String trace = new String(Files.readAllBytes(traceFile),
+                            StandardCharsets.UTF_8);
+                    testGroup.ok(trace.startsWith("[")
+                            && trace.trim().endsWith("]"),
+                            "trace file is a JSON array");
+                    testGroup.ok(trace.contains("\"name\":\"marshal\"")
+                            && trace.contains("\"name\":\"write\""),
+                            "sending phases are traced");
+                    testGroup.ok(trace.contains("\"name\":\"in transit\"")
+                            && trace.contains("\"name\":\"unmarshal\""),
+                            "the trace propagates to the reply");
+                } finally {
+                    Files.delete(traceFile);
+                }
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        address.getServerAddress());
+            }, true),
+            new ClientServerTest("flight recorder events", 3,
+            (communicator, address, testGroup) -> {
+                CommunicationAddress server = address.getServerAddress();
+                if (!FlightRecording.isAvailable()) {
+                    testGroup.skipTest("sent messages are recorded");
+                    testGroup.skipTest("received messages are recorded");
+                    testGroup.skipTest("marshalling is recorded");
+                } else {
+                    FlightRecording recording = new FlightRecording(
+                            "xyz.acygn.mokapot.MessageSent",
+                            "xyz.acygn.mokapot.MessageReceived",
+                            "xyz.acygn.mokapot.Marshal");
+                    communicator.runRemotely(() -> 1, server);
+                    List<Map<String, Object>> events = recording.stop();
+
+                    testGroup.ok(events.stream().anyMatch((e)
+                            -> e.get("eventType").equals(
+                                    "xyz.acygn.mokapot.MessageSent")
+                            && server.toString().equals(e.get("peer"))
+                            && ((Number) e.get("bytes")).intValue() > 0),
+                            "sent messages are recorded");
+                    testGroup.ok(events.stream().anyMatch((e)
+                            -> e.get("eventType").equals(
+                                    "xyz.acygn.mokapot.MessageReceived")
+                            && server.toString().equals(e.get("peer"))),
+                            "received messages are recorded");
+                    testGroup.ok(events.stream().anyMatch((e)
+                            -> e.get("eventType").equals(
+                                    "xyz.acygn.mokapot.Marshal")
+                            && ((Number) e.get("bytes")).intValue() > 0),
+                            "marshalling is recorded");
+                }
+                communicator.runRemotely(() -> {
+                    new Thread(getCommunicator()::stopCommunication).start();
+                    return null;
+                },
+                        server);
             }, true)
         };
         TestGroup allTests = new SerialTests("main test", testArray);
@@ -947,6 +1859,64 @@ public class TestMain {
         System.exit(TestGroup.getTestingStatus(true));
     }
 
+    /**
+     * The number of <code>runTrackedPartition</code> calls running at once.
+     */
+    private static final AtomicInteger partitionsRunning = new AtomicInteger();
+
+    /**
+     * The largest value that <code>partitionsRunning</code> has reached since
+     * this was last reset.
+     */
+    private static final AtomicInteger mostPartitionsRunning
+            = new AtomicInteger();
+
+    /**
+     * A scatter-gather partition that records how many copies of itself are
+     * running at once on this system.
+     *
+     * @param result The value to return.
+     * @return <code>result</code>, after a short delay.
+     */
+    private static int runTrackedPartition(int result) {
+        mostPartitionsRunning.accumulateAndGet(
+                partitionsRunning.incrementAndGet(), Math::max);
+        try {
+            delayInterruptions(() -> sleep(50));
+        } finally {
+            partitionsRunning.decrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Measures the copiable portion of the description of an object.
+     *
+     * @param communicator The communicator whose test hooks to use.
+     * @param o The object to describe.
+     * @return The length of the description, in bytes.
+     */
+    private static int describedLength(DistributedCommunicator communicator,
+            Object o) {
+        return ((ObjectDescription) communicator.getTestHooks().describe(o))
+                .getWrittenLength();
+    }
+
+    /**
+     * Counts the garbage collection requests that a communicator has received.
+     * These are control messages, so they're used to test the control lane.
+     *
+     * @param communicator The communicator whose metrics to read.
+     * @return The number of requests received.
+     */
+    private static long garbageCollectionRequestsReceived(
+            DistributedCommunicator communicator) {
+        CommunicatorMetrics.Traffic traffic = communicator.getMetrics()
+                .getTrafficByMessageType()
+                .get("xyz.acygn.mokapot.GarbageCollectionMessage");
+        return traffic == null ? 0 : traffic.getMessagesReceived();
+    }
+
     /**
      * Generates a test that marshalling and unmarshalling an object will
      * produce something that compares equal to the original object.
@@ -1312,6 +2282,106 @@ public class TestMain {
         }
     }
 
+    /**
+     * A class with a field of every primitive type, with values that aren't
+     * the defaults. The fields have a mix of access modifiers, because a
+     * generated field serialiser accesses private fields differently.
+     */
+    private static class PrimitiveFields {
+
+        /**
+         * A boolean field.
+         */
+        private boolean z = true;
+
+        /**
+         * A byte field.
+         */
+        private byte b = -2;
+
+        /**
+         * A char field, holding a character outside Latin-1.
+         */
+        char c = '\u20ac';
+
+        /**
+         * A short field.
+         */
+        short s = -300;
+
+        /**
+         * An int field; hidden by a field of <code>InheritedFields</code>.
+         */
+        int i = 0x12345678;
+
+        /**
+         * A long field.
+         */
+        protected long j = Long.MIN_VALUE + 1;
+
+        /**
+         * A float field, holding a value that compares equal to the default.
+         */
+        protected float f = -0.0f;
+
+        /**
+         * A double field.
+         */
+        private double d = Double.MIN_VALUE;
+    }
+
+    /**
+     * A class with fields of its own as well as inherited fields, one of which
+     * it hides.
+     */
+    private static class InheritedFields extends PrimitiveFields {
+
+        /**
+         * A field with the same name as an inherited field.
+         */
+        private int i = -7;
+
+        /**
+         * A field of reference type.
+         */
+        String name = "inherited";
+    }
+
+    /**
+     * A class whose fields are all final. A generated field serialiser can't
+     * set final fields directly.
+     */
+    private static class FinalFields {
+
+        /**
+         * A final int field.
+         */
+        private final int count;
+
+        /**
+         * A final long field.
+         */
+        final long total;
+
+        /**
+         * A final field of reference type.
+         */
+        private final String label;
+
+        /**
+         * Creates an object with the given field values.
+         *
+         * @param count The value of <code>count</code>.
+         * @param total The value of <code>total</code>.
+         * @param label The value of <code>label</code>.
+         */
+        FinalFields(int count, long total, String label) {
+            this.count = count;
+            this.total = total;
+            this.label = label;
+        }
+    }
+
     /**
      * A class used to test cyclic object graphs. It basically contains a single
      * mutable reference to another recursive container.
@@ -1437,6 +2507,282 @@ public class TestMain {
         }
     }
 
+    /**
+     * A counter whose value can be read via a read-only method. Used to test
+     * the caching of the results of read-only methods.
+     */
+    public static class CachedCounter implements NonCopiable {
+
+        /**
+         * The value of the counter.
+         */
+        private int value = 0;
+
+        /**
+         * Returns the value of the counter.
+         *
+         * @return The value.
+         */
+        @ReadOnly
+        public int get() {
+            return value;
+        }
+
+        /**
+         * Increases the value of the counter by 1.
+         */
+        public void increment() {
+            value++;
+        }
+    }
+
+    /**
+     * A named counter that other systems can replicate. Used to test read
+     * replicas of read-mostly objects.
+     */
+    public static class ReplicatedCounter implements ReadMostly {
+
+        /**
+         * The name of the counter.
+         */
+        private final String name;
+
+        /**
+         * The value of the counter.
+         */
+        private int value = 0;
+
+        /**
+         * Creates a new counter with value 0.
+         *
+         * @param name The name of the counter.
+         */
+        public ReplicatedCounter(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name and value of the counter.
+         *
+         * @return A string containing the name and value.
+         */
+        @ReadOnly
+        public String describe() {
+            return name + ": " + value;
+        }
+
+        /**
+         * Increases the value of the counter by 1.
+         */
+        public void increment() {
+            value++;
+        }
+    }
+
+    /**
+     * An object whose methods can tell whether they were called via a
+     * location manager's <code>invoke</code>, or directly by a standin. Used
+     * to test when standins call local objects directly, and that doing so
+     * makes no difference to the results.
+     */
+    public static class DirectCallProbe implements NonCopiable {
+
+        /**
+         * A value that can be changed and read, for testing cached results.
+         */
+        private int value = 0;
+
+        /**
+         * Returns whether this method call went via a location manager's
+         * <code>invoke</code> method, by looking for it on the stack.
+         *
+         * @return <code>true</code> if the call went via <code>invoke</code>.
+         */
+        public boolean viaInvoke() {
+            for (StackTraceElement e : new Throwable().getStackTrace()) {
+                if (e.getClassName().equals("xyz.acygn.mokapot.LocationManager")
+                        && e.getMethodName().equals("invoke")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Waits to be released, then returns whether this method call went
+         * via a location manager's <code>invoke</code> method.
+         *
+         * @param entered Counted down once the method has started.
+         * @param release The latch to wait for.
+         * @return <code>true</code> if the call went via <code>invoke</code>.
+         */
+        public boolean viaInvokeOnceReleased(
+                CountDownLatch entered, CountDownLatch release) {
+            entered.countDown();
+            delayInterruptions(release::await);
+            return viaInvoke();
+        }
+
+        /**
+         * Returns the address of the system on which the method runs.
+         *
+         * @return The address of the communicator running the method.
+         */
+        public CommunicationAddress where() {
+            return getCommunicator().getMyAddress();
+        }
+
+        /**
+         * Combines an argument of every primitive type, a string and an
+         * array into a string.
+         *
+         * @param b A byte.
+         * @param s A short.
+         * @param i An int.
+         * @param l A long.
+         * @param f A float.
+         * @param d A double.
+         * @param c A char.
+         * @param z A boolean.
+         * @param str A string.
+         * @param a An array.
+         * @return A string containing all the arguments.
+         */
+        public String combine(byte b, short s, int i, long l, float f,
+                double d, char c, boolean z, String str, int[] a) {
+            return b + "/" + s + "/" + i + "/" + l + "/" + f + "/" + d + "/"
+                    + c + "/" + z + "/" + str + "/" + Arrays.toString(a);
+        }
+
+        /**
+         * Multiplies a double by a float, returning a double (which needs
+         * two stack slots).
+         *
+         * @param d The double.
+         * @param f The float.
+         * @return The product.
+         */
+        public double scale(double d, float f) {
+            return d * f;
+        }
+
+        /**
+         * Returns a reversed copy of an array.
+         *
+         * @param a The array.
+         * @return A new array with the elements of <code>a</code> in reverse.
+         */
+        public int[] reversed(int[] a) {
+            int[] rv = new int[a.length];
+            for (int i = 0; i < a.length; i++) {
+                rv[i] = a[a.length - 1 - i];
+            }
+            return rv;
+        }
+
+        /**
+         * Returns its argument, unless it's negative.
+         *
+         * @param x The argument.
+         * @return <code>x</code>.
+         * @throws IOException If <code>x</code> is negative
+         */
+        public int checkNotNegative(int x) throws IOException {
+            if (x < 0) {
+                throw new IOException("negative: " + x);
+            }
+            return x;
+        }
+
+        /**
+         * Returns the value.
+         *
+         * @return The value.
+         */
+        @ReadOnly
+        public int get() {
+            return value;
+        }
+
+        /**
+         * Increases the value by 1.
+         */
+        public void increment() {
+            value++;
+        }
+    }
+
+    /**
+     * A read-mostly version of <code>DirectCallProbe</code>. Standins always
+     * call its methods via <code>invoke</code>, which manages its replicas.
+     */
+    public static class ReadMostlyDirectCallProbe extends DirectCallProbe
+            implements ReadMostly {
+    }
+
+    /**
+     * A list of words that can be iterated remotely. Used to test the
+     * streaming of remote iterators.
+     */
+    public static class WordList implements NonCopiable {
+
+        /**
+         * The words.
+         */
+        private final List<String> words = new ArrayList<>();
+
+        /**
+         * Creates a list of numbered words.
+         *
+         * @param count The number of words.
+         */
+        public WordList(int count) {
+            for (int i = 0; i < count; i++) {
+                words.add("word " + i);
+            }
+        }
+
+        /**
+         * Returns an iterator over the words.
+         *
+         * @return An iterator.
+         */
+        public Iterator<String> iterator() {
+            return new WordIterator();
+        }
+
+        /**
+         * Returns a stream of the words.
+         *
+         * @return A stream.
+         */
+        public Stream<String> stream() {
+            return words.stream();
+        }
+
+        /**
+         * An iterator over the words, which must stay on the system that
+         * stores them.
+         */
+        private class WordIterator implements Iterator<String>, NonCopiable {
+
+            /**
+             * The index of the next word.
+             */
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < words.size();
+            }
+
+            @Override
+            public String next() {
+                return words.get(next++);
+            }
+        }
+    }
+
     /**
      * A marker interface used for tests to see whether interfaces are correctly
      * implemented by standins. This interface is implemented on a class, then
@@ -5,8 +5,12 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -16,11 +20,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import xyz.acygn.millr.util.ObjectArrayWrapper;
+import xyz.acygn.millr.util.RuntimeUnwrapper;
+import xyz.acygn.millr.util.WeakIdentityRegistry;
+import xyz.acygn.millr.util.intArrayWrapper;
 import xyz.acygn.mokapot.test.ClientTestCode;
 import xyz.acygn.mokapot.test.SerialTests;
 import xyz.acygn.mokapot.test.TestGroup;
@@ -35,16 +47,21 @@ import xyz.acygn.mokapot.util.DataByteBuffer;
 import xyz.acygn.mokapot.util.DeterministicAutocloseable;
 import xyz.acygn.mokapot.util.DoublyWeakConcurrentMap;
 import xyz.acygn.mokapot.util.EnumerationIterator;
+import xyz.acygn.mokapot.util.Expirable;
+import xyz.acygn.mokapot.util.ExpirableAlternatives;
 import xyz.acygn.mokapot.util.ExpirableMap;
 import xyz.acygn.mokapot.util.ExtendedList;
 import xyz.acygn.mokapot.util.Holder;
 import xyz.acygn.mokapot.util.ImmutableSets;
 import xyz.acygn.mokapot.util.KeepalivePool;
+import xyz.acygn.mokapot.util.LatencyHistogram;
 import xyz.acygn.mokapot.util.MutexPool;
 import xyz.acygn.mokapot.util.ObjectIdentity;
 import xyz.acygn.mokapot.util.ObjectMethodDatabase;
 import xyz.acygn.mokapot.util.Pair;
 import xyz.acygn.mokapot.util.ResettableThreadLocal;
+import xyz.acygn.mokapot.util.SharedMemorySocketLike;
+import xyz.acygn.mokapot.util.SocketWrapper;
 import xyz.acygn.mokapot.util.ThreadUtils;
 import xyz.acygn.mokapot.util.TypeSafe;
 import xyz.acygn.mokapot.util.VMInfo;
@@ -1144,6 +1161,49 @@ public class TestUtilMain {
                     }
                 }
             }),
+            new ClientOnlyTest(4, "mokapot.util.ExpirableAlternatives",
+            (communicator, address, testGroup) -> {
+                ExpirableAlternatives<Integer, TrivialExpirable> ea
+                        = new ExpirableAlternatives<>();
+                Map<TrivialExpirable, Long> loads = new HashMap<>();
+                TrivialExpirable busy = new TrivialExpirable();
+                TrivialExpirable idle = new TrivialExpirable();
+                TrivialExpirable other = new TrivialExpirable();
+                ea.add(1, busy);
+                ea.add(2, idle);
+                ea.add(3, other);
+                loads.put(busy, 100L);
+                loads.put(idle, 0L);
+                loads.put(other, 0L);
+
+                List<TrivialExpirable> called = new ArrayList<>();
+                ea.callOnLeastLoaded((t) -> t != other, loads::get,
+                        Long.MAX_VALUE, called::add);
+                testGroup.okEq(called, Collections.singletonList(idle),
+                        "ExpirableAlternatives calls the least loaded matching element.");
+
+                loads.put(idle, 50L);
+                boolean ran = ea.callOnLeastLoaded((t) -> t != other,
+                        loads::get, 10, called::add);
+                testGroup.ok(!ran && called.size() == 1,
+                        "ExpirableAlternatives doesn't call elements that are too heavily loaded.");
+
+                idle.expire();
+                called.clear();
+                ea.callOnLeastLoaded((t) -> t != other, loads::get,
+                        Long.MAX_VALUE, (t) -> {
+                            if (t.expired) {
+                                throw Expirable.ExpiredException.SINGLETON;
+                            }
+                            called.add(t);
+                        });
+                testGroup.okEq(called, Collections.singletonList(busy),
+                        "ExpirableAlternatives moves on from an expired element.");
+
+                testGroup.ok(ea.count((t) -> t != other) == 1
+                        && ea.count((t) -> true) == 2,
+                        "ExpirableAlternatives counts its remaining elements.");
+            }),
             new ClientOnlyTest(5, "mokapot.util.ExpirableMap",
             (communicator, address, testGroup) -> {
                 //Testing constructor
@@ -1380,6 +1440,86 @@ public class TestUtilMain {
                     }
                 }
             }),
+            new ClientOnlyTest(6, "mokapot.util.LatencyHistogram",
+            (communicator, address, testGroup) -> {
+                LatencyHistogram h = new LatencyHistogram();
+                for (int i = 1; i <= 100; i++) {
+                    h.record(i * 1000L);
+                }
+                LatencyHistogram.Snapshot s = h.snapshot();
+                if (s.getCount() == 100 && s.getMeanNanos() == 50500
+                        && s.getMaxNanos() == 100000) {
+                    testGroup.ok(true, "LatencyHistogram summary statistics are exact.");
+                } else {
+                    testGroup.ok(false, "LatencyHistogram summary statistics are wrong: " + s);
+                }
+
+                /* Percentiles are certainly within their bucket, and never
+                   underestimate. */
+                long p50 = s.getP50Nanos();
+                long p99 = s.getP99Nanos();
+                if (p50 >= 50000 && p50 < 100000 && p99 >= 99000
+                        && p99 <= 100000) {
+                    testGroup.ok(true, "LatencyHistogram percentiles are within their bucket.");
+                } else {
+                    testGroup.ok(false, "LatencyHistogram gave p50 " + p50 + ", p99 " + p99);
+                }
+
+                /* Against a known (uniform) distribution, each percentile is
+                   within one sub-bucket of the true value. */
+                LatencyHistogram uniform = new LatencyHistogram();
+                for (int i = 1; i <= 10000; i++) {
+                    uniform.record(i * 1000L);
+                }
+                LatencyHistogram.Snapshot us = uniform.snapshot();
+                double[] percentiles = {50, 90, 99, 99.9};
+                long[] expected = {5000000, 9000000, 9900000, 9990000};
+                boolean accurate = true;
+                for (int i = 0; i < percentiles.length; i++) {
+                    long actual = us.percentileNanos(percentiles[i]);
+                    if (actual < expected[i] || actual > expected[i]
+                            + expected[i] / LatencyHistogram.SUB_BUCKET_COUNT) {
+                        accurate = false;
+                        testGroup.comment("p" + percentiles[i]
+                                + " of 1..10000us was " + actual
+                                + "ns, expected " + expected[i] + "ns");
+                    }
+                }
+                testGroup.ok(accurate, "LatencyHistogram percentiles match a known distribution.");
+
+                LatencyHistogram fast = new LatencyHistogram();
+                LatencyHistogram slow = new LatencyHistogram();
+                fast.record(1100000);
+                slow.record(1900000);
+                fast.record(5000000);
+                slow.record(5000000);
+                for (int i = 0; i < 98; i++) {
+                    fast.record(1000);
+                    slow.record(1000);
+                }
+                testGroup.ok(fast.snapshot().getP99Nanos()
+                        < slow.snapshot().getP99Nanos(),
+                        "LatencyHistogram distinguishes durations in the same power of 2.");
+
+                h.record(-5);
+                h.record(Long.MAX_VALUE);
+                long[] buckets = h.snapshot().getBucketCounts();
+                if (buckets.length == LatencyHistogram.BUCKET_COUNT
+                        && buckets[0] == 1
+                        && buckets[LatencyHistogram.BUCKET_COUNT - 1] == 1) {
+                    testGroup.ok(true, "LatencyHistogram clamps out-of-range durations.");
+                } else {
+                    testGroup.ok(false, "LatencyHistogram bucket counts are " + Arrays.toString(buckets));
+                }
+
+                h.reset();
+                if (h.snapshot().getCount() == 0
+                        && h.snapshot().percentileNanos(99) == 0) {
+                    testGroup.ok(true, "LatencyHistogram can be reset.");
+                } else {
+                    testGroup.ok(false, "LatencyHistogram was not reset.");
+                }
+            }),
             new ClientOnlyTest(7, "mokapot.util.MutexPool",
             (communicator, address, testGroup) -> {
                 //First test
@@ -1754,7 +1894,101 @@ public class TestUtilMain {
                     a.join();
                 }
             }),
-            new ClientOnlyTest(12, "mokapot.util.ThreadUtils",
+            new ClientOnlyTest(6, "mokapot.util.SharedMemorySocketLike",
+            (communicator, address, testGroup) -> {
+                if (!SharedMemorySocketLike.isSupported()) {
+                    for (int i = 0; i < 6; i++) {
+                        testGroup.skipTest("shared memory is not accessible on this VM");
+                    }
+                    return;
+                }
+                try {
+                    new SharedMemorySocketLike(null,
+                            ByteBuffer.allocateDirect(SharedMemorySocketLike.HEADER_SIZE + 100),
+                            ByteBuffer.allocateDirect(SharedMemorySocketLike.HEADER_SIZE + 64));
+                    testGroup.ok(false, "SharedMemorySocketLike accepted a ring buffer that isn't a power of 2 in size.");
+                } catch (IllegalArgumentException ex) {
+                    testGroup.ok(true, "SharedMemorySocketLike rejects a ring buffer that isn't a power of 2 in size.");
+                }
+
+                /* Use a small ring buffer, so that data wraps around it, and
+                   a loopback TCP connection for control. */
+                ByteBuffer aToB = ByteBuffer.allocateDirect(SharedMemorySocketLike.HEADER_SIZE + 64);
+                ByteBuffer bToA = ByteBuffer.allocateDirect(SharedMemorySocketLike.HEADER_SIZE + 64);
+                SharedMemorySocketLike a;
+                SharedMemorySocketLike b;
+                try (ServerSocket listen = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                    Socket control = new Socket(InetAddress.getLoopbackAddress(), listen.getLocalPort());
+                    a = new SharedMemorySocketLike(new SocketWrapper(control), bToA, aToB);
+                    b = new SharedMemorySocketLike(new SocketWrapper(listen.accept()), aToB, bToA);
+                }
+
+                a.getOutputStream().write(new byte[]{1, 2, 3});
+                byte[] small = new byte[3];
+                int smallRead = b.getInputStream().read(small);
+                testGroup.ok(smallRead == 3 && Arrays.equals(small, new byte[]{1, 2, 3}),
+                        "SharedMemorySocketLike transfers data between its ends.");
+
+                /* The writer has to wait for the reader here, and vice
+                   versa. */
+                byte[] large = new byte[10000];
+                for (int i = 0; i < large.length; i++) {
+                    large[i] = (byte) (i * 31);
+                }
+                Thread writer = new Thread(() -> {
+                    try {
+                        b.getOutputStream().write(large);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                });
+                writer.start();
+                byte[] received = new byte[large.length];
+                int receivedCount = 0;
+                while (receivedCount < received.length) {
+                    int n = a.getInputStream().read(received, receivedCount, received.length - receivedCount);
+                    if (n == -1) {
+                        break;
+                    }
+                    receivedCount += n;
+                }
+                writer.join();
+                testGroup.ok(Arrays.equals(received, large),
+                        "SharedMemorySocketLike transfers more data than fits in its ring buffer.");
+
+                /* Give the reader time to stop spinning and block on the
+                   control socket before writing. */
+                int[] woken = new int[]{-2};
+                Thread reader = new Thread(() -> {
+                    try {
+                        woken[0] = b.getInputStream().read();
+                    } catch (IOException ex) {
+                        woken[0] = -3;
+                    }
+                });
+                reader.start();
+                Thread.sleep(200);
+                a.getOutputStream().write(42);
+                reader.join(10000);
+                testGroup.ok(woken[0] == 42,
+                        "SharedMemorySocketLike wakes a blocked reader.");
+
+                a.getOutputStream().write(7);
+                a.close();
+                int lastByte = b.getInputStream().read();
+                int eof = b.getInputStream().read();
+                testGroup.ok(lastByte == 7 && eof == -1,
+                        "SharedMemorySocketLike delivers remaining data, then end of file, after a close.");
+
+                try {
+                    b.getOutputStream().write(1);
+                    testGroup.ok(false, "SharedMemorySocketLike allowed a write after the other end closed.");
+                } catch (IOException ex) {
+                    testGroup.ok(true, "SharedMemorySocketLike rejects writes after the other end closed.");
+                }
+                b.close();
+            }),
+            new ClientOnlyTest(14, "mokapot.util.ThreadUtils",
             (communicator, address, testGroup) -> {
                 //Testing unwrapAndRethrow
                 {
@@ -1908,6 +2142,26 @@ public class TestUtilMain {
                     }
                     t.join();
                 }
+                //Testing newVirtualThreadExecutor
+                {
+                    Executor executor;
+                    try {
+                        executor = ThreadUtils.newVirtualThreadExecutor();
+                    } catch (UnsupportedOperationException ex) {
+                        executor = null;
+                    }
+                    if (executor == null) {
+                        testGroup.skipTest("ThreadUtils newVirtualThreadExecutor runs tasks.");
+                        testGroup.skipTest("ThreadUtils newVirtualThreadExecutor uses virtual threads.");
+                    } else {
+                        BlockingQueue<Thread> ranOn = new LinkedBlockingQueue<>();
+                        executor.execute(() -> ranOn.add(Thread.currentThread()));
+                        Thread t = ranOn.poll(10, TimeUnit.SECONDS);
+                        testGroup.ok(t != null, "ThreadUtils newVirtualThreadExecutor runs tasks.");
+                        testGroup.ok(t != null && (Boolean) Thread.class.getMethod("isVirtual").invoke(t),
+                                "ThreadUtils newVirtualThreadExecutor uses virtual threads.");
+                    }
+                }
             }),
             new ClientOnlyTest(6, "mokapot.util.TypeSafe",
             (communicator, address, testGroup) -> {
@@ -2209,6 +2463,123 @@ public class TestUtilMain {
                         testGroup.ok(false, "WeakValuedConcurrentMap replace does not replace correctly.");
                     }
                 }
+            }),
+            new ClientOnlyTest(6, "millr.util.WeakIdentityRegistry",
+            (communicator, address, testGroup) -> {
+                WeakIdentityRegistry<Object, Pair<Object, Integer>> r
+                        = new WeakIdentityRegistry<>(Pair::getFirst);
+                Object k1 = new TrivialTestClass(1);
+                Object k2 = new TrivialTestClass(1);
+
+                Pair<Object, Integer> v1 = r.computeIfAbsent(k1, (k) -> new Pair<>(k, 1));
+                Pair<Object, Integer> v2 = r.computeIfAbsent(k2, (k) -> new Pair<>(k, 2));
+                if (v1 != v2 && r.get(k1) == v1 && r.get(k2) == v2 && r.size() == 2) {
+                    testGroup.ok(true, "WeakIdentityRegistry compares keys by identity.");
+                } else {
+                    testGroup.ok(false, "WeakIdentityRegistry confused equal keys.");
+                }
+
+                if (r.computeIfAbsent(k1, (k) -> new Pair<>(k, 3)) == v1) {
+                    testGroup.ok(true, "WeakIdentityRegistry computeIfAbsent reuses existing value.");
+                } else {
+                    testGroup.ok(false, "WeakIdentityRegistry computeIfAbsent replaced existing value.");
+                }
+
+                v2 = null;
+                System.gc();
+                System.runFinalization();
+                Thread.sleep(50);
+                if (r.size() == 1 && r.get(k2) == null && r.get(k1) == v1) {
+                    testGroup.ok(true, "WeakIdentityRegistry does not keep values alive.");
+                } else {
+                    testGroup.ok(false, "WeakIdentityRegistry kept a value alive.");
+                }
+
+                Object shared = new TrivialTestClass(2);
+                Set<Pair<Object, Integer>> seen
+                        = Collections.newSetFromMap(new ConcurrentHashMap<>());
+                List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    final int n = i;
+                    threads.add(new Thread(() -> {
+                        for (int j = 0; j < 1000; j++) {
+                            r.computeIfAbsent(new TrivialTestClass(j), (k) -> new Pair<>(k, n));
+                        }
+                        seen.add(r.computeIfAbsent(shared, (k) -> new Pair<>(k, n)));
+                    }));
+                }
+                for (Thread t : threads) {
+                    t.start();
+                }
+                for (Thread t : threads) {
+                    t.join();
+                }
+                if (seen.size() == 1) {
+                    testGroup.ok(true, "WeakIdentityRegistry computeIfAbsent is atomic.");
+                } else {
+                    testGroup.ok(false, "WeakIdentityRegistry created " + seen.size() + " values for one key.");
+                }
+
+                int[] array = new int[3];
+                intArrayWrapper w = intArrayWrapper.getintArrayWrapper(array);
+                if (intArrayWrapper.getintArrayWrapper(array) == w) {
+                    testGroup.ok(true, "intArrayWrapper is unique for a given array.");
+                } else {
+                    testGroup.ok(false, "intArrayWrapper created two wrappers for one array.");
+                }
+
+                intArrayWrapper fresh = intArrayWrapper.getintArrayWrapper(3);
+                if (intArrayWrapper.getintArrayWrapper(fresh.asArray()) == fresh) {
+                    testGroup.ok(true, "intArrayWrapper registers its own array when exposed.");
+                } else {
+                    testGroup.ok(false, "intArrayWrapper did not register its own array.");
+                }
+            }),
+            new ClientOnlyTest(5, "millr.util.ArrayWrapper bulk operations",
+            (communicator, address, testGroup) -> {
+                intArrayWrapper a = intArrayWrapper.getintArrayWrapper(
+                        new int[]{0, 1, 2, 3, 4, 5});
+                if (Arrays.equals(a.getRange(1, 4), new int[]{1, 2, 3})) {
+                    testGroup.ok(true, "getRange returns the requested elements.");
+                } else {
+                    testGroup.ok(false, "getRange returned " + Arrays.toString(a.getRange(1, 4)));
+                }
+
+                RuntimeUnwrapper.arraycopy(a, 0, a, 2, 4);
+                if (Arrays.equals(a.asArray(), new int[]{0, 1, 0, 1, 2, 3})) {
+                    testGroup.ok(true, "Overlapping arraycopy within a wrapper is correct.");
+                } else {
+                    testGroup.ok(false, "Overlapping arraycopy gave " + Arrays.toString(a.asArray()));
+                }
+
+                int[] plain = new int[3];
+                RuntimeUnwrapper.arraycopy(a, 3, plain, 0, 3);
+                intArrayWrapper b = intArrayWrapper.getintArrayWrapper(2);
+                RuntimeUnwrapper.arraycopy(plain, 1, b, 0, 2);
+                if (Arrays.equals(plain, new int[]{1, 2, 3})
+                        && Arrays.equals(b.asArray(), new int[]{2, 3})) {
+                    testGroup.ok(true, "arraycopy between wrappers and plain arrays is correct.");
+                } else {
+                    testGroup.ok(false, "arraycopy between wrappers and plain arrays is wrong.");
+                }
+
+                intArrayWrapper c = a.copyOfRange(4, 8);
+                c.fill(1, 3, 9);
+                c.sort();
+                if (Arrays.equals(c.asArray(), new int[]{0, 2, 9, 9})
+                        && a.copyOf(2).size() == 2) {
+                    testGroup.ok(true, "copyOf, fill and sort behave like java.util.Arrays.");
+                } else {
+                    testGroup.ok(false, "copyOfRange/fill/sort gave " + Arrays.toString(c.asArray()));
+                }
+
+                try {
+                    RuntimeUnwrapper.arraycopy(a, 0,
+                            ObjectArrayWrapper.getObjectArrayWrapper(1, Object.class), 0, 1);
+                    testGroup.ok(false, "arraycopy from int[] into Object[] succeeded.");
+                } catch (ArrayStoreException ex) {
+                    testGroup.ok(true, "arraycopy checks the array types.");
+                }
             })
         };
 